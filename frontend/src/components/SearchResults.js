@@ -123,8 +123,9 @@ const ResultSnippet = styled.p`
   line-height: 1.5;
   margin: 0;
   
-  span.highlight {
+  strong {
     background-color: rgba(155, 89, 182, 0.3);
+    font-weight: inherit;
     padding: 2px 0;
   }
 `;
@@ -212,6 +213,27 @@ const SuggestionTitle = styled.div`
   color: #5f6368;
 `;
 
+const DidYouMean = styled.p`
+  margin: 10px 0;
+  color: #5f6368;
+  font-size: 16px;
+
+  button {
+    background: none;
+    border: none;
+    padding: 0;
+    color: #1a0dab;
+    font-size: 16px;
+    font-style: italic;
+    font-weight: 500;
+    cursor: pointer;
+  }
+
+  button:hover {
+    text-decoration: underline;
+  }
+`;
+
 const SuggestionsWrapper = styled.div`
   display: flex;
   flex-wrap: wrap;
@@ -279,43 +301,25 @@ const PhraseQueryIndicator = styled.span`
   font-size: 0.9rem;
 `;
 
-const highlightText = (text, keywords) => {
-  if (!text || !keywords || !keywords.length) return "No description available";
-  
-  // Clean up any HTML tags for safety
-  const cleanText = text.replace(/<\/?[^>]+(>|$)/g, "");
-  
-  // If the text is very short, return it without additional processing
-  if (cleanText.length < 20) return cleanText;
-  
-  let highlightedText = cleanText;
-  
-  // Highlight each keyword
-  keywords.forEach(keyword => {
-    if (keyword && keyword.length > 1) {
-      try {
-        const regex = new RegExp(`(${keyword})`, 'gi');
-        highlightedText = highlightedText.replace(regex, '<span class="highlight">$1</span>');
-      } catch (e) {
-        // If regex fails, continue with the next keyword
-        console.error("Regex error:", e);
-      }
-    }
-  });
-  
-  return <span dangerouslySetInnerHTML={{ __html: highlightedText }} />;
+// The server's snippet is escaped text with the query terms already wrapped in <strong>
+const renderSnippet = (result) => {
+  if (result.snippet) {
+    return <span dangerouslySetInnerHTML={{ __html: result.snippet }} />;
+  }
+  return result.description || 'No description available';
 };
 
 const SearchResults = () => {
   const [results, setResults] = useState([]);
   const [loading, setLoading] = useState(true);
   const [error, setError] = useState(null);
-  const [processedQuery, setProcessedQuery] = useState({ phrases: [], stemmed: [] });
+  const [, setProcessedQuery] = useState({ phrases: [], stemmed: [] });
   const [totalResults, setTotalResults] = useState(0);
   const [currentPage, setCurrentPage] = useState(1);
   const [loadTime, setLoadTime] = useState(null);
   const [operator, setOperator] = useState(null);
   const [suggestedQueries, setSuggestedQueries] = useState([]);
+  const [didYouMean, setDidYouMean] = useState(null);
   const [rankingFactors, setRankingFactors] = useState({});
   const [sessionId, setSessionId] = useState(null);
   const [paginationInfo, setPaginationInfo] = useState({
@@ -441,6 +445,7 @@ const SearchResults = () => {
       
       // Set suggested queries
       setSuggestedQueries(searchResponse.data.suggestedQueries || []);
+      setDidYouMean(searchResponse.data.didYouMean || null);
       
       // Set ranking factors
       setRankingFactors(searchResponse.data.rankingFactors || {});
@@ -540,6 +545,19 @@ const SearchResults = () => {
     );
   };
   
+  const renderDidYouMean = () => {
+    if (!didYouMean) return null;
+
+    return (
+      <DidYouMean>
+        Did you mean:{' '}
+        <button type="button" onClick={() => handleSuggestedQueryClick(didYouMean)}>
+          {didYouMean}
+        </button>
+      </DidYouMean>
+    );
+  };
+
   const renderSuggestedQueries = () => {
     if (!suggestedQueries || suggestedQueries.length === 0) return null;
     
@@ -579,7 +597,6 @@ const SearchResults = () => {
     );
   };
   
-  const keywords = [...processedQuery.phrases, ...processedQuery.stemmed];
 
   // Format the operator for display
   const getOperatorDisplay = () => {
@@ -626,9 +643,11 @@ const SearchResults = () => {
           <NoResults>
             <h2>No results found</h2>
             <p>We couldn't find any results for "{query}". Please try different keywords or check your spelling.</p>
+            {renderDidYouMean()}
           </NoResults>
         ) : (
           <>
+            {renderDidYouMean()}
             {renderSuggestedQueries()}
             
             <ResultsList>
@@ -641,7 +660,7 @@ const SearchResults = () => {
                     🔗 {result.url}
                   </ResultUrl>
                   <ResultSnippet>
-                    {highlightText(result.snippet || result.description || 'No description available', keywords)}
+                    {renderSnippet(result)}
                   </ResultSnippet>
                 </ResultItem>
               ))}
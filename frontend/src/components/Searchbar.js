@@ -142,10 +142,40 @@ const PulseDot = styled.div`
   display: ${props => props.$isVisible ? 'block' : 'none'};
 `;
 
+const Suggestions = styled.ul`
+  position: absolute;
+  top: 100%;
+  left: 0;
+  right: 0;
+  margin: 6px 0 0;
+  padding: 6px 0;
+  list-style: none;
+  background: rgba(40, 20, 60, 0.95);
+  border-radius: 12px;
+  box-shadow: 0 4px 15px rgba(0, 0, 0, 0.2);
+  z-index: 100;
+  backdrop-filter: blur(5px);
+`;
+
+const SuggestionItem = styled.li`
+  padding: 8px 20px;
+  color: white;
+  font-size: 15px;
+  cursor: pointer;
+  background: ${props => props.$active ? 'rgba(155, 89, 182, 0.5)' : 'transparent'};
+
+  &:hover {
+    background: rgba(155, 89, 182, 0.5);
+  }
+`;
+
 const SearchBar = ({ isResults, initialQuery, onSearch }) => {
   const [query, setQuery] = useState(initialQuery || '');
   const [isListening, setIsListening] = useState(false);
   const [transcript, setTranscript] = useState('');
+  const [suggestions, setSuggestions] = useState([]);
+  const [activeSuggestion, setActiveSuggestion] = useState(-1);
+  const [showSuggestions, setShowSuggestions] = useState(false);
   const recognitionRef = useRef(null);
   const navigate = useNavigate();
   const location = useLocation();
@@ -159,6 +189,30 @@ const SearchBar = ({ isResults, initialQuery, onSearch }) => {
     }
   }, [initialQuery, isHomePage]);
   
+  // Fetch completions once typing pauses; stale responses are dropped
+  useEffect(() => {
+    if (!showSuggestions || !query.trim()) {
+      setSuggestions([]);
+      return;
+    }
+    let cancelled = false;
+    const timer = setTimeout(async () => {
+      try {
+        const response = await axios.get(`${API_BASE_URL}/suggest?q=${encodeURIComponent(query)}&limit=8`);
+        if (!cancelled) {
+          setSuggestions(response.data.suggestions || []);
+          setActiveSuggestion(-1);
+        }
+      } catch (error) {
+        if (!cancelled) setSuggestions([]);
+      }
+    }, 150);
+    return () => {
+      cancelled = true;
+      clearTimeout(timer);
+    };
+  }, [query, showSuggestions]);
+
   // Clean up recognition on unmount
   useEffect(() => {
     return () => {
@@ -174,6 +228,7 @@ const SearchBar = ({ isResults, initialQuery, onSearch }) => {
   
   const handleSearch = async (e, isVoiceSearch = false) => {
     if (e) e.preventDefault();
+    setShowSuggestions(false);
     if (query.trim()) {
       try {
         if (isVoiceSearch) {
@@ -200,6 +255,32 @@ const SearchBar = ({ isResults, initialQuery, onSearch }) => {
     }
   };
   
+  const selectSuggestion = (suggestion) => {
+    setQuery(suggestion);
+    setShowSuggestions(false);
+    if (onSearch) {
+      onSearch(suggestion);
+    } else {
+      navigate(`/search?q=${encodeURIComponent(suggestion)}`);
+    }
+  };
+
+  const handleKeyDown = (e) => {
+    if (!showSuggestions || suggestions.length === 0) return;
+    if (e.key === 'ArrowDown') {
+      e.preventDefault();
+      setActiveSuggestion((activeSuggestion + 1) % suggestions.length);
+    } else if (e.key === 'ArrowUp') {
+      e.preventDefault();
+      setActiveSuggestion(activeSuggestion <= 0 ? suggestions.length - 1 : activeSuggestion - 1);
+    } else if (e.key === 'Enter' && activeSuggestion >= 0) {
+      e.preventDefault();
+      selectSuggestion(suggestions[activeSuggestion]);
+    } else if (e.key === 'Escape') {
+      setShowSuggestions(false);
+    }
+  };
+
   const handleClear = () => {
     setQuery('');
     if (!isHomePage) {
@@ -282,7 +363,12 @@ const SearchBar = ({ isResults, initialQuery, onSearch }) => {
           type="text"
           placeholder={isHomePage ? 'Search... (Use "quotes" for exact phrases, AND/OR/NOT for operators)' : 'Search...'}
           value={query}
-          onChange={(e) => setQuery(e.target.value)}
+          onChange={(e) => {
+            setQuery(e.target.value);
+            setShowSuggestions(true);
+          }}
+          onKeyDown={handleKeyDown}
+          onBlur={() => setShowSuggestions(false)}
           $isHomePage={isHomePage}
         />
         {query && (
@@ -308,6 +394,24 @@ const SearchBar = ({ isResults, initialQuery, onSearch }) => {
         </SearchButton>
       </SearchForm>
       
+      {showSuggestions && suggestions.length > 0 && !isListening && (
+        <Suggestions>
+          {suggestions.map((suggestion, index) => (
+            <SuggestionItem
+              key={suggestion}
+              $active={index === activeSuggestion}
+              // Select before the input's blur hides the list
+              onMouseDown={(e) => {
+                e.preventDefault();
+                selectSuggestion(suggestion);
+              }}
+            >
+              {suggestion}
+            </SuggestionItem>
+          ))}
+        </Suggestions>
+      )}
+
       <VoiceRecognition $show={isListening}>
         <p>Listening... speak now</p>
         {transcript && <h3>{transcript}</h3>}
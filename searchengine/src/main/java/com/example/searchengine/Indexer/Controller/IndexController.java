@@ -3,11 +3,10 @@ package com.example.searchengine.Indexer.Controller;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicInteger;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -16,12 +15,18 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import com.example.searchengine.Crawler.Entities.Document;
 import com.example.searchengine.Crawler.Repository.DocumentRepository;
 import com.example.searchengine.Indexer.Entities.Word;
 import com.example.searchengine.Indexer.Repository.WordRepository;
+import com.example.searchengine.Indexer.Generation.IndexGenerations;
+import com.example.searchengine.Indexer.Snapshot.IndexSnapshotService;
+import com.example.searchengine.Indexer.Service.IndexExportService;
+import com.example.searchengine.Indexer.Service.IndexStatistics;
 import com.example.searchengine.Indexer.Service.IndexerService;
+import com.example.searchengine.Indexer.Service.PostingsService;
 
 @RestController
 @RequestMapping("/api/indexer")
@@ -37,9 +42,39 @@ public class IndexController {
     @Autowired
     WordRepository wordRepository;
 
+    @Autowired
+    private PostingsService postingsService;
+
+    @Autowired
+    private IndexSnapshotService indexSnapshotService;
+
+    @Autowired
+    private IndexGenerations indexGenerations;
+
+    @Autowired
+    private IndexStatistics indexStatistics;
+
+    @Autowired
+    private IndexExportService indexExportService;
+
+    /**
+     * One page of the index in word order; pass the returned {@code next} as
+     * {@code after} to get the following page
+     */
     @GetMapping("/index")
-    public Map<String, Map<String, Object>> getIndex() {
-        return indexService.getIndex();
+    public Map<String, Object> getIndex(@RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "100") int limit) {
+        return indexExportService.page(after, limit);
+    }
+
+    /**
+     * The whole index as newline-delimited JSON, one term per line, streamed
+     * from a single database cursor
+     */
+    @GetMapping(value = "/index/export", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> exportIndex() {
+        StreamingResponseBody body = indexExportService::export;
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType("application/x-ndjson")).body(body);
     }
 
     @GetMapping("/")
@@ -53,7 +88,8 @@ public class IndexController {
     }
 
     @PostMapping("/reindex")
-    public Map<String, Object> reindex(@RequestParam(required = false) List<String> urls) {
+    public Map<String, Object> reindex(@RequestParam(required = false) List<String> urls,
+            @RequestParam(defaultValue = "false") boolean full) {
         Map<String, Object> response = new HashMap<>();
         
         try {
@@ -76,78 +112,27 @@ public class IndexController {
                     response.put("status", "warning");
                 }
             } else {
-                // For indexing all documents, we'll process in small batches to avoid memory issues
-                long totalDocuments = documentRepository.count();
-                int batchSize = 100; // Increased batch size for better performance
-                long totalBatches = (totalDocuments + batchSize - 1) / batchSize; // Ceiling division
+                // Incremental by default: only documents changed since they were last indexed
+                long documentsToIndex = full ? documentRepository.count() : indexService.countChangedDocuments();
                 
-                response.put("message", "Started reindexing all " + totalDocuments + 
-                             " documents in " + totalBatches + " batches. Each batch will process " + 
-                             batchSize + " documents.");
+                response.put("message", "Started " + (full ? "full" : "incremental") + " reindexing of " +
+                             documentsToIndex + " documents.");
                 response.put("status", "success");
-                response.put("totalDocuments", totalDocuments);
-                response.put("totalBatches", totalBatches);
-                
-                // Use an AtomicInteger for thread-safe progress tracking
-                final AtomicInteger processedBatches = new AtomicInteger(0);
-                final AtomicInteger processedDocuments = new AtomicInteger(0);
+                response.put("totalDocuments", documentsToIndex);
+                response.put("mode", full ? "full" : "incremental");
                 
                 // Start the reindexing process in a separate thread
                 new Thread(() -> {
                     try {
-                        System.out.println("Starting background reindexing of all documents...");
-                        int page = 0;
-                        boolean hasMore = true;
-                        
-                        while (hasMore) {
-                            // Process one batch at a time
-                            Map<String, String> batch = new HashMap<>();
-                            Page<Document> documentPage = documentRepository.findAll(PageRequest.of(page, batchSize));
-                            
-                            if (documentPage.isEmpty()) {
-                                hasMore = false;
-                                continue;
-                            }
-                            
-                            for (Document doc : documentPage.getContent()) {
-                                if (doc.getUrl() != null && doc.getContent() != null) {
-                                    batch.put(doc.getUrl(), doc.getContent());
-                                }
-                            }
-                            
-                            // Index this batch
-                            if (!batch.isEmpty()) {
-                                indexService.buildIndex(batch);
-                                processedDocuments.addAndGet(batch.size());
-                                int currentBatch = processedBatches.incrementAndGet();
-                                
-                                // Log progress
-                                System.out.println(String.format(
-                                    "Indexed batch %d of %d (%.1f%%) - %d/%d documents processed",
-                                    currentBatch, totalBatches,
-                                    (currentBatch * 100.0 / totalBatches),
-                                    processedDocuments.get(), totalDocuments
-                                ));
-                            }
-                            
-                            page++;
-                            
-                            // Clear the batch and help GC
-                            batch.clear();
-                            System.gc();
-                            
-                            // A small delay between batches to prevent overwhelming the system
-                            try {
-                                Thread.sleep(200);
-                            } catch (InterruptedException e) {
-                                Thread.currentThread().interrupt();
-                            }
-                        }
+                        System.out.println("Starting background " + (full ? "full" : "incremental") + " reindexing...");
+                        int processed = full ? indexService.reindexAllDocuments() : indexService.reindexChangedDocuments();
                         
                         // After completing indexing, compute metrics for better search performance
-                        indexService.computeAndStoreMetrics();
+                        if (processed > 0) {
+                            indexService.computeAndStoreMetrics();
+                        }
                         
-                        System.out.println("Background reindexing completed: " + processedDocuments.get() + 
+                        System.out.println("Background reindexing completed: " + processed + 
                                            " documents processed. Search metrics computed.");
                     } catch (Exception e) {
                         System.err.println("Error during background reindexing: " + e.getMessage());
@@ -164,9 +149,14 @@ public class IndexController {
         return response;
     }
 
+    /**
+     * The old whole-index dump, now one page of {@link #getIndex}; follow
+     * {@code next} for the rest, or stream {@code /index/export}
+     */
     @GetMapping("/invertedIndex")
-    public Map<String, Map<Long, Integer>> getMethodName() {
-        return indexService.getInvertedIndex();
+    public Map<String, Object> getInvertedIndex(@RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "100") int limit) {
+        return indexExportService.page(after, limit);
     }
 
     @GetMapping("/documentWords")
@@ -218,6 +208,47 @@ public class IndexController {
         }
     }
     
+    /**
+     * Queue depth and throughput of each indexing pipeline stage
+     */
+    @GetMapping("/pipeline")
+    public Map<String, Object> getPipelineStats() {
+        return indexService.getPipelineStats();
+    }
+
+    /**
+     * Active index generation, its readers and retired generations still in use
+     */
+    @GetMapping("/generations")
+    public Map<String, Object> getGenerations() {
+        return indexGenerations.getStats();
+    }
+
+    /**
+     * State of the memory-mapped index snapshot the ranker starts from
+     */
+    @GetMapping("/snapshot")
+    public Map<String, Object> getSnapshot() {
+        return indexSnapshotService.getStats();
+    }
+
+    /**
+     * Write a fresh index snapshot from the index tables
+     */
+    @PostMapping("/snapshot/rebuild")
+    public ResponseEntity<Map<String, Object>> rebuildSnapshot() {
+        Map<String, Object> response = new HashMap<>();
+        try {
+            response.putAll(indexSnapshotService.rebuild());
+            response.put("success", true);
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            response.put("success", false);
+            response.put("message", "Failed to write index snapshot: " + e.getMessage());
+            return ResponseEntity.internalServerError().body(response);
+        }
+    }
+
     /**
      * Endpoint to get indexing statistics and information
      */
@@ -226,13 +257,10 @@ public class IndexController {
         Map<String, Object> response = new HashMap<>();
         
         try {
-            // Get document count
-            long documentCount = indexService.getDocumentCnt().size();
-            response.put("documentCount", documentCount);
-            
-            // Get word count
-            long wordCount = indexService.getInvertedIndex().size();
-            response.put("wordCount", wordCount);
+            // Maintained as documents are indexed, so nothing is counted here
+            response.put("documentCount", indexStatistics.getDocumentCount());
+            response.put("wordCount", indexStatistics.getTermCount());
+            response.putAll(indexStatistics.getStats());
             
             response.put("success", true);
             return ResponseEntity.ok(response);
@@ -243,4 +271,40 @@ public class IndexController {
         }
     }
 
-}
\ No newline at end of file
+    /**
+     * Compare load time and heap use of the primitive in-memory index with
+     * the boxed nested maps it replaced
+     */
+    @GetMapping("/memory-index/benchmark")
+    public ResponseEntity<Map<String, Object>> benchmarkInMemoryIndex() {
+        Map<String, Object> response = new HashMap<>();
+        try {
+            response.putAll(indexService.benchmarkInMemoryIndex());
+            response.put("success", true);
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            response.put("success", false);
+            response.put("message", "Failed to benchmark in-memory index: " + e.getMessage());
+            return ResponseEntity.internalServerError().body(response);
+        }
+    }
+
+    /**
+     * Compare the compressed postings format with the row tables for size and decode speed
+     */
+    @GetMapping("/postings/benchmark")
+    public ResponseEntity<Map<String, Object>> benchmarkPostings(
+            @RequestParam(defaultValue = "50") int sampleTerms) {
+        Map<String, Object> response = new HashMap<>();
+        try {
+            response.putAll(postingsService.benchmark(sampleTerms));
+            response.put("success", true);
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            response.put("success", false);
+            response.put("message", "Failed to benchmark postings: " + e.getMessage());
+            return ResponseEntity.internalServerError().body(response);
+        }
+    }
+
+}
@@ -0,0 +1,35 @@
+package com.example.searchengine.Indexer.Entities;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Indexed terms of the link text a page uses for another url. Rows belong
+ * to the linking page and are replaced when it is reindexed; they become
+ * the anchor field of the target document once it is indexed.
+ */
+@Entity
+@Table(name = "anchor_terms", indexes = {
+        @Index(name = "idx_anchor_terms_source_doc_id", columnList = "source_doc_id"),
+        @Index(name = "idx_anchor_terms_target_url", columnList = "target_url")
+})
+@Getter
+@Setter
+public class AnchorTerm {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "source_doc_id", nullable = false)
+    private Long sourceDocId;
+
+    @Column(name = "target_url", nullable = false, length = 2048)
+    private String targetUrl;
+
+    @Column(name = "word_id", nullable = false)
+    private Long wordId;
+
+    @Column(nullable = false)
+    private Integer frequency;
+}
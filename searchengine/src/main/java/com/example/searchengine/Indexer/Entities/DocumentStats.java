@@ -0,0 +1,37 @@
+package com.example.searchengine.Indexer.Entities;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Per-document lengths recorded once at index time, in indexed terms after
+ * stop-word removal and stemming. Used for BM25 length normalization.
+ */
+@Entity
+@Table(name = "document_stats")
+@Getter
+@Setter
+public class DocumentStats {
+    @Id
+    @Column(name = "doc_id")
+    private Long docId;
+
+    // Terms in the whole document text
+    @Column(nullable = false)
+    private Integer length;
+
+    @Column(name = "unique_terms", nullable = false)
+    private Integer uniqueTerms;
+
+    @Column(name = "title_length", nullable = false)
+    private Integer titleLength;
+
+    // Terms in h1, h2 and h3 elements
+    @Column(name = "heading_length", nullable = false)
+    private Integer headingLength;
+
+    // Terms in p elements
+    @Column(name = "body_length", nullable = false)
+    private Integer bodyLength;
+}
@@ -0,0 +1,31 @@
+package com.example.searchengine.Indexer.Entities;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Plain text of a document recorded once at index time, encoded with
+ * {@link com.example.searchengine.Indexer.Text.StoredText}. Read by the
+ * query path for snippets and descriptions instead of the raw html.
+ */
+@Entity
+@Table(name = "document_text")
+@Getter
+@Setter
+public class DocumentText {
+    @Id
+    @Column(name = "doc_id")
+    private Long docId;
+
+    // Characters of the decoded text
+    @Column(name = "text_length", nullable = false)
+    private Integer textLength;
+
+    @Column(name = "text", nullable = false, columnDefinition = "BYTEA")
+    private byte[] text;
+
+    // CRC32 of text, recorded with the term positions it was indexed with
+    @Column(name = "checksum", nullable = false)
+    private Long checksum;
+}
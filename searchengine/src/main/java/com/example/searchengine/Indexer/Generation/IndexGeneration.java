@@ -0,0 +1,253 @@
+package com.example.searchengine.Indexer.Generation;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import com.example.searchengine.Indexer.Memory.BigramIndex;
+import com.example.searchengine.Indexer.Memory.DocumentStore;
+import com.example.searchengine.Indexer.Memory.ForwardIndex;
+import com.example.searchengine.Indexer.Memory.InMemoryIndex;
+import com.example.searchengine.Indexer.Memory.SpellingIndex;
+import com.example.searchengine.Indexer.Postings.DocIdSetCache;
+import com.example.searchengine.Indexer.Postings.PostingsList;
+import com.example.searchengine.Indexer.Shard.ShardedIndex;
+import com.example.searchengine.Indexer.Snapshot.IndexSnapshot;
+
+/**
+ * One immutable version of the index that queries read from: the
+ * in-memory postings, the forward, bigram and sharded field indexes, the
+ * documents' urls, titles and stored texts and the mapped snapshot built by
+ * the same indexing run. Readers hold a reference for the length
+ * of a query and close it afterwards; {@link IndexGenerations} holds one
+ * more while the generation is active, so a generation is reclaimed only
+ * once it has been replaced and its last reader is done.
+ */
+public final class IndexGeneration implements AutoCloseable {
+
+    // Document sets of frequent terms and filters kept per generation
+    private static final int DOC_SET_CACHE_SIZE = 256;
+
+    /**
+     * How to obtain each in-memory part of a generation. A loader gets the
+     * generation, so a part can be derived from the others.
+     */
+    public record Loaders(Function<IndexGeneration, InMemoryIndex> index,
+            Function<IndexGeneration, ForwardIndex> forward, Function<IndexGeneration, BigramIndex> bigrams,
+            Function<IndexGeneration, ShardedIndex> shards, Function<IndexGeneration, DocumentStore> documents) {
+
+        /**
+         * Loaders for parts that are already built.
+         */
+        public static Loaders of(InMemoryIndex index, ForwardIndex forward, BigramIndex bigrams, ShardedIndex shards,
+                DocumentStore documents) {
+            return new Loaders(g -> index, g -> forward, g -> bigrams, g -> shards, g -> documents);
+        }
+    }
+
+    private final long number;
+    private final long createdAt = System.currentTimeMillis();
+    private final IndexSnapshot snapshot;
+    private final Consumer<IndexGeneration> onReclaim;
+    private final AtomicInteger refs = new AtomicInteger(1);
+
+    private final Part<InMemoryIndex> index;
+    private final Part<ForwardIndex> forward;
+    private final Part<BigramIndex> bigrams;
+    private final Part<ShardedIndex> shards;
+    private final Part<DocumentStore> documents;
+    private final Part<SpellingIndex> spelling = new Part<>(this, g -> SpellingIndex.of(g.getIndex()));
+    private final DocIdSetCache docSets = new DocIdSetCache(DOC_SET_CACHE_SIZE);
+
+    IndexGeneration(long number, IndexSnapshot snapshot, Loaders loaders, Consumer<IndexGeneration> onReclaim) {
+        this.number = number;
+        this.snapshot = snapshot;
+        this.index = new Part<>(this, loaders.index());
+        this.forward = new Part<>(this, loaders.forward());
+        this.bigrams = new Part<>(this, loaders.bigrams());
+        this.shards = new Part<>(this, loaders.shards());
+        this.documents = new Part<>(this, loaders.documents());
+        this.onReclaim = onReclaim;
+    }
+
+    public long getNumber() {
+        return number;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    /**
+     * The mapped snapshot of this generation, or null when none was written.
+     */
+    public IndexSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * The in-memory postings. Every part is loaded before the generation is
+     * published, so no query waits for one.
+     */
+    public InMemoryIndex getIndex() {
+        return index.get();
+    }
+
+    public boolean isIndexLoaded() {
+        return index.isLoaded();
+    }
+
+    /**
+     * Per-document term vectors over the ordinals of {@link #getIndex()}.
+     */
+    public ForwardIndex getForward() {
+        return forward.get();
+    }
+
+    public boolean isForwardIndexLoaded() {
+        return forward.isLoaded();
+    }
+
+    /**
+     * The bigram index for phrase queries.
+     */
+    public BigramIndex getBigrams() {
+        return bigrams.get();
+    }
+
+    public boolean isBigramIndexLoaded() {
+        return bigrams.isLoaded();
+    }
+
+    /**
+     * Per-field postings and norms for BM25F scoring, split into document
+     * shards.
+     */
+    public ShardedIndex getShards() {
+        return shards.get();
+    }
+
+    public boolean isShardedIndexLoaded() {
+        return shards.isLoaded();
+    }
+
+    /**
+     * Url, title and stored text of every indexed document, read with the
+     * postings, so results never mix in rows written after them.
+     */
+    public DocumentStore getDocuments() {
+        return documents.get();
+    }
+
+    public boolean isDocumentStoreLoaded() {
+        return documents.isLoaded();
+    }
+
+    /**
+     * Spelling corrections over the terms of {@link #getIndex()}, built in
+     * memory from them.
+     */
+    public SpellingIndex getSpelling() {
+        return spelling.get();
+    }
+
+    public boolean isSpellingIndexLoaded() {
+        return spelling.isLoaded();
+    }
+
+    /**
+     * Document sets of frequent terms and filters over this generation's
+     * documents, dropped with it.
+     */
+    public DocIdSetCache getDocSets() {
+        return docSets;
+    }
+
+    /**
+     * Documents containing the analyzed terms as a phrase, with occurrence
+     * counts and start positions.
+     */
+    public PostingsList phrase(List<String> terms) {
+        return getBigrams().phrase(getIndex(), terms);
+    }
+
+    // Load every part now, for generations whose parts were built before publishing
+    void load() {
+        getIndex();
+        getForward();
+        getBigrams();
+        getShards();
+        getDocuments();
+        getSpelling();
+    }
+
+    public int getRefCount() {
+        return refs.get();
+    }
+
+    /**
+     * Take another reference, unless the generation has already been
+     * reclaimed.
+     */
+    boolean retain() {
+        while (true) {
+            int count = refs.get();
+            if (count == 0) {
+                return false;
+            }
+            if (refs.compareAndSet(count, count + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Drop a reference taken by {@link IndexGenerations#acquire()}.
+     */
+    @Override
+    public void close() {
+        int count = refs.decrementAndGet();
+        if (count == 0) {
+            onReclaim.accept(this);
+        } else if (count < 0) {
+            throw new IllegalStateException("Index generation " + number + " released more often than acquired");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "generation " + number;
+    }
+
+    /**
+     * A part of the generation, loaded once on first use.
+     */
+    private static final class Part<T> {
+        private final IndexGeneration generation;
+        private final Function<IndexGeneration, T> loader;
+        private volatile T value;
+
+        Part(IndexGeneration generation, Function<IndexGeneration, T> loader) {
+            this.generation = generation;
+            this.loader = loader;
+        }
+
+        T get() {
+            T loaded = value;
+            if (loaded != null) {
+                return loaded;
+            }
+            synchronized (this) {
+                if (value == null) {
+                    value = loader.apply(generation);
+                }
+                return value;
+            }
+        }
+
+        boolean isLoaded() {
+            return value != null;
+        }
+    }
+}
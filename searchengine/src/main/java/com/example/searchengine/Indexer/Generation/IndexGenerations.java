@@ -0,0 +1,135 @@
+package com.example.searchengine.Indexer.Generation;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import com.example.searchengine.Indexer.Snapshot.IndexSnapshot;
+
+/**
+ * Holds the active {@link IndexGeneration}. An indexing run builds the next
+ * generation on the side and {@link #publish} swaps it in with one atomic
+ * pointer update, so a query sees either the old index or the new one and
+ * never a half-rebuilt mix. Swap listeners drop caches of results computed
+ * against the old generation.
+ */
+@Service
+public class IndexGenerations {
+
+    private static final Logger logger = LoggerFactory.getLogger(IndexGenerations.class);
+
+    private final AtomicReference<IndexGeneration> active = new AtomicReference<>();
+    private final Set<IndexGeneration> retired = ConcurrentHashMap.newKeySet();
+    private final List<Consumer<IndexGeneration>> swapListeners = new CopyOnWriteArrayList<>();
+    private final AtomicLong reclaimed = new AtomicLong();
+    private long lastNumber;
+
+    /**
+     * Reference to the active generation, or null when none has been
+     * published yet. Close it when the query is done.
+     */
+    public IndexGeneration acquire() {
+        while (true) {
+            IndexGeneration generation = active.get();
+            if (generation == null || generation.retain()) {
+                return generation;
+            }
+            // Swapped out and reclaimed between the read and the retain; the pointer has moved on
+        }
+    }
+
+    /**
+     * The active generation without taking a reference, for status output.
+     */
+    public IndexGeneration current() {
+        return active.get();
+    }
+
+    /**
+     * Make a fully built generation the active one. Its parts are loaded
+     * before the swap, so no query waits for them.
+     */
+    public synchronized IndexGeneration publish(IndexSnapshot snapshot, IndexGeneration.Loaders loaders) {
+        IndexGeneration generation = new IndexGeneration(++lastNumber, snapshot, loaders, this::reclaim);
+        generation.load();
+        return swap(generation);
+    }
+
+    /**
+     * Publish a generation for the index already on disk like
+     * {@link #publish}, unless one is active already: an indexing run that
+     * finished meanwhile has published a newer one.
+     */
+    public synchronized IndexGeneration publishIfAbsent(IndexSnapshot snapshot, IndexGeneration.Loaders loaders) {
+        IndexGeneration generation = active.get();
+        if (generation != null) {
+            return generation;
+        }
+        generation = new IndexGeneration(++lastNumber, snapshot, loaders, this::reclaim);
+        generation.load();
+        return swap(generation);
+    }
+
+    /**
+     * Called with each newly active generation, on the publishing thread.
+     */
+    public void addSwapListener(Consumer<IndexGeneration> listener) {
+        swapListeners.add(listener);
+    }
+
+    private IndexGeneration swap(IndexGeneration generation) {
+        IndexGeneration previous = active.getAndSet(generation);
+        logger.info("Index {} is now active", generation);
+        for (Consumer<IndexGeneration> listener : swapListeners) {
+            try {
+                listener.accept(generation);
+            } catch (RuntimeException e) {
+                logger.warn("Index swap listener failed: {}", e.getMessage());
+            }
+        }
+        if (previous != null) {
+            retired.add(previous);
+            previous.close(); // the reference held while it was active
+        }
+        return generation;
+    }
+
+    private void reclaim(IndexGeneration generation) {
+        retired.remove(generation);
+        reclaimed.incrementAndGet();
+        logger.info("Reclaimed index {}", generation);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        IndexGeneration generation = active.get();
+        stats.put("active", generation == null ? null : generation.getNumber());
+        if (generation != null) {
+            stats.put("activeSince", generation.getCreatedAt());
+            stats.put("readers", generation.getRefCount() - 1);
+            stats.put("snapshot", generation.getSnapshot() != null);
+            stats.put("inMemoryIndexLoaded", generation.isIndexLoaded());
+            stats.put("forwardIndexLoaded", generation.isForwardIndexLoaded());
+            stats.put("bigramIndexLoaded", generation.isBigramIndexLoaded());
+            stats.put("shardedIndexLoaded", generation.isShardedIndexLoaded());
+            if (generation.isShardedIndexLoaded()) {
+                stats.put("shards", generation.getShards().shardCount());
+            }
+            stats.put("documentStoreLoaded", generation.isDocumentStoreLoaded());
+            stats.put("spellingIndexLoaded", generation.isSpellingIndexLoaded());
+        }
+        stats.put("retiredInUse", retired.stream().map(IndexGeneration::getNumber).sorted().toList());
+        stats.put("reclaimed", reclaimed.get());
+        return stats;
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.searchengine.Indexer.Memory;
+
+/**
+ * What query scoring needs about a batch of candidate documents, in arrays
+ * parallel to the candidates: the BM25F score, the document length, how
+ * many query terms occur in any field and whether the title and the url
+ * hold every query term.
+ */
+public record BatchScores(double[] bm25f, int[] lengths, int[] matchedTerms, boolean[] allTermsInTitle,
+        boolean[] allTermsInUrl) {
+
+    public BatchScores(int candidates) {
+        this(new double[candidates], new int[candidates], new int[candidates], new boolean[candidates],
+            new boolean[candidates]);
+    }
+
+    public int size() {
+        return bm25f.length;
+    }
+}
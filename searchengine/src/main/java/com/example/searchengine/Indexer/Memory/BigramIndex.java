@@ -0,0 +1,280 @@
+package com.example.searchengine.Indexer.Memory;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.example.searchengine.Indexer.Postings.PostingsIntersection;
+import com.example.searchengine.Indexer.Postings.PostingsList;
+
+/**
+ * Positional index of adjacent word pairs, for phrase queries. Every pair of
+ * words at positions p and p + 1 of a document is one bigram, keyed by
+ * {@code (firstWordId << 32) | secondWordId}; its postings are the documents
+ * it occurs in and, per document, the positions of its first word:
+ *
+ * <pre>
+ * keys[ordinal]                                  sorted bigram keys
+ * offsets[ordinal] .. offsets[ordinal + 1]       slice of docs
+ * posOffsets[slot] .. posOffsets[slot + 1]       slice of positions for docs[slot]
+ * </pre>
+ *
+ * A phrase of n words is the intersection of its n - 1 bigrams, each
+ * shifted by its offset in the phrase, so no document is opened and no
+ * single-word position list is read.
+ */
+public final class BigramIndex {
+
+    private static final PostingsList NO_MATCHES = new PostingsList(new int[0], new int[0], new int[0][]);
+
+    private final long[] keys;
+    private final int[] offsets;
+    private final int[] docs;
+    private final int[] posOffsets;
+    private final int[] positions;
+
+    private BigramIndex(long[] keys, int[] offsets, int[] docs, int[] posOffsets, int[] positions) {
+        this.keys = keys;
+        this.offsets = offsets;
+        this.docs = docs;
+        this.posOffsets = posOffsets;
+        this.positions = positions;
+    }
+
+    public static BigramIndex empty() {
+        return new BigramIndex(new long[0], new int[1], new int[0], new int[1], new int[0]);
+    }
+
+    /**
+     * Bigrams of every document, replayed from its term vector in position
+     * order, so no second scan of the positions is needed.
+     */
+    public static BigramIndex of(InMemoryIndex index, ForwardIndex forward) {
+        Builder builder = new Builder();
+        for (int slot = 0; slot < forward.documentCount(); slot++) {
+            int docId = forward.docAt(slot);
+            forward.forEachToken(slot, (position, ordinal) -> builder.add(docId, position, index.wordId(ordinal)));
+        }
+        return builder.build();
+    }
+
+    static long key(long firstWordId, long secondWordId) {
+        return (firstWordId << 32) | secondWordId;
+    }
+
+    public int bigramCount() {
+        return keys.length;
+    }
+
+    public long postingsCount() {
+        return docs.length;
+    }
+
+    public long positionsCount() {
+        return positions.length;
+    }
+
+    /**
+     * Documents matching the analyzed phrase, with the number of times it
+     * occurs in each as the frequency and its start positions, in doc id
+     * order. A single word falls back to its postings, without positions.
+     */
+    public PostingsList phrase(InMemoryIndex index, List<String> terms) {
+        if (terms.isEmpty()) {
+            return NO_MATCHES;
+        }
+        if (terms.size() == 1) {
+            PostingsList postings = index.postings(terms.get(0));
+            return postings == null ? NO_MATCHES : postings;
+        }
+
+        int pairs = terms.size() - 1;
+        int[] ordinals = new int[pairs];
+        long previousWordId = -1;
+        for (int i = 0; i < terms.size(); i++) {
+            int termOrdinal = index.ordinal(terms.get(i));
+            if (termOrdinal < 0) {
+                return NO_MATCHES;
+            }
+            long wordId = index.wordId(termOrdinal);
+            if (i > 0) {
+                ordinals[i - 1] = Arrays.binarySearch(keys, key(previousWordId, wordId));
+                if (ordinals[i - 1] < 0) {
+                    return NO_MATCHES;
+                }
+            }
+            previousWordId = wordId;
+        }
+
+        // Walk the rarest bigram and look its documents up in the others
+        int lead = 0;
+        for (int k = 1; k < pairs; k++) {
+            if (docFreq(ordinals[k]) < docFreq(ordinals[lead])) {
+                lead = k;
+            }
+        }
+        int[] cursors = new int[pairs];
+        for (int k = 0; k < pairs; k++) {
+            cursors[k] = offsets[ordinals[k]];
+        }
+        int[] slots = new int[pairs];
+
+        int capacity = docFreq(ordinals[lead]);
+        int[] matchDocs = new int[capacity];
+        int[] matchCounts = new int[capacity];
+        int[][] matchPositions = new int[capacity][];
+        int matches = 0;
+
+        for (int leadSlot = offsets[ordinals[lead]]; leadSlot < offsets[ordinals[lead] + 1]; leadSlot++) {
+            int docId = docs[leadSlot];
+            boolean inAll = true;
+            for (int k = 0; k < pairs && inAll; k++) {
+                if (k == lead) {
+                    slots[k] = leadSlot;
+                    continue;
+                }
+                cursors[k] = PostingsIntersection.gallop(docs, cursors[k], offsets[ordinals[k] + 1], docId);
+                inAll = cursors[k] < offsets[ordinals[k] + 1] && docs[cursors[k]] == docId;
+                slots[k] = cursors[k];
+            }
+            if (!inAll) {
+                continue;
+            }
+
+            // The phrase starts at p when bigram k starts at p + k for every k: merge the shifted position lists
+            int[] starts = Arrays.copyOfRange(positions, posOffsets[slots[0]], posOffsets[slots[0] + 1]);
+            int found = starts.length;
+            for (int k = 1; k < pairs && found > 0; k++) {
+                found = keepAligned(starts, found, posOffsets[slots[k]], posOffsets[slots[k] + 1], k);
+            }
+            if (found > 0) {
+                matchDocs[matches] = docId;
+                matchCounts[matches] = found;
+                matchPositions[matches] = Arrays.copyOf(starts, found);
+                matches++;
+            }
+        }
+        return new PostingsList(Arrays.copyOf(matchDocs, matches), Arrays.copyOf(matchCounts, matches),
+                Arrays.copyOf(matchPositions, matches));
+    }
+
+    // Keep the starts s with s + shift among positions[from .. to), in place; both ascending
+    private int keepAligned(int[] starts, int count, int from, int to, int shift) {
+        int kept = 0;
+        int j = from;
+        for (int i = 0; i < count && j < to; i++) {
+            int target = starts[i] + shift;
+            while (j < to && positions[j] < target) {
+                j++;
+            }
+            if (j < to && positions[j] == target) {
+                starts[kept++] = starts[i];
+            }
+        }
+        return kept;
+    }
+
+    private int docFreq(int ordinal) {
+        return offsets[ordinal + 1] - offsets[ordinal];
+    }
+
+    /**
+     * Bytes held by the arrays.
+     */
+    public long estimatedBytes() {
+        return 16L * 5 + (long) keys.length * 8 + (long) offsets.length * 4 + (long) docs.length * 4
+                + (long) posOffsets.length * 4 + (long) positions.length * 4;
+    }
+
+    /**
+     * Collects bigrams from word positions. Positions must arrive grouped by
+     * document and in increasing position order, as an
+     * {@code ORDER BY doc_id, position} scan returns them.
+     */
+    public static class Builder {
+        private long[] pairKeys = new long[1 << 16];
+        private int[] pairDocs = new int[1 << 16];
+        private int[] pairPositions = new int[1 << 16];
+        private int size;
+        private int lastDoc = -1;
+        private int lastPosition = -1;
+        private long lastWordId = -1;
+
+        public void add(int docId, int position, long wordId) {
+            if (wordId < 0 || wordId > 0xFFFFFFFFL) {
+                throw new IllegalStateException("Word id " + wordId + " does not fit a bigram key");
+            }
+            if (docId == lastDoc && position == lastPosition) {
+                return;
+            }
+            if (docId == lastDoc && position == lastPosition + 1) {
+                if (size == pairKeys.length) {
+                    if (size == Integer.MAX_VALUE - 8) {
+                        throw new IllegalStateException("Too many bigrams for an in-memory index");
+                    }
+                    int newLength = (int) Math.min((long) size * 2, Integer.MAX_VALUE - 8);
+                    pairKeys = Arrays.copyOf(pairKeys, newLength);
+                    pairDocs = Arrays.copyOf(pairDocs, newLength);
+                    pairPositions = Arrays.copyOf(pairPositions, newLength);
+                }
+                pairKeys[size] = key(lastWordId, wordId);
+                pairDocs[size] = docId;
+                pairPositions[size] = lastPosition;
+                size++;
+            }
+            lastDoc = docId;
+            lastPosition = position;
+            lastWordId = wordId;
+        }
+
+        public BigramIndex build() {
+            long[] sorted = Arrays.copyOf(pairKeys, size);
+            Arrays.sort(sorted);
+            int unique = 0;
+            for (int i = 0; i < size; i++) {
+                if (unique == 0 || sorted[i] != sorted[unique - 1]) {
+                    sorted[unique++] = sorted[i];
+                }
+            }
+            long[] keys = Arrays.copyOf(sorted, unique);
+
+            // Stable counting sort by key keeps each bigram's entries in doc, position order
+            int[] ordinals = new int[size];
+            int[] starts = new int[unique + 1];
+            for (int i = 0; i < size; i++) {
+                ordinals[i] = Arrays.binarySearch(keys, pairKeys[i]);
+                starts[ordinals[i] + 1]++;
+            }
+            for (int k = 0; k < unique; k++) {
+                starts[k + 1] += starts[k];
+            }
+            int[] fill = Arrays.copyOf(starts, unique);
+            int[] byKeyDocs = new int[size];
+            int[] positions = new int[size];
+            for (int i = 0; i < size; i++) {
+                int slot = fill[ordinals[i]]++;
+                byKeyDocs[slot] = pairDocs[i];
+                positions[slot] = pairPositions[i];
+            }
+
+            // Collapse each bigram's runs of equal documents into one posting
+            int[] offsets = new int[unique + 1];
+            int[] docs = new int[size];
+            int[] posOffsets = new int[size + 1];
+            int postings = 0;
+            for (int k = 0; k < unique; k++) {
+                offsets[k] = postings;
+                for (int i = starts[k]; i < starts[k + 1]; i++) {
+                    if (i == starts[k] || byKeyDocs[i] != byKeyDocs[i - 1]) {
+                        docs[postings] = byKeyDocs[i];
+                        posOffsets[postings] = i;
+                        postings++;
+                    }
+                }
+            }
+            offsets[unique] = postings;
+            posOffsets[postings] = size;
+            return new BigramIndex(keys, offsets, Arrays.copyOf(docs, postings),
+                    Arrays.copyOf(posOffsets, postings + 1), positions);
+        }
+    }
+}
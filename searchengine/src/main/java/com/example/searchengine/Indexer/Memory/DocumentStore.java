@@ -0,0 +1,150 @@
+package com.example.searchengine.Indexer.Memory;
+
+import java.util.Arrays;
+
+import com.example.searchengine.Indexer.Text.StoredText;
+
+/**
+ * What results show and filters select of each indexed document, as it was
+ * when the index was read: url, title, crawl time and the deflated
+ * {@link StoredText}, in arrays parallel to the sorted doc ids:
+ *
+ * <pre>
+ * docs[slot]            sorted doc ids
+ * urls[slot]            url
+ * titles[slot]          title
+ * createdAt[slot]       crawl time in epoch millis, Long.MIN_VALUE when unknown
+ * texts[slot]           encoded stored text
+ * textChecksums[slot]   its checksum, -1 when the text was not stored at index time
+ * </pre>
+ *
+ * Loaded with the postings and term vectors, so snippets are cut from the
+ * text their positions were read from, and filters select from the same
+ * documents, even after the tables have moved on.
+ */
+public final class DocumentStore {
+
+    private static final byte[] NO_TEXT = StoredText.plain("").encode();
+
+    private final int[] docs;
+    private final String[] urls;
+    private final String[] titles;
+    private final long[] createdAt;
+    private final byte[][] texts;
+    private final long[] textChecksums;
+
+    private DocumentStore(int[] docs, String[] urls, String[] titles, long[] createdAt, byte[][] texts,
+            long[] textChecksums) {
+        this.docs = docs;
+        this.urls = urls;
+        this.titles = titles;
+        this.createdAt = createdAt;
+        this.texts = texts;
+        this.textChecksums = textChecksums;
+    }
+
+    public static DocumentStore empty() {
+        return new Builder().build();
+    }
+
+    public int documentCount() {
+        return docs.length;
+    }
+
+    /**
+     * Slot of a document, or a negative value when it is not stored.
+     */
+    public int slot(int docId) {
+        return Arrays.binarySearch(docs, docId);
+    }
+
+    public int docAt(int slot) {
+        return docs[slot];
+    }
+
+    public String url(int slot) {
+        return urls[slot];
+    }
+
+    public String title(int slot) {
+        return titles[slot];
+    }
+
+    /**
+     * When the document was crawled, in epoch millis, or Long.MIN_VALUE
+     * when that is unknown.
+     */
+    public long createdAt(int slot) {
+        return createdAt[slot];
+    }
+
+    /**
+     * The stored text, inflated on every call.
+     */
+    public StoredText text(int slot) {
+        return StoredText.decode(texts[slot]);
+    }
+
+    public long textChecksum(int slot) {
+        return textChecksums[slot];
+    }
+
+    /**
+     * Bytes held by the arrays and the strings and texts they point to.
+     */
+    public long estimatedBytes() {
+        long bytes = 16L * 6 + (long) docs.length * (4 + 8 * 3 + 8 + 8);
+        for (int slot = 0; slot < docs.length; slot++) {
+            bytes += 40L + 2L * (urls[slot] == null ? 0 : urls[slot].length())
+                    + 40L + 2L * (titles[slot] == null ? 0 : titles[slot].length())
+                    + 16L + texts[slot].length;
+        }
+        return bytes;
+    }
+
+    /**
+     * Collects documents in increasing doc id order, as an
+     * {@code ORDER BY id} scan returns them.
+     */
+    public static class Builder {
+        private int[] docs = new int[1024];
+        private String[] urls = new String[1024];
+        private String[] titles = new String[1024];
+        private long[] createdAt = new long[1024];
+        private byte[][] texts = new byte[1024][];
+        private long[] textChecksums = new long[1024];
+        private int size;
+
+        /**
+         * @param createdAt Crawl time in epoch millis, Long.MIN_VALUE when unknown
+         * @param text Encoded stored text, or null when the document has none
+         * @param textChecksum Its checksum, -1 when the text was not stored at index time
+         */
+        public void add(int docId, String url, String title, long createdAt, byte[] text, long textChecksum) {
+            if (size > 0 && docId <= docs[size - 1]) {
+                throw new IllegalStateException("Document " + docId + " added after " + docs[size - 1]);
+            }
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                urls = Arrays.copyOf(urls, size * 2);
+                titles = Arrays.copyOf(titles, size * 2);
+                this.createdAt = Arrays.copyOf(this.createdAt, size * 2);
+                texts = Arrays.copyOf(texts, size * 2);
+                textChecksums = Arrays.copyOf(textChecksums, size * 2);
+            }
+            docs[size] = docId;
+            urls[size] = url;
+            titles[size] = title;
+            this.createdAt[size] = createdAt;
+            texts[size] = text == null ? NO_TEXT : text;
+            textChecksums[size] = textChecksum;
+            size++;
+        }
+
+        public DocumentStore build() {
+            return new DocumentStore(Arrays.copyOf(docs, size), Arrays.copyOf(urls, size),
+                    Arrays.copyOf(titles, size), Arrays.copyOf(createdAt, size), Arrays.copyOf(texts, size),
+                    Arrays.copyOf(textChecksums, size));
+        }
+    }
+}
@@ -0,0 +1,402 @@
+package com.example.searchengine.Indexer.Memory;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+import com.example.searchengine.Indexer.Postings.PostingsIntersection;
+
+/**
+ * Per-field postings and length norms for BM25F scoring. Each
+ * {@link IndexField} has its own {@link InMemoryIndex} of term frequencies
+ * within that field; norms are kept per document in arrays parallel to the
+ * sorted doc ids:
+ *
+ * <pre>
+ * docs[slot]                  indexed document
+ * lengths[slot]               terms in the whole document
+ * fieldLengths[field][slot]   terms in one field
+ * </pre>
+ *
+ * Whether a term is in a document's title or url is one binary search, so
+ * scoring never needs the document itself.
+ */
+public final class FieldIndex {
+
+    public static final double K1 = 1.2;
+    private static final IndexField[] FIELDS = IndexField.values();
+
+    /**
+     * What BM25F needs from the collection for one query: its document
+     * count, average field lengths and the document frequency of each query
+     * term. Scoring a part of the collection with the statistics of the
+     * whole keeps scores comparable across parts.
+     */
+    public record Statistics(int documentCount, double[] averageLengths, int[] docFreqs) {
+    }
+
+    private final InMemoryIndex[] postings;
+    private final int[] docs;
+    private final int[] lengths;
+    private final int[][] fieldLengths;
+    private final double[] averageLengths;
+
+    private FieldIndex(InMemoryIndex[] postings, int[] docs, int[] lengths, int[][] fieldLengths) {
+        this.postings = postings;
+        this.docs = docs;
+        this.lengths = lengths;
+        this.fieldLengths = fieldLengths;
+        this.averageLengths = new double[FIELDS.length];
+        for (IndexField field : FIELDS) {
+            long total = 0;
+            for (int length : fieldLengths[field.ordinal()]) {
+                total += length;
+            }
+            averageLengths[field.ordinal()] = docs.length == 0 ? 0.0 : (double) total / docs.length;
+        }
+    }
+
+    public static FieldIndex empty() {
+        return new Builder().build();
+    }
+
+    public int documentCount() {
+        return docs.length;
+    }
+
+    public InMemoryIndex postings(IndexField field) {
+        return postings[field.ordinal()];
+    }
+
+    /**
+     * Frequency of a term in one field of a document, 0 when absent.
+     */
+    public int freq(IndexField field, String term, int docId) {
+        InMemoryIndex index = postings[field.ordinal()];
+        int ordinal = index.ordinal(term);
+        return ordinal < 0 ? 0 : index.freq(ordinal, docId);
+    }
+
+    /**
+     * Whether the term occurs in any field of the document.
+     */
+    public boolean contains(String term, int docId) {
+        for (IndexField field : FIELDS) {
+            if (freq(field, term, docId) > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether every term occurs in the given field of the document.
+     */
+    public boolean containsAll(IndexField field, List<String> terms, int docId) {
+        for (String term : terms) {
+            if (freq(field, term, docId) == 0) {
+                return false;
+            }
+        }
+        return !terms.isEmpty();
+    }
+
+    /**
+     * Terms in the whole document, or 0 when it is not indexed.
+     */
+    public int length(int docId) {
+        int slot = Arrays.binarySearch(docs, docId);
+        return slot < 0 ? 0 : lengths[slot];
+    }
+
+    public int length(IndexField field, int docId) {
+        int slot = Arrays.binarySearch(docs, docId);
+        return slot < 0 ? 0 : fieldLengths[field.ordinal()][slot];
+    }
+
+    public double averageLength(IndexField field) {
+        return averageLengths[field.ordinal()];
+    }
+
+    /**
+     * Documents with the term in any field; the largest per-field document
+     * frequency, a lower bound that needs no union.
+     */
+    public int docFreq(String term) {
+        int docFreq = 0;
+        for (InMemoryIndex index : postings) {
+            int ordinal = index.ordinal(term);
+            if (ordinal >= 0) {
+                docFreq = Math.max(docFreq, index.docFreq(ordinal));
+            }
+        }
+        return docFreq;
+    }
+
+    /**
+     * Statistics of this index for the query terms.
+     */
+    public Statistics statistics(List<String> terms) {
+        int[] docFreqs = new int[terms.size()];
+        for (int i = 0; i < docFreqs.length; i++) {
+            docFreqs[i] = docFreq(terms.get(i));
+        }
+        return new Statistics(docs.length, averageLengths, docFreqs);
+    }
+
+    /**
+     * BM25F score of a document: per term, the field frequencies are length
+     * normalized and weighted per field, summed, and saturated once.
+     */
+    public double bm25f(List<String> terms, int docId) {
+        return bm25f(terms, docId, statistics(terms));
+    }
+
+    /**
+     * BM25F score of a document with IDF and length norms taken from the
+     * given statistics, whose doc frequencies follow the order of the terms.
+     */
+    public double bm25f(List<String> terms, int docId, Statistics statistics) {
+        int slot = Arrays.binarySearch(docs, docId);
+        double score = 0.0;
+        for (int i = 0; i < terms.size(); i++) {
+            String term = terms.get(i);
+            double tf = 0.0;
+            for (IndexField field : FIELDS) {
+                InMemoryIndex index = postings[field.ordinal()];
+                int ordinal = index.ordinal(term);
+                if (ordinal < 0) {
+                    continue;
+                }
+                int freq = index.freq(ordinal, docId);
+                if (freq == 0) {
+                    continue;
+                }
+                double average = statistics.averageLengths()[field.ordinal()];
+                int length = slot < 0 ? 0 : fieldLengths[field.ordinal()][slot];
+                double norm = average == 0 ? 1.0 : 1 - field.getB() + field.getB() * length / average;
+                tf += field.getWeight() * freq / norm;
+            }
+            if (tf > 0) {
+                score += idf(statistics.documentCount(), statistics.docFreqs()[i]) * tf / (K1 + tf);
+            }
+        }
+        return score;
+    }
+
+    /**
+     * Scores of many documents at once, with the given statistics: per field
+     * and term, one galloping pass over the postings fills a term by
+     * document matrix of normalized frequencies, and BM25F is summed from it
+     * in one loop over primitive arrays. Gives the same scores as
+     * {@link #bm25f(List, int, Statistics)} per document. The documents must
+     * be in increasing order; the result for sortedDocIds[i] goes to
+     * candidate positions[i] of into.
+     */
+    public void scoreBatch(List<String> terms, int[] sortedDocIds, int[] positions, Statistics statistics,
+            BatchScores into) {
+        int n = sortedDocIds.length;
+        int termCount = terms.size();
+        int[] slots = new int[n];
+        int next = 0;
+        for (int d = 0; d < n; d++) {
+            next = PostingsIntersection.gallop(docs, next, sortedDocIds[d]);
+            slots[d] = next < docs.length && docs[next] == sortedDocIds[d] ? next : -1;
+        }
+
+        // tfs[term * n + doc]: weighted, length normalized frequency summed over the fields
+        double[] tfs = new double[termCount * n];
+        int[] freqs = new int[n];
+        double[] norms = new double[n];
+        int[] titleMatches = new int[n];
+        int[] urlMatches = new int[n];
+        for (IndexField field : FIELDS) {
+            int f = field.ordinal();
+            double average = statistics.averageLengths()[f];
+            for (int d = 0; d < n; d++) {
+                int length = slots[d] < 0 ? 0 : fieldLengths[f][slots[d]];
+                norms[d] = average == 0 ? 1.0 : 1 - field.getB() + field.getB() * length / average;
+            }
+            InMemoryIndex index = postings[f];
+            for (int i = 0; i < termCount; i++) {
+                int ordinal = index.ordinal(terms.get(i));
+                if (ordinal < 0) {
+                    continue;
+                }
+                index.freqs(ordinal, sortedDocIds, freqs);
+                int row = i * n;
+                for (int d = 0; d < n; d++) {
+                    if (freqs[d] > 0) {
+                        tfs[row + d] += field.getWeight() * freqs[d] / norms[d];
+                        if (field == IndexField.TITLE) {
+                            titleMatches[d]++;
+                        } else if (field == IndexField.URL) {
+                            urlMatches[d]++;
+                        }
+                    }
+                }
+            }
+        }
+
+        double[] idfs = new double[termCount];
+        for (int i = 0; i < termCount; i++) {
+            idfs[i] = idf(statistics.documentCount(), statistics.docFreqs()[i]);
+        }
+        for (int d = 0; d < n; d++) {
+            double score = 0.0;
+            int matched = 0;
+            for (int i = 0; i < termCount; i++) {
+                double tf = tfs[i * n + d];
+                if (tf > 0) {
+                    score += idfs[i] * tf / (K1 + tf);
+                    matched++;
+                }
+            }
+            int position = positions[d];
+            into.bm25f()[position] = score;
+            into.lengths()[position] = slots[d] < 0 ? 0 : lengths[slots[d]];
+            into.matchedTerms()[position] = matched;
+            into.allTermsInTitle()[position] = termCount > 0 && titleMatches[d] == termCount;
+            into.allTermsInUrl()[position] = termCount > 0 && urlMatches[d] == termCount;
+        }
+    }
+
+    /**
+     * BM25 inverse document frequency, never negative.
+     */
+    public static double idf(int documentCount, int docFreq) {
+        return Math.log(1 + (documentCount - docFreq + 0.5) / (docFreq + 0.5));
+    }
+
+    /**
+     * The postings and norms of the documents the filter accepts, as a new
+     * index with its own averages.
+     */
+    public FieldIndex filter(IntPredicate docFilter) {
+        InMemoryIndex[] filtered = new InMemoryIndex[FIELDS.length];
+        for (int f = 0; f < FIELDS.length; f++) {
+            filtered[f] = postings[f].filter(docFilter);
+        }
+        int kept = 0;
+        int[] keptSlots = new int[docs.length];
+        for (int slot = 0; slot < docs.length; slot++) {
+            if (docFilter.test(docs[slot])) {
+                keptSlots[kept++] = slot;
+            }
+        }
+        int[] keptDocs = new int[kept];
+        int[] keptLengths = new int[kept];
+        int[][] keptFieldLengths = new int[FIELDS.length][kept];
+        for (int i = 0; i < kept; i++) {
+            int slot = keptSlots[i];
+            keptDocs[i] = docs[slot];
+            keptLengths[i] = lengths[slot];
+            for (int f = 0; f < FIELDS.length; f++) {
+                keptFieldLengths[f][i] = fieldLengths[f][slot];
+            }
+        }
+        return new FieldIndex(filtered, keptDocs, keptLengths, keptFieldLengths);
+    }
+
+    /**
+     * Bytes held by the postings and norms.
+     */
+    public long estimatedBytes() {
+        long bytes = 16L * 5 + (long) docs.length * 4 * (2 + FIELDS.length);
+        for (InMemoryIndex index : postings) {
+            bytes += index.estimatedBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Collects norms and field postings. Each field's postings must arrive
+     * grouped by word and in increasing doc id order within a word; rows for
+     * the same word and document, such as h1 and h2 of one heading field,
+     * are summed.
+     */
+    public static class Builder {
+        private final InMemoryIndex.Builder[] builders = new InMemoryIndex.Builder[FIELDS.length];
+        private final long[] lastWords = new long[FIELDS.length];
+        private final int[] lastDocs = new int[FIELDS.length];
+        private final int[] pending = new int[FIELDS.length];
+        private int[] docs = new int[1024];
+        private int[] lengths = new int[1024];
+        private int[][] fieldLengths = new int[FIELDS.length][1024];
+        private int documents;
+
+        public Builder() {
+            for (int i = 0; i < FIELDS.length; i++) {
+                builders[i] = new InMemoryIndex.Builder();
+                lastWords[i] = -1;
+                lastDocs[i] = -1;
+            }
+        }
+
+        /**
+         * Norms of one document, in increasing doc id order. Url and anchor
+         * lengths are counted from their postings.
+         */
+        public void addDocument(int docId, int length, int titleLength, int headingLength, int bodyLength) {
+            if (documents == docs.length) {
+                docs = Arrays.copyOf(docs, documents * 2);
+                lengths = Arrays.copyOf(lengths, documents * 2);
+                for (int i = 0; i < FIELDS.length; i++) {
+                    fieldLengths[i] = Arrays.copyOf(fieldLengths[i], documents * 2);
+                }
+            }
+            docs[documents] = docId;
+            lengths[documents] = length;
+            fieldLengths[IndexField.TITLE.ordinal()][documents] = titleLength;
+            fieldLengths[IndexField.HEADING.ordinal()][documents] = headingLength;
+            fieldLengths[IndexField.BODY.ordinal()][documents] = bodyLength;
+            documents++;
+        }
+
+        public void add(IndexField field, long wordId, String term, int docId, int freq) {
+            int f = field.ordinal();
+            if (wordId == lastWords[f] && docId == lastDocs[f]) {
+                pending[f] += freq;
+                return;
+            }
+            flush(f);
+            if (wordId != lastWords[f]) {
+                builders[f].startTerm(term, wordId);
+                lastWords[f] = wordId;
+            }
+            lastDocs[f] = docId;
+            pending[f] = freq;
+        }
+
+        private void flush(int f) {
+            if (pending[f] > 0) {
+                builders[f].add(lastDocs[f], pending[f]);
+                pending[f] = 0;
+            }
+        }
+
+        public FieldIndex build() {
+            InMemoryIndex[] postings = new InMemoryIndex[FIELDS.length];
+            for (int f = 0; f < FIELDS.length; f++) {
+                flush(f);
+                postings[f] = builders[f].build();
+            }
+            int[] sortedDocs = Arrays.copyOf(docs, documents);
+            int[][] sortedFieldLengths = new int[FIELDS.length][];
+            for (int f = 0; f < FIELDS.length; f++) {
+                sortedFieldLengths[f] = Arrays.copyOf(fieldLengths[f], documents);
+            }
+            for (IndexField field : new IndexField[] {IndexField.URL, IndexField.ANCHOR}) {
+                InMemoryIndex index = postings[field.ordinal()];
+                int[] fieldLength = sortedFieldLengths[field.ordinal()];
+                for (int slot = 0; slot < index.postingsCount(); slot++) {
+                    int doc = Arrays.binarySearch(sortedDocs, index.docAt(slot));
+                    if (doc >= 0) {
+                        fieldLength[doc] += index.freqAt(slot);
+                    }
+                }
+            }
+            return new FieldIndex(postings, sortedDocs, Arrays.copyOf(lengths, documents), sortedFieldLengths);
+        }
+    }
+}
@@ -0,0 +1,419 @@
+package com.example.searchengine.Indexer.Memory;
+
+import java.util.Arrays;
+
+/**
+ * Per-document term vectors: for every document its terms as sorted
+ * ordinals of the {@link InMemoryIndex} they were built against, with the
+ * positions of each term, all in primitive arrays:
+ *
+ * <pre>
+ * docs[slot]                                 sorted doc ids
+ * offsets[slot] .. offsets[slot + 1]         slice of terms for docs[slot]
+ * terms[entry]                               term ordinal, ascending within a document
+ * posOffsets[entry] .. posOffsets[entry + 1] slice of positions, ascending
+ * </pre>
+ *
+ * A term's frequency in a document is the length of its position slice.
+ * Similarity and proximity features read these arrays instead of parsing
+ * the document again. Each document also keeps the checksum of the stored
+ * text its positions were read with, so a snippet is only highlighted from
+ * them while the stored text has not been replaced since.
+ */
+public final class ForwardIndex {
+
+    private final int[] docs;
+    private final int[] offsets;
+    private final int[] terms;
+    private final int[] posOffsets;
+    private final int[] positions;
+    private final long[] textChecksums;
+
+    private ForwardIndex(int[] docs, int[] offsets, int[] terms, int[] posOffsets, int[] positions,
+            long[] textChecksums) {
+        this.docs = docs;
+        this.offsets = offsets;
+        this.terms = terms;
+        this.posOffsets = posOffsets;
+        this.positions = positions;
+        this.textChecksums = textChecksums;
+    }
+
+    public static ForwardIndex empty() {
+        return new ForwardIndex(new int[0], new int[1], new int[0], new int[1], new int[0], new long[0]);
+    }
+
+    public int documentCount() {
+        return docs.length;
+    }
+
+    public long entryCount() {
+        return terms.length;
+    }
+
+    public long positionsCount() {
+        return positions.length;
+    }
+
+    /**
+     * Slot of a document, or a negative value when it has no term vector.
+     */
+    public int slot(int docId) {
+        return Arrays.binarySearch(docs, docId);
+    }
+
+    public int docAt(int slot) {
+        return docs[slot];
+    }
+
+    /**
+     * Number of distinct terms in the document at a slot.
+     */
+    public int termCount(int slot) {
+        return offsets[slot + 1] - offsets[slot];
+    }
+
+    /**
+     * Entry of a term in the document at a slot, or a negative value when
+     * the document does not contain it.
+     */
+    public int entry(int slot, int termOrdinal) {
+        return Arrays.binarySearch(terms, offsets[slot], offsets[slot + 1], termOrdinal);
+    }
+
+    public int termAt(int entry) {
+        return terms[entry];
+    }
+
+    public int freqAt(int entry) {
+        return posOffsets[entry + 1] - posOffsets[entry];
+    }
+
+    public int firstPositionAt(int entry) {
+        return positions[posOffsets[entry]];
+    }
+
+    /**
+     * Every position of the given terms in a document, ascending, packed as
+     * {@code (position << 32) | i} where i indexes termOrdinals (negative
+     * ordinals are skipped). Costs the number of occurrences, not the
+     * document length; empty when the document has no term vector.
+     */
+    public long[] occurrences(int docId, int[] termOrdinals) {
+        int slot = slot(docId);
+        if (slot < 0) {
+            return new long[0];
+        }
+        int[] entries = new int[termOrdinals.length];
+        int count = 0;
+        for (int i = 0; i < termOrdinals.length; i++) {
+            entries[i] = termOrdinals[i] < 0 ? -1 : entry(slot, termOrdinals[i]);
+            if (entries[i] >= 0) {
+                count += freqAt(entries[i]);
+            }
+        }
+        long[] occurrences = new long[count];
+        int n = 0;
+        for (int i = 0; i < entries.length; i++) {
+            if (entries[i] < 0) {
+                continue;
+            }
+            for (int p = posOffsets[entries[i]]; p < posOffsets[entries[i] + 1]; p++) {
+                occurrences[n++] = ((long) positions[p] << 32) | i;
+            }
+        }
+        Arrays.sort(occurrences);
+        return occurrences;
+    }
+
+    /**
+     * {@link #occurrences(int, int[])}, or none when the document's stored
+     * text has another checksum than the one its positions were read with,
+     * so they are never mapped onto a newer text.
+     */
+    public long[] occurrences(int docId, int[] termOrdinals, long textChecksum) {
+        int slot = slot(docId);
+        if (slot < 0 || textChecksums[slot] != textChecksum) {
+            return new long[0];
+        }
+        return occurrences(docId, termOrdinals);
+    }
+
+    /**
+     * Times the terms occur at consecutive positions in a document, by
+     * merging their position lists each shifted by its place in the phrase;
+     * 0 when any term is missing. Checks one document without the bigram
+     * index.
+     */
+    public int phraseCount(int docId, int[] termOrdinals) {
+        int slot = slot(docId);
+        if (slot < 0 || termOrdinals.length == 0) {
+            return 0;
+        }
+        int[] entries = new int[termOrdinals.length];
+        for (int k = 0; k < termOrdinals.length; k++) {
+            entries[k] = termOrdinals[k] < 0 ? -1 : entry(slot, termOrdinals[k]);
+            if (entries[k] < 0) {
+                return 0;
+            }
+        }
+        int[] starts = Arrays.copyOfRange(positions, posOffsets[entries[0]], posOffsets[entries[0] + 1]);
+        int found = starts.length;
+        for (int k = 1; k < entries.length && found > 0; k++) {
+            int kept = 0;
+            int j = posOffsets[entries[k]];
+            int end = posOffsets[entries[k] + 1];
+            for (int i = 0; i < found && j < end; i++) {
+                while (j < end && positions[j] < starts[i] + k) {
+                    j++;
+                }
+                if (j < end && positions[j] == starts[i] + k) {
+                    starts[kept++] = starts[i];
+                }
+            }
+            found = kept;
+        }
+        return found;
+    }
+
+    /**
+     * Jaccard similarity of the term sets of two documents, by merging their
+     * sorted term ordinals; 0 when either has no term vector.
+     */
+    public double jaccard(int docA, int docB) {
+        int a = slot(docA);
+        int b = slot(docB);
+        if (a < 0 || b < 0) {
+            return 0.0;
+        }
+        int i = offsets[a];
+        int j = offsets[b];
+        int endA = offsets[a + 1];
+        int endB = offsets[b + 1];
+        int common = 0;
+        while (i < endA && j < endB) {
+            if (terms[i] == terms[j]) {
+                common++;
+                i++;
+                j++;
+            } else if (terms[i] < terms[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        int union = (endA - offsets[a]) + (endB - offsets[b]) - common;
+        return union == 0 ? 0.0 : (double) common / union;
+    }
+
+    /**
+     * Smallest distance in positions between occurrences of two different
+     * terms of the set, or {@link Integer#MAX_VALUE} when fewer than two of
+     * them occur in the document.
+     */
+    public int minDistance(int docId, int[] termOrdinals) {
+        int slot = slot(docId);
+        if (slot < 0) {
+            return Integer.MAX_VALUE;
+        }
+        int[] entries = new int[termOrdinals.length];
+        int found = 0;
+        for (int ordinal : termOrdinals) {
+            int entry = ordinal < 0 ? -1 : entry(slot, ordinal);
+            if (entry >= 0) {
+                entries[found++] = entry;
+            }
+        }
+        int best = Integer.MAX_VALUE;
+        for (int x = 0; x < found; x++) {
+            for (int y = x + 1; y < found; y++) {
+                if (terms[entries[x]] != terms[entries[y]]) {
+                    best = Math.min(best, minDistance(entries[x], entries[y]));
+                }
+            }
+        }
+        return best;
+    }
+
+    // Two-pointer walk over two ascending position slices
+    private int minDistance(int entryA, int entryB) {
+        int i = posOffsets[entryA];
+        int j = posOffsets[entryB];
+        int endA = posOffsets[entryA + 1];
+        int endB = posOffsets[entryB + 1];
+        int best = Integer.MAX_VALUE;
+        while (i < endA && j < endB) {
+            int distance = positions[i] - positions[j];
+            best = Math.min(best, Math.abs(distance));
+            if (distance < 0) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Replay the terms of the document at a slot in position order, as
+     * {@code (position, termOrdinal)} pairs.
+     */
+    public void forEachToken(int slot, TokenConsumer consumer) {
+        int count = posOffsets[offsets[slot + 1]] - posOffsets[offsets[slot]];
+        long[] tokens = new long[count];
+        int n = 0;
+        for (int entry = offsets[slot]; entry < offsets[slot + 1]; entry++) {
+            for (int p = posOffsets[entry]; p < posOffsets[entry + 1]; p++) {
+                tokens[n++] = ((long) positions[p] << 32) | terms[entry];
+            }
+        }
+        Arrays.sort(tokens);
+        for (long token : tokens) {
+            consumer.accept((int) (token >>> 32), (int) token);
+        }
+    }
+
+    public interface TokenConsumer {
+        void accept(int position, int termOrdinal);
+    }
+
+    /**
+     * Bytes held by the arrays.
+     */
+    public long estimatedBytes() {
+        return 16L * 6 + (long) docs.length * 4 + (long) offsets.length * 4 + (long) terms.length * 4
+                + (long) posOffsets.length * 4 + (long) positions.length * 4 + (long) textChecksums.length * 8;
+    }
+
+    /**
+     * Collects term positions document by document. Positions must arrive
+     * grouped by document in increasing doc id order, as an
+     * {@code ORDER BY doc_id, position} scan returns them; words that are not
+     * in the index are skipped.
+     */
+    public static class Builder {
+        private final long[] sortedWordIds;
+        private final int[] ordinalsByWordId;
+        private int[] docs = new int[1024];
+        private int[] offsets = new int[1025];
+        private int[] terms = new int[1 << 16];
+        private int[] posOffsets = new int[(1 << 16) + 1];
+        private int[] positions = new int[1 << 16];
+        private int docCount;
+        private int entryCount;
+        private int positionCount;
+
+        // Tokens of the current document, packed as (ordinal << 32) | position
+        private long[] pending = new long[1024];
+        private int pendingCount;
+        private int currentDoc = -1;
+        private long currentTextChecksum;
+        private long[] textChecksums = new long[1024];
+
+        public Builder(InMemoryIndex index) {
+            int termCount = index.termCount();
+            long[] keys = new long[termCount];
+            for (int ordinal = 0; ordinal < termCount; ordinal++) {
+                if (index.wordId(ordinal) > Integer.MAX_VALUE) {
+                    throw new IllegalStateException("Word id " + index.wordId(ordinal) + " does not fit the forward index");
+                }
+                keys[ordinal] = (index.wordId(ordinal) << 32) | ordinal;
+            }
+            Arrays.sort(keys);
+            sortedWordIds = new long[termCount];
+            ordinalsByWordId = new int[termCount];
+            for (int i = 0; i < termCount; i++) {
+                sortedWordIds[i] = keys[i] >>> 32;
+                ordinalsByWordId[i] = (int) keys[i];
+            }
+        }
+
+        public void add(int docId, int position, long wordId) {
+            add(docId, position, wordId, 0);
+        }
+
+        /**
+         * @param textChecksum Checksum of the document's stored text the position was read with
+         */
+        public void add(int docId, int position, long wordId, long textChecksum) {
+            if (docId != currentDoc) {
+                finishDocument();
+                currentDoc = docId;
+                currentTextChecksum = textChecksum;
+            }
+            int found = Arrays.binarySearch(sortedWordIds, wordId);
+            if (found < 0) {
+                return;
+            }
+            if (pendingCount == pending.length) {
+                pending = Arrays.copyOf(pending, pendingCount * 2);
+            }
+            pending[pendingCount++] = ((long) ordinalsByWordId[found] << 32) | position;
+        }
+
+        private void finishDocument() {
+            if (currentDoc < 0 || pendingCount == 0) {
+                pendingCount = 0;
+                return;
+            }
+            Arrays.sort(pending, 0, pendingCount);
+            if (docCount == docs.length) {
+                docs = Arrays.copyOf(docs, docs.length * 2);
+                offsets = Arrays.copyOf(offsets, docs.length + 1);
+                textChecksums = Arrays.copyOf(textChecksums, docs.length);
+            }
+            docs[docCount] = currentDoc;
+            textChecksums[docCount] = currentTextChecksum;
+            offsets[docCount] = entryCount;
+            int lastTerm = -1;
+            int lastPosition = -1;
+            for (int i = 0; i < pendingCount; i++) {
+                int term = (int) (pending[i] >>> 32);
+                int position = (int) pending[i];
+                if (term != lastTerm) {
+                    ensureEntries();
+                    terms[entryCount] = term;
+                    posOffsets[entryCount] = positionCount;
+                    entryCount++;
+                    lastTerm = term;
+                } else if (position == lastPosition) {
+                    continue;
+                }
+                ensurePositions();
+                positions[positionCount++] = position;
+                lastPosition = position;
+            }
+            docCount++;
+            offsets[docCount] = entryCount;
+            pendingCount = 0;
+        }
+
+        private void ensureEntries() {
+            if (entryCount == terms.length) {
+                terms = Arrays.copyOf(terms, grow(terms.length));
+                posOffsets = Arrays.copyOf(posOffsets, terms.length + 1);
+            }
+        }
+
+        private void ensurePositions() {
+            if (positionCount == positions.length) {
+                positions = Arrays.copyOf(positions, grow(positions.length));
+            }
+        }
+
+        private static int grow(int length) {
+            if (length >= Integer.MAX_VALUE - 8) {
+                throw new IllegalStateException("Too many entries for an in-memory forward index");
+            }
+            return (int) Math.min((long) length * 2, Integer.MAX_VALUE - 8);
+        }
+
+        public ForwardIndex build() {
+            finishDocument();
+            posOffsets[entryCount] = positionCount;
+            return new ForwardIndex(Arrays.copyOf(docs, docCount), Arrays.copyOf(offsets, docCount + 1),
+                    Arrays.copyOf(terms, entryCount), Arrays.copyOf(posOffsets, entryCount + 1),
+                    Arrays.copyOf(positions, positionCount), Arrays.copyOf(textChecksums, docCount));
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package com.example.searchengine.Indexer.Memory;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+import com.example.searchengine.Indexer.Postings.PostingsIntersection;
+import com.example.searchengine.Indexer.Postings.PostingsList;
+
+/**
+ * Read-only inverted index held in primitive arrays. Terms are sorted and
+ * addressed by int ordinal; the postings of every term are one slice of two
+ * shared arrays, sorted by doc id:
+ *
+ * <pre>
+ * terms[ordinal]                            term text
+ * wordIds[ordinal]                          id of the term in the words table
+ * offsets[ordinal] .. offsets[ordinal + 1]  slice of docIds and freqs
+ * </pre>
+ *
+ * That is 8 bytes per posting with no per-posting objects, against roughly
+ * 80 for a boxed {@code Map<Long, Integer>} entry.
+ */
+public final class InMemoryIndex {
+
+    private final String[] terms;
+    private final long[] wordIds;
+    private final int[] offsets;
+    private final int[] docIds;
+    private final int[] freqs;
+
+    private InMemoryIndex(String[] terms, long[] wordIds, int[] offsets, int[] docIds, int[] freqs) {
+        this.terms = terms;
+        this.wordIds = wordIds;
+        this.offsets = offsets;
+        this.docIds = docIds;
+        this.freqs = freqs;
+    }
+
+    public static InMemoryIndex empty() {
+        return new InMemoryIndex(new String[0], new long[0], new int[1], new int[0], new int[0]);
+    }
+
+    public int termCount() {
+        return terms.length;
+    }
+
+    public long postingsCount() {
+        return offsets[terms.length];
+    }
+
+    /**
+     * Ordinal of a term, or a negative value when it is not indexed.
+     */
+    public int ordinal(String term) {
+        return Arrays.binarySearch(terms, term);
+    }
+
+    public String term(int ordinal) {
+        return terms[ordinal];
+    }
+
+    public long wordId(int ordinal) {
+        return wordIds[ordinal];
+    }
+
+    public int docFreq(int ordinal) {
+        return offsets[ordinal + 1] - offsets[ordinal];
+    }
+
+    /**
+     * First slot of the term's postings in {@link #docAt(int)} / {@link #freqAt(int)}.
+     */
+    public int start(int ordinal) {
+        return offsets[ordinal];
+    }
+
+    /**
+     * One past the last slot of the term's postings.
+     */
+    public int end(int ordinal) {
+        return offsets[ordinal + 1];
+    }
+
+    public int docAt(int slot) {
+        return docIds[slot];
+    }
+
+    public int freqAt(int slot) {
+        return freqs[slot];
+    }
+
+    /**
+     * Frequency of a term in a document, 0 when absent. Binary search over
+     * the term's postings.
+     */
+    public int freq(int ordinal, int docId) {
+        int slot = Arrays.binarySearch(docIds, offsets[ordinal], offsets[ordinal + 1], docId);
+        return slot < 0 ? 0 : freqs[slot];
+    }
+
+    /**
+     * Frequencies of a term in each of the given documents, which must be in
+     * increasing doc id order, 0 where absent. One galloping pass over the
+     * term's postings instead of a binary search per document.
+     */
+    public void freqs(int ordinal, int[] sortedDocIds, int[] out) {
+        int slot = offsets[ordinal];
+        int end = offsets[ordinal + 1];
+        for (int i = 0; i < sortedDocIds.length; i++) {
+            slot = PostingsIntersection.gallop(docIds, slot, end, sortedDocIds[i]);
+            out[i] = slot < end && docIds[slot] == sortedDocIds[i] ? freqs[slot] : 0;
+        }
+    }
+
+    /**
+     * Copy of a term's postings, or null when the term is not indexed.
+     */
+    public PostingsList postings(String term) {
+        int ordinal = ordinal(term);
+        if (ordinal < 0) {
+            return null;
+        }
+        return new PostingsList(Arrays.copyOfRange(docIds, offsets[ordinal], offsets[ordinal + 1]),
+                Arrays.copyOfRange(freqs, offsets[ordinal], offsets[ordinal + 1]), null);
+    }
+
+    /**
+     * The postings of the documents the filter accepts, as a new index;
+     * terms left without postings are dropped.
+     */
+    public InMemoryIndex filter(IntPredicate docFilter) {
+        Builder builder = new Builder();
+        for (int ordinal = 0; ordinal < terms.length; ordinal++) {
+            builder.startTerm(terms[ordinal], wordIds[ordinal]);
+            for (int slot = offsets[ordinal]; slot < offsets[ordinal + 1]; slot++) {
+                if (docFilter.test(docIds[slot])) {
+                    builder.add(docIds[slot], freqs[slot]);
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Bytes held by the arrays, term strings included.
+     */
+    public long estimatedBytes() {
+        long bytes = 16L * 5 + (long) wordIds.length * 8 + (long) offsets.length * 4 + (long) docIds.length * 4 + (long) freqs.length * 4;
+        for (String term : terms) {
+            bytes += 8 + 40 + term.length(); // reference, String and its byte[] headers, latin-1 content
+        }
+        return bytes;
+    }
+
+    /**
+     * Collects postings term by term. Each term's postings must arrive
+     * together and in increasing doc id order, as an
+     * {@code ORDER BY word_id, doc_id} scan returns them; terms themselves may
+     * come in any order and are sorted by {@link #build()}.
+     */
+    public static class Builder {
+        private String[] terms = new String[1024];
+        private long[] wordIds = new long[1024];
+        private int[] offsets = new int[1025];
+        private int[] docIds = new int[1 << 16];
+        private int[] freqs = new int[1 << 16];
+        private int termCount;
+        private int size;
+
+        /**
+         * Start the postings of a new term.
+         */
+        public void startTerm(String term, long wordId) {
+            if (termCount == terms.length) {
+                terms = Arrays.copyOf(terms, terms.length * 2);
+                wordIds = Arrays.copyOf(wordIds, wordIds.length * 2);
+                offsets = Arrays.copyOf(offsets, terms.length + 1);
+            }
+            terms[termCount] = term;
+            wordIds[termCount] = wordId;
+            offsets[termCount] = size;
+            termCount++;
+            offsets[termCount] = size;
+        }
+
+        public void add(int docId, int freq) {
+            if (size == docIds.length) {
+                if (size == Integer.MAX_VALUE - 8) {
+                    throw new IllegalStateException("Too many postings for an in-memory index");
+                }
+                int newLength = (int) Math.min((long) size * 2, Integer.MAX_VALUE - 8);
+                docIds = Arrays.copyOf(docIds, newLength);
+                freqs = Arrays.copyOf(freqs, newLength);
+            }
+            docIds[size] = docId;
+            freqs[size] = freq;
+            size++;
+            offsets[termCount] = size;
+        }
+
+        public InMemoryIndex build() {
+            // Drop terms without postings and sort the rest, moving their slices along
+            Integer[] order = new Integer[termCount];
+            int kept = 0;
+            for (int i = 0; i < termCount; i++) {
+                if (offsets[i + 1] > offsets[i]) {
+                    order[kept++] = i;
+                }
+            }
+            Arrays.sort(order, 0, kept, (a, b) -> terms[a].compareTo(terms[b]));
+
+            String[] sortedTerms = new String[kept];
+            long[] sortedWordIds = new long[kept];
+            int[] sortedOffsets = new int[kept + 1];
+            int[] sortedDocs = new int[size];
+            int[] sortedFreqs = new int[size];
+            int position = 0;
+            for (int i = 0; i < kept; i++) {
+                int term = order[i];
+                int length = offsets[term + 1] - offsets[term];
+                sortedTerms[i] = terms[term];
+                sortedWordIds[i] = wordIds[term];
+                sortedOffsets[i] = position;
+                System.arraycopy(docIds, offsets[term], sortedDocs, position, length);
+                System.arraycopy(freqs, offsets[term], sortedFreqs, position, length);
+                position += length;
+            }
+            sortedOffsets[kept] = position;
+            return new InMemoryIndex(sortedTerms, sortedWordIds, sortedOffsets, sortedDocs, sortedFreqs);
+        }
+    }
+}
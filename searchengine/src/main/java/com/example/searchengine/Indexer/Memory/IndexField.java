@@ -0,0 +1,54 @@
+package com.example.searchengine.Indexer.Memory;
+
+/**
+ * The indexed fields of a document, with their BM25F weight and length
+ * normalization strength. Title, heading and body postings come from the
+ * page's own tags, url from the tokens of its address and anchor from the
+ * link text of the pages pointing to it.
+ */
+public enum IndexField {
+    TITLE(3.0, 0.5),
+    HEADING(2.0, 0.6),
+    BODY(1.0, 0.75),
+    URL(2.0, 0.3),
+    ANCHOR(1.5, 0.4);
+
+    /** Tag stored in word_document_tags for url tokens */
+    public static final String URL_TAG = "url";
+
+    private final double weight;
+    private final double b;
+
+    IndexField(double weight, double b) {
+        this.weight = weight;
+        this.b = b;
+    }
+
+    public double getWeight() {
+        return weight;
+    }
+
+    public double getB() {
+        return b;
+    }
+
+    /**
+     * Field of an indexed tag, or null for tags that are not a field.
+     */
+    public static IndexField forTag(String tag) {
+        switch (tag) {
+            case "title":
+                return TITLE;
+            case "h1":
+            case "h2":
+            case "h3":
+                return HEADING;
+            case "p":
+                return BODY;
+            case URL_TAG:
+                return URL;
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.example.searchengine.Indexer.Memory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Symmetric-delete spelling index over the terms of an {@link InMemoryIndex}.
+ * Every string left after deleting up to {@link #MAX_DISTANCE} characters
+ * from the first {@link #PREFIX_LENGTH} characters of a term is a key for the
+ * term; a word within that edit distance of a term shares at least one key
+ * with it, so the candidates for a word are the terms under its own deletes,
+ * checked with an exact distance:
+ *
+ * <pre>
+ * entries[i]   (hash of a delete &lt;&lt; 32) | term ordinal, sorted
+ * </pre>
+ *
+ * One long per delete and no strings besides the terms themselves. A lookup
+ * is a few dozen binary searches, so correcting a word takes microseconds.
+ */
+public final class SpellingIndex {
+
+    public static final int MAX_DISTANCE = 2;
+    private static final int PREFIX_LENGTH = 7;
+    private static final int MIN_TERM_LENGTH = 3;
+
+    /**
+     * An indexed term close to a word, with its edit distance and document
+     * frequency.
+     */
+    public record Correction(String term, int distance, int docFreq) {
+    }
+
+    private final InMemoryIndex index;
+    private final long[] entries;
+
+    private SpellingIndex(InMemoryIndex index, long[] entries) {
+        this.index = index;
+        this.entries = entries;
+    }
+
+    /**
+     * Deletes of every alphabetic term of at least three letters.
+     */
+    public static SpellingIndex of(InMemoryIndex index) {
+        long[] entries = new long[Math.max(16, index.termCount() * 8)];
+        int size = 0;
+        Set<String> deletes = new HashSet<>();
+        for (int ordinal = 0; ordinal < index.termCount(); ordinal++) {
+            String term = index.term(ordinal);
+            if (!isCorrectable(term)) {
+                continue;
+            }
+            deletes.clear();
+            addDeletes(prefix(term), MAX_DISTANCE, deletes);
+            if (size + deletes.size() > entries.length) {
+                entries = Arrays.copyOf(entries, Math.max(entries.length * 2, size + deletes.size()));
+            }
+            for (String delete : deletes) {
+                entries[size++] = entry(delete.hashCode(), ordinal);
+            }
+        }
+        entries = Arrays.copyOf(entries, size);
+        Arrays.sort(entries);
+        return new SpellingIndex(index, entries);
+    }
+
+    public static SpellingIndex empty() {
+        return new SpellingIndex(InMemoryIndex.empty(), new long[0]);
+    }
+
+    /**
+     * Indexed terms within maxDistance edits of the word (adjacent
+     * transpositions count as one), nearest first and then by document
+     * frequency. Empty for words of fewer than three letters.
+     */
+    public List<Correction> corrections(String word, int maxDistance, int limit) {
+        List<Correction> corrections = new ArrayList<>();
+        int distanceLimit = Math.min(maxDistance, MAX_DISTANCE);
+        if (!isCorrectable(word) || distanceLimit <= 0 || limit <= 0) {
+            return corrections;
+        }
+
+        Set<String> deletes = new HashSet<>();
+        addDeletes(prefix(word), distanceLimit, deletes);
+        Set<Integer> seen = new HashSet<>();
+        for (String delete : deletes) {
+            long first = entry(delete.hashCode(), 0);
+            int slot = lowerBound(first);
+            for (; slot < entries.length && (entries[slot] >>> 32) == (first >>> 32); slot++) {
+                int ordinal = (int) entries[slot];
+                if (!seen.add(ordinal)) {
+                    continue;
+                }
+                String term = index.term(ordinal);
+                if (Math.abs(term.length() - word.length()) > distanceLimit) {
+                    continue;
+                }
+                int distance = distance(word, term, distanceLimit);
+                if (distance <= distanceLimit) {
+                    corrections.add(new Correction(term, distance, index.docFreq(ordinal)));
+                }
+            }
+        }
+        corrections.sort((a, b) -> a.distance() != b.distance()
+            ? Integer.compare(a.distance(), b.distance())
+            : a.docFreq() != b.docFreq() ? Integer.compare(b.docFreq(), a.docFreq()) : a.term().compareTo(b.term()));
+        return corrections.size() > limit ? new ArrayList<>(corrections.subList(0, limit)) : corrections;
+    }
+
+    public int entryCount() {
+        return entries.length;
+    }
+
+    public long estimatedBytes() {
+        return 16L + (long) entries.length * 8;
+    }
+
+    /**
+     * Optimal string alignment distance, or limit + 1 once it is certain to
+     * exceed the limit.
+     */
+    static int distance(String a, String b, int limit) {
+        int n = a.length();
+        int m = b.length();
+        int[] previous = new int[m + 1];
+        int[] current = new int[m + 1];
+        int[] beforePrevious = new int[m + 1];
+        for (int j = 0; j <= m; j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= n; i++) {
+            current[0] = i;
+            int rowMin = current[0];
+            for (int j = 1; j <= m; j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int value = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1), previous[j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    value = Math.min(value, beforePrevious[j - 2] + 1);
+                }
+                current[j] = value;
+                rowMin = Math.min(rowMin, value);
+            }
+            if (rowMin > limit) {
+                return limit + 1;
+            }
+            int[] recycled = beforePrevious;
+            beforePrevious = previous;
+            previous = current;
+            current = recycled;
+        }
+        return previous[m];
+    }
+
+    private static boolean isCorrectable(String term) {
+        if (term.length() < MIN_TERM_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < term.length(); i++) {
+            char c = term.charAt(i);
+            if (c < 'a' || c > 'z') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String prefix(String term) {
+        return term.length() > PREFIX_LENGTH ? term.substring(0, PREFIX_LENGTH) : term;
+    }
+
+    private static void addDeletes(String word, int distance, Set<String> deletes) {
+        if (!deletes.add(word) || distance == 0 || word.length() <= 1) {
+            return;
+        }
+        for (int i = 0; i < word.length(); i++) {
+            addDeletes(word.substring(0, i) + word.substring(i + 1), distance - 1, deletes);
+        }
+    }
+
+    private static long entry(int hash, int ordinal) {
+        return ((long) hash << 32) | (ordinal & 0xFFFFFFFFL);
+    }
+
+    private int lowerBound(long key) {
+        int low = 0;
+        int high = entries.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (entries[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,300 @@
+package com.example.searchengine.Indexer.Pipeline;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Three-stage indexing pipeline: a reader feeds source documents into a
+ * bounded queue, a pool of analyzers turns them into analyzed pages, and
+ * writers drain those in batches. Full queues block the stage before them,
+ * so a slow database throttles parsing instead of filling the heap, and one
+ * slow page only occupies one analyzer thread.
+ *
+ * A document the analyzer or writer rejects is counted as failed and the
+ * run goes on. A reader or writer that throws fails the run: reading stops,
+ * the documents already queued drain, and {@link #run} rethrows, so the
+ * caller never publishes a partial run as complete.
+ *
+ * @param <T> the analyzed form of a document handed to the writers
+ */
+public class IndexingPipeline<T> {
+
+    private static final Logger logger = LoggerFactory.getLogger(IndexingPipeline.class);
+
+    private static final long POLL_MILLIS = 50;
+
+    /**
+     * A raw document as read from the database. The id may be null when only
+     * the url is known; writers resolve it.
+     */
+    public record SourceDocument(Long id, String url, String content) {
+    }
+
+    /**
+     * Writes a batch of analyzed pages and returns how many were written.
+     */
+    @FunctionalInterface
+    public interface BatchWriter<T> {
+        int write(List<T> batch);
+    }
+
+    private final Settings settings;
+    private final Function<SourceDocument, T> analyzer;
+    private final BatchWriter<T> writer;
+    private final Consumer<Long> progressListener;
+
+    private final BlockingQueue<SourceDocument> readQueue;
+    private final BlockingQueue<T> writeQueue;
+
+    private final StageStats readStats = new StageStats();
+    private final StageStats analyzeStats = new StageStats();
+    private final StageStats writeStats = new StageStats();
+    private final AtomicBoolean readerDone = new AtomicBoolean(false);
+    private final AtomicBoolean analyzersDone = new AtomicBoolean(false);
+    private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+
+    private volatile long startedAt;
+    private volatile long finishedAt;
+
+    public IndexingPipeline(Settings settings, Function<SourceDocument, T> analyzer, BatchWriter<T> writer,
+            Consumer<Long> progressListener) {
+        this.settings = settings;
+        this.analyzer = analyzer;
+        this.writer = writer;
+        this.progressListener = progressListener;
+        this.readQueue = new ArrayBlockingQueue<>(settings.queueCapacity());
+        this.writeQueue = new ArrayBlockingQueue<>(settings.queueCapacity());
+    }
+
+    /**
+     * Run the pipeline to completion. {@code source} is invoked on the calling
+     * thread and must hand every document to the supplied consumer, which
+     * blocks while the read queue is full.
+     *
+     * @return number of documents written
+     * @throws IllegalStateException when the reader or a writer failed, once
+     *                               the stages have drained
+     */
+    public long run(Consumer<Consumer<SourceDocument>> source) {
+        startedAt = System.currentTimeMillis();
+        logger.info("Starting indexing pipeline with {} analyzers, {} writers, queue capacity {}, batch size {}",
+                settings.analyzerThreads(), settings.writerThreads(), settings.queueCapacity(),
+                settings.writeBatchSize());
+
+        CountDownLatch analyzersFinished = new CountDownLatch(settings.analyzerThreads());
+        CountDownLatch writersFinished = new CountDownLatch(settings.writerThreads());
+        List<Thread> threads = new ArrayList<>();
+
+        for (int i = 0; i < settings.analyzerThreads(); i++) {
+            threads.add(startThread("index-analyzer-" + (i + 1), () -> analyzeLoop(analyzersFinished)));
+        }
+        for (int i = 0; i < settings.writerThreads(); i++) {
+            threads.add(startThread("index-writer-" + (i + 1), () -> writeLoop(writersFinished)));
+        }
+
+        try {
+            source.accept(document -> {
+                if (failure.get() != null) {
+                    throw new IllegalStateException("Indexing pipeline stopped reading after a failure");
+                }
+                long start = System.nanoTime();
+                try {
+                    readQueue.put(document);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while queueing " + document.url(), e);
+                }
+                readStats.record(System.nanoTime() - start, 1);
+            });
+        } catch (RuntimeException e) {
+            if (failure.compareAndSet(null, e)) {
+                logger.error("Indexing pipeline reader failed: {}", e.getMessage());
+                readStats.failed.incrementAndGet();
+            }
+        } finally {
+            readerDone.set(true);
+        }
+
+        try {
+            analyzersFinished.await();
+            analyzersDone.set(true);
+            writersFinished.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            threads.forEach(Thread::interrupt);
+            failure.compareAndSet(null, new IllegalStateException("Indexing pipeline interrupted", e));
+        }
+
+        finishedAt = System.currentTimeMillis();
+        logger.info("Indexing pipeline finished: {} read, {} analyzed, {} written, {} failed in {} ms",
+                readStats.processed.get(), analyzeStats.processed.get(), writeStats.processed.get(),
+                analyzeStats.failed.get() + writeStats.failed.get(), finishedAt - startedAt);
+        RuntimeException failed = failure.get();
+        if (failed != null) {
+            throw new IllegalStateException("Indexing run failed after writing " + writeStats.processed.get()
+                    + " documents: " + failed.getMessage(), failed);
+        }
+        return writeStats.processed.get();
+    }
+
+    private void analyzeLoop(CountDownLatch finished) {
+        try {
+            while (true) {
+                SourceDocument document = readQueue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (document == null) {
+                    if (readerDone.get() && readQueue.isEmpty()) {
+                        return;
+                    }
+                    continue;
+                }
+
+                long start = System.nanoTime();
+                T analyzed;
+                try {
+                    analyzed = analyzer.apply(document);
+                } catch (RuntimeException e) {
+                    logger.error("Error analyzing document {}: {}", document.url(), e.getMessage());
+                    analyzeStats.failed.incrementAndGet();
+                    continue;
+                }
+                analyzeStats.record(System.nanoTime() - start, 1);
+
+                if (analyzed != null) {
+                    writeQueue.put(analyzed);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            finished.countDown();
+        }
+    }
+
+    private void writeLoop(CountDownLatch finished) {
+        List<T> batch = new ArrayList<>(settings.writeBatchSize());
+        try {
+            while (true) {
+                T page = writeQueue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (page != null) {
+                    batch.add(page);
+                    writeQueue.drainTo(batch, settings.writeBatchSize() - batch.size());
+                }
+
+                boolean upstreamDone = page == null && analyzersDone.get() && writeQueue.isEmpty();
+                if (batch.size() >= settings.writeBatchSize() || (!batch.isEmpty() && (page == null || upstreamDone))) {
+                    flush(batch);
+                }
+                if (upstreamDone) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            finished.countDown();
+        }
+    }
+
+    private void flush(List<T> batch) {
+        long start = System.nanoTime();
+        int written;
+        try {
+            written = writer.write(batch);
+        } catch (RuntimeException e) {
+            logger.error("Error writing batch of {} documents: {}", batch.size(), e.getMessage());
+            failure.compareAndSet(null, e);
+            written = 0;
+        }
+        writeStats.record(System.nanoTime() - start, written);
+        writeStats.failed.addAndGet(batch.size() - written);
+        batch.clear();
+
+        if (progressListener != null) {
+            progressListener.accept(writeStats.processed.get());
+        }
+    }
+
+    private Thread startThread(String name, Runnable body) {
+        Thread thread = new Thread(body, name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Per-stage queue depth, counts and throughput, safe to call while running.
+     */
+    public Map<String, Object> getStats() {
+        long end = finishedAt > 0 ? finishedAt : System.currentTimeMillis();
+        double elapsedSeconds = startedAt == 0 ? 0.0 : Math.max(1, end - startedAt) / 1000.0;
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("running", startedAt > 0 && finishedAt == 0);
+        stats.put("elapsedSeconds", elapsedSeconds);
+        stats.put("analyzerThreads", settings.analyzerThreads());
+        stats.put("writerThreads", settings.writerThreads());
+        stats.put("queueCapacity", settings.queueCapacity());
+        stats.put("writeBatchSize", settings.writeBatchSize());
+        stats.put("read", readStats.toMap(elapsedSeconds, readQueue.size()));
+        stats.put("analyze", analyzeStats.toMap(elapsedSeconds, writeQueue.size()));
+        stats.put("write", writeStats.toMap(elapsedSeconds, 0));
+        return stats;
+    }
+
+    private static class StageStats {
+        final AtomicLong processed = new AtomicLong();
+        final AtomicLong failed = new AtomicLong();
+        final AtomicLong busyNanos = new AtomicLong();
+
+        void record(long nanos, long count) {
+            busyNanos.addAndGet(nanos);
+            processed.addAndGet(count);
+        }
+
+        Map<String, Object> toMap(double elapsedSeconds, int outputQueueDepth) {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("processed", processed.get());
+            map.put("failed", failed.get());
+            map.put("docsPerSecond", elapsedSeconds == 0 ? 0.0 : processed.get() / elapsedSeconds);
+            map.put("busySeconds", busyNanos.get() / 1_000_000_000.0);
+            map.put("outputQueueDepth", outputQueueDepth);
+            return map;
+        }
+    }
+
+    /**
+     * Thread counts and queue sizes for one pipeline run.
+     */
+    public record Settings(int analyzerThreads, int writerThreads, int queueCapacity, int writeBatchSize) {
+
+        /**
+         * Size the pipeline from the host and the connection pool. Parsing is
+         * CPU bound, so analyzers get every core the writers leave over.
+         * Each writer holds one connection while flushing, and the reader keeps
+         * one open while streaming, so writers are capped below the pool size
+         * with a couple of connections left for queries.
+         */
+        public static Settings auto(int cores, int connectionPoolSize, int analyzerOverride, int writerOverride,
+                int queueCapacity, int writeBatchSize) {
+            int writers = writerOverride > 0 ? writerOverride
+                    : Math.max(1, Math.min(Math.max(1, cores / 2), connectionPoolSize - 3));
+            int analyzers = analyzerOverride > 0 ? analyzerOverride : Math.max(1, cores - writers / 2);
+            int capacity = queueCapacity > 0 ? queueCapacity : analyzers * 4;
+            return new Settings(analyzers, writers, capacity, Math.max(1, writeBatchSize));
+        }
+    }
+}
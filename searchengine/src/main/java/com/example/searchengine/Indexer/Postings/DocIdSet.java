@@ -0,0 +1,482 @@
+package com.example.searchengine.Indexer.Postings;
+
+import java.util.Arrays;
+
+/**
+ * An immutable set of doc ids, compressed the way Roaring bitmaps are: ids
+ * are split by their high 16 bits into chunks of 65536, and each chunk is
+ * held in whichever container is smaller for its density:
+ *
+ * <pre>
+ * keys[i]         high 16 bits of the chunk, ascending
+ * containers[i]   up to 4096 ids: their sorted low 16 bits, 2 bytes each
+ *                 more: a 65536-bit bitmap, 8 KB
+ * </pre>
+ *
+ * Set operations go chunk by chunk, on words where both sides are bitmaps,
+ * so an intersection costs about the smaller side and a union of dense sets
+ * a few thousand word operations per chunk. A boxed {@code HashSet<Long>}
+ * needs about 55 bytes per id; this needs at most 2 plus a few dozen per
+ * chunk, and an eighth of a byte where ids are dense.
+ */
+public final class DocIdSet {
+
+    // Largest array container; past it a bitmap is smaller
+    private static final int ARRAY_LIMIT = 4096;
+    private static final int BITMAP_WORDS = 1 << 10;
+
+    private static final DocIdSet EMPTY = new DocIdSet(new char[0], new Container[0], 0);
+
+    private final char[] keys;
+    private final Container[] containers;
+    private final int cardinality;
+
+    private DocIdSet(char[] keys, Container[] containers, int cardinality) {
+        this.keys = keys;
+        this.containers = containers;
+        this.cardinality = cardinality;
+    }
+
+    public static DocIdSet empty() {
+        return EMPTY;
+    }
+
+    /**
+     * The set of sorted, distinct, non-negative doc ids.
+     */
+    public static DocIdSet of(int... sortedDocIds) {
+        return of(sortedDocIds, 0, sortedDocIds.length);
+    }
+
+    /**
+     * The set of a sorted slice of doc ids, such as one term's postings.
+     */
+    public static DocIdSet of(int[] sortedDocIds, int from, int to) {
+        Builder builder = new Builder();
+        for (int i = from; i < to; i++) {
+            builder.add(sortedDocIds[i]);
+        }
+        return builder.build();
+    }
+
+    public int cardinality() {
+        return cardinality;
+    }
+
+    public boolean isEmpty() {
+        return cardinality == 0;
+    }
+
+    public boolean contains(int docId) {
+        int chunk = Arrays.binarySearch(keys, (char) (docId >>> 16));
+        return chunk >= 0 && containers[chunk].contains((char) docId);
+    }
+
+    /**
+     * The doc ids in increasing order.
+     */
+    public int[] toArray() {
+        int[] docIds = new int[cardinality];
+        int n = 0;
+        for (int i = 0; i < keys.length; i++) {
+            n = containers[i].copyTo(docIds, n, keys[i] << 16);
+        }
+        return docIds;
+    }
+
+    public DocIdSet and(DocIdSet other) {
+        return combine(this, other, Operation.AND);
+    }
+
+    public DocIdSet or(DocIdSet other) {
+        return combine(this, other, Operation.OR);
+    }
+
+    /**
+     * The ids of this set that are not in the other.
+     */
+    public DocIdSet andNot(DocIdSet other) {
+        return combine(this, other, Operation.AND_NOT);
+    }
+
+    /**
+     * Bytes held by the keys and containers.
+     */
+    public long estimatedBytes() {
+        long bytes = 16L * 3 + 16 + (long) keys.length * 2 + 16 + (long) containers.length * 4;
+        for (Container container : containers) {
+            bytes += container.estimatedBytes();
+        }
+        return bytes;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof DocIdSet set && set.cardinality == cardinality && Arrays.equals(set.toArray(), toArray());
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(toArray());
+    }
+
+    @Override
+    public String toString() {
+        return "DocIdSet(" + cardinality + " docs in " + keys.length + " chunks)";
+    }
+
+    private enum Operation { AND, OR, AND_NOT }
+
+    // Chunk by chunk merge of the two key lists
+    private static DocIdSet combine(DocIdSet a, DocIdSet b, Operation operation) {
+        if (operation == Operation.AND && (a.isEmpty() || b.isEmpty())) {
+            return EMPTY;
+        }
+        int capacity = operation == Operation.OR ? a.keys.length + b.keys.length : a.keys.length;
+        char[] keys = new char[capacity];
+        Container[] containers = new Container[capacity];
+        int count = 0;
+        int cardinality = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.keys.length || j < b.keys.length) {
+            int keyA = i < a.keys.length ? a.keys[i] : Integer.MAX_VALUE;
+            int keyB = j < b.keys.length ? b.keys[j] : Integer.MAX_VALUE;
+            Container result;
+            char key;
+            if (keyA == keyB) {
+                key = a.keys[i];
+                result = switch (operation) {
+                    case AND -> a.containers[i].and(b.containers[j]);
+                    case OR -> a.containers[i].or(b.containers[j]);
+                    case AND_NOT -> a.containers[i].andNot(b.containers[j]);
+                };
+                i++;
+                j++;
+            } else if (keyA < keyB) {
+                key = a.keys[i];
+                result = operation == Operation.AND ? null : a.containers[i];
+                i++;
+                if (operation == Operation.AND) {
+                    i = skipTo(a.keys, i, b.keys[j]);
+                }
+            } else {
+                key = b.keys[j];
+                result = operation == Operation.OR ? b.containers[j] : null;
+                j++;
+                if (operation != Operation.OR) {
+                    // Chunks only b has add nothing; skip to a's next chunk
+                    j = i < a.keys.length ? skipTo(b.keys, j, a.keys[i]) : b.keys.length;
+                }
+            }
+            if (result != null && result.cardinality() > 0) {
+                keys[count] = key;
+                containers[count++] = result;
+                cardinality += result.cardinality();
+            }
+            if (operation == Operation.AND && (i == a.keys.length || j == b.keys.length)) {
+                break;
+            }
+        }
+        return count == 0 ? EMPTY
+                : new DocIdSet(Arrays.copyOf(keys, count), Arrays.copyOf(containers, count), cardinality);
+    }
+
+    private static int skipTo(char[] keys, int from, char key) {
+        int found = Arrays.binarySearch(keys, from, keys.length, key);
+        return found < 0 ? -found - 1 : found;
+    }
+
+    /**
+     * Collects doc ids in increasing order.
+     */
+    public static class Builder {
+        private char[] keys = new char[16];
+        private Container[] containers = new Container[16];
+        private int count;
+        private int cardinality;
+
+        private int currentKey = -1;
+        private char[] lows = new char[64];
+        private long[] words;
+        private int lowCount;
+        private int lastDoc = -1;
+
+        public Builder add(int docId) {
+            if (docId <= lastDoc) {
+                throw new IllegalArgumentException("Doc ids must be added in increasing order: " + docId + " after " + lastDoc);
+            }
+            lastDoc = docId;
+            int key = docId >>> 16;
+            if (key != currentKey) {
+                finishChunk();
+                currentKey = key;
+            }
+            char low = (char) docId;
+            if (words != null) {
+                words[low >>> 6] |= 1L << low;
+            } else if (lowCount == ARRAY_LIMIT) {
+                words = new long[BITMAP_WORDS];
+                for (int i = 0; i < lowCount; i++) {
+                    words[lows[i] >>> 6] |= 1L << lows[i];
+                }
+                words[low >>> 6] |= 1L << low;
+            } else {
+                if (lowCount == lows.length) {
+                    lows = Arrays.copyOf(lows, lowCount * 2);
+                }
+                lows[lowCount] = low;
+            }
+            lowCount++;
+            return this;
+        }
+
+        private void finishChunk() {
+            if (lowCount == 0) {
+                return;
+            }
+            if (count == keys.length) {
+                keys = Arrays.copyOf(keys, count * 2);
+                containers = Arrays.copyOf(containers, count * 2);
+            }
+            keys[count] = (char) currentKey;
+            containers[count++] = words != null ? new BitmapContainer(words, lowCount)
+                    : new ArrayContainer(Arrays.copyOf(lows, lowCount));
+            cardinality += lowCount;
+            words = null;
+            lowCount = 0;
+        }
+
+        public DocIdSet build() {
+            finishChunk();
+            currentKey = -1;
+            lastDoc = Integer.MAX_VALUE;
+            return count == 0 ? EMPTY
+                    : new DocIdSet(Arrays.copyOf(keys, count), Arrays.copyOf(containers, count), cardinality);
+        }
+    }
+
+    /**
+     * The ids of one chunk, by their low 16 bits.
+     */
+    private sealed interface Container permits ArrayContainer, BitmapContainer {
+        int cardinality();
+
+        boolean contains(char low);
+
+        int copyTo(int[] out, int from, int high);
+
+        Container and(Container other);
+
+        Container or(Container other);
+
+        Container andNot(Container other);
+
+        long estimatedBytes();
+    }
+
+    private record ArrayContainer(char[] lows) implements Container {
+
+        @Override
+        public int cardinality() {
+            return lows.length;
+        }
+
+        @Override
+        public boolean contains(char low) {
+            return Arrays.binarySearch(lows, low) >= 0;
+        }
+
+        @Override
+        public int copyTo(int[] out, int from, int high) {
+            for (char low : lows) {
+                out[from++] = high | low;
+            }
+            return from;
+        }
+
+        @Override
+        public Container and(Container other) {
+            if (other instanceof ArrayContainer array && lows.length > array.lows.length * 16) {
+                return array.and(this);
+            }
+            char[] kept = new char[lows.length];
+            int n = 0;
+            if (other instanceof ArrayContainer array && array.lows.length > lows.length * 16) {
+                // Far smaller side leads, with a binary search into the larger one
+                for (char low : lows) {
+                    if (Arrays.binarySearch(array.lows, low) >= 0) {
+                        kept[n++] = low;
+                    }
+                }
+            } else if (other instanceof ArrayContainer array) {
+                int j = 0;
+                for (char low : lows) {
+                    while (j < array.lows.length && array.lows[j] < low) {
+                        j++;
+                    }
+                    if (j < array.lows.length && array.lows[j] == low) {
+                        kept[n++] = low;
+                    }
+                }
+            } else {
+                for (char low : lows) {
+                    if (other.contains(low)) {
+                        kept[n++] = low;
+                    }
+                }
+            }
+            return new ArrayContainer(Arrays.copyOf(kept, n));
+        }
+
+        @Override
+        public Container or(Container other) {
+            if (other instanceof BitmapContainer bitmap) {
+                return bitmap.or(this);
+            }
+            char[] b = ((ArrayContainer) other).lows;
+            char[] merged = new char[lows.length + b.length];
+            int i = 0;
+            int j = 0;
+            int n = 0;
+            while (i < lows.length || j < b.length) {
+                if (j == b.length || (i < lows.length && lows[i] < b[j])) {
+                    merged[n++] = lows[i++];
+                } else if (i == lows.length || b[j] < lows[i]) {
+                    merged[n++] = b[j++];
+                } else {
+                    merged[n++] = lows[i++];
+                    j++;
+                }
+            }
+            if (n > ARRAY_LIMIT) {
+                long[] words = new long[BITMAP_WORDS];
+                for (int k = 0; k < n; k++) {
+                    words[merged[k] >>> 6] |= 1L << merged[k];
+                }
+                return new BitmapContainer(words, n);
+            }
+            return new ArrayContainer(Arrays.copyOf(merged, n));
+        }
+
+        @Override
+        public Container andNot(Container other) {
+            char[] kept = new char[lows.length];
+            int n = 0;
+            for (char low : lows) {
+                if (!other.contains(low)) {
+                    kept[n++] = low;
+                }
+            }
+            return n == lows.length ? this : new ArrayContainer(Arrays.copyOf(kept, n));
+        }
+
+        @Override
+        public long estimatedBytes() {
+            return 16 + 16 + (long) lows.length * 2;
+        }
+    }
+
+    private record BitmapContainer(long[] words, int cardinality) implements Container {
+
+        @Override
+        public boolean contains(char low) {
+            return (words[low >>> 6] & (1L << low)) != 0;
+        }
+
+        @Override
+        public int copyTo(int[] out, int from, int high) {
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                long word = words[w];
+                while (word != 0) {
+                    out[from++] = high | (w << 6) | Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                }
+            }
+            return from;
+        }
+
+        @Override
+        public Container and(Container other) {
+            if (other instanceof ArrayContainer array) {
+                return array.and(this);
+            }
+            long[] b = ((BitmapContainer) other).words;
+            long[] result = new long[BITMAP_WORDS];
+            int count = 0;
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                result[w] = words[w] & b[w];
+                count += Long.bitCount(result[w]);
+            }
+            return compact(result, count);
+        }
+
+        @Override
+        public Container or(Container other) {
+            long[] result = words.clone();
+            int count = cardinality;
+            if (other instanceof ArrayContainer array) {
+                for (char low : array.lows) {
+                    long bit = 1L << low;
+                    if ((result[low >>> 6] & bit) == 0) {
+                        result[low >>> 6] |= bit;
+                        count++;
+                    }
+                }
+                return new BitmapContainer(result, count);
+            }
+            long[] b = ((BitmapContainer) other).words;
+            count = 0;
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                result[w] |= b[w];
+                count += Long.bitCount(result[w]);
+            }
+            return new BitmapContainer(result, count);
+        }
+
+        @Override
+        public Container andNot(Container other) {
+            long[] result = words.clone();
+            int count = cardinality;
+            if (other instanceof ArrayContainer array) {
+                for (char low : array.lows) {
+                    long bit = 1L << low;
+                    if ((result[low >>> 6] & bit) != 0) {
+                        result[low >>> 6] &= ~bit;
+                        count--;
+                    }
+                }
+            } else {
+                long[] b = ((BitmapContainer) other).words;
+                count = 0;
+                for (int w = 0; w < BITMAP_WORDS; w++) {
+                    result[w] &= ~b[w];
+                    count += Long.bitCount(result[w]);
+                }
+            }
+            return compact(result, count);
+        }
+
+        @Override
+        public long estimatedBytes() {
+            return 16 + 16 + BITMAP_WORDS * 8L + 4;
+        }
+
+        // Back to an array once sparse enough for it to be smaller
+        private static Container compact(long[] words, int count) {
+            if (count > ARRAY_LIMIT) {
+                return new BitmapContainer(words, count);
+            }
+            char[] lows = new char[count];
+            int n = 0;
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                long word = words[w];
+                while (word != 0) {
+                    lows[n++] = (char) ((w << 6) | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            return new ArrayContainer(lows);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.searchengine.Indexer.Postings;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * The most recently used {@link DocIdSet}s by key, such as the documents of
+ * a frequent term or of a site filter. Sets are built outside the lock, so
+ * two queries missing the same key at once may both build it; the second
+ * one replaces an equal set.
+ */
+public final class DocIdSetCache {
+
+    private final int capacity;
+    private final Map<String, DocIdSet> sets;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public DocIdSetCache(int capacity) {
+        this.capacity = capacity;
+        this.sets = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, DocIdSet> eldest) {
+                return size() > DocIdSetCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * The cached set, or null when it is not cached.
+     */
+    public synchronized DocIdSet getIfPresent(String key) {
+        return sets.get(key);
+    }
+
+    /**
+     * The cached set, building and caching it on a miss.
+     */
+    public DocIdSet get(String key, Supplier<DocIdSet> loader) {
+        DocIdSet set = getIfPresent(key);
+        if (set != null) {
+            hits.incrementAndGet();
+            return set;
+        }
+        misses.incrementAndGet();
+        set = loader.get();
+        synchronized (this) {
+            sets.put(key, set);
+        }
+        return set;
+    }
+
+    public synchronized int size() {
+        return sets.size();
+    }
+
+    public long hits() {
+        return hits.get();
+    }
+
+    public long misses() {
+        return misses.get();
+    }
+
+    /**
+     * Bytes held by the cached sets.
+     */
+    public synchronized long estimatedBytes() {
+        return sets.values().stream().mapToLong(DocIdSet::estimatedBytes).sum();
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.searchengine.Indexer.Postings;
+
+import java.util.Arrays;
+
+/**
+ * Accumulates one term's postings in doc id order and encodes them with
+ * {@link PostingsCodec}. Reusable: call {@link #reset()} between terms.
+ */
+public class PostingsBuilder {
+
+    private int[] docIds = new int[64];
+    private int[] freqs = new int[64];
+    private int[][] positions;
+    private int size;
+
+    private int[] currentPositions = new int[16];
+    private int currentPositionCount;
+
+    private final boolean withPositions;
+
+    public PostingsBuilder(boolean withPositions) {
+        this.withPositions = withPositions;
+        if (withPositions) {
+            positions = new int[64][];
+        }
+    }
+
+    /**
+     * Start a new posting. Doc ids must arrive in increasing order.
+     */
+    public void addDoc(int docId, int freq) {
+        finishPositions();
+        if (size == docIds.length) {
+            int newLength = size * 2;
+            docIds = Arrays.copyOf(docIds, newLength);
+            freqs = Arrays.copyOf(freqs, newLength);
+            if (withPositions) {
+                positions = Arrays.copyOf(positions, newLength);
+            }
+        }
+        docIds[size] = docId;
+        freqs[size] = freq;
+        size++;
+    }
+
+    /**
+     * Add a position to the most recently added doc. Positions must arrive in
+     * increasing order; duplicates are dropped.
+     */
+    public void addPosition(int position) {
+        if (!withPositions || size == 0) {
+            return;
+        }
+        if (currentPositionCount > 0 && currentPositions[currentPositionCount - 1] >= position) {
+            return;
+        }
+        if (currentPositionCount == currentPositions.length) {
+            currentPositions = Arrays.copyOf(currentPositions, currentPositionCount * 2);
+        }
+        currentPositions[currentPositionCount++] = position;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int lastDocId() {
+        return size == 0 ? -1 : docIds[size - 1];
+    }
+
+    public byte[] encode() {
+        finishPositions();
+        return PostingsCodec.encode(docIds, freqs, withPositions ? positions : null, size);
+    }
+
+    public PostingsList build() {
+        finishPositions();
+        return new PostingsList(Arrays.copyOf(docIds, size), Arrays.copyOf(freqs, size),
+                withPositions ? Arrays.copyOf(positions, size) : null);
+    }
+
+    public void reset() {
+        if (withPositions) {
+            Arrays.fill(positions, 0, size, null);
+        }
+        size = 0;
+        currentPositionCount = 0;
+    }
+
+    private void finishPositions() {
+        if (withPositions && size > 0 && positions[size - 1] == null) {
+            positions[size - 1] = Arrays.copyOf(currentPositions, currentPositionCount);
+            currentPositionCount = 0;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.example.searchengine.Indexer.Postings;
+
+import java.util.Arrays;
+
+/**
+ * Compact binary format for a single term's postings list.
+ *
+ * Layout (all integers are unsigned varints):
+ * <pre>
+ *   docCount | flags | blockCount
+ *   skip table: (lastDocDelta, blockByteLength) per block
+ *   blocks:     docDeltas[n] freqs[n] [positionCount, positionDeltas...][n]
+ * </pre>
+ * Doc ids are delta-encoded against the previous doc (across block boundaries),
+ * positions against the previous position of the same doc. The skip table lets a
+ * cursor jump straight to the block that may contain a target doc without
+ * decoding the blocks before it.
+ */
+public final class PostingsCodec {
+
+    public static final int BLOCK_SIZE = 128;
+
+    static final int FLAG_POSITIONS = 1;
+
+    private PostingsCodec() {
+    }
+
+    public static byte[] encode(int[] docIds, int[] freqs) {
+        return encode(docIds, freqs, null, docIds.length);
+    }
+
+    public static byte[] encode(int[] docIds, int[] freqs, int[][] positions) {
+        return encode(docIds, freqs, positions, docIds.length);
+    }
+
+    /**
+     * Encode the first {@code count} postings. Doc ids must be strictly increasing
+     * and non-negative; {@code positions} may be null.
+     */
+    public static byte[] encode(int[] docIds, int[] freqs, int[][] positions, int count) {
+        int blockCount = (count + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        boolean withPositions = positions != null;
+
+        // Encode each block first so the skip table can carry the byte lengths
+        ByteSink blocks = new ByteSink(count * (withPositions ? 6 : 3) + 16);
+        int[] blockLastDoc = new int[blockCount];
+        int[] blockLength = new int[blockCount];
+
+        int previousDoc = 0;
+        for (int block = 0; block < blockCount; block++) {
+            int start = block * BLOCK_SIZE;
+            int end = Math.min(start + BLOCK_SIZE, count);
+            int blockStart = blocks.size();
+
+            for (int i = start; i < end; i++) {
+                int doc = docIds[i];
+                if (doc < previousDoc || (i > 0 && doc == previousDoc)) {
+                    throw new IllegalArgumentException("Doc ids must be strictly increasing, got " + doc
+                            + " after " + previousDoc);
+                }
+                blocks.writeVInt(doc - previousDoc);
+                previousDoc = doc;
+            }
+            for (int i = start; i < end; i++) {
+                blocks.writeVInt(freqs[i]);
+            }
+            if (withPositions) {
+                for (int i = start; i < end; i++) {
+                    int[] docPositions = positions[i] != null ? positions[i] : new int[0];
+                    blocks.writeVInt(docPositions.length);
+                    int previousPosition = 0;
+                    for (int position : docPositions) {
+                        blocks.writeVInt(position - previousPosition);
+                        previousPosition = position;
+                    }
+                }
+            }
+
+            blockLastDoc[block] = docIds[end - 1];
+            blockLength[block] = blocks.size() - blockStart;
+        }
+
+        ByteSink out = new ByteSink(blocks.size() + blockCount * 4 + 8);
+        out.writeVInt(count);
+        out.writeVInt(withPositions ? FLAG_POSITIONS : 0);
+        out.writeVInt(blockCount);
+        int previousLast = 0;
+        for (int block = 0; block < blockCount; block++) {
+            out.writeVInt(blockLastDoc[block] - previousLast);
+            out.writeVInt(blockLength[block]);
+            previousLast = blockLastDoc[block];
+        }
+        out.writeBytes(blocks.buffer(), 0, blocks.size());
+        return out.toByteArray();
+    }
+
+    /**
+     * Decode a full postings list into primitive arrays.
+     */
+    public static PostingsList decode(byte[] data) {
+        PostingsCursor cursor = new PostingsCursor(data);
+        int size = cursor.size();
+        int[] docs = new int[size];
+        int[] freqs = new int[size];
+        int[][] positions = cursor.hasPositions() ? new int[size][] : null;
+
+        int i = 0;
+        while (cursor.nextDoc() != PostingsCursor.NO_MORE_DOCS) {
+            docs[i] = cursor.docId();
+            freqs[i] = cursor.freq();
+            if (positions != null) {
+                positions[i] = cursor.positions();
+            }
+            i++;
+        }
+        return new PostingsList(docs, freqs, positions);
+    }
+
+    /**
+     * Number of postings in an encoded list, read from the header only.
+     */
+    public static int docCount(byte[] data) {
+        return new ByteSource(data, 0).readVInt();
+    }
+
+    static final class ByteSink {
+        private byte[] buffer;
+        private int size;
+
+        ByteSink(int initialCapacity) {
+            buffer = new byte[Math.max(16, initialCapacity)];
+        }
+
+        void writeVInt(int value) {
+            ensureCapacity(5);
+            while ((value & ~0x7F) != 0) {
+                buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[size++] = (byte) value;
+        }
+
+        void writeBytes(byte[] bytes, int offset, int length) {
+            ensureCapacity(length);
+            System.arraycopy(bytes, offset, buffer, size, length);
+            size += length;
+        }
+
+        int size() {
+            return size;
+        }
+
+        byte[] buffer() {
+            return buffer;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, size);
+        }
+
+        private void ensureCapacity(int extra) {
+            if (size + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+            }
+        }
+    }
+
+    static final class ByteSource {
+        private final byte[] data;
+        private int offset;
+
+        ByteSource(byte[] data, int offset) {
+            this.data = data;
+            this.offset = offset;
+        }
+
+        int readVInt() {
+            int b = data[offset++];
+            int value = b & 0x7F;
+            for (int shift = 7; b < 0; shift += 7) {
+                b = data[offset++];
+                value |= (b & 0x7F) << shift;
+            }
+            return value;
+        }
+
+        int offset() {
+            return offset;
+        }
+
+        void seek(int newOffset) {
+            offset = newOffset;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.example.searchengine.Indexer.Postings;
+
+import com.example.searchengine.Indexer.Postings.PostingsCodec.ByteSource;
+
+/**
+ * Forward-only iterator over an encoded postings list. Blocks are decoded
+ * lazily, and {@link #advance(int)} uses the skip table to jump over blocks
+ * whose last doc id is below the target.
+ */
+public class PostingsCursor {
+
+    public static final int NO_MORE_DOCS = Integer.MAX_VALUE;
+
+    private static final int[] NO_POSITIONS = new int[0];
+
+    private final ByteSource in;
+    private final int size;
+    private final boolean hasPositions;
+    private final int blockCount;
+    private final int[] blockLastDoc;
+    private final int[] blockOffset;
+
+    private final int[] docBuffer = new int[PostingsCodec.BLOCK_SIZE];
+    private final int[] freqBuffer = new int[PostingsCodec.BLOCK_SIZE];
+    private final int[][] positionBuffer;
+
+    private int block = -1;
+    private int blockSize;
+    private int indexInBlock;
+    private int doc = -1;
+    private int blocksDecoded;
+
+    public PostingsCursor(byte[] data) {
+        this.in = new ByteSource(data, 0);
+        this.size = in.readVInt();
+        this.hasPositions = (in.readVInt() & PostingsCodec.FLAG_POSITIONS) != 0;
+        this.blockCount = in.readVInt();
+        this.blockLastDoc = new int[blockCount];
+        this.blockOffset = new int[blockCount];
+        this.positionBuffer = hasPositions ? new int[PostingsCodec.BLOCK_SIZE][] : null;
+
+        int[] blockLength = new int[blockCount];
+        int last = 0;
+        for (int i = 0; i < blockCount; i++) {
+            last += in.readVInt();
+            blockLastDoc[i] = last;
+            blockLength[i] = in.readVInt();
+        }
+        int offset = in.offset();
+        for (int i = 0; i < blockCount; i++) {
+            blockOffset[i] = offset;
+            offset += blockLength[i];
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean hasPositions() {
+        return hasPositions;
+    }
+
+    public int docId() {
+        return doc;
+    }
+
+    public int freq() {
+        return freqBuffer[indexInBlock];
+    }
+
+    public int[] positions() {
+        return hasPositions ? positionBuffer[indexInBlock] : NO_POSITIONS;
+    }
+
+    /**
+     * Number of blocks actually decoded so far; useful to measure how much
+     * work the skip table saved.
+     */
+    public int blocksDecoded() {
+        return blocksDecoded;
+    }
+
+    public int nextDoc() {
+        if (doc == NO_MORE_DOCS) {
+            return doc;
+        }
+        if (block >= 0 && indexInBlock + 1 < blockSize) {
+            indexInBlock++;
+            doc = docBuffer[indexInBlock];
+            return doc;
+        }
+        if (block + 1 >= blockCount) {
+            doc = NO_MORE_DOCS;
+            return doc;
+        }
+        loadBlock(block + 1);
+        doc = docBuffer[0];
+        return doc;
+    }
+
+    /**
+     * Move to the first doc id greater than or equal to {@code target}.
+     */
+    public int advance(int target) {
+        if (doc != -1 && doc >= target) {
+            return doc;
+        }
+        if (doc == NO_MORE_DOCS) {
+            return doc;
+        }
+
+        // Skip whole blocks using the skip table
+        if (block < 0 || blockLastDoc[block] < target) {
+            int targetBlock = findBlock(target, block + 1);
+            if (targetBlock >= blockCount) {
+                doc = NO_MORE_DOCS;
+                return doc;
+            }
+            loadBlock(targetBlock);
+            indexInBlock = 0;
+        }
+
+        while (indexInBlock < blockSize && docBuffer[indexInBlock] < target) {
+            indexInBlock++;
+        }
+        doc = docBuffer[indexInBlock];
+        return doc;
+    }
+
+    private int findBlock(int target, int from) {
+        int low = from;
+        int high = blockCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (blockLastDoc[mid] < target) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    private void loadBlock(int newBlock) {
+        block = newBlock;
+        blockSize = Math.min(PostingsCodec.BLOCK_SIZE, size - newBlock * PostingsCodec.BLOCK_SIZE);
+        indexInBlock = 0;
+        blocksDecoded++;
+
+        in.seek(blockOffset[newBlock]);
+        int previous = newBlock == 0 ? 0 : blockLastDoc[newBlock - 1];
+        for (int i = 0; i < blockSize; i++) {
+            previous += in.readVInt();
+            docBuffer[i] = previous;
+        }
+        for (int i = 0; i < blockSize; i++) {
+            freqBuffer[i] = in.readVInt();
+        }
+        if (hasPositions) {
+            for (int i = 0; i < blockSize; i++) {
+                int count = in.readVInt();
+                int[] docPositions = count == 0 ? NO_POSITIONS : new int[count];
+                int position = 0;
+                for (int p = 0; p < count; p++) {
+                    position += in.readVInt();
+                    docPositions[p] = position;
+                }
+                positionBuffer[i] = docPositions;
+            }
+        }
+    }
+}
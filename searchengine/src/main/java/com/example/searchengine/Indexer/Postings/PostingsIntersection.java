@@ -0,0 +1,102 @@
+package com.example.searchengine.Indexer.Postings;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Conjunctive matching over sorted, distinct doc id arrays. The rarest list
+ * leads: each of its documents is looked for in the other lists with a
+ * galloping search from where the last one was found, and a miss moves the
+ * leader straight to the document the other list has next. Matching n
+ * documents against lists of length m costs O(n log(m / n)) per list rather
+ * than a pass over every posting, so a rare term bounds the work however
+ * frequent the others are.
+ */
+public final class PostingsIntersection {
+
+    private static final int[] NO_DOCS = new int[0];
+
+    private PostingsIntersection() {
+    }
+
+    /**
+     * Documents present in every list, in increasing order.
+     */
+    public static int[] intersect(int[]... lists) {
+        if (lists.length == 0) {
+            return NO_DOCS;
+        }
+        int[][] byLength = lists.clone();
+        Arrays.sort(byLength, Comparator.comparingInt(docs -> docs.length));
+        int[] leader = byLength[0];
+        if (leader.length == 0) {
+            return NO_DOCS;
+        }
+        if (byLength.length == 1) {
+            return leader.clone();
+        }
+
+        int[] matches = new int[leader.length];
+        int count = 0;
+        int[] cursors = new int[byLength.length];
+        int next = 0;
+        candidates:
+        while (next < leader.length) {
+            int candidate = leader[next];
+            for (int i = 1; i < byLength.length; i++) {
+                int[] docs = byLength[i];
+                int cursor = gallop(docs, cursors[i], candidate);
+                cursors[i] = cursor;
+                if (cursor == docs.length) {
+                    break candidates;
+                }
+                if (docs[cursor] != candidate) {
+                    next = gallop(leader, next + 1, docs[cursor]);
+                    continue candidates;
+                }
+            }
+            matches[count++] = candidate;
+            next++;
+        }
+        return Arrays.copyOf(matches, count);
+    }
+
+    /**
+     * Index of the first doc id at or after from that is at least target,
+     * or docs.length. Probes from + 1, from + 2, from + 4, ... and then
+     * binary searches the last step, so a target k slots ahead costs
+     * O(log k).
+     */
+    public static int gallop(int[] docs, int from, int target) {
+        return gallop(docs, from, docs.length, target);
+    }
+
+    /**
+     * As {@link #gallop(int[], int, int)} within the slice from .. to of a
+     * shared array, returning to when every doc id in it is below target.
+     */
+    public static int gallop(int[] docs, int from, int to, int target) {
+        if (from >= to || docs[from] >= target) {
+            return from;
+        }
+        // docs[low] < target throughout; docs[high] >= target once found
+        int low = from;
+        int step = 1;
+        int high = from + step;
+        while (high < to && docs[high] < target) {
+            low = high;
+            step <<= 1;
+            high = from + step;
+        }
+        high = Math.min(high, to);
+        while (low + 1 < high) {
+            int mid = (low + high) >>> 1;
+            if (docs[mid] < target) {
+                low = mid;
+            } else {
+                high = mid;
+            }
+        }
+        return high;
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.searchengine.Indexer.Postings;
+
+/**
+ * A fully decoded postings list: parallel arrays of doc ids, frequencies and
+ * (optionally) positions, sorted by doc id.
+ */
+public class PostingsList {
+
+    private final int[] docIds;
+    private final int[] freqs;
+    private final int[][] positions;
+
+    public PostingsList(int[] docIds, int[] freqs, int[][] positions) {
+        this.docIds = docIds;
+        this.freqs = freqs;
+        this.positions = positions;
+    }
+
+    public int size() {
+        return docIds.length;
+    }
+
+    public int[] getDocIds() {
+        return docIds;
+    }
+
+    public int[] getFreqs() {
+        return freqs;
+    }
+
+    public int[][] getPositions() {
+        return positions;
+    }
+
+    public boolean hasPositions() {
+        return positions != null;
+    }
+
+    public byte[] encode() {
+        return PostingsCodec.encode(docIds, freqs, positions);
+    }
+}
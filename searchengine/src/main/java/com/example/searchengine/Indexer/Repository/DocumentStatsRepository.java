@@ -0,0 +1,14 @@
+package com.example.searchengine.Indexer.Repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import com.example.searchengine.Indexer.Entities.DocumentStats;
+
+@Repository
+public interface DocumentStatsRepository extends JpaRepository<DocumentStats, Long> {
+
+    @Query("SELECT AVG(ds.length) FROM DocumentStats ds")
+    Double averageLength();
+}
@@ -0,0 +1,10 @@
+package com.example.searchengine.Indexer.Repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import com.example.searchengine.Indexer.Entities.DocumentText;
+
+@Repository
+public interface DocumentTextRepository extends JpaRepository<DocumentText, Long> {
+}
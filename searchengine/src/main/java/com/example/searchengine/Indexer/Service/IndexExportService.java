@@ -0,0 +1,166 @@
+package com.example.searchengine.Indexer.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Exports the inverted index term by term, in word order: one page at a
+ * time from a keyset cursor, or all of it as newline-delimited JSON from a
+ * single streaming scan. Neither keeps more than one page or one term in
+ * memory.
+ */
+@Service
+public class IndexExportService {
+
+    public static final int MAX_PAGE_SIZE = 1000;
+
+    // Postings of a word range with their documents and per-tag frequencies, in export order
+    private static final String EXPORT_QUERY =
+        "SELECT w.word, w.total_frequency, ii.doc_id, d.url, d.title, ii.frequency, t.tag, t.frequency " +
+        "FROM words w JOIN inverted_index ii ON ii.word_id = w.id JOIN documents d ON d.id = ii.doc_id " +
+        "LEFT JOIN word_document_tags t ON t.word_id = ii.word_id AND t.doc_id = ii.doc_id ";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate streamingJdbcTemplate;
+    private final TransactionTemplate readOnlyTransactionTemplate;
+    private final ObjectMapper objectMapper;
+
+    @Autowired
+    public IndexExportService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+            ObjectMapper objectMapper) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+
+        // Postgres only streams a result set with a fetch size inside a transaction
+        this.streamingJdbcTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.streamingJdbcTemplate.setFetchSize(10000);
+    }
+
+    /**
+     * Up to {@code limit} indexed terms that sort after {@code after}, with
+     * {@code next} set to the cursor for the following page, or null on the
+     * last page.
+     */
+    public Map<String, Object> page(String after, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        List<String> words = jdbcTemplate.queryForList(
+            "SELECT w.word FROM words w WHERE w.word > ? " +
+            "AND EXISTS (SELECT 1 FROM inverted_index ii WHERE ii.word_id = w.id) ORDER BY w.word LIMIT ?",
+            String.class, after == null ? "" : after, pageSize + 1);
+        boolean hasMore = words.size() > pageSize;
+        if (hasMore) {
+            words = words.subList(0, pageSize);
+        }
+
+        Map<String, Object> terms = new LinkedHashMap<>();
+        if (!words.isEmpty()) {
+            TermWriter writer = new TermWriter(terms::put);
+            jdbcTemplate.query(EXPORT_QUERY + "WHERE w.word >= ? AND w.word <= ? ORDER BY w.word, ii.doc_id",
+                writer::row, words.get(0), words.get(words.size() - 1));
+            writer.finish();
+        }
+
+        Map<String, Object> page = new LinkedHashMap<>();
+        page.put("terms", terms);
+        page.put("next", hasMore ? words.get(words.size() - 1) : null);
+        return page;
+    }
+
+    /**
+     * Write every term as one JSON object per line:
+     * {@code {"word": ..., "totalFrequency": ..., "documents": [...]}}.
+     */
+    public void export(OutputStream out) {
+        readOnlyTransactionTemplate.executeWithoutResult(status -> {
+            TermWriter writer = new TermWriter((word, details) -> {
+                Map<String, Object> line = new LinkedHashMap<>();
+                line.put("word", word);
+                line.putAll(details);
+                try {
+                    out.write(objectMapper.writeValueAsBytes(line));
+                    out.write('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            streamingJdbcTemplate.query(EXPORT_QUERY + "ORDER BY w.word, ii.doc_id", writer::row);
+            writer.finish();
+        });
+    }
+
+    private interface TermSink {
+        void accept(String word, Map<String, Object> details);
+    }
+
+    /**
+     * Groups the ordered export rows into one term at a time, in the shape
+     * the old full-index endpoint returned.
+     */
+    private static class TermWriter {
+        private final TermSink sink;
+        private String word;
+        private Map<String, Object> details;
+        private List<Map<String, Object>> documents;
+        private List<Map<String, Object>> tags;
+        private long docId = -1;
+
+        TermWriter(TermSink sink) {
+            this.sink = sink;
+        }
+
+        void row(ResultSet rs) throws SQLException {
+            String rowWord = rs.getString(1);
+            if (!rowWord.equals(word)) {
+                finish();
+                word = rowWord;
+                details = new LinkedHashMap<>();
+                details.put("totalFrequency", rs.getLong(2));
+                documents = new ArrayList<>();
+                details.put("documents", documents);
+                docId = -1;
+            }
+            long rowDocId = rs.getLong(3);
+            if (rowDocId != docId) {
+                docId = rowDocId;
+                tags = new ArrayList<>();
+                Map<String, Object> document = new LinkedHashMap<>();
+                document.put("url", rs.getString(4));
+                document.put("title", rs.getString(5));
+                document.put("frequency", rs.getInt(6));
+                document.put("tags", tags);
+                documents.add(document);
+            }
+            String tag = rs.getString(7);
+            if (tag != null) {
+                Map<String, Object> tagDetail = new LinkedHashMap<>();
+                tagDetail.put("tag", tag);
+                tagDetail.put("frequency", rs.getInt(8));
+                tags.add(tagDetail);
+            }
+        }
+
+        void finish() {
+            if (word != null) {
+                sink.accept(word, details);
+                word = null;
+            }
+        }
+    }
+}
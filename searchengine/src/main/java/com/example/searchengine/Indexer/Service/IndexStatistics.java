@@ -0,0 +1,147 @@
+package com.example.searchengine.Indexer.Service;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import com.example.searchengine.Indexer.Memory.InMemoryIndex;
+
+/**
+ * Running totals of the index, kept up to date by the indexer as batches
+ * commit, so status endpoints answer without scanning or loading anything.
+ * Counts are taken from the tables once at startup and made exact again
+ * from the in-memory index after every indexing run; in between, the term
+ * count only grows with newly created words.
+ */
+@Service
+public class IndexStatistics {
+
+    private static final Logger logger = LoggerFactory.getLogger(IndexStatistics.class);
+
+    private static final List<String> INDEX_TABLES = List.of("words", "inverted_index", "word_document_tags",
+        "word_position", "word_document_metrics", "word_idf", "document_stats", "anchor_terms",
+        "document_text");
+
+    /**
+     * What one committed batch changed: documents, summed document length
+     * and postings, each as new minus replaced.
+     */
+    public record BatchChange(long documents, long length, long postings) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final AtomicLong terms = new AtomicLong();
+    private final AtomicLong postings = new AtomicLong();
+    private final AtomicLong documents = new AtomicLong();
+    private final AtomicLong totalLength = new AtomicLong();
+    private volatile boolean counted;
+    private volatile Map<String, Long> tableBytes = Map.of();
+    private volatile long lastReindexAt;
+    private volatile long lastReindexMs;
+    private volatile int lastReindexDocuments;
+
+    @Autowired
+    public IndexStatistics(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Count everything from the tables. Run once at startup; afterwards the
+     * totals are maintained incrementally.
+     */
+    public void recount() {
+        long start = System.currentTimeMillis();
+        jdbcTemplate.query("SELECT COUNT(*), COALESCE(SUM(length), 0) FROM document_stats", rs -> {
+            documents.set(rs.getLong(1));
+            totalLength.set(rs.getLong(2));
+        });
+        postings.set(count("SELECT COUNT(*) FROM inverted_index"));
+        terms.set(count("SELECT COUNT(*) FROM words WHERE total_frequency > 0"));
+        counted = true;
+        refreshTableBytes();
+        logger.info("Counted index statistics in {} ms: {} documents, {} terms, {} postings",
+            System.currentTimeMillis() - start, documents.get(), terms.get(), postings.get());
+    }
+
+    public void recordBatch(BatchChange change) {
+        documents.addAndGet(change.documents());
+        totalLength.addAndGet(change.length());
+        postings.addAndGet(change.postings());
+    }
+
+    public void recordNewTerm() {
+        terms.incrementAndGet();
+    }
+
+    /**
+     * Close an indexing run: the new generation's index gives the exact term
+     * and postings counts.
+     */
+    public void recordReindex(int documentsIndexed, long elapsedMs, InMemoryIndex index) {
+        lastReindexAt = System.currentTimeMillis();
+        lastReindexMs = elapsedMs;
+        lastReindexDocuments = documentsIndexed;
+        if (index != null) {
+            terms.set(index.termCount());
+            postings.set(index.postingsCount());
+        }
+        refreshTableBytes();
+    }
+
+    // Relation sizes are Postgres specific; other databases just leave them out
+    private void refreshTableBytes() {
+        Map<String, Long> sizes = new LinkedHashMap<>();
+        try {
+            for (String table : INDEX_TABLES) {
+                sizes.put(table, count("SELECT pg_total_relation_size('" + table + "')"));
+            }
+            tableBytes = sizes;
+        } catch (Exception e) {
+            logger.debug("Relation sizes are not available: {}", e.getMessage());
+        }
+    }
+
+    private long count(String sql) {
+        Long value = jdbcTemplate.queryForObject(sql, Long.class);
+        return value == null ? 0 : value;
+    }
+
+    public long getTermCount() {
+        return terms.get();
+    }
+
+    public long getPostingsCount() {
+        return postings.get();
+    }
+
+    public long getDocumentCount() {
+        return documents.get();
+    }
+
+    public double getAverageDocumentLength() {
+        long docs = documents.get();
+        return docs == 0 ? 0.0 : (double) totalLength.get() / docs;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("counted", counted);
+        stats.put("terms", terms.get());
+        stats.put("postings", postings.get());
+        stats.put("documents", documents.get());
+        stats.put("averageDocumentLength", getAverageDocumentLength());
+        stats.put("tableBytes", tableBytes);
+        stats.put("lastReindexAt", lastReindexAt == 0 ? null : lastReindexAt);
+        stats.put("lastReindexMs", lastReindexMs);
+        stats.put("lastReindexDocuments", lastReindexDocuments);
+        return stats;
+    }
+}
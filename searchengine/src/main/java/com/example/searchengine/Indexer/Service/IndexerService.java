@@ -1,42 +1,52 @@
 package com.example.searchengine.Indexer.Service;
 
+import java.sql.Timestamp;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicLong;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Element;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DataIntegrityViolationException;
-import org.springframework.data.domain.PageRequest;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import com.example.searchengine.Crawler.Entities.Document;
 import com.example.searchengine.Crawler.Repository.DocumentRepository;
-import com.example.searchengine.Indexer.Entities.InvertedIndex;
 import com.example.searchengine.Indexer.Entities.Word;
-import com.example.searchengine.Indexer.Entities.WordDocumentMetrics;
-import com.example.searchengine.Indexer.Entities.WordDocumentTag;
-import com.example.searchengine.Indexer.Entities.WordIdf;
+import com.example.searchengine.Indexer.Pipeline.IndexingPipeline;
+import com.example.searchengine.Indexer.Pipeline.IndexingPipeline.SourceDocument;
+import com.example.searchengine.Indexer.Generation.IndexGeneration;
+import com.example.searchengine.Indexer.Generation.IndexGenerations;
+import com.example.searchengine.Indexer.Memory.BigramIndex;
+import com.example.searchengine.Indexer.Memory.DocumentStore;
+import com.example.searchengine.Indexer.Memory.FieldIndex;
+import com.example.searchengine.Indexer.Memory.ForwardIndex;
+import com.example.searchengine.Indexer.Memory.IndexField;
+import com.example.searchengine.Indexer.Memory.InMemoryIndex;
+import com.example.searchengine.Indexer.Repository.DocumentStatsRepository;
 import com.example.searchengine.Indexer.Repository.InvertedIndexRepository;
 import com.example.searchengine.Indexer.Repository.WordDocumentMetricsRepository;
 import com.example.searchengine.Indexer.Repository.WordDocumentTagRepository;
 import com.example.searchengine.Indexer.Repository.WordIdfRepository;
 import com.example.searchengine.Indexer.Repository.WordPositionRepository;
 import com.example.searchengine.Indexer.Repository.WordRepository;
+import com.example.searchengine.Indexer.Shard.ShardedIndex;
+import com.example.searchengine.Indexer.Snapshot.IndexSnapshotService;
+import com.example.searchengine.Indexer.Text.StoredText;
 
 @Service
 public class IndexerService {
@@ -50,6 +60,17 @@ public class IndexerService {
     private final WordPositionRepository wordPositionRepository;
     private final JdbcTemplate jdbcTemplate;
     private final PreIndexer preIndexer;
+    private final DocumentStatsRepository documentStatsRepository;
+    private final IndexSnapshotService indexSnapshotService;
+    private final IndexGenerations indexGenerations;
+    private final IndexStatistics indexStatistics;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readOnlyTransactionTemplate;
+    private final TransactionTemplate snapshotTransactionTemplate;
+    private final JdbcTemplate streamingJdbcTemplate;
+
+    // Held while the generation for the index already on disk loads, so concurrent first queries load it once
+    private final Object startupGenerationLock = new Object();
     
     // Add word cache to reduce database lookups
     private final Map<String, Word> wordCache = new java.util.concurrent.ConcurrentHashMap<>();
@@ -58,20 +79,114 @@ public class IndexerService {
     private static final String WORD_POSITION_INSERT = 
         "INSERT INTO word_position (word_id, doc_id, position, tag) VALUES (?, ?, ?, ?) ON CONFLICT DO NOTHING";
     
+    // A document's old rows are removed before it is reindexed, so these are plain inserts
+    private static final String ANCHOR_TERMS_INSERT =
+        "INSERT INTO anchor_terms (source_doc_id, target_url, word_id, frequency) VALUES (?, ?, ?, ?)";
+    
     private static final String WORD_DOCUMENT_TAGS_INSERT =
-        "INSERT INTO word_document_tags (word_id, doc_id, tag, frequency) VALUES (?, ?, ?, ?) " +
-        "ON CONFLICT (word_id, doc_id, tag) DO UPDATE SET frequency = word_document_tags.frequency + EXCLUDED.frequency";
+        "INSERT INTO word_document_tags (word_id, doc_id, tag, frequency) VALUES (?, ?, ?, ?)";
     
     private static final String INVERTED_INDEX_INSERT =
-        "INSERT INTO inverted_index (word_id, doc_id, frequency, tf, importance) VALUES (?, ?, ?, ?, ?) " +
-        "ON CONFLICT (word_id, doc_id) DO UPDATE SET frequency = inverted_index.frequency + EXCLUDED.frequency, " +
-        "tf = EXCLUDED.tf, importance = GREATEST(inverted_index.importance, EXCLUDED.importance)";
+        "INSERT INTO inverted_index (word_id, doc_id, frequency, tf, importance) VALUES (?, ?, ?, ?, ?)";
+
+    private static final String DOCUMENT_STATS_INSERT =
+        "INSERT INTO document_stats (doc_id, length, unique_terms, title_length, heading_length, body_length) " +
+        "VALUES (?, ?, ?, ?, ?, ?)";
+
+    private static final String DOCUMENT_TEXT_INSERT =
+        "INSERT INTO document_text (doc_id, text_length, text, checksum) VALUES (?, ?, ?, ?)";
+
+    private static final String IN_MEMORY_INDEX_QUERY =
+        "SELECT ii.word_id, w.word, ii.doc_id, ii.frequency FROM inverted_index ii " +
+        "JOIN words w ON w.id = ii.word_id ORDER BY ii.word_id, ii.doc_id";
+
+    // The stored text's checksum comes from the same statement, so it always belongs to the positions read
+    private static final String FORWARD_INDEX_QUERY =
+        "SELECT wp.doc_id, wp.position, wp.word_id, t.checksum FROM word_position wp " +
+        "LEFT JOIN document_text t ON t.doc_id = wp.doc_id ORDER BY wp.doc_id, wp.position";
+
+    private static final String FIELD_NORMS_QUERY =
+        "SELECT doc_id, length, title_length, heading_length, body_length FROM document_stats ORDER BY doc_id";
+
+    private static final String FIELD_TAGS_QUERY =
+        "SELECT t.word_id, w.word, t.doc_id, t.tag, t.frequency FROM word_document_tags t " +
+        "JOIN words w ON w.id = t.word_id ORDER BY t.word_id, t.doc_id";
+
+    // Link text pointing at each indexed document from other pages
+    private static final String FIELD_ANCHORS_QUERY =
+        "SELECT a.word_id, w.word, d.id, SUM(a.frequency) FROM anchor_terms a " +
+        "JOIN documents d ON d.url = a.target_url JOIN words w ON w.id = a.word_id " +
+        "WHERE a.source_doc_id <> d.id GROUP BY a.word_id, w.word, d.id ORDER BY a.word_id, d.id";
+
+    // What results show and filters select of each indexed document; the html only where no text was stored
+    private static final String DOCUMENT_STORE_QUERY =
+        "SELECT d.id, d.url, d.title, d.created_at, t.text, t.checksum, " +
+        "CASE WHEN t.doc_id IS NULL THEN d.content END FROM document_stats s " +
+        "JOIN documents d ON d.id = s.doc_id LEFT JOIN document_text t ON t.doc_id = d.id " +
+        "ORDER BY d.id";
+
+    // Keyset pages of the documents to reindex, whatever their content; empty ones are removed from the index
+    private static final String CHANGED_DOCUMENTS_PAGE_QUERY =
+        "SELECT id, url, content FROM documents WHERE id > ? AND (last_indexed IS NULL OR updated_at > last_indexed) " +
+        "ORDER BY id LIMIT ?";
+
+    private static final String ALL_DOCUMENTS_PAGE_QUERY =
+        "SELECT id, url, content FROM documents WHERE id > ? ORDER BY id LIMIT ?";
+
+    private static final String CHANGED_DOCUMENTS_COUNT_QUERY =
+        "SELECT COUNT(*) FROM documents WHERE last_indexed IS NULL OR updated_at > last_indexed";
+
+    // Documents read per keyset page, each page in its own short transaction
+    private static final int READ_PAGE_SIZE = 500;
+
+    // Map to assign importance values to different HTML tags
+    private static final Map<String, Integer> TAG_IMPORTANCE = Map.of(
+        "title", 10, // Title has highest importance
+        "h1", 8,
+        "h2", 6,
+        "h3", 4,
+        "p", 2);
+
+    private static final List<String> TAGS_TO_INDEX = List.of("p", "h1", "h2", "h3", "title");
+    private static final String TAGS_SELECTOR = String.join(", ", TAGS_TO_INDEX);
+
+    // Positions skipped between elements, so a phrase never matches across two of them
+    private static final int ELEMENT_POSITION_GAP = 10;
+
+    // Terms kept from the text of one link, and the longest url stored for a link target
+    private static final int MAX_ANCHOR_TERMS = 10;
+    private static final int MAX_ANCHOR_URL_LENGTH = 2048;
+
+    private static final int WORD_CACHE_LIMIT = 500_000;
+
+    @Value("${app.indexer.pipeline.analyzer-threads:0}")
+    private int pipelineAnalyzerThreads;
+
+    @Value("${app.indexer.pipeline.writer-threads:0}")
+    private int pipelineWriterThreads;
+
+    @Value("${app.indexer.pipeline.queue-capacity:0}")
+    private int pipelineQueueCapacity;
+
+    @Value("${app.indexer.pipeline.write-batch-size:50}")
+    private int pipelineWriteBatchSize;
+
+    @Value("${spring.datasource.hikari.maximum-pool-size:10}")
+    private int connectionPoolSize;
+
+    @Value("${app.index.shards:0}")
+    private int indexShards;
+
+    private volatile IndexingPipeline<AnalyzedPage> lastPipeline;
 
     @Autowired
     public IndexerService(WordRepository wordRepository, DocumentRepository documentRepository,
             WordDocumentTagRepository wordDocumentTagRepository, InvertedIndexRepository invertedIndexRepository,
             WordIdfRepository wordIdfRepository, WordDocumentMetricsRepository wordDocumentMetricsRepository,
-            WordPositionRepository wordPositionRepository, PreIndexer preIndexer, JdbcTemplate jdbcTemplate) {
+            WordPositionRepository wordPositionRepository, PreIndexer preIndexer, JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager, DocumentStatsRepository documentStatsRepository,
+            IndexSnapshotService indexSnapshotService,
+            IndexGenerations indexGenerations, IndexStatistics indexStatistics) {
         this.wordRepository = wordRepository;
         this.documentRepository = documentRepository;
         this.wordDocumentTagRepository = wordDocumentTagRepository;
@@ -81,6 +196,20 @@ public class IndexerService {
         this.wordPositionRepository = wordPositionRepository;
         this.jdbcTemplate = jdbcTemplate;
         this.preIndexer = preIndexer;
+        this.documentStatsRepository = documentStatsRepository;
+        this.indexSnapshotService = indexSnapshotService;
+        this.indexGenerations = indexGenerations;
+        this.indexStatistics = indexStatistics;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+        this.snapshotTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.snapshotTransactionTemplate.setReadOnly(true);
+        this.snapshotTransactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+
+        // Postgres only streams a result set with a fetch size inside a transaction
+        this.streamingJdbcTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.streamingJdbcTemplate.setFetchSize(10000);
     }
 
     private static class WordInfo {
@@ -105,14 +234,11 @@ public class IndexerService {
     private void preloadWordCache(Set<String> wordTexts) {
         if (wordTexts.isEmpty()) return;
         
-        // Clear current cache to avoid memory issues
-        wordCache.clear();
-        
         // Split into manageable chunks to avoid huge IN clauses
+        List<String> texts = new ArrayList<>(wordTexts);
         int chunkSize = 500;
-        for (int i = 0; i < wordTexts.size(); i += chunkSize) {
-            List<String> chunk = new ArrayList<>(
-                wordTexts).subList(i, Math.min(i + chunkSize, wordTexts.size()));
+        for (int i = 0; i < texts.size(); i += chunkSize) {
+            List<String> chunk = texts.subList(i, Math.min(i + chunkSize, texts.size()));
             
             // Use JDBC for better performance than JPA repository
             String placeholders = String.join(",", 
@@ -139,57 +265,90 @@ public class IndexerService {
                 Word newWord = new Word();
                 newWord.setWord(text);
                 newWord.setTotalFrequency(0L);
-                word = wordRepository.save(newWord);
+                try {
+                    word = wordRepository.save(newWord);
+                    indexStatistics.recordNewTerm();
+                } catch (DataIntegrityViolationException e) {
+                    // Another indexing thread created the same word first
+                    word = wordRepository.findByWord(text).orElseThrow(() -> e);
+                }
             }
             return word;
         });
     }
     
-    // Batch insert word positions
-    private void batchInsertWordPositions(Long wordId, Long docId, Map<String, List<Integer>> tagPositions) {
-        // Prepare batch arguments
-        List<Object[]> batchArgs = new ArrayList<>();
-        
+    // Collect word position rows for a batch insert
+    private void addWordPositionRows(Long wordId, Long docId, Map<String, List<Integer>> tagPositions,
+            List<Object[]> rows) {
         for (Map.Entry<String, List<Integer>> entry : tagPositions.entrySet()) {
             String tag = entry.getKey();
-            List<Integer> positions = entry.getValue();
-            
-            for (Integer position : positions) {
-                batchArgs.add(new Object[]{wordId, docId, position, tag});
+            for (Integer position : entry.getValue()) {
+                rows.add(new Object[]{wordId, docId, position, tag});
             }
         }
-        
-        // Execute in batches
-        int batchSize = 500;
-        for (int i = 0; i < batchArgs.size(); i += batchSize) {
-            int endIndex = Math.min(i + batchSize, batchArgs.size());
-            List<Object[]> batch = batchArgs.subList(i, endIndex);
-            
-            jdbcTemplate.batchUpdate(WORD_POSITION_INSERT, batch);
-        }
     }
     
-    // Batch insert word document tags
-    private void batchInsertWordDocumentTags(Long wordId, Long docId, Map<String, Integer> tagFrequencies) {
-        List<Object[]> batchArgs = new ArrayList<>();
-        
+    // Collect word document tag rows for a batch insert
+    private void addWordDocumentTagRows(Long wordId, Long docId, Map<String, Integer> tagFrequencies,
+            List<Object[]> rows) {
         for (Map.Entry<String, Integer> entry : tagFrequencies.entrySet()) {
-            String tag = entry.getKey();
-            int frequency = entry.getValue();
-            batchArgs.add(new Object[]{wordId, docId, tag, frequency});
+            rows.add(new Object[]{wordId, docId, entry.getKey(), entry.getValue()});
         }
-        
-        jdbcTemplate.batchUpdate(WORD_DOCUMENT_TAGS_INSERT, batchArgs);
     }
 
-    private Map<String, WordInfo> extractWordsFromTag(Element element, String tag) {
+    // Execute a batch statement in chunks of 500 rows
+    private void batchUpdateInChunks(String sql, List<Object[]> rows) {
+        int batchSize = 500;
+        for (int i = 0; i < rows.size(); i += batchSize) {
+            int endIndex = Math.min(i + batchSize, rows.size());
+            jdbcTemplate.batchUpdate(sql, rows.subList(i, endIndex));
+        }
+    }
+
+    /**
+     * Remove everything the index holds for a set of documents: postings,
+     * tags, positions, outgoing anchor text, metrics, stats and stored text. Must run inside the transaction that
+     * writes the documents' new postings.
+     *
+     * @return number of postings removed
+     */
+    private int removeDocumentsFromIndex(List<Long> docIds) {
+        String in = placeholders(docIds.size());
+        Object[] ids = docIds.toArray();
+        jdbcTemplate.update("DELETE FROM word_position WHERE doc_id IN (" + in + ")", ids);
+        jdbcTemplate.update("DELETE FROM word_document_tags WHERE doc_id IN (" + in + ")", ids);
+        jdbcTemplate.update("DELETE FROM anchor_terms WHERE source_doc_id IN (" + in + ")", ids);
+        jdbcTemplate.update("DELETE FROM word_document_metrics WHERE doc_id IN (" + in + ")", ids);
+        int postings = jdbcTemplate.update("DELETE FROM inverted_index WHERE doc_id IN (" + in + ")", ids);
+        jdbcTemplate.update("DELETE FROM document_stats WHERE doc_id IN (" + in + ")", ids);
+        jdbcTemplate.update("DELETE FROM document_text WHERE doc_id IN (" + in + ")", ids);
+        return postings;
+    }
+
+    /**
+     * Current frequency of each word in the given documents, so a reindex can
+     * take back the documents' old share of words.total_frequency
+     */
+    private Map<Long, Long> loadIndexedFrequencies(List<Long> docIds) {
+        Map<Long, Long> frequencies = new HashMap<>();
+        jdbcTemplate.query(
+            "SELECT word_id, SUM(frequency) FROM inverted_index WHERE doc_id IN (" + placeholders(docIds.size()) +
+            ") GROUP BY word_id",
+            rs -> {
+                frequencies.put(rs.getLong(1), rs.getLong(2));
+            }, docIds.toArray());
+        return frequencies;
+    }
+
+    private static String placeholders(int count) {
+        return String.join(",", Collections.nCopies(count, "?"));
+    }
+
+    // Words of one element; positions continue from startPosition so they are unique in the document
+    private Map<String, WordInfo> extractWordsFromTag(List<String> words, String tag, int startPosition) {
         Map<String, WordInfo> wordInfo = new HashMap<>();
-        String text = element.text();
-        List<String> words = preIndexer.tokenize(text);
-        words = preIndexer.removeStopWords(words);
-        words = preIndexer.Stemming(words);
         
-        int position = 0;
+        int position = startPosition;
         for (String wordTxt : words) {
             WordInfo info = wordInfo.computeIfAbsent(wordTxt, w -> new WordInfo());
             info.addFrequency(tag, 1);
@@ -199,169 +358,331 @@ public class IndexerService {
         return wordInfo;
     }
 
-    @Transactional
-    private void createInvertedIndex(String url, String HTML) {
-        String cleanedHTML = preIndexer.cleanHTML(HTML);
-        List<String> words = preIndexer.tokenize(cleanedHTML);
-        words = preIndexer.removeStopWords(words);
-        words = preIndexer.Stemming(words);
-        Map<String, Long> wordFreq = new HashMap<>();
-        for (String word : words) {
-            wordFreq.put(word, wordFreq.getOrDefault(word, 0L) + 1L);
+    /**
+     * A page after parsing and analysis, ready to be written. Built by the
+     * pipeline's analyzer threads without touching the database.
+     */
+    private static class AnalyzedPage {
+        final String url;
+        Long docId;
+        final Map<String, WordInfo> words;
+        final Map<String, Integer> tagLengths;
+        final int totalWordCount;
+        final Map<String, Integer> urlTerms;
+        final Map<String, Map<String, Integer>> anchorTerms; // target url -> term -> frequency
+        final StoredText text; // null when the document has no content left and is only removed from the index
+
+        AnalyzedPage(String url, Long docId, Map<String, WordInfo> words, Map<String, Integer> tagLengths,
+                int totalWordCount, Map<String, Integer> urlTerms, Map<String, Map<String, Integer>> anchorTerms,
+                StoredText text) {
+            this.url = url;
+            this.docId = docId;
+            this.words = words;
+            this.tagLengths = tagLengths;
+            this.totalWordCount = totalWordCount;
+            this.urlTerms = urlTerms;
+            this.anchorTerms = anchorTerms;
+            this.text = text;
         }
-        Document documentEntity = documentRepository.findByUrl(url).orElse(null);
-        if (documentEntity != null) {
-            documentEntity.setLastIndexed(LocalDateTime.now());
-            documentRepository.save(documentEntity);
-            documentRepository.flush();
+
+        static AnalyzedPage removed(String url, Long docId) {
+            return new AnalyzedPage(url, docId, Map.of(), Map.of(), 0, Map.of(), Map.of(), null);
         }
 
-        for (Map.Entry<String, Long> entry : wordFreq.entrySet()) {
-            String wordTxt = entry.getKey();
-            Long freq = entry.getValue();
-            Word word = wordRepository.findByWord(wordTxt).orElse(null);
-            if (word == null) {
-                jdbcTemplate.update("INSERT INTO words(word, total_frequency) VALUES (?, ?);", wordTxt, freq);
-            } else {
-                jdbcTemplate.update("UPDATE words SET total_frequency = total_frequency + ? WHERE id = ?;", freq,
-                        word.getId());
-            }
-            jdbcTemplate.update(
-                    "INSERT INTO inverted_index (word_id, doc_id, frequency) VALUES (?, ?, ?) " +
-                            "ON CONFLICT (word_id, doc_id) DO UPDATE SET frequency = inverted_index.frequency + ?",
-                    word.getId(), documentEntity.getId(), freq, freq);
+        boolean isRemoved() {
+            return text == null;
         }
     }
 
-    @Transactional(noRollbackFor = DataIntegrityViolationException.class)
-    private void indexPage(String url, String html) {
-        System.out.println("Indexing page: " + url);
-        org.jsoup.nodes.Document doc = Jsoup.parse(html); // parse the html
-        Document documentEntity = documentRepository.findByUrl(url).orElse(null); // check for existence
-        
-        if (documentEntity == null) {
-            System.err.println("Document not found in database: " + url);
-            return;
+    // Parse and analyze a page; pure CPU work, no database access
+    private AnalyzedPage analyzePage(SourceDocument source) {
+        if (source.content() == null || source.content().isBlank()) {
+            System.out.println("Removing empty page: " + source.url());
+            return AnalyzedPage.removed(source.url(), source.id());
         }
+        System.out.println("Indexing page: " + source.url());
+        org.jsoup.nodes.Document doc = Jsoup.parse(source.content(), source.url()); // parse the html, resolving links against the page
         
         Map<String, WordInfo> pageWordInfo = new HashMap<>(); // store the page info
         
         // Get the total word count in the document for TF calculation
-        String fullText = doc.text();
-        List<String> allWords = preIndexer.tokenize(fullText);
-        allWords = preIndexer.removeStopWords(allWords);
-        allWords = preIndexer.Stemming(allWords);
-        int totalWordCount = allWords.size();
-
-        // Extract unique words for preloading
-        Set<String> uniqueWords = new HashSet<>(allWords);
-
-        // Preload existing words into cache
-        preloadWordCache(uniqueWords);
-
-        // Map to assign importance values to different HTML tags
-        Map<String, Integer> tagImportance = new HashMap<>();
-        tagImportance.put("title", 10); // Title has highest importance
-        tagImportance.put("h1", 8);
-        tagImportance.put("h2", 6);
-        tagImportance.put("h3", 4);
-        tagImportance.put("p", 2);
-        
-        // Add title tag to indexed tags
-        List<String> tagsToIndex = new ArrayList<>(Arrays.asList("p", "h1", "h2", "h3"));
-        tagsToIndex.add("title");
-
-        // More efficient selection - group by tag type
-        for (String tag : tagsToIndex) {
-            for (org.jsoup.nodes.Element element : doc.select(tag)) {
-                Map<String, WordInfo> wordInfoMap = extractWordsFromTag(element, tag);
-                for (Map.Entry<String, WordInfo> entry : wordInfoMap.entrySet()) {
-                    String wordText = entry.getKey();
-                    WordInfo tagInfo = entry.getValue();
-                    WordInfo pageInfo = pageWordInfo.computeIfAbsent(wordText, k -> new WordInfo());
-                    
-                    // Merge tag frequencies
-                    for (Map.Entry<String, Integer> tagEntry : tagInfo.tagFrequencies.entrySet()) {
-                        pageInfo.tagFrequencies.put(
-                            tagEntry.getKey(),
-                            pageInfo.tagFrequencies.getOrDefault(tagEntry.getKey(), 0) + tagEntry.getValue()
-                        );
-                    }
-                    
-                    // Merge position information
-                    for (Map.Entry<String, List<Integer>> posEntry : tagInfo.tagPositions.entrySet()) {
-                        String posTag = posEntry.getKey();
-                        List<Integer> positions = posEntry.getValue();
-                        pageInfo.tagPositions.computeIfAbsent(posTag, k -> new ArrayList<>()).addAll(positions);
-                    }
-                    
-                    pageInfo.totalFrequency += tagInfo.totalFrequency;
+        int totalWordCount = preIndexer.analyze(doc.text()).size();
+
+        // Indexed terms per tag, stored as per-field lengths
+        Map<String, Integer> tagLengths = new HashMap<>();
+
+        // Element texts and where each term came from, stored so queries never parse the html again
+        Element metaDescription = doc.selectFirst("meta[name=description]");
+        StoredText.Builder text = new StoredText.Builder()
+            .description(metaDescription != null ? metaDescription.attr("content").trim() : "");
+
+        // Walk the indexed elements in document order so positions follow the text
+        int position = 0;
+        for (Element element : doc.select(TAGS_SELECTOR)) {
+            String tag = element.tagName();
+            String elementText = element.text();
+            List<int[]> spans = new ArrayList<>();
+            List<String> words = preIndexer.analyze(elementText, spans);
+            text.addElement(tag, elementText, position, spans);
+            Map<String, WordInfo> wordInfoMap = extractWordsFromTag(words, tag, position);
+            position += words.size() + ELEMENT_POSITION_GAP;
+            for (Map.Entry<String, WordInfo> entry : wordInfoMap.entrySet()) {
+                String wordText = entry.getKey();
+                WordInfo tagInfo = entry.getValue();
+                WordInfo pageInfo = pageWordInfo.computeIfAbsent(wordText, k -> new WordInfo());
+                
+                // Merge tag frequencies
+                for (Map.Entry<String, Integer> tagEntry : tagInfo.tagFrequencies.entrySet()) {
+                    pageInfo.tagFrequencies.put(
+                        tagEntry.getKey(),
+                        pageInfo.tagFrequencies.getOrDefault(tagEntry.getKey(), 0) + tagEntry.getValue()
+                    );
                 }
+                
+                // Merge position information
+                for (Map.Entry<String, List<Integer>> posEntry : tagInfo.tagPositions.entrySet()) {
+                    String posTag = posEntry.getKey();
+                    List<Integer> positions = posEntry.getValue();
+                    pageInfo.tagPositions.computeIfAbsent(posTag, k -> new ArrayList<>()).addAll(positions);
+                }
+                
+                pageInfo.totalFrequency += tagInfo.totalFrequency;
+                tagLengths.merge(tag, tagInfo.totalFrequency, Integer::sum);
+            }
+        }
+
+        Map<String, Integer> urlTerms = new HashMap<>();
+        for (String term : preIndexer.analyzeUrl(source.url())) {
+            urlTerms.merge(term, 1, Integer::sum);
+        }
+
+        return new AnalyzedPage(source.url(), source.id(), pageWordInfo, tagLengths, totalWordCount, urlTerms,
+            extractAnchorTerms(doc, source.url()), text.build());
+    }
+
+    // Indexed link text per linked url, for the anchor field of the pages linked to
+    private Map<String, Map<String, Integer>> extractAnchorTerms(org.jsoup.nodes.Document doc, String pageUrl) {
+        Map<String, Map<String, Integer>> anchors = new HashMap<>();
+        String self = anchorTarget(pageUrl);
+        for (Element link : doc.select("a[href]")) {
+            String target = anchorTarget(link.absUrl("href"));
+            if (target == null || target.equals(self)) {
+                continue;
+            }
+            List<String> words = preIndexer.analyze(link.text());
+            if (words.isEmpty()) {
+                continue;
+            }
+            Map<String, Integer> terms = anchors.computeIfAbsent(target, k -> new HashMap<>());
+            for (String word : words.subList(0, Math.min(words.size(), MAX_ANCHOR_TERMS))) {
+                terms.merge(word, 1, Integer::sum);
+            }
+        }
+        return anchors;
+    }
+
+    // Link target as documents store urls: no fragment and no trailing slash on a path
+    private static String anchorTarget(String url) {
+        if (url == null || url.isEmpty() || !url.startsWith("http")) {
+            return null;
+        }
+        int fragment = url.indexOf('#');
+        if (fragment >= 0) {
+            url = url.substring(0, fragment);
+        }
+        if (url.endsWith("/") && url.indexOf('/', url.indexOf("://") + 3) < url.length() - 1) {
+            url = url.substring(0, url.length() - 1);
+        }
+        return url.length() > MAX_ANCHOR_URL_LENGTH ? null : url;
+    }
+
+    /**
+     * Write a batch of analyzed pages. Each page's old postings are replaced in
+     * one transaction for the whole batch; if that fails, pages are retried one
+     * at a time so a single bad page does not lose the batch.
+     *
+     * @return number of pages written
+     */
+    private int writePages(List<AnalyzedPage> batch) {
+        resolveDocumentIds(batch);
+        List<AnalyzedPage> pages = new ArrayList<>();
+        for (AnalyzedPage page : batch) {
+            if (page.docId == null) {
+                System.err.println("Document not found in database: " + page.url);
+            } else {
+                pages.add(page);
+            }
+        }
+        if (pages.isEmpty()) {
+            return 0;
+        }
+
+        // Resolve word ids before the write transaction; new words are committed
+        // on their own so concurrent writers never wait on each other's inserts
+        Set<String> wordTexts = new HashSet<>();
+        for (AnalyzedPage page : pages) {
+            wordTexts.addAll(page.words.keySet());
+            wordTexts.addAll(page.urlTerms.keySet());
+            page.anchorTerms.values().forEach(terms -> wordTexts.addAll(terms.keySet()));
+        }
+        Map<String, Word> words = resolveWords(wordTexts);
+
+        try {
+            indexStatistics.recordBatch(transactionTemplate.execute(status -> writePostings(pages, words)));
+        } catch (RuntimeException e) {
+            if (pages.size() == 1) {
+                System.err.println("Error indexing document " + pages.get(0).url + ": " + e.getMessage());
+                return 0;
+            }
+            int written = 0;
+            for (AnalyzedPage page : pages) {
+                written += writePages(List.of(page));
             }
+            return written;
         }
 
+        return pages.size();
+    }
+
+    // Replace the pages' postings, or only remove those of emptied pages; runs inside the batch transaction
+    private IndexStatistics.BatchChange writePostings(List<AnalyzedPage> pages, Map<String, Word> words) {
+        List<Long> docIds = new ArrayList<>();
+        for (AnalyzedPage page : pages) {
+            docIds.add(page.docId);
+        }
+        
+        // Net change of words.total_frequency: new frequencies minus the old ones
+        Map<Long, Long> frequencyDeltas = new HashMap<>();
+        loadIndexedFrequencies(docIds).forEach((wordId, frequency) -> frequencyDeltas.merge(wordId, -frequency, Long::sum));
+        long[] replaced = new long[2]; // documents, summed length
+        jdbcTemplate.query("SELECT COUNT(*), COALESCE(SUM(length), 0) FROM document_stats WHERE doc_id IN (" +
+            placeholders(docIds.size()) + ")", rs -> {
+                replaced[0] = rs.getLong(1);
+                replaced[1] = rs.getLong(2);
+            }, docIds.toArray());
+        long postingsDelta = -removeDocumentsFromIndex(docIds);
+        long lengthDelta = -replaced[1];
+        
         // Prepare batch updates for all words at once
-        List<Object[]> wordFrequencyUpdates = new ArrayList<>();
         List<Object[]> invertedIndexInserts = new ArrayList<>();
-        
-        for (Map.Entry<String, WordInfo> entry : pageWordInfo.entrySet()) {
-            String wordText = entry.getKey();
-            WordInfo info = entry.getValue();
+        List<Object[]> wordDocumentTagInserts = new ArrayList<>();
+        List<Object[]> wordPositionInserts = new ArrayList<>();
+        List<Object[]> anchorTermInserts = new ArrayList<>();
+        List<Object[]> documentStatsInserts = new ArrayList<>();
+        List<Object[]> documentTextInserts = new ArrayList<>();
+        List<Object[]> lastIndexedUpdates = new ArrayList<>();
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        
+        long indexedPages = 0;
+        for (AnalyzedPage page : pages) {
+            // Update last_indexed directly so the entity's @PreUpdate does not bump updated_at
+            lastIndexedUpdates.add(new Object[]{now, page.docId});
+            if (page.isRemoved()) {
+                continue;
+            }
+            indexedPages++;
+
+            for (Map.Entry<String, WordInfo> entry : page.words.entrySet()) {
+                WordInfo info = entry.getValue();
+                Word word = words.get(entry.getKey());
 
-            // Get or create word from cache
-            Word word = getOrCreateWord(wordText);
-            
-            try {
                 // Calculate TF = frequency in document / total words in document
-                double tf = (double) info.totalFrequency / totalWordCount;
+                double tf = page.totalWordCount == 0 ? 0.0 : (double) info.totalFrequency / page.totalWordCount;
                 
                 // Determine importance - use the highest importance from all tags this word appears in
                 int importance = 1; // Default importance
                 for (String tag : info.tagFrequencies.keySet()) {
-                    int tagImp = tagImportance.getOrDefault(tag, 1);
+                    int tagImp = TAG_IMPORTANCE.getOrDefault(tag, 1);
                     if (tagImp > importance) {
                         importance = tagImp;
                     }
                 }
                 
-                // Add to batch updates
-                wordFrequencyUpdates.add(new Object[]{info.totalFrequency, word.getId()});
-                invertedIndexInserts.add(new Object[]{
-                    word.getId(), documentEntity.getId(), info.totalFrequency, tf, importance
-                });
-                
-                // Batch insert word document tags
-                batchInsertWordDocumentTags(word.getId(), documentEntity.getId(), info.tagFrequencies);
-                
-                // Batch insert word positions
-                batchInsertWordPositions(word.getId(), documentEntity.getId(), info.tagPositions);
-                
-            } catch (Exception e) {
-                // Log error but continue processing other words
-                System.err.println("Error indexing word " + wordText + " in document " + url + ": " + e.getMessage());
+                frequencyDeltas.merge(word.getId(), (long) info.totalFrequency, Long::sum);
+                postingsDelta++;
+                invertedIndexInserts.add(new Object[]{word.getId(), page.docId, info.totalFrequency, tf, importance});
+                addWordDocumentTagRows(word.getId(), page.docId, info.tagFrequencies, wordDocumentTagInserts);
+                addWordPositionRows(word.getId(), page.docId, info.tagPositions, wordPositionInserts);
             }
+            
+            // Url tokens are a field of their own, outside the text postings
+            page.urlTerms.forEach((term, frequency) ->
+                wordDocumentTagInserts.add(new Object[]{words.get(term).getId(), page.docId, IndexField.URL_TAG, frequency}));
+            page.anchorTerms.forEach((target, terms) -> terms.forEach((term, frequency) ->
+                anchorTermInserts.add(new Object[]{page.docId, target, words.get(term).getId(), frequency})));
+            
+            // Record document lengths once so BM25 never has to re-tokenize the corpus
+            Map<String, Integer> lengths = page.tagLengths;
+            lengthDelta += page.totalWordCount;
+            documentStatsInserts.add(new Object[]{page.docId, page.totalWordCount, page.words.size(),
+                lengths.getOrDefault("title", 0),
+                lengths.getOrDefault("h1", 0) + lengths.getOrDefault("h2", 0) + lengths.getOrDefault("h3", 0),
+                lengths.getOrDefault("p", 0)});
+            
+            byte[] encodedText = page.text.encode();
+            documentTextInserts.add(new Object[]{page.docId, page.text.text().length(), encodedText,
+                StoredText.checksum(encodedText)});
         }
         
-        // Execute batch updates
-        if (!wordFrequencyUpdates.isEmpty()) {
-            jdbcTemplate.batchUpdate(
-                "UPDATE words SET total_frequency = total_frequency + ? WHERE id = ?",
-                wordFrequencyUpdates
-            );
+        // Apply word frequency changes in word id order, so concurrent writers
+        // always lock words rows in the same order and cannot deadlock
+        List<Object[]> wordFrequencyUpdates = new ArrayList<>();
+        new java.util.TreeMap<>(frequencyDeltas).forEach((wordId, delta) -> {
+            if (delta != 0) {
+                wordFrequencyUpdates.add(new Object[]{delta, wordId});
+            }
+        });
+        
+        batchUpdateInChunks("UPDATE words SET total_frequency = total_frequency + ? WHERE id = ?", wordFrequencyUpdates);
+        batchUpdateInChunks(INVERTED_INDEX_INSERT, invertedIndexInserts);
+        batchUpdateInChunks(WORD_DOCUMENT_TAGS_INSERT, wordDocumentTagInserts);
+        batchUpdateInChunks(WORD_POSITION_INSERT, wordPositionInserts);
+        batchUpdateInChunks(ANCHOR_TERMS_INSERT, anchorTermInserts);
+        batchUpdateInChunks(DOCUMENT_STATS_INSERT, documentStatsInserts);
+        batchUpdateInChunks(DOCUMENT_TEXT_INSERT, documentTextInserts);
+        batchUpdateInChunks("UPDATE documents SET last_indexed = ? WHERE id = ?", lastIndexedUpdates);
+        return new IndexStatistics.BatchChange(indexedPages - replaced[0], lengthDelta, postingsDelta);
+    }
+
+    // Fill in document ids for pages that only know their url
+    private void resolveDocumentIds(List<AnalyzedPage> pages) {
+        Map<String, AnalyzedPage> byUrl = new HashMap<>();
+        for (AnalyzedPage page : pages) {
+            if (page.docId == null) {
+                byUrl.put(page.url, page);
+            }
+        }
+        if (byUrl.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.query("SELECT id, url FROM documents WHERE url IN (" + placeholders(byUrl.size()) + ")",
+            rs -> {
+                byUrl.get(rs.getString(2)).docId = rs.getLong(1);
+            }, byUrl.keySet().toArray());
+    }
+
+    // Look up or create every word of a batch, going to the database only for cache misses
+    private Map<String, Word> resolveWords(Set<String> wordTexts) {
+        if (wordCache.size() > WORD_CACHE_LIMIT) {
+            wordCache.clear();
         }
         
-        if (!invertedIndexInserts.isEmpty()) {
-            int batchSize = 500;
-            for (int i = 0; i < invertedIndexInserts.size(); i += batchSize) {
-                int endIndex = Math.min(i + batchSize, invertedIndexInserts.size());
-                List<Object[]> batch = invertedIndexInserts.subList(i, endIndex);
-                jdbcTemplate.batchUpdate(INVERTED_INDEX_INSERT, batch);
+        Map<String, Word> resolved = new HashMap<>();
+        Set<String> missing = new HashSet<>();
+        for (String text : wordTexts) {
+            Word word = wordCache.get(text);
+            if (word != null) {
+                resolved.put(text, word);
+            } else {
+                missing.add(text);
             }
         }
         
-        // Update document as indexed
-        documentEntity.setLastIndexed(LocalDateTime.now());
-        documentRepository.save(documentEntity);
+        preloadWordCache(missing);
+        for (String text : missing) {
+            resolved.put(text, getOrCreateWord(text));
+        }
+        return resolved;
     }
 
     /**
@@ -373,111 +694,161 @@ public class IndexerService {
             return;
         }
         
-        System.out.println("Indexing " + documents.size() + " documents in batches with multi-threading");
-        
-        // Clear any existing caches
-        CacheHelper.clearInvertedIndexCache();
-        wordCache.clear();
-        
-        final int BATCH_SIZE = 20; // Process 20 documents per batch
-        final int NUM_THREADS = Math.min(Runtime.getRuntime().availableProcessors(), 8); // Use available processors but cap at 8
-        
-        // Create batches of documents
-        List<Map.Entry<String, String>> docEntries = new ArrayList<>(documents.entrySet());
-        List<List<Map.Entry<String, String>>> batches = splitIntoBatches(docEntries, BATCH_SIZE);
-        
-        System.out.println("Split into " + batches.size() + " batches with " + NUM_THREADS + " threads");
-        
-        // Track progress
-        AtomicInteger processedCount = new AtomicInteger(0);
-        int totalDocuments = documents.size();
-        
-        // Process each batch
-        for (List<Map.Entry<String, String>> batch : batches) {
-            processBatchWithThreads(batch, NUM_THREADS);
-            
-            // Update progress after each batch
-            int currentProcessed = processedCount.addAndGet(batch.size());
-            
-            // Use static method instead of direct controller reference
-            com.example.searchengine.controllers.ReindexController.updateIndexingProgress(currentProcessed);
-            
-            System.out.printf("Processed %d/%d documents (%.1f%%)\n", 
-                currentProcessed, totalDocuments, (100.0 * currentProcessed / totalDocuments));
-        }
+        long startTime = System.currentTimeMillis();
+        System.out.println("Indexing " + documents.size() + " documents through the indexing pipeline");
+        int written = runPipeline(sink -> documents.forEach((url, html) -> sink.accept(new SourceDocument(null, url, html))),
+            null);
         
         // Calculate IDF after all documents have been processed
         System.out.println("All documents indexed. Calculating IDF values...");
         calculateAllIdfValues();
+        writeIndexSnapshot();
+        publishGeneration(written, startTime);
         
         System.out.println("Indexing completed successfully");
     }
 
     /**
-     * Process a batch of documents using multiple threads
+     * Reindex only the documents that changed since they were last indexed
+     * (updated_at > last_indexed) or were never indexed. Each document's old
+     * postings are replaced, or only removed when it has no content left, so
+     * the cost tracks what changed, not the corpus.
+     *
+     * @return number of documents reindexed
      */
-    private void processBatchWithThreads(List<Map.Entry<String, String>> batch, int numThreads) {
-        List<List<Map.Entry<String, String>>> threadBatches = splitIntoBatches(batch, numThreads);
-        List<Thread> threads = new ArrayList<>();
-        
-        for (List<Map.Entry<String, String>> threadBatch : threadBatches) {
-            Thread thread = new Thread(() -> {
-                for (Map.Entry<String, String> entry : threadBatch) {
-                    try {
-                        indexPage(entry.getKey(), entry.getValue());
-                    } catch (Exception e) {
-                        System.err.println("Error processing document " + entry.getKey() + ": " + e.getMessage());
-                        e.printStackTrace();
-                    }
-                }
-            });
-            threads.add(thread);
-            thread.start();
+    public int reindexChangedDocuments() {
+        return reindexChangedDocuments(null);
+    }
+
+    /**
+     * @param progress Called with the number of documents written so far after every batch
+     */
+    public int reindexChangedDocuments(Consumer<Long> progress) {
+        return reindexDocuments(CHANGED_DOCUMENTS_PAGE_QUERY, progress);
+    }
+
+    /**
+     * Reindex every document, replacing its existing postings.
+     *
+     * @return number of documents reindexed
+     */
+    public int reindexAllDocuments() {
+        return reindexAllDocuments(null);
+    }
+
+    /**
+     * @param progress Called with the number of documents written so far after every batch
+     */
+    public int reindexAllDocuments(Consumer<Long> progress) {
+        return reindexDocuments(ALL_DOCUMENTS_PAGE_QUERY, progress);
+    }
+
+    public long countChangedDocuments() {
+        Long count = jdbcTemplate.queryForObject(CHANGED_DOCUMENTS_COUNT_QUERY, Long.class);
+        return count == null ? 0 : count;
+    }
+
+    private int reindexDocuments(String pageQuery, Consumer<Long> progress) {
+        long startTime = System.currentTimeMillis();
+        int processed = runPipeline(sink -> readPages(pageQuery, sink), progress);
+        
+        if (processed > 0) {
+            System.out.println("Reindexed " + processed + " documents. Calculating IDF values...");
+            calculateAllIdfValues();
+            writeIndexSnapshot();
+            publishGeneration(processed, startTime);
+        } else {
+            System.out.println("No changed documents to reindex");
         }
-        
-        // Wait for all threads to complete
-        for (Thread thread : threads) {
-            try {
-                thread.join();
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                System.err.println("Thread interrupted: " + e.getMessage());
+        return processed;
+    }
+
+    /**
+     * Hand every document a page query selects to the sink, one keyset page
+     * ({@code id > ? ORDER BY id LIMIT ?}) per short read-only transaction, so
+     * no snapshot or connection is held for the whole run
+     */
+    private void readPages(String pageQuery, Consumer<SourceDocument> sink) {
+        long lastId = 0;
+        while (true) {
+            long after = lastId;
+            List<SourceDocument> page = readOnlyTransactionTemplate.execute(status -> jdbcTemplate.query(pageQuery,
+                (rs, rowNum) -> new SourceDocument(rs.getLong(1), rs.getString(2), rs.getString(3)),
+                after, READ_PAGE_SIZE));
+            if (page == null || page.isEmpty()) {
+                return;
             }
+            page.forEach(sink);
+            if (page.size() < READ_PAGE_SIZE) {
+                return;
+            }
+            lastId = page.get(page.size() - 1).id();
         }
-        
-        // Commit changes to database after each batch
-        System.out.println("Committing batch to database...");
-        // If using JdbcTemplate, you might need to flush manually if there's caching involved
-        // Otherwise, Spring Data JPA should auto-commit after each repository save
     }
 
     /**
-     * Split a list into approximately equal-sized batches
+     * Index documents through a reader, analyzer pool and batching writers,
+     * without recomputing IDF
+     *
+     * @throws IllegalStateException when reading or writing failed; the run must not be published
      */
-    private <T> List<List<T>> splitIntoBatches(List<T> list, int batchSize) {
-        List<List<T>> batches = new ArrayList<>();
-        
-        if (list.isEmpty()) {
-            return batches;
+    private int runPipeline(Consumer<Consumer<SourceDocument>> source, Consumer<Long> progress) {
+        // Queries keep reading the active generation until the run publishes the next one
+        IndexingPipeline<AnalyzedPage> pipeline = new IndexingPipeline<>(pipelineSettings(),
+            this::analyzePage, this::writePages, progress);
+        lastPipeline = pipeline;
+        return (int) pipeline.run(source);
+    }
+
+    // Refresh the mapped snapshot the ranker starts from; the tables stay authoritative if this fails
+    private void writeIndexSnapshot() {
+        try {
+            indexSnapshotService.rebuild();
+        } catch (Exception e) {
+            System.err.println("Error writing index snapshot: " + e.getMessage());
         }
-        
-        int size = list.size();
-        int start = 0;
-        
-        while (start < size) {
-            int end = Math.min(start + batchSize, size);
-            batches.add(new ArrayList<>(list.subList(start, end)));
-            start = end;
+    }
+
+    // Build the next generation from the finished tables and snapshot, then swap it in for queries
+    private void publishGeneration(int documentsIndexed, long startTime) {
+        InMemoryIndex index = null;
+        try {
+            IndexGeneration generation = indexGenerations.publish(indexSnapshotService.current(), loadGeneration());
+            index = generation.getIndex();
+            System.out.println("Published index " + generation);
+        } catch (Exception e) {
+            System.err.println("Error publishing index generation, queries keep the previous one: " + e.getMessage());
         }
-        
-        return batches;
+        indexStatistics.recordReindex(documentsIndexed, System.currentTimeMillis() - startTime, index);
+    }
+
+    private IndexingPipeline.Settings pipelineSettings() {
+        return IndexingPipeline.Settings.auto(Runtime.getRuntime().availableProcessors(), connectionPoolSize,
+            pipelineAnalyzerThreads, pipelineWriterThreads, pipelineQueueCapacity, pipelineWriteBatchSize);
+    }
+
+    /**
+     * Queue depth, counts and throughput per stage of the current or last indexing run
+     */
+    public Map<String, Object> getPipelineStats() {
+        IndexingPipeline<AnalyzedPage> pipeline = lastPipeline;
+        if (pipeline == null) {
+            Map<String, Object> stats = new HashMap<>();
+            stats.put("running", false);
+            stats.put("message", "No indexing has run since startup");
+            stats.put("settings", pipelineSettings());
+            return stats;
+        }
+        return pipeline.getStats();
     }
 
     /**
-     * Calculate IDF values for all words after indexing is complete
+     * Calculate IDF values for all words after indexing is complete.
+     * Document frequencies are aggregated and written in one set-based statement.
      */
     public void calculateAllIdfValues() {
         System.out.println("Calculating IDF values for all words...");
+        long startTime = System.currentTimeMillis();
         
         long totalDocuments = documentRepository.count();
         if (totalDocuments == 0) {
@@ -485,383 +856,250 @@ public class IndexerService {
             return;
         }
         
-        // Get all words
-        List<Word> allWords = wordRepository.findAll();
-        
-        // Process in batches to avoid memory issues
-        final int BATCH_SIZE = 500;
-        List<List<Word>> batches = splitIntoBatches(allWords, BATCH_SIZE);
-        
-        for (List<Word> batch : batches) {
-            for (Word word : batch) {
-                try {
-                    // Count documents containing this word using SQL query instead of repository method
-                    long docCount = jdbcTemplate.queryForObject(
-                        "SELECT COUNT(*) FROM inverted_index WHERE word_id = ?", 
-                        Long.class,
-                        word.getId()
-                    );
-                    
-                    // Calculate IDF: log(totalDocs/(docCount+1))
-                    // Adding 1 to avoid division by zero
-                    double idf = Math.log10((double) totalDocuments / (docCount + 1));
-                    
-                    // Update or create WordIdf entry
-                    WordIdf wordIdf = wordIdfRepository.findByWord(word)
-                            .orElse(new WordIdf());
-                    
-                    wordIdf.setWord(word);
-                    wordIdf.setIdfValue(idf);
-                    wordIdf.setDocumentFrequency(docCount);
-                    wordIdf.setTotalDocuments(totalDocuments);
-                    
-                    wordIdfRepository.save(wordIdf);
-                } catch (Exception e) {
-                    System.err.println("Error calculating IDF for word " + word.getWord() + ": " + e.getMessage());
-                }
-            }
-        }
+        // IDF = log10(totalDocs / (docCount + 1)), adding 1 to avoid division by zero
+        int words = replaceIdfValues("LOG10(CAST(? AS DOUBLE PRECISION) / (COUNT(*) + 1))", totalDocuments);
         
-        System.out.println("IDF calculation completed for " + allWords.size() + " words");
+        System.out.println("IDF calculation completed for " + words + " words in " +
+            ((System.currentTimeMillis() - startTime) / 1000.0) + " seconds");
     }
 
-    public Map<String, Map<String, Object>> getIndex() {
-        Map<String, Map<String, Object>> index = new HashMap<>();
-        int pageSize = 10;
-        int page = 0;
-        boolean hasMore = true;
-
-        while (hasMore) {
-            // pagination
-            List<Word> words = wordRepository.findAll(PageRequest.of(page, pageSize)).getContent();
-            if (words.isEmpty()) {
-                hasMore = false;
-                continue;
-            }
-
-            for (Word word : words) {
-                List<InvertedIndex> mappings = invertedIndexRepository.findByWord(word,
-                        PageRequest.of(0, Integer.MAX_VALUE));
-                List<WordDocumentTag> tags = wordDocumentTagRepository.findByWord(word,
-                        PageRequest.of(0, Integer.MAX_VALUE));
-
-                Map<String, Object> wordDetails = new HashMap<>();
-                wordDetails.put("totalFrequency", word.getTotalFrequency());
-
-                List<Map<String, Object>> documentDetails = new ArrayList<>();
-                for (InvertedIndex mapping : mappings) {
-                    Map<String, Object> docDetail = new HashMap<>();
-                    docDetail.put("url", mapping.getDocument().getUrl());
-                    docDetail.put("title", mapping.getDocument().getTitle());
-                    docDetail.put("frequency", mapping.getFrequency());
-
-                    List<Map<String, Object>> tagDetails = new ArrayList<>();
-                    for (WordDocumentTag tag : tags) {
-                        if (tag.getDocument().getId().equals(mapping.getDocument().getId())) {
-                            Map<String, Object> tagDetail = new HashMap<>();
-                            tagDetail.put("tag", tag.getTag());
-                            tagDetail.put("frequency", tag.getFrequency());
-                            tagDetails.add(tagDetail);
-                        }
-                    }
-                    docDetail.put("tags", tagDetails);
-                    documentDetails.add(docDetail);
-                }
+    /**
+     * Replace the whole word_idf table with one INSERT ... SELECT ... GROUP BY
+     * over the postings. The expression gets the total document count as its
+     * only parameter and may use COUNT(*) as the document frequency.
+     */
+    private int replaceIdfValues(String idfExpression, long totalDocuments) {
+        Integer inserted = transactionTemplate.execute(status -> {
+            jdbcTemplate.update("DELETE FROM word_idf");
+            return jdbcTemplate.update(
+                "INSERT INTO word_idf (word_id, idf_value, document_frequency, total_documents) " +
+                "SELECT word_id, " + idfExpression + ", COUNT(*), ? FROM inverted_index GROUP BY word_id",
+                (double) totalDocuments, totalDocuments);
+        });
+        return inserted == null ? 0 : inserted;
+    }
 
-                wordDetails.put("documents", documentDetails);
-                if (!documentDetails.isEmpty()) {
-                    index.put(word.getWord(), wordDetails);
+    /**
+     * Reference to the active index generation, opening one for the index
+     * already on disk when nothing has been published since startup. The
+     * caller must close it.
+     */
+    public IndexGeneration acquireGeneration() {
+        IndexGeneration generation = indexGenerations.acquire();
+        while (generation == null) {
+            synchronized (startupGenerationLock) {
+                if (indexGenerations.current() == null) {
+                    indexGenerations.publishIfAbsent(indexSnapshotService.current(), loadGeneration());
                 }
             }
-            page++;
+            generation = indexGenerations.acquire();
         }
-        return index;
+        return generation;
     }
 
-    // word, (doc_id, freqOfWord)
-    public Map<String, Map<Long, Integer>> getInvertedIndex() {
-        // Check if we already have the index in memory cache
-        if (CacheHelper.getInvertedIndexCache() != null) {
-            System.out.println("Using cached inverted index");
-            return CacheHelper.getInvertedIndexCache();
-        }
-        
-        System.out.println("Building inverted index - using parallel processing for faster startup");
-        
-        // Use ConcurrentHashMap for thread safety
-        Map<String, Map<Long, Integer>> index = new java.util.concurrent.ConcurrentHashMap<>();
-        java.util.concurrent.atomic.AtomicInteger processedCount = new java.util.concurrent.atomic.AtomicInteger(0);
-        
-        try {
-            // First, get the total count of words and use a larger page size for better throughput
-            long totalWords = wordRepository.count();
-            System.out.println("Total words to process: " + totalWords);
-            
-            // Calculate optimal thread count based on CPU cores
-            int numThreads = Math.max(2, Runtime.getRuntime().availableProcessors());
-            System.out.println("Using " + numThreads + " threads for parallel index building");
-            
-            // If there are no words, return an empty index
-            if (totalWords == 0) {
-                System.out.println("No words found in the database, returning empty index");
-                CacheHelper.setInvertedIndexCache(index);
-                return index;
-            }
-            
-            // Create an execution service for parallel processing
-            java.util.concurrent.ExecutorService executor = 
-                java.util.concurrent.Executors.newFixedThreadPool(numThreads);
-            java.util.concurrent.CountDownLatch completionLatch = 
-                new java.util.concurrent.CountDownLatch(numThreads);
-            
-            // For better performance, process all words at once if under a threshold,
-            // otherwise divide them into chunks
-            int pageSize = 2000; // Larger page size for each worker
-            
-            // Get all words at once if under 10,000, otherwise use paging
-            if (totalWords < 10000) {
-                // Process all words in a single load
-                List<Word> allWords = wordRepository.findAll();
-                System.out.println("Processing all " + allWords.size() + " words at once");
-                
-                // Split into chunks for parallel processing
-                List<List<Word>> chunks = splitIntoChunks(allWords, numThreads);
-                for (int i = 0; i < chunks.size(); i++) {
-                    final int chunkIndex = i;
-                    List<Word> chunk = chunks.get(i);
-                    executor.submit(() -> {
-                        try {
-                            System.out.println("Thread " + chunkIndex + " starting to process " + chunk.size() + " words");
-                            processWordChunk(chunk, index);
-                            int current = processedCount.addAndGet(chunk.size());
-                            System.out.println("Thread " + chunkIndex + " completed chunk: " + 
-                                              getProgressBar(current, totalWords, 30));
-                        } catch (Exception e) {
-                            System.err.println("Error processing word chunk: " + e.getMessage());
-                        } finally {
-                            completionLatch.countDown();
-                        }
-                    });
-                }
-            } else {
-                // Determine number of pages per thread
-                int totalPages = (int) Math.ceil((double) totalWords / pageSize);
-                int pagesPerThread = Math.max(1, totalPages / numThreads);
-                
-                // Submit tasks for each worker
-                for (int threadIdx = 0; threadIdx < numThreads; threadIdx++) {
-                    final int workerIdx = threadIdx;
-                    final int startPage = threadIdx * pagesPerThread;
-                    final int endPage = (threadIdx == numThreads - 1) ? 
-                                        totalPages : Math.min(totalPages, (threadIdx + 1) * pagesPerThread);
-                    
-                    executor.submit(() -> {
-                        try {
-                            System.out.println("Worker " + workerIdx + " starting to process pages " + 
-                                              startPage + " to " + (endPage-1));
-                            for (int page = startPage; page < endPage; page++) {
-                                List<Word> pageWords = wordRepository.findAll(
-                                    PageRequest.of(page, pageSize)).getContent();
-                                
-                                System.out.println("Processing " + pageWords.size() + " words (page " + page + ")");
-                                processWordChunk(pageWords, index);
-                                
-                                int current = processedCount.addAndGet(pageWords.size());
-                                System.out.println("Completed page " + page + ": " + 
-                                                 getProgressBar(current, totalWords, 30));
-                            }
-                        } catch (Exception e) {
-                            System.err.println("Error in worker " + workerIdx + " processing pages " + 
-                                               startPage + " to " + endPage + ": " + e.getMessage());
-                        } finally {
-                            completionLatch.countDown();
-                        }
-                    });
-                }
-            }
-            
-            // Wait for all threads to complete
-            try {
-                System.out.println("Waiting for all threads to finish building the index...");
-                completionLatch.await();
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                System.err.println("Interrupted while waiting for index building: " + e.getMessage());
-            }
-            
-            // Shutdown the executor
-            executor.shutdown();
-            
-            // Cache the index for future use
-            CacheHelper.setInvertedIndexCache(index);
-            
-            // Calculate memory and document stats
-            long totalDocuments = documentRepository.count();
-            long totalWordDocPairs = index.values().stream()
-                .mapToLong(map -> map.size())
-                .sum();
-            
-            Runtime runtime = Runtime.getRuntime();
-            long usedMemoryMB = (runtime.totalMemory() - runtime.freeMemory()) / (1024 * 1024);
-            
-            System.out.println("\n------------------------------------------------------------");
-            System.out.println("Inverted index generation completed successfully:");
-            System.out.println("  - Unique words in index: " + totalWords);
-            System.out.println("  - Total documents: " + totalDocuments);
-            System.out.println("  - Total word-document pairs: " + totalWordDocPairs);
-            System.out.println("  - Used memory: " + usedMemoryMB + " MB");
-            System.out.println("------------------------------------------------------------\n");
-                               
-        } catch (Exception e) {
-            System.err.println("Error generating inverted index: " + e.getMessage());
-            e.printStackTrace();
-        }
-        
-        return index;
+    /**
+     * Every in-memory part of a generation, read in one read-only
+     * repeatable-read transaction: the postings, term vectors, field index
+     * and documents all see the tables as of the same moment, whatever a
+     * crawl or reindex writes meanwhile.
+     */
+    private IndexGeneration.Loaders loadGeneration() {
+        return snapshotTransactionTemplate.execute(status -> {
+            InMemoryIndex index = loadInMemoryIndex();
+            ForwardIndex forward = loadForwardIndex(index);
+            return IndexGeneration.Loaders.of(index, forward, loadBigramIndex(index, forward), loadShardedIndex(),
+                loadDocumentStore());
+        });
     }
 
     /**
-     * Helper class for caching the inverted index
+     * The whole inverted index of the active generation in primitive arrays,
+     * loaded with one streaming scan of inverted_index
      */
-    private static class CacheHelper {
-        private static Map<String, Map<Long, Integer>> invertedIndexCache;
-        
-        public static Map<String, Map<Long, Integer>> getInvertedIndexCache() {
-            return invertedIndexCache;
-        }
-        
-        public static void setInvertedIndexCache(Map<String, Map<Long, Integer>> index) {
-            invertedIndexCache = index;
+    public InMemoryIndex getInMemoryIndex() {
+        try (IndexGeneration generation = acquireGeneration()) {
+            return generation.getIndex();
         }
+    }
+
+    private InMemoryIndex loadInMemoryIndex() {
+        long startTime = System.currentTimeMillis();
+        InMemoryIndex.Builder builder = new InMemoryIndex.Builder();
+        readOnlyTransactionTemplate.executeWithoutResult(status -> {
+            long[] currentWord = {-1L};
+            streamingJdbcTemplate.query(IN_MEMORY_INDEX_QUERY, rs -> {
+                long wordId = rs.getLong(1);
+                if (wordId != currentWord[0]) {
+                    builder.startTerm(rs.getString(2), wordId);
+                    currentWord[0] = wordId;
+                }
+                builder.add(toDocId(rs.getLong(3)), rs.getInt(4));
+            });
+        });
+        InMemoryIndex index = builder.build();
         
-        public static void clearInvertedIndexCache() {
-            invertedIndexCache = null;
-        }
+        System.out.println("Loaded in-memory index: " + index.termCount() + " terms, " + index.postingsCount() +
+            " postings, ~" + (index.estimatedBytes() / (1024 * 1024)) + " MB in " +
+            (System.currentTimeMillis() - startTime) + " ms");
+        return index;
     }
 
-    /**
-     * Process a chunk of words in parallel with optimized SQL queries
-     */
-    private void processWordChunk(List<Word> wordChunk, Map<String, Map<Long, Integer>> index) {
-        for (Word word : wordChunk) {
-            try {
-                String wordText = word.getWord();
-                Long wordId = word.getId();
-                
-                // Process in smaller batches to avoid memory issues but don't limit total results
-                Map<Long, Integer> docFrequencies = new java.util.concurrent.ConcurrentHashMap<>();
-                int batchSize = 200; // Larger batch size for better performance
-                int offset = 0;
-                boolean hasMore = true;
-                
-                while (hasMore) {
-                    // Use pagination to avoid loading everything at once
-                    List<Object[]> batch = jdbcTemplate.query(
-                        "SELECT doc_id, frequency FROM inverted_index WHERE word_id = ? LIMIT ? OFFSET ?",
-                        (rs, rowNum) -> new Object[] {
-                            rs.getLong("doc_id"),
-                            rs.getInt("frequency")
-                        },
-                        wordId, batchSize, offset
-                    );
-                    
-                    if (batch.isEmpty()) {
-                        hasMore = false;
-                    } else {
-                        // Add document frequencies to the map
-                        for (Object[] mapping : batch) {
-                            Long docId = (Long) mapping[0];
-                            Integer frequency = (Integer) mapping[1];
-                            docFrequencies.put(docId, frequency);
-                        }
-                        
-                        // Move to next batch
-                        offset += batchSize;
-                    }
+    // Term vectors of every document over the index's ordinals, from one streaming scan of word_position
+    private ForwardIndex loadForwardIndex(InMemoryIndex index) {
+        long startTime = System.currentTimeMillis();
+        ForwardIndex.Builder builder = new ForwardIndex.Builder(index);
+        readOnlyTransactionTemplate.executeWithoutResult(status ->
+            streamingJdbcTemplate.query(FORWARD_INDEX_QUERY, rs -> {
+                builder.add(toDocId(rs.getLong(1)), rs.getInt(2), rs.getLong(3), rs.getLong(4));
+            }));
+        ForwardIndex forward = builder.build();
+
+        System.out.println("Loaded forward index: " + forward.documentCount() + " documents, " +
+            forward.entryCount() + " terms, " + forward.positionsCount() + " positions, ~" +
+            (forward.estimatedBytes() / (1024 * 1024)) + " MB in " + (System.currentTimeMillis() - startTime) + " ms");
+        return forward;
+    }
+
+    // Adjacent word pairs of every document, replayed from the forward index
+    private BigramIndex loadBigramIndex(InMemoryIndex index, ForwardIndex forward) {
+        long startTime = System.currentTimeMillis();
+        BigramIndex bigrams = BigramIndex.of(index, forward);
+
+        System.out.println("Loaded bigram index: " + bigrams.bigramCount() + " bigrams, " +
+            bigrams.positionsCount() + " positions, ~" + (bigrams.estimatedBytes() / (1024 * 1024)) + " MB in " +
+            (System.currentTimeMillis() - startTime) + " ms");
+        return bigrams;
+    }
+
+    // Field postings from the tag rows and anchor text, and the norms recorded in document_stats
+    private FieldIndex loadFieldIndex() {
+        long startTime = System.currentTimeMillis();
+        FieldIndex.Builder builder = new FieldIndex.Builder();
+        readOnlyTransactionTemplate.executeWithoutResult(status -> {
+            streamingJdbcTemplate.query(FIELD_NORMS_QUERY, rs -> {
+                builder.addDocument(toDocId(rs.getLong(1)), rs.getInt(2), rs.getInt(3), rs.getInt(4), rs.getInt(5));
+            });
+            streamingJdbcTemplate.query(FIELD_TAGS_QUERY, rs -> {
+                IndexField field = IndexField.forTag(rs.getString(4));
+                if (field != null) {
+                    builder.add(field, rs.getLong(1), rs.getString(2), toDocId(rs.getLong(3)), rs.getInt(5));
                 }
-                
-                // Add the word to the index if it has any documents
-                if (!docFrequencies.isEmpty()) {
-                    index.put(wordText, docFrequencies);
+            });
+            streamingJdbcTemplate.query(FIELD_ANCHORS_QUERY, rs -> {
+                builder.add(IndexField.ANCHOR, rs.getLong(1), rs.getString(2), toDocId(rs.getLong(3)), rs.getInt(4));
+            });
+        });
+        FieldIndex fields = builder.build();
+
+        System.out.println("Loaded field index: " + fields.documentCount() + " documents, ~" +
+            (fields.estimatedBytes() / (1024 * 1024)) + " MB in " + (System.currentTimeMillis() - startTime) + " ms");
+        return fields;
+    }
+
+    // The field index split by document into one shard per core unless configured
+    private ShardedIndex loadShardedIndex() {
+        FieldIndex fields = loadFieldIndex();
+        long startTime = System.currentTimeMillis();
+        int shardCount = indexShards > 0 ? indexShards : Runtime.getRuntime().availableProcessors();
+        ShardedIndex shards = ShardedIndex.split(fields, shardCount);
+
+        System.out.println("Split field index into " + shards.shardCount() + " shards in " +
+            (System.currentTimeMillis() - startTime) + " ms");
+        return shards;
+    }
+
+    // Url, title, crawl time and stored text of every indexed document, from one streaming scan
+    private DocumentStore loadDocumentStore() {
+        long startTime = System.currentTimeMillis();
+        DocumentStore.Builder builder = new DocumentStore.Builder();
+        readOnlyTransactionTemplate.executeWithoutResult(status ->
+            streamingJdbcTemplate.query(DOCUMENT_STORE_QUERY, rs -> {
+                Timestamp createdAt = rs.getTimestamp(4);
+                byte[] text = rs.getBytes(5);
+                long checksum = rs.getLong(6);
+                if (text == null) {
+                    // Indexed before texts were stored: the plain text of its html, with no positions to map
+                    String content = rs.getString(7);
+                    text = StoredText.plain(content == null ? "" : Jsoup.parse(content).text()).encode();
+                    checksum = -1;
                 }
-            } catch (Exception e) {
-                System.err.println("Error processing word '" + word.getWord() + "': " + e.getMessage());
-            }
-        }
+                builder.add(toDocId(rs.getLong(1)), rs.getString(2), rs.getString(3),
+                    createdAt == null ? Long.MIN_VALUE : createdAt.getTime(), text, checksum);
+            }));
+        DocumentStore documents = builder.build();
+
+        System.out.println("Loaded document store: " + documents.documentCount() + " documents, ~" +
+            (documents.estimatedBytes() / (1024 * 1024)) + " MB in " + (System.currentTimeMillis() - startTime) + " ms");
+        return documents;
     }
 
     /**
-     * Split a list into approximately equal-sized chunks
+     * Load the postings into the primitive index and into the nested boxed
+     * maps the index used to be, and compare load time and heap use.
+     * Both are filled from the same streaming scan, so the difference is
+     * the representation alone.
      */
-    private <T> List<List<T>> splitIntoChunks(List<T> list, int numChunks) {
-        List<List<T>> chunks = new ArrayList<>();
-        int size = list.size();
-        
-        // Return single empty chunk if list is empty
-        if (size == 0) {
-            chunks.add(new ArrayList<>());
-            return chunks;
-        }
-        
-        // Adjust number of chunks if list is smaller
-        numChunks = Math.min(numChunks, size);
-        
-        // Calculate chunk size
-        int chunkSize = size / numChunks;
-        int remainder = size % numChunks;
-        
-        int startIndex = 0;
-        for (int i = 0; i < numChunks; i++) {
-            int currentChunkSize = chunkSize + (i < remainder ? 1 : 0);
-            if (currentChunkSize > 0) {
-                int endIndex = Math.min(startIndex + currentChunkSize, size);
-                chunks.add(new ArrayList<>(list.subList(startIndex, endIndex)));
-                startIndex = endIndex;
-            }
+    public Map<String, Object> benchmarkInMemoryIndex() {
+        Map<String, Object> report = new LinkedHashMap<>();
+        Runtime runtime = Runtime.getRuntime();
+
+        System.gc();
+        long before = runtime.totalMemory() - runtime.freeMemory();
+        long start = System.nanoTime();
+        InMemoryIndex index = loadInMemoryIndex();
+        long primitiveNanos = System.nanoTime() - start;
+        System.gc();
+        long primitiveHeap = runtime.totalMemory() - runtime.freeMemory() - before;
+
+        System.gc();
+        before = runtime.totalMemory() - runtime.freeMemory();
+        start = System.nanoTime();
+        Map<String, Map<Long, Integer>> map = new java.util.concurrent.ConcurrentHashMap<>();
+        readOnlyTransactionTemplate.executeWithoutResult(status ->
+            streamingJdbcTemplate.query(IN_MEMORY_INDEX_QUERY, rs -> {
+                map.computeIfAbsent(rs.getString(2), k -> new java.util.concurrent.ConcurrentHashMap<>())
+                    .put(rs.getLong(3), rs.getInt(4));
+            }));
+        long mapNanos = System.nanoTime() - start;
+        System.gc();
+        long mapHeap = runtime.totalMemory() - runtime.freeMemory() - before;
+
+        report.put("terms", index.termCount());
+        report.put("postings", index.postingsCount());
+        report.put("primitiveLoadMs", primitiveNanos / 1_000_000.0);
+        report.put("primitiveHeapBytes", primitiveHeap);
+        report.put("primitiveEstimatedBytes", index.estimatedBytes());
+        report.put("mapLoadMs", mapNanos / 1_000_000.0);
+        report.put("mapHeapBytes", mapHeap);
+        report.put("mapTerms", map.size());
+        report.put("heapRatio", primitiveHeap <= 0 ? 0.0 : (double) mapHeap / primitiveHeap);
+        return report;
+    }
+
+    private static int toDocId(long docId) {
+        if (docId > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Document id " + docId + " does not fit the in-memory index");
         }
-        
-        return chunks;
+        return (int) docId;
     }
 
-    // (doc_id, #words)
+    // (doc_id, #words), as recorded in document_stats when each document was indexed
     public Map<Long, Long> getDocumentCnt() {
         Map<Long, Long> docCnt = new HashMap<>();
-        int pageSize = 500; // Increased batch size for better performance
-        int page = 0;
-        boolean hasMore = true;
-        
-        while (hasMore) {
-            List<Document> docs = documentRepository.findAll(PageRequest.of(page, pageSize)).getContent();
-            if (docs.isEmpty()) {
-                hasMore = false;
-                continue;
-            }
-            
-            // Process the batch in parallel for better performance
-            Map<Long, Long> batchCounts = docs.parallelStream()
-                .collect(Collectors.toMap(
-                    Document::getId,
-                    doc -> {
-                        String cleanedHTML = preIndexer.cleanHTML(doc.getContent());
-                        List<String> words = preIndexer.tokenize(cleanedHTML);
-                        words = preIndexer.removeStopWords(words);
-                        words = preIndexer.Stemming(words);
-                        return (long) words.size();
-                    }
-                ));
-            
-            // Add batch results to the overall map
-            docCnt.putAll(batchCounts);
-            
-            page++;
-            
-            // Help GC between batches
-            System.gc();
-        }
-        
+        jdbcTemplate.query("SELECT doc_id, length FROM document_stats", rs -> {
+            docCnt.put(rs.getLong(1), rs.getLong(2));
+        });
         return docCnt;
     }
 
+    /**
+     * Average indexed document length, or 0 when nothing is indexed yet
+     */
+    public double getAverageDocumentLength() {
+        Double average = documentStatsRepository.averageLength();
+        return average == null ? 0.0 : average;
+    }
+
     // This function creates a frequency array from the document count map.
     // The index is the document ID, and the value is the word count.
     public long[] getDocumentCntArray() {
@@ -878,24 +1116,6 @@ public class IndexerService {
         return freqArray;
     }
 
-    /**
-     * Returns a string with a progress bar
-     */
-    private String getProgressBar(long current, long total, int barLength) {
-        float percent = (float) current / total;
-        int completedLength = Math.round(barLength * percent);
-        
-        StringBuilder bar = new StringBuilder("[");
-        for (int i = 0; i < barLength; i++) {
-            bar.append(i < completedLength ? "=" : " ");
-        }
-        bar.append("] ");
-        bar.append(String.format("%.1f%%", percent * 100));
-        bar.append(String.format(" (%d/%d)", current, total));
-        
-        return bar.toString();
-    }
-
     /**
      * Compute and store IDF values for all words in the index
      * These values are used for faster relevance ranking during search
@@ -930,213 +1150,122 @@ public class IndexerService {
     /**
      * Compute and store IDF values for all words
      */
-    @Transactional
     private void computeAndStoreIdfValues(long totalDocuments) {
         System.out.println("Computing IDF values for all words...");
         long startTime = System.currentTimeMillis();
         
-        // Process words in batches to avoid memory issues
-        int pageSize = 1000;
-        int page = 0;
-        boolean hasMore = true;
-        int processedCount = 0;
-        
-        while (hasMore) {
-            List<Word> wordBatch = wordRepository.findAll(PageRequest.of(page, pageSize)).getContent();
-            if (wordBatch.isEmpty()) {
-                hasMore = false;
-                continue;
-            }
-            
-            for (Word word : wordBatch) {
-                try {
-                    // Count documents containing this word
-                    long docFrequency = jdbcTemplate.queryForObject(
-                        "SELECT COUNT(DISTINCT doc_id) FROM inverted_index WHERE word_id = ?", 
-                        Long.class, 
-                        word.getId());
-                    
-                    if (docFrequency == 0) {
-                        // Skip words that don't appear in any document
-                        continue;
-                    }
-                    
-                    // Calculate IDF with smoothing to avoid division by zero and extreme values
-                    // IDF = log((1 + N) / (1 + df)) + 1
-                    double idf = Math.log((1.0 + totalDocuments) / (1.0 + docFrequency)) + 1.0;
-                    
-                    // Store or update IDF value
-                    Optional<WordIdf> existingIdf = wordIdfRepository.findByWord(word);
-                    if (existingIdf.isPresent()) {
-                        WordIdf wordIdf = existingIdf.get();
-                        wordIdf.setIdfValue(idf);
-                        wordIdf.setDocumentFrequency(docFrequency);
-                        wordIdf.setTotalDocuments(totalDocuments);
-                        wordIdfRepository.save(wordIdf);
-                    } else {
-                        WordIdf wordIdf = new WordIdf();
-                        wordIdf.setWord(word);
-                        wordIdf.setIdfValue(idf);
-                        wordIdf.setDocumentFrequency(docFrequency);
-                        wordIdf.setTotalDocuments(totalDocuments);
-                        wordIdfRepository.save(wordIdf);
-                    }
-                    
-                    processedCount++;
-                    
-                    // Show progress every 1000 words
-                    if (processedCount % 1000 == 0) {
-                        long elapsedTime = System.currentTimeMillis() - startTime;
-                        System.out.printf("Processed IDF for %d words - Elapsed time: %.2fs\n", 
-                            processedCount, elapsedTime / 1000.0);
-                    }
-                } catch (Exception e) {
-                    System.err.println("Error computing IDF for word " + word.getWord() + ": " + e.getMessage());
-                }
-            }
-            
-            page++;
-        }
+        // IDF with smoothing to avoid division by zero and extreme values
+        // IDF = ln((1 + N) / (1 + df)) + 1
+        int processedCount = replaceIdfValues("LN((1.0 + CAST(? AS DOUBLE PRECISION)) / (1.0 + COUNT(*))) + 1.0",
+            totalDocuments);
         
         long totalTime = System.currentTimeMillis() - startTime;
         System.out.println("IDF computation completed for " + processedCount + " words in " + (totalTime / 1000.0) + " seconds");
     }
     
     /**
-     * Compute and store TF and TF-IDF values for all word-document pairs
+     * Compute and store TF and TF-IDF values for all word-document pairs.
+     * One streaming pass over the postings ordered by word: each term's
+     * postings are scored, normalized by the term's maximum and written in bulk.
      */
-    @Transactional
     private void computeAndStoreTfIdfValues(long totalDocuments) {
         System.out.println("Computing TF-IDF scores for all word-document pairs...");
         long startTime = System.currentTimeMillis();
         
-        // Get document length information (total terms per document)
-        Map<Long, Long> docLengths = getDocumentCnt();
-        
-        // Calculate average document length for BM25-style normalization
-        double avgDocLength = docLengths.values().stream()
-                .mapToLong(Long::longValue)
-                .average()
-                .orElse(500.0); // fallback to 500 if no data
+        // Average document length for BM25-style normalization
+        double avgDocLength = getAverageDocumentLength();
+        if (avgDocLength <= 0) {
+            avgDocLength = 500.0; // fallback to 500 if no data
+        }
         
-        // Process in batches by word to avoid memory issues
-        int pageSize = 100;
-        int page = 0;
-        boolean hasMore = true;
-        AtomicLong processedPairs = new AtomicLong(0);
+        TfIdfWriter writer = new TfIdfWriter(avgDocLength);
+        
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update("DELETE FROM word_document_metrics");
+            streamingJdbcTemplate.query(
+                "SELECT ii.word_id, ii.doc_id, ii.frequency, wi.idf_value, ds.length FROM inverted_index ii " +
+                "JOIN word_idf wi ON wi.word_id = ii.word_id " +
+                "LEFT JOIN document_stats ds ON ds.doc_id = ii.doc_id ORDER BY ii.word_id",
+                rs -> {
+                    long docLength = rs.getLong(5);
+                    writer.add(rs.getLong(1), rs.getLong(2), rs.getInt(3), rs.getDouble(4),
+                        rs.wasNull() ? -1 : docLength);
+                });
+            writer.finish();
+        });
         
+        long totalTime = System.currentTimeMillis() - startTime;
+        System.out.println("TF-IDF computation completed for " + writer.processedPairs + 
+                " word-document pairs in " + (totalTime / 1000.0) + " seconds");
+    }
+
+    /**
+     * Accumulates the postings of one term at a time from an ordered stream,
+     * computes their BM25-style scores and writes them in JDBC batches.
+     */
+    private class TfIdfWriter {
         // BM25 parameters
-        final double k1 = 1.2; // Controls term frequency scaling
-        final double b = 0.75; // Controls document length normalization
+        private static final double K1 = 1.2; // Controls term frequency scaling
+        private static final double B = 0.75; // Controls document length normalization
+        private static final int WRITE_BATCH_SIZE = 1000;
+        
+        private final double avgDocLength;
+        private final List<Object[]> termRows = new ArrayList<>();
+        private final List<Object[]> pendingRows = new ArrayList<>();
+        private long currentWordId = -1;
+        private double maxTfIdf = 0.0;
+        private long processedPairs = 0;
+        
+        TfIdfWriter(double avgDocLength) {
+            this.avgDocLength = avgDocLength;
+        }
         
-        while (hasMore) {
-            List<Word> wordBatch = wordRepository.findAll(PageRequest.of(page, pageSize)).getContent();
-            if (wordBatch.isEmpty()) {
-                hasMore = false;
-                continue;
+        void add(long wordId, long docId, int frequency, double idf, long docLength) {
+            if (wordId != currentWordId) {
+                finishTerm();
+                currentWordId = wordId;
             }
             
-            for (Word word : wordBatch) {
-                try {
-                    // Get IDF for this word
-                    Optional<WordIdf> wordIdfOpt = wordIdfRepository.findByWord(word);
-                    if (!wordIdfOpt.isPresent()) {
-                        continue; // Skip if IDF not computed
-                    }
-                    
-                    double idf = wordIdfOpt.get().getIdfValue();
-                    
-                    // Get all documents containing this word
-                    List<InvertedIndex> indexEntries = invertedIndexRepository.findByWordId(word.getId());
-                    
-                    // Store maximum TF-IDF for normalization
-                    double maxTfIdf = 0.0;
-                    
-                    // First pass: calculate TF-IDF scores and find max
-                    List<WordDocumentMetrics> metricsToSave = new ArrayList<>();
-                    
-                    for (InvertedIndex entry : indexEntries) {
-                        Long docId = entry.getDocument().getId();
-                        Integer frequency = entry.getFrequency();
-                        
-                        // Get document length, use the avgDocLength as a default if not found
-                        Long docLength = docLengths.containsKey(docId) ? docLengths.get(docId) : (long) avgDocLength;
-                        
-                        // Calculate normalized document length for BM25
-                        double normDocLength = docLength / avgDocLength;
-                        
-                        // Calculate BM25-style term frequency component
-                        double tf = ((double) frequency * (k1 + 1)) / 
-                                  (frequency + k1 * (1 - b + b * normDocLength));
-                        
-                        // Calculate TF-IDF score
-                        double tfIdf = tf * idf;
-                        
-                        // Keep track of maximum TF-IDF
-                        maxTfIdf = Math.max(maxTfIdf, tfIdf);
-                        
-                        WordDocumentMetrics metrics = new WordDocumentMetrics();
-                        metrics.setWord(word);
-                        metrics.setDocument(entry.getDocument());
-                        metrics.setFrequency(frequency);
-                        metrics.setTermFrequency(tf);
-                        metrics.setTfIdfScore(tfIdf);
-                        metrics.setNormalizedScore(0.0); // Will be set in second pass
-                        
-                        metricsToSave.add(metrics);
-                    }
-                    
-                    // Second pass: normalize scores and save
-                    for (WordDocumentMetrics metrics : metricsToSave) {
-                        // Normalize to [0,1] range if max > 0
-                        if (maxTfIdf > 0) {
-                            metrics.setNormalizedScore(metrics.getTfIdfScore() / maxTfIdf);
-                        } else {
-                            metrics.setNormalizedScore(0.0);
-                        }
-                        
-                        // Save to database (use JDBC batch operations for better performance)
-                        try {
-                            // Check if entry already exists
-                            Optional<WordDocumentMetrics> existingMetrics = 
-                                wordDocumentMetricsRepository.findByWordAndDocument(metrics.getWord(), metrics.getDocument());
-                            
-                            if (existingMetrics.isPresent()) {
-                                // Update existing entry
-                                WordDocumentMetrics existing = existingMetrics.get();
-                                existing.setFrequency(metrics.getFrequency());
-                                existing.setTermFrequency(metrics.getTermFrequency());
-                                existing.setTfIdfScore(metrics.getTfIdfScore());
-                                existing.setNormalizedScore(metrics.getNormalizedScore());
-                                wordDocumentMetricsRepository.save(existing);
-                            } else {
-                                // Insert new entry
-                                wordDocumentMetricsRepository.save(metrics);
-                            }
-                            
-                            processedPairs.incrementAndGet();
-                        } catch (Exception e) {
-                            System.err.println("Error saving metrics: " + e.getMessage());
-                        }
-                    }
-                    
-                    // Show progress every 50 words
-                    if (processedPairs.get() % 1000 == 0) {
-                        long elapsedTime = System.currentTimeMillis() - startTime;
-                        System.out.printf("Processed TF-IDF for %d word-document pairs - Elapsed time: %.2fs\n", 
-                            processedPairs.get(), elapsedTime / 1000.0);
-                    }
-                } catch (Exception e) {
-                    System.err.println("Error computing TF-IDF for word " + word.getWord() + ": " + e.getMessage());
-                }
+            // Use the avgDocLength as a default if the document has no stats
+            double normDocLength = docLength < 0 ? 1.0 : docLength / avgDocLength;
+            
+            // BM25-style term frequency component
+            double tf = ((double) frequency * (K1 + 1)) / (frequency + K1 * (1 - B + B * normDocLength));
+            double tfIdf = tf * idf;
+            maxTfIdf = Math.max(maxTfIdf, tfIdf);
+            
+            termRows.add(new Object[]{wordId, docId, frequency, tf, tfIdf, 0.0});
+        }
+        
+        void finish() {
+            finishTerm();
+            flush();
+        }
+        
+        private void finishTerm() {
+            // Normalize to [0,1] range by the term's maximum score
+            for (Object[] row : termRows) {
+                row[5] = maxTfIdf > 0 ? (double) row[4] / maxTfIdf : 0.0;
+                pendingRows.add(row);
             }
+            processedPairs += termRows.size();
+            termRows.clear();
+            maxTfIdf = 0.0;
             
-            page++;
+            if (pendingRows.size() >= WRITE_BATCH_SIZE) {
+                flush();
+            }
         }
         
-        long totalTime = System.currentTimeMillis() - startTime;
-        System.out.println("TF-IDF computation completed for " + processedPairs.get() + 
-                " word-document pairs in " + (totalTime / 1000.0) + " seconds");
+        private void flush() {
+            if (pendingRows.isEmpty()) {
+                return;
+            }
+            jdbcTemplate.batchUpdate(
+                "INSERT INTO word_document_metrics (word_id, doc_id, frequency, term_frequency, tf_idf_score, " +
+                "normalized_score) VALUES (?, ?, ?, ?, ?, ?)", pendingRows);
+            pendingRows.clear();
+        }
     }
 
 }
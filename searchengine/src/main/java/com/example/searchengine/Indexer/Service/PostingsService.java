@@ -0,0 +1,204 @@
+package com.example.searchengine.Indexer.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.searchengine.Indexer.Postings.PostingsBuilder;
+import com.example.searchengine.Indexer.Postings.PostingsCodec;
+import com.example.searchengine.Indexer.Postings.PostingsCursor;
+import com.example.searchengine.Indexer.Postings.PostingsList;
+
+/**
+ * Benchmarks the compressed postings format the snapshot uses
+ * against the row-per-posting {@code inverted_index} / {@code word_position}
+ * tables, encoding every term's postings from the tables on the fly.
+ */
+@Service
+public class PostingsService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PostingsService.class);
+
+    private static final String POSTINGS_STREAM_QUERY =
+        "SELECT ii.word_id, ii.doc_id, ii.frequency, wp.position FROM inverted_index ii " +
+        "LEFT JOIN word_position wp ON wp.word_id = ii.word_id AND wp.doc_id = ii.doc_id " +
+        "ORDER BY ii.word_id, ii.doc_id, wp.position";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate streamingJdbcTemplate;
+    private final TransactionTemplate readOnlyTransactionTemplate;
+
+    @Autowired
+    public PostingsService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+
+        // Postgres only streams a result set with a fetch size inside a transaction
+        this.streamingJdbcTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.streamingJdbcTemplate.setFetchSize(10000);
+    }
+
+    /**
+     * Compare the compressed postings with the row tables for size and read
+     * speed, using the {@code sampleTerms} terms with the longest postings.
+     */
+    public Map<String, Object> benchmark(int sampleTerms) {
+        Map<String, Object> report = new LinkedHashMap<>();
+        long startTime = System.currentTimeMillis();
+
+        List<Long> wordIds = jdbcTemplate.queryForList(
+            "SELECT word_id FROM inverted_index GROUP BY word_id ORDER BY COUNT(*) DESC LIMIT ?", Long.class, sampleTerms);
+        if (wordIds.isEmpty()) {
+            report.put("message", "No postings found, index some documents first");
+            return report;
+        }
+
+        // Size: encode every term in one ordered pass, keeping the sampled terms' bytes
+        Set<Long> sampled = new HashSet<>(wordIds);
+        Map<Long, byte[]> encodedByWord = new HashMap<>();
+        long[] totals = new long[3]; // terms, postings, bytes
+        readOnlyTransactionTemplate.executeWithoutResult(status -> {
+            PostingsBuilder builder = new PostingsBuilder(true);
+            long[] currentWord = {-1L};
+            streamingJdbcTemplate.query(POSTINGS_STREAM_QUERY, rs -> {
+                long wordId = rs.getLong(1);
+                int docId = toDocId(rs.getLong(2));
+                int frequency = rs.getInt(3);
+                int position = rs.getInt(4);
+                boolean hasPosition = !rs.wasNull();
+
+                if (wordId != currentWord[0]) {
+                    if (currentWord[0] != -1L) {
+                        encodeTerm(currentWord[0], builder, totals, sampled, encodedByWord);
+                    }
+                    currentWord[0] = wordId;
+                    builder.reset();
+                }
+                if (builder.lastDocId() != docId) {
+                    builder.addDoc(docId, frequency);
+                }
+                if (hasPosition) {
+                    builder.addPosition(position);
+                }
+            });
+            if (currentWord[0] != -1L) {
+                encodeTerm(currentWord[0], builder, totals, sampled, encodedByWord);
+            }
+        });
+        report.put("terms", totals[0]);
+        report.put("postings", totals[1]);
+        report.put("encodedBytes", totals[2]);
+        report.put("bytesPerPosting", totals[1] == 0 ? 0.0 : (double) totals[2] / totals[1]);
+        report.put("encodeMs", System.currentTimeMillis() - startTime);
+        try {
+            Long rowBytes = jdbcTemplate.queryForObject(
+                "SELECT pg_total_relation_size('inverted_index') + pg_total_relation_size('word_position')",
+                Long.class);
+            report.put("rowTablesBytes", rowBytes);
+            report.put("compressionRatio", totals[2] == 0 ? 0.0 : (double) rowBytes / totals[2]);
+        } catch (Exception e) {
+            logger.warn("Relation sizes are not available: {}", e.getMessage());
+        }
+
+        // Read speed: row tables vs decoding the same terms
+        long rowPostings = 0;
+        long rowStart = System.nanoTime();
+        for (Long wordId : wordIds) {
+            rowPostings += jdbcTemplate.queryForList(
+                "SELECT doc_id, frequency FROM inverted_index WHERE word_id = ? ORDER BY doc_id", wordId).size();
+            jdbcTemplate.queryForList(
+                "SELECT doc_id, position FROM word_position WHERE word_id = ? ORDER BY doc_id, position", wordId);
+        }
+        long rowNanos = System.nanoTime() - rowStart;
+
+        List<byte[]> encoded = new ArrayList<>();
+        for (Long wordId : wordIds) {
+            byte[] data = encodedByWord.get(wordId);
+            if (data != null) {
+                encoded.add(data);
+            }
+        }
+        long decodeStart = System.nanoTime();
+        for (byte[] data : encoded) {
+            PostingsCodec.decode(data);
+        }
+        long firstDecodeNanos = System.nanoTime() - decodeStart;
+
+        report.put("sampleTerms", wordIds.size());
+        report.put("samplePostings", rowPostings);
+        report.put("rowTablesReadMs", rowNanos / 1_000_000.0);
+        report.put("compressedDecodeMs", firstDecodeNanos / 1_000_000.0);
+
+        // Pure decode throughput, warmed up
+        long decodedPostings = 0;
+        long decodeNanos = 0;
+        for (int round = 0; round < 5; round++) {
+            long start = System.nanoTime();
+            long count = 0;
+            for (byte[] data : encoded) {
+                count += PostingsCodec.decode(data).size();
+            }
+            if (round > 0) {
+                decodeNanos += System.nanoTime() - start;
+                decodedPostings += count;
+            }
+        }
+        report.put("decodeNanosPerPosting", decodedPostings == 0 ? 0.0 : (double) decodeNanos / decodedPostings);
+
+        // Skip pointers: advance to every 100th doc and count decoded blocks
+        long blocksTotal = 0;
+        long blocksDecoded = 0;
+        long skipNanos = 0;
+        for (byte[] data : encoded) {
+            PostingsList list = PostingsCodec.decode(data);
+            int[] docs = list.getDocIds();
+            long start = System.nanoTime();
+            PostingsCursor cursor = new PostingsCursor(data);
+            for (int i = 0; i < docs.length; i += 100) {
+                cursor.advance(docs[i]);
+            }
+            skipNanos += System.nanoTime() - start;
+            blocksTotal += (docs.length + PostingsCodec.BLOCK_SIZE - 1) / PostingsCodec.BLOCK_SIZE;
+            blocksDecoded += cursor.blocksDecoded();
+        }
+        report.put("skipAdvanceMs", skipNanos / 1_000_000.0);
+        report.put("skipBlocksDecoded", blocksDecoded);
+        report.put("skipBlocksTotal", blocksTotal);
+
+        return report;
+    }
+
+    private static void encodeTerm(long wordId, PostingsBuilder builder, long[] totals, Set<Long> sampled,
+            Map<Long, byte[]> encodedByWord) {
+        if (builder.size() == 0) {
+            return;
+        }
+        byte[] data = builder.encode();
+        totals[0]++;
+        totals[1] += builder.size();
+        totals[2] += data.length;
+        if (sampled.contains(wordId)) {
+            encodedByWord.put(wordId, data);
+        }
+    }
+
+    private static int toDocId(long docId) {
+        if (docId > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Document id " + docId + " does not fit the postings format");
+        }
+        return (int) docId;
+    }
+}
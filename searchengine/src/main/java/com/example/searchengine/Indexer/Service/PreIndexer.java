@@ -2,8 +2,10 @@ package com.example.searchengine.Indexer.Service;
 
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Scanner;
+import java.util.Set;
 import java.util.Vector;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -45,6 +47,43 @@ public class PreIndexer {
         return docs;
     }
 
+    /**
+     * The indexed terms of a text, in order: tokenized, without stop words and
+     * stemmed. Queries must go through the same steps to match term positions.
+     */
+    public List<String> analyze(String text) {
+        return Stemming(removeStopWords(tokenize(text)));
+    }
+
+    /**
+     * The same terms as {@link #analyze(String)}, filling spans with the
+     * [start, end) characters each term was taken from, in the lowercased
+     * text.
+     */
+    public List<String> analyze(String text, List<int[]> spans) {
+        List<int[]> tokenSpans = new ArrayList<>();
+        List<String> tokens = tokenize(text, tokenSpans);
+        Set<String> stopWords = new HashSet<>(getStopWords());
+        List<String> kept = new ArrayList<>();
+        for (int i = 0; i < tokens.size(); i++) {
+            String token = tokens.get(i);
+            if (token != null && token.length() > 1 && !stopWords.contains(token)) {
+                kept.add(token);
+                spans.add(tokenSpans.get(i));
+            }
+        }
+        return Stemming(kept);
+    }
+
+    /**
+     * The indexed terms of a url: host and path words, without the scheme
+     * and a leading www.
+     */
+    public List<String> analyzeUrl(String url) {
+        String words = url.replaceFirst("^[a-zA-Z][a-zA-Z0-9+.-]*://(www\\.)?", "").replaceAll("[^A-Za-z0-9]+", " ");
+        return analyze(words);
+    }
+
     public String cleanHTML(String paragraph) {
         // Parse the HTML string into a Document object
         Document doc = Jsoup.parse(paragraph);
@@ -91,6 +130,15 @@ public class PreIndexer {
     }
 
     public List<String> tokenize(String text) {
+        return tokenize(text, null);
+    }
+
+    /**
+     * Tokens of a text; when spans is not null it receives the [start, end)
+     * characters of every token in the lowercased text, parts of compound
+     * tokens included.
+     */
+    public List<String> tokenize(String text, List<int[]> spans) {
         text = text.toLowerCase();
         List<String> words = new Vector<>();
         
@@ -120,16 +168,22 @@ public class PreIndexer {
             }
             
             // Add the whole token
+            int tokenStart = matcher.start();
             words.add(token);
+            addSpan(spans, tokenStart, token, 0, token.length());
             
             // Split compound tokens to increase indexing coverage
             
             // Handle dotted tokens (like "module.function")
             if (token.contains(".")) {
                 String[] parts = token.split("\\.");
+                int from = 0;
                 for (String part : parts) {
+                    int partStart = token.indexOf(part, from);
+                    from = partStart + part.length();
                     if (part != null && !part.isEmpty() && !words.contains(part)) {
                         words.add(part);
+                        addSpan(spans, tokenStart, token, partStart, from);
                     }
                 }
             }
@@ -137,9 +191,13 @@ public class PreIndexer {
             // Handle tokens with operators (like "x+y")
             if (token.matches(".*[\\+\\-\\*\\/\\=].*")) {
                 String[] parts = token.split("[\\+\\-\\*\\/\\=]");
+                int from = 0;
                 for (String part : parts) {
+                    int partStart = token.indexOf(part, from);
+                    from = partStart + part.length();
                     if (part != null && !part.isEmpty() && !words.contains(part)) {
                         words.add(part);
+                        addSpan(spans, tokenStart, token, partStart, from);
                     }
                 }
             }
@@ -151,10 +209,13 @@ public class PreIndexer {
                 
                 if (base != null && !base.isEmpty() && !words.contains(base)) {
                     words.add(base);
+                    addSpan(spans, tokenStart, token, 0, base.length());
                 }
                 
                 if (index != null && !index.isEmpty() && !words.contains(index)) {
                     words.add(index);
+                    int indexStart = token.indexOf('[') + 1;
+                    addSpan(spans, tokenStart, token, indexStart, indexStart + index.length());
                 }
             }
         }
@@ -162,6 +223,12 @@ public class PreIndexer {
         return words;
     }
 
+    private static void addSpan(List<int[]> spans, int tokenStart, String token, int from, int to) {
+        if (spans != null) {
+            spans.add(new int[] {tokenStart + from, tokenStart + Math.min(to, token.length())});
+        }
+    }
+
     public List<String> Stemming(List<String> words) {
         List<String> stemmedWords = new Vector<>();
         PorterStemmer ps = new PorterStemmer();
@@ -0,0 +1,367 @@
+package com.example.searchengine.Indexer.Shard;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.TreeSet;
+
+import com.example.searchengine.Indexer.Memory.FieldIndex;
+import com.example.searchengine.Indexer.Memory.InMemoryIndex;
+import com.example.searchengine.Indexer.Memory.IndexField;
+import com.example.searchengine.Indexer.Postings.PostingsIntersection;
+
+/**
+ * One shard's postings merged across fields for top-k retrieval. Per term,
+ * each document carries its BM25F term frequency: the field frequencies
+ * weighted and normalized by the collection's average field lengths, which
+ * BM25F then saturates once. Lists are cut into blocks of
+ * {@link #BLOCK_SIZE} documents that keep their last document and their
+ * largest frequency:
+ *
+ * <pre>
+ * terms[ordinal]                                      sorted terms
+ * offsets[ordinal] .. offsets[ordinal + 1]            slice of docs and tfs
+ * blockOffsets[ordinal] .. blockOffsets[ordinal + 1]  slice of blockLastDocs and blockMaxTfs
+ * maxTfs[ordinal]                                     largest tf of the term
+ * </pre>
+ *
+ * A term adds idf * tf / (K1 + tf) to a document's score, which grows with
+ * tf, so the largest tf of a list or block bounds what the term adds to
+ * any document in it whatever the query. {@link #search} uses those bounds
+ * for block-max WAND: documents whose bound cannot beat the k-th best score
+ * so far are skipped without being scored, whole blocks at a time.
+ */
+public final class ImpactIndex {
+
+    public static final int BLOCK_SIZE = 64;
+
+    private static final IndexField[] FIELDS = IndexField.values();
+
+    // Bounds and scores add up the same terms in different orders; keep rounding from pruning a tied document
+    private static final double BOUND_SLACK = 1e-9;
+
+    private final String[] terms;
+    private final int[] offsets;
+    private final int[] docs;
+    private final float[] tfs;
+    private final int[] blockOffsets;
+    private final int[] blockLastDocs;
+    private final float[] blockMaxTfs;
+    private final float[] maxTfs;
+
+    private ImpactIndex(String[] terms, int[] offsets, int[] docs, float[] tfs, int[] blockOffsets,
+            int[] blockLastDocs, float[] blockMaxTfs, float[] maxTfs) {
+        this.terms = terms;
+        this.offsets = offsets;
+        this.docs = docs;
+        this.tfs = tfs;
+        this.blockOffsets = blockOffsets;
+        this.blockLastDocs = blockLastDocs;
+        this.blockMaxTfs = blockMaxTfs;
+        this.maxTfs = maxTfs;
+    }
+
+    /**
+     * Impacts of a shard, normalized by the average field lengths of the
+     * whole collection so that every shard scores on the same scale.
+     */
+    public static ImpactIndex of(FieldIndex shard, double[] averageLengths) {
+        TreeSet<String> allTerms = new TreeSet<>();
+        long postings = 0;
+        for (IndexField field : FIELDS) {
+            InMemoryIndex index = shard.postings(field);
+            for (int ordinal = 0; ordinal < index.termCount(); ordinal++) {
+                allTerms.add(index.term(ordinal));
+            }
+            postings += index.postingsCount();
+        }
+        if (postings > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Too many postings for one shard: " + postings);
+        }
+
+        String[] terms = allTerms.toArray(new String[0]);
+        int[] offsets = new int[terms.length + 1];
+        int[] docs = new int[(int) postings];
+        float[] tfs = new float[(int) postings];
+        int[] blockOffsets = new int[terms.length + 1];
+        int[] blockLastDocs = new int[(int) postings / BLOCK_SIZE + terms.length];
+        float[] blockMaxTfs = new float[blockLastDocs.length];
+        float[] maxTfs = new float[terms.length];
+
+        // Field postings of the current term, merged by doc id
+        int[] ordinals = new int[FIELDS.length];
+        int[] slots = new int[FIELDS.length];
+        int size = 0;
+        int blocks = 0;
+        for (int t = 0; t < terms.length; t++) {
+            for (IndexField field : FIELDS) {
+                InMemoryIndex index = shard.postings(field);
+                int f = field.ordinal();
+                ordinals[f] = index.ordinal(terms[t]);
+                slots[f] = ordinals[f] >= 0 ? index.start(ordinals[f]) : 0;
+            }
+            offsets[t] = size;
+            blockOffsets[t] = blocks;
+            while (true) {
+                int docId = Integer.MAX_VALUE;
+                for (IndexField field : FIELDS) {
+                    int f = field.ordinal();
+                    InMemoryIndex index = shard.postings(field);
+                    if (ordinals[f] >= 0 && slots[f] < index.end(ordinals[f])) {
+                        docId = Math.min(docId, index.docAt(slots[f]));
+                    }
+                }
+                if (docId == Integer.MAX_VALUE) {
+                    break;
+                }
+                double tf = 0.0;
+                for (IndexField field : FIELDS) {
+                    int f = field.ordinal();
+                    InMemoryIndex index = shard.postings(field);
+                    if (ordinals[f] >= 0 && slots[f] < index.end(ordinals[f]) && index.docAt(slots[f]) == docId) {
+                        double average = averageLengths[f];
+                        double norm = average == 0 ? 1.0
+                            : 1 - field.getB() + field.getB() * shard.length(field, docId) / average;
+                        tf += field.getWeight() * index.freqAt(slots[f]) / norm;
+                        slots[f]++;
+                    }
+                }
+                docs[size] = docId;
+                tfs[size] = (float) tf;
+                if ((size - offsets[t]) % BLOCK_SIZE == 0) {
+                    blocks++;
+                }
+                blockLastDocs[blocks - 1] = docId;
+                blockMaxTfs[blocks - 1] = Math.max(blockMaxTfs[blocks - 1], tfs[size]);
+                maxTfs[t] = Math.max(maxTfs[t], tfs[size]);
+                size++;
+            }
+        }
+        offsets[terms.length] = size;
+        blockOffsets[terms.length] = blocks;
+        return new ImpactIndex(terms, offsets, Arrays.copyOf(docs, size), Arrays.copyOf(tfs, size), blockOffsets,
+            Arrays.copyOf(blockLastDocs, blocks), Arrays.copyOf(blockMaxTfs, blocks), maxTfs);
+    }
+
+    public int termCount() {
+        return terms.length;
+    }
+
+    /**
+     * Documents with the term in any field.
+     */
+    public int docFreq(String term) {
+        int ordinal = Arrays.binarySearch(terms, term);
+        return ordinal < 0 ? 0 : offsets[ordinal + 1] - offsets[ordinal];
+    }
+
+    /**
+     * Top k documents by BM25F among those containing at least minMatch of
+     * the terms. With pruning, documents that cannot make the top k are
+     * skipped; the hits are the same as without, only fewer documents are
+     * scored.
+     */
+    public TopHits search(List<String> terms, int minMatch, int k, FieldIndex.Statistics statistics,
+            boolean prune) {
+        List<TermCursor> cursors = new ArrayList<>(terms.size());
+        for (int i = 0; i < terms.size(); i++) {
+            int ordinal = Arrays.binarySearch(this.terms, terms.get(i));
+            if (ordinal >= 0) {
+                double idf = FieldIndex.idf(statistics.documentCount(), statistics.docFreqs()[i]);
+                cursors.add(new TermCursor(ordinal, idf));
+            }
+        }
+        PriorityQueue<double[]> top = new PriorityQueue<>(Math.max(1, k), (a, b) -> Double.compare(a[1], b[1]));
+        int required = Math.max(1, minMatch);
+        if (k <= 0 || cursors.size() < required) {
+            return new TopHits(new int[0], new double[0], 0);
+        }
+
+        TermCursor[] byDoc = cursors.toArray(new TermCursor[0]);
+        TermCursor[] byTerm = byDoc.clone();
+        int scored = 0;
+        while (true) {
+            sortByDoc(byDoc);
+            double threshold = prune && top.size() == k ? top.peek()[1] : Double.NEGATIVE_INFINITY;
+
+            // Pivot: the first document that enough terms could lift above the threshold
+            int pivot = -1;
+            double bound = 0.0;
+            for (int i = 0; i < byDoc.length && byDoc[i].doc() != TermCursor.NO_MORE_DOCS; i++) {
+                bound += byDoc[i].maxScore;
+                if (i + 1 >= required && bound + BOUND_SLACK > threshold) {
+                    pivot = i;
+                    break;
+                }
+            }
+            if (pivot < 0) {
+                break;
+            }
+            int pivotDoc = byDoc[pivot].doc();
+            while (pivot + 1 < byDoc.length && byDoc[pivot + 1].doc() == pivotDoc) {
+                pivot++;
+            }
+
+            // Blocks holding the pivot bound every document up to the first block end
+            if (threshold > Double.NEGATIVE_INFINITY && blocksBelow(byDoc, pivot, pivotDoc, threshold)) {
+                int next = pivot + 1 < byDoc.length ? byDoc[pivot + 1].doc() : TermCursor.NO_MORE_DOCS;
+                for (int i = 0; i <= pivot; i++) {
+                    next = Math.min(next, byDoc[i].blockLastDoc() + 1);
+                }
+                for (int i = 0; i <= pivot; i++) {
+                    byDoc[i].advance(next);
+                }
+                continue;
+            }
+
+            if (byDoc[0].doc() == pivotDoc) {
+                // Every term up to the pivot is on it: score in query order, as without pruning
+                double score = 0.0;
+                for (TermCursor cursor : byTerm) {
+                    if (cursor.doc() == pivotDoc) {
+                        score += cursor.score();
+                    }
+                }
+                scored++;
+                if (top.size() < k) {
+                    top.add(new double[] {pivotDoc, score});
+                } else if (score > top.peek()[1]) {
+                    top.poll();
+                    top.add(new double[] {pivotDoc, score});
+                }
+                for (int i = 0; i <= pivot; i++) {
+                    byDoc[i].advance(pivotDoc + 1);
+                }
+            } else {
+                for (int i = 0; i < pivot; i++) {
+                    byDoc[i].advance(pivotDoc);
+                }
+            }
+        }
+
+        int[] docIds = new int[top.size()];
+        double[] scores = new double[top.size()];
+        for (int i = top.size() - 1; i >= 0; i--) {
+            double[] hit = top.poll();
+            docIds[i] = (int) hit[0];
+            scores[i] = hit[1];
+        }
+        return new TopHits(docIds, scores, scored);
+    }
+
+    // Whether the blocks of the cursors up to the pivot together stay at or below the threshold
+    private static boolean blocksBelow(TermCursor[] byDoc, int pivot, int pivotDoc, double threshold) {
+        double blockBound = BOUND_SLACK;
+        for (int i = 0; i <= pivot; i++) {
+            blockBound += byDoc[i].blockMaxScore(pivotDoc);
+            if (blockBound > threshold) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Insertion sort: a handful of cursors, mostly in order already
+    private static void sortByDoc(TermCursor[] cursors) {
+        for (int i = 1; i < cursors.length; i++) {
+            TermCursor cursor = cursors[i];
+            int j = i - 1;
+            while (j >= 0 && cursors[j].doc() > cursor.doc()) {
+                cursors[j + 1] = cursors[j];
+                j--;
+            }
+            cursors[j + 1] = cursor;
+        }
+    }
+
+    /**
+     * Bytes held by the impact lists and block maxima.
+     */
+    public long estimatedBytes() {
+        long bytes = 16L * 8 + (long) offsets.length * 4 + (long) blockOffsets.length * 4 + (long) maxTfs.length * 4
+            + (long) docs.length * 8 + (long) blockLastDocs.length * 8;
+        for (String term : terms) {
+            bytes += 8 + 40 + term.length();
+        }
+        return bytes;
+    }
+
+    /**
+     * Position in one query term's impact list and, for block bounds, in
+     * its blocks. The block may run ahead of the document when only its
+     * bound was needed.
+     */
+    private final class TermCursor {
+        static final int NO_MORE_DOCS = Integer.MAX_VALUE;
+
+        final double idf;
+        final double maxScore;
+        final int start;
+        final int end;
+        final int firstBlock;
+        final int blockEnd;
+        int slot;
+        int block;
+
+        TermCursor(int ordinal, double idf) {
+            this.idf = idf;
+            this.maxScore = contribution(maxTfs[ordinal]);
+            this.start = offsets[ordinal];
+            this.end = offsets[ordinal + 1];
+            this.firstBlock = blockOffsets[ordinal];
+            this.blockEnd = blockOffsets[ordinal + 1];
+            this.slot = start;
+            this.block = firstBlock;
+        }
+
+        int doc() {
+            return slot < end ? docs[slot] : NO_MORE_DOCS;
+        }
+
+        double score() {
+            return contribution(tfs[slot]);
+        }
+
+        /**
+         * Move to the first document at or after target: skip whole blocks
+         * by their last document, then gallop inside the block.
+         */
+        void advance(int target) {
+            if (doc() >= target) {
+                return;
+            }
+            moveToBlock(target);
+            if (block == blockEnd) {
+                slot = end;
+                return;
+            }
+            int blockStart = start + (block - firstBlock) * BLOCK_SIZE;
+            slot = PostingsIntersection.gallop(docs, Math.max(slot, blockStart),
+                Math.min(end, blockStart + BLOCK_SIZE), target);
+        }
+
+        /**
+         * Largest score the term adds to any document of the block that
+         * would hold target, without moving to the document itself.
+         */
+        double blockMaxScore(int target) {
+            moveToBlock(target);
+            return block == blockEnd ? 0.0 : contribution(blockMaxTfs[block]);
+        }
+
+        int blockLastDoc() {
+            return block == blockEnd ? NO_MORE_DOCS - 1 : blockLastDocs[block];
+        }
+
+        private void moveToBlock(int target) {
+            while (block < blockEnd && blockLastDocs[block] < target) {
+                block++;
+            }
+        }
+
+        private double contribution(float tf) {
+            return idf * tf / (FieldIndex.K1 + tf);
+        }
+    }
+}
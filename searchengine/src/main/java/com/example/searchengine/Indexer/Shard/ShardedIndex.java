@@ -0,0 +1,207 @@
+package com.example.searchengine.Indexer.Shard;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import com.example.searchengine.Indexer.Memory.BatchScores;
+import com.example.searchengine.Indexer.Memory.FieldIndex;
+import com.example.searchengine.Indexer.Memory.IndexField;
+import com.example.searchengine.Indexer.Memory.InMemoryIndex;
+
+/**
+ * The field index split into shards by document id ({@code docId mod n}).
+ * Every shard holds the field postings and length norms of its own
+ * documents and answers a query on its own; the statistics BM25F needs
+ * from the whole collection (document count, average field lengths and
+ * term document frequencies) are summed over the shards, so every shard
+ * scores on the same scale and per-shard top hits can be merged directly.
+ *
+ * Shards share nothing but those statistics, so a shard could live on
+ * another node as long as the coordinator can ask it for its counts.
+ */
+public final class ShardedIndex {
+
+    private static final IndexField[] FIELDS = IndexField.values();
+    private static final int MAX_BATCH = 0x1FFFFF;
+
+    private final FieldIndex[] shards;
+    private final ImpactIndex[] impacts;
+    private final int documentCount;
+    private final double[] averageLengths;
+
+    private ShardedIndex(FieldIndex[] shards) {
+        this.shards = shards;
+        int documents = 0;
+        double[] totals = new double[FIELDS.length];
+        for (FieldIndex shard : shards) {
+            documents += shard.documentCount();
+            for (IndexField field : FIELDS) {
+                totals[field.ordinal()] += shard.averageLength(field) * shard.documentCount();
+            }
+        }
+        this.documentCount = documents;
+        this.averageLengths = new double[FIELDS.length];
+        for (int f = 0; f < FIELDS.length; f++) {
+            averageLengths[f] = documents == 0 ? 0.0 : totals[f] / documents;
+        }
+        this.impacts = Arrays.stream(shards).parallel()
+            .map(shard -> ImpactIndex.of(shard, averageLengths))
+            .toArray(ImpactIndex[]::new);
+    }
+
+    /**
+     * Split a field index into the given number of shards.
+     */
+    public static ShardedIndex split(FieldIndex fields, int shardCount) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("Shard count must be at least 1: " + shardCount);
+        }
+        FieldIndex[] shards = new FieldIndex[shardCount];
+        if (shardCount == 1) {
+            shards[0] = fields;
+        } else {
+            for (int s = 0; s < shardCount; s++) {
+                int shard = s;
+                shards[s] = fields.filter(docId -> Math.floorMod(docId, shardCount) == shard);
+            }
+        }
+        return new ShardedIndex(shards);
+    }
+
+    public static ShardedIndex empty() {
+        return new ShardedIndex(new FieldIndex[] {FieldIndex.empty()});
+    }
+
+    public int shardCount() {
+        return shards.length;
+    }
+
+    public FieldIndex shard(int shard) {
+        return shards[shard];
+    }
+
+    public int documentCount() {
+        return documentCount;
+    }
+
+    /**
+     * The shard that holds a document's postings and norms.
+     */
+    public FieldIndex forDocument(int docId) {
+        return shards[Math.floorMod(docId, shards.length)];
+    }
+
+    /**
+     * Collection-wide statistics for the query terms. A term's document
+     * frequency is, as in {@link FieldIndex#docFreq(String)}, the largest
+     * per-field one, each summed over the shards.
+     */
+    public FieldIndex.Statistics statistics(List<String> terms) {
+        int[] docFreqs = new int[terms.size()];
+        for (int i = 0; i < docFreqs.length; i++) {
+            String term = terms.get(i);
+            for (IndexField field : FIELDS) {
+                int docFreq = 0;
+                for (FieldIndex shard : shards) {
+                    InMemoryIndex postings = shard.postings(field);
+                    int ordinal = postings.ordinal(term);
+                    if (ordinal >= 0) {
+                        docFreq += postings.docFreq(ordinal);
+                    }
+                }
+                docFreqs[i] = Math.max(docFreqs[i], docFreq);
+            }
+        }
+        return new FieldIndex.Statistics(documentCount, averageLengths, docFreqs);
+    }
+
+    /**
+     * BM25F score of a document against the whole collection.
+     */
+    public double bm25f(List<String> terms, int docId, FieldIndex.Statistics statistics) {
+        return forDocument(docId).bm25f(terms, docId, statistics);
+    }
+
+    /**
+     * Scores of a batch of candidates, in the order given: each shard scores
+     * its own candidates in one pass with the collection-wide statistics.
+     */
+    public BatchScores scoreBatch(List<String> terms, int[] docIds, FieldIndex.Statistics statistics) {
+        if (docIds.length > MAX_BATCH) {
+            throw new IllegalArgumentException("Too many candidates to score at once: " + docIds.length);
+        }
+        BatchScores scores = new BatchScores(docIds.length);
+        long[] byShard = new long[docIds.length];
+        for (int i = 0; i < docIds.length; i++) {
+            // shard, then doc id, then position: sorting groups every shard's candidates in doc id order
+            long shard = Math.floorMod(docIds[i], shards.length);
+            byShard[i] = (shard << 53) | ((docIds[i] & 0xFFFFFFFFL) << 21) | i;
+        }
+        Arrays.sort(byShard);
+        int from = 0;
+        while (from < byShard.length) {
+            int shard = (int) (byShard[from] >>> 53);
+            int to = from;
+            while (to < byShard.length && (int) (byShard[to] >>> 53) == shard) {
+                to++;
+            }
+            int[] sortedDocIds = new int[to - from];
+            int[] positions = new int[to - from];
+            for (int i = from; i < to; i++) {
+                sortedDocIds[i - from] = (int) (byShard[i] >>> 21);
+                positions[i - from] = (int) (byShard[i] & MAX_BATCH);
+            }
+            shards[shard].scoreBatch(terms, sortedDocIds, positions, statistics, scores);
+            from = to;
+        }
+        return scores;
+    }
+
+    /**
+     * Top k documents by BM25F among those containing at least minMatch of
+     * the terms in any field. Every shard collects its own top k on the
+     * executor with block-max WAND, skipping documents that cannot make its
+     * top k, and the coordinator merges them.
+     */
+    public TopHits search(List<String> terms, int minMatch, int k, Executor executor) {
+        return search(terms, minMatch, k, executor, true);
+    }
+
+    /**
+     * The same hits as {@link #search}, scoring every matching document.
+     */
+    public TopHits searchExhaustive(List<String> terms, int minMatch, int k, Executor executor) {
+        return search(terms, minMatch, k, executor, false);
+    }
+
+    private TopHits search(List<String> terms, int minMatch, int k, Executor executor, boolean prune) {
+        FieldIndex.Statistics statistics = statistics(terms);
+        if (impacts.length == 1) {
+            return impacts[0].search(terms, minMatch, k, statistics, prune);
+        }
+        List<CompletableFuture<TopHits>> futures = new ArrayList<>(impacts.length);
+        for (ImpactIndex shard : impacts) {
+            futures.add(CompletableFuture.supplyAsync(() -> shard.search(terms, minMatch, k, statistics, prune),
+                executor));
+        }
+        List<TopHits> hits = new ArrayList<>(impacts.length);
+        for (CompletableFuture<TopHits> future : futures) {
+            hits.add(future.join());
+        }
+        return TopHits.merge(hits, k);
+    }
+
+    /**
+     * Bytes held by all shards, impacts included.
+     */
+    public long estimatedBytes() {
+        long bytes = 0;
+        for (int s = 0; s < shards.length; s++) {
+            bytes += shards[s].estimatedBytes() + impacts[s].estimatedBytes();
+        }
+        return bytes;
+    }
+}
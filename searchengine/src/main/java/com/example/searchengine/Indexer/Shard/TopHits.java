@@ -0,0 +1,45 @@
+package com.example.searchengine.Indexer.Shard;
+
+import java.util.List;
+
+/**
+ * Best documents of a query by score, highest first, and how many
+ * documents were scored to find them: every match when nothing was
+ * pruned, fewer when dynamic pruning skipped documents.
+ */
+public record TopHits(int[] docIds, double[] scores, int scored) {
+
+    public int size() {
+        return docIds.length;
+    }
+
+    /**
+     * The top k of several shards' hits; each list is already sorted.
+     */
+    public static TopHits merge(List<TopHits> shards, int k) {
+        int available = 0;
+        int scored = 0;
+        for (TopHits hits : shards) {
+            available += hits.size();
+            scored += hits.scored();
+        }
+        int size = Math.min(k, available);
+        int[] docIds = new int[size];
+        double[] scores = new double[size];
+        int[] cursors = new int[shards.size()];
+        for (int i = 0; i < size; i++) {
+            int best = -1;
+            for (int s = 0; s < shards.size(); s++) {
+                TopHits hits = shards.get(s);
+                if (cursors[s] < hits.size()
+                        && (best < 0 || hits.scores()[cursors[s]] > shards.get(best).scores()[cursors[best]])) {
+                    best = s;
+                }
+            }
+            docIds[i] = shards.get(best).docIds()[cursors[best]];
+            scores[i] = shards.get(best).scores()[cursors[best]];
+            cursors[best]++;
+        }
+        return new TopHits(docIds, scores, scored);
+    }
+}
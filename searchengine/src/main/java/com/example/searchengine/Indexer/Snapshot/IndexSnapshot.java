@@ -0,0 +1,175 @@
+package com.example.searchengine.Indexer.Snapshot;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import com.example.searchengine.Indexer.Postings.PostingsCodec;
+import com.example.searchengine.Indexer.Postings.PostingsCursor;
+import com.example.searchengine.Indexer.Postings.PostingsList;
+
+/**
+ * Memory-mapped view of a snapshot file written by
+ * {@link IndexSnapshotWriter}. Every section is a fixed-width table or a
+ * blob addressed from one, so opening only validates the header: doc and
+ * term lookups are binary searches over the mapped pages and nothing is
+ * copied onto the heap until a postings list is read.
+ */
+public final class IndexSnapshot {
+
+    static final int MAGIC = 0x49534E31; // "ISN1"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 64;
+    static final int DOC_BYTES = 16;        // int docId, int length, double pageRank
+    static final int DICTIONARY_BYTES = 28; // long termOffset, int termLength, int docFreq, long postingsOffset, int postingsLength
+
+    private final Path path;
+    private final MappedFile data;
+    private final long createdAt;
+    private final int docCount;
+    private final int termCount;
+    private final long totalPostings;
+    private final long docsOffset;
+    private final long dictionaryOffset;
+    private final long termsOffset;
+    private final long postingsOffset;
+
+    private IndexSnapshot(Path path, MappedFile data) throws IOException {
+        this.path = path;
+        this.data = data;
+        if (data.size() < HEADER_BYTES || data.getInt(0) != MAGIC) {
+            throw new IOException("Not an index snapshot: " + path);
+        }
+        if (data.getInt(4) != VERSION) {
+            throw new IOException("Unsupported index snapshot version " + data.getInt(4) + " in " + path);
+        }
+        createdAt = data.getLong(8);
+        docCount = data.getInt(16);
+        termCount = data.getInt(20);
+        totalPostings = data.getLong(24);
+        docsOffset = data.getLong(32);
+        dictionaryOffset = data.getLong(40);
+        termsOffset = data.getLong(48);
+        postingsOffset = data.getLong(56);
+        if (dictionaryOffset != docsOffset + (long) docCount * DOC_BYTES
+                || termsOffset != dictionaryOffset + (long) termCount * DICTIONARY_BYTES
+                || postingsOffset > data.size()) {
+            throw new IOException("Corrupt index snapshot header in " + path);
+        }
+    }
+
+    public static IndexSnapshot open(Path path) throws IOException {
+        return new IndexSnapshot(path, MappedFile.open(path));
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public long getSizeBytes() {
+        return data.size();
+    }
+
+    public int getDocCount() {
+        return docCount;
+    }
+
+    public int getTermCount() {
+        return termCount;
+    }
+
+    public long getTotalPostings() {
+        return totalPostings;
+    }
+
+    // Documents, by ordinal in doc id order
+
+    public int docId(int ordinal) {
+        return data.getInt(docsOffset + (long) ordinal * DOC_BYTES);
+    }
+
+    public int docLength(int ordinal) {
+        return data.getInt(docsOffset + (long) ordinal * DOC_BYTES + 4);
+    }
+
+    public double pageRank(int ordinal) {
+        return data.getDouble(docsOffset + (long) ordinal * DOC_BYTES + 8);
+    }
+
+    /**
+     * Ordinal of a doc id, or a negative value when the snapshot does not
+     * contain it.
+     */
+    public int docOrdinal(int docId) {
+        int low = 0;
+        int high = docCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midId = docId(mid);
+            if (midId < docId) {
+                low = mid + 1;
+            } else if (midId > docId) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    // Terms, by ordinal in unsigned utf-8 byte order
+
+    public String term(int ordinal) {
+        long entry = dictionaryOffset + (long) ordinal * DICTIONARY_BYTES;
+        return new String(data.getBytes(termsOffset + data.getLong(entry), data.getInt(entry + 8)),
+                StandardCharsets.UTF_8);
+    }
+
+    public int docFreq(int ordinal) {
+        return data.getInt(dictionaryOffset + (long) ordinal * DICTIONARY_BYTES + 12);
+    }
+
+    /**
+     * Ordinal of a term, or a negative value when the snapshot does not
+     * contain it.
+     */
+    public int termOrdinal(String term) {
+        byte[] key = term.getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = termCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long entry = dictionaryOffset + (long) mid * DICTIONARY_BYTES;
+            int cmp = data.compareBytes(termsOffset + data.getLong(entry), data.getInt(entry + 8), key);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    public byte[] postingsBytes(int termOrdinal) {
+        long entry = dictionaryOffset + (long) termOrdinal * DICTIONARY_BYTES;
+        return data.getBytes(postingsOffset + data.getLong(entry + 16), data.getInt(entry + 24));
+    }
+
+    public PostingsCursor cursor(int termOrdinal) {
+        return new PostingsCursor(postingsBytes(termOrdinal));
+    }
+
+    /**
+     * Decoded postings of a term, or null when the term is absent.
+     */
+    public PostingsList postings(String term) {
+        int ordinal = termOrdinal(term);
+        return ordinal < 0 ? null : PostingsCodec.decode(postingsBytes(ordinal));
+    }
+}
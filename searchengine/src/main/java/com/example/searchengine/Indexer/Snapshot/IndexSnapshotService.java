@@ -0,0 +1,261 @@
+package com.example.searchengine.Indexer.Snapshot;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.searchengine.Crawler.Repository.RelatedLinksRepository;
+import com.example.searchengine.Indexer.Postings.PostingsBuilder;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Writes the on-disk index snapshot after indexing and maps it at startup,
+ * so the ranker can start from the term dictionary, postings, document
+ * lengths and PageRank without scanning the database.
+ */
+@Service
+public class IndexSnapshotService {
+
+    private static final Logger logger = LoggerFactory.getLogger(IndexSnapshotService.class);
+
+    private static final String POSTINGS_STREAM_QUERY =
+        "SELECT ii.word_id, w.word, ii.doc_id, ii.frequency FROM inverted_index ii " +
+        "JOIN words w ON w.id = ii.word_id ORDER BY ii.word_id, ii.doc_id";
+
+    // Same PageRank parameters as Ranker1
+    private static final double DAMPING_FACTOR = 0.15;
+    private static final int MAX_ITERATIONS = 100;
+    private static final double CONVERGENCE_THRESHOLD = 0.0001;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate streamingJdbcTemplate;
+    private final TransactionTemplate readOnlyTransactionTemplate;
+    private final RelatedLinksRepository relatedLinksRepository;
+
+    @Value("${app.index.snapshot.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.index.snapshot.path:index-data/index.snapshot}")
+    private String snapshotPath;
+
+    private volatile IndexSnapshot current;
+
+    @Autowired
+    public IndexSnapshotService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+            RelatedLinksRepository relatedLinksRepository) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.relatedLinksRepository = relatedLinksRepository;
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+
+        // Postgres only streams a result set with a fetch size inside a transaction
+        this.streamingJdbcTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.streamingJdbcTemplate.setFetchSize(10000);
+    }
+
+    @PostConstruct
+    public void open() {
+        if (!enabled) {
+            return;
+        }
+        Path path = Paths.get(snapshotPath).toAbsolutePath();
+        if (!Files.exists(path)) {
+            logger.info("No index snapshot at {}, it will be written after the next indexing run", path);
+            return;
+        }
+        long start = System.currentTimeMillis();
+        try {
+            current = IndexSnapshot.open(path);
+            logger.info("Mapped index snapshot {} ({} docs, {} terms, {} bytes) in {} ms", path,
+                current.getDocCount(), current.getTermCount(), current.getSizeBytes(),
+                System.currentTimeMillis() - start);
+        } catch (IOException e) {
+            logger.warn("Ignoring unreadable index snapshot {}: {}", path, e.getMessage());
+        }
+    }
+
+    /**
+     * The mapped snapshot, or null when none has been written yet.
+     */
+    public IndexSnapshot current() {
+        return current;
+    }
+
+    /**
+     * Write a new snapshot from the index tables and swap it in. Readers of
+     * the previous snapshot keep their mapping until they drop it.
+     */
+    public synchronized Map<String, Object> rebuild() throws IOException {
+        if (!enabled) {
+            throw new IllegalStateException("Index snapshots are disabled");
+        }
+        long start = System.currentTimeMillis();
+        Path path = Paths.get(snapshotPath).toAbsolutePath();
+        Files.createDirectories(path.getParent());
+
+        // Documents and their lengths, in doc id order
+        List<int[]> docRows = jdbcTemplate.query("SELECT doc_id, length FROM document_stats ORDER BY doc_id",
+            (rs, rowNum) -> new int[]{toDocId(rs.getLong(1)), rs.getInt(2)});
+        int[] docIds = new int[docRows.size()];
+        int[] lengths = new int[docRows.size()];
+        for (int i = 0; i < docIds.length; i++) {
+            docIds[i] = docRows.get(i)[0];
+            lengths[i] = docRows.get(i)[1];
+        }
+        double[] pageRank = computePageRank(docIds);
+
+        IndexSnapshotWriter writer = new IndexSnapshotWriter(path);
+        try {
+            readOnlyTransactionTemplate.executeWithoutResult(status -> {
+                PostingsBuilder builder = new PostingsBuilder(false);
+                long[] currentWord = {-1L};
+                String[] currentTerm = {null};
+                streamingJdbcTemplate.query(POSTINGS_STREAM_QUERY, rs -> {
+                    long wordId = rs.getLong(1);
+                    if (wordId != currentWord[0]) {
+                        addTerm(writer, currentTerm[0], builder);
+                        currentWord[0] = wordId;
+                        currentTerm[0] = rs.getString(2);
+                        builder.reset();
+                    }
+                    builder.addDoc(toDocId(rs.getLong(3)), rs.getInt(4));
+                });
+                addTerm(writer, currentTerm[0], builder);
+            });
+            writer.finish(docIds, lengths, pageRank);
+        } catch (IOException | RuntimeException e) {
+            writer.abort();
+            throw e;
+        }
+
+        current = IndexSnapshot.open(path);
+        long elapsed = System.currentTimeMillis() - start;
+        logger.info("Wrote index snapshot with {} docs, {} terms and {} postings ({} bytes) in {} ms",
+            current.getDocCount(), current.getTermCount(), current.getTotalPostings(), current.getSizeBytes(), elapsed);
+
+        Map<String, Object> summary = getStats();
+        summary.put("elapsedMs", elapsed);
+        return summary;
+    }
+
+    private static void addTerm(IndexSnapshotWriter writer, String term, PostingsBuilder builder) {
+        if (term == null || builder.size() == 0) {
+            return;
+        }
+        try {
+            writer.addTerm(term, builder.size(), builder.encode());
+        } catch (IOException e) {
+            throw new java.io.UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * PageRank over the link graph with a sparse power iteration. The update
+     * and stopping rule match Ranker1's dense matrix version, so the scores
+     * are the same; only the memory is linear in the number of links instead
+     * of quadratic in the number of documents.
+     */
+    private double[] computePageRank(int[] docIds) {
+        int n = docIds.length;
+        double[] rank = new double[n];
+        if (n == 0) {
+            return rank;
+        }
+
+        // Distinct links between indexed documents, as (from, to) ordinals sorted by target
+        List<Object[]> links = relatedLinksRepository.getRelatedLinksIDs();
+        long[] edges = new long[links.size()];
+        int edgeCount = 0;
+        for (Object[] link : links) {
+            int from = Arrays.binarySearch(docIds, ((Number) link[0]).intValue());
+            int to = Arrays.binarySearch(docIds, ((Number) link[1]).intValue());
+            if (from >= 0 && to >= 0) {
+                edges[edgeCount++] = ((long) to << 32) | from;
+            }
+        }
+        Arrays.sort(edges, 0, edgeCount);
+        int distinct = 0;
+        for (int i = 0; i < edgeCount; i++) {
+            if (distinct == 0 || edges[i] != edges[distinct - 1]) {
+                edges[distinct++] = edges[i];
+            }
+        }
+
+        int[] outDegree = new int[n];
+        for (int i = 0; i < distinct; i++) {
+            outDegree[(int) edges[i]]++;
+        }
+        for (int i = 0; i < n; i++) {
+            if (outDegree[i] == 0) {
+                outDegree[i] = 1; // Avoid division by zero, as Ranker1 does
+            }
+        }
+
+        Arrays.fill(rank, 1.0 / n);
+        double[] newRank = new double[n];
+        double diff = 1.0;
+        int iteration = 0;
+        while (diff > CONVERGENCE_THRESHOLD && iteration < MAX_ITERATIONS) {
+            double total = 0;
+            for (double value : rank) {
+                total += value;
+            }
+            Arrays.fill(newRank, DAMPING_FACTOR / n * total);
+            for (int i = 0; i < distinct; i++) {
+                int to = (int) (edges[i] >>> 32);
+                int from = (int) edges[i];
+                newRank[to] += (1 - DAMPING_FACTOR) / outDegree[from] * rank[from];
+            }
+
+            double normOld = 0;
+            double normNew = 0;
+            for (int i = 0; i < n; i++) {
+                normOld += rank[i] * rank[i];
+                normNew += newRank[i] * newRank[i];
+            }
+            diff = Math.abs(Math.sqrt(normNew) - Math.sqrt(normOld));
+            System.arraycopy(newRank, 0, rank, 0, n);
+            iteration++;
+        }
+        logger.info("PageRank over {} documents and {} links converged in {} iterations", n, distinct, iteration);
+        return rank;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        IndexSnapshot snapshot = current;
+        stats.put("available", snapshot != null);
+        if (snapshot != null) {
+            stats.put("path", snapshot.getPath().toString());
+            stats.put("createdAt", snapshot.getCreatedAt());
+            stats.put("documents", snapshot.getDocCount());
+            stats.put("terms", snapshot.getTermCount());
+            stats.put("postings", snapshot.getTotalPostings());
+            stats.put("bytes", snapshot.getSizeBytes());
+        }
+        return stats;
+    }
+
+    private static int toDocId(long docId) {
+        if (docId > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Document id " + docId + " does not fit the snapshot format");
+        }
+        return (int) docId;
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.searchengine.Indexer.Snapshot;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Writes an {@link IndexSnapshot}. Terms may arrive in any order: their
+ * postings are spilled to a side file as they come, and only the small
+ * dictionary entries are kept in memory and sorted at the end.
+ *
+ * <pre>
+ * header (64 bytes): int magic, int version, long createdAt, int docCount, int termCount,
+ *                    long totalPostings, long docsOffset, long dictionaryOffset, long termsOffset, long postingsOffset
+ * docs:       docCount x (int docId, int length, double pageRank), sorted by doc id
+ * dictionary: termCount x (long termOffset, int termLength, int docFreq, long postingsOffset, int postingsLength),
+ *             sorted by the term's utf-8 bytes
+ * terms:      utf-8 term bytes, concatenated
+ * postings:   {@code PostingsCodec} bytes, concatenated
+ * </pre>
+ */
+public class IndexSnapshotWriter {
+
+    private final Path target;
+    private final Path postingsFile;
+    private final DataOutputStream postingsOut;
+
+    private final List<byte[]> terms = new ArrayList<>();
+    private final List<long[]> entries = new ArrayList<>(); // docFreq, postingsOffset, postingsLength
+    private long postingsLength;
+    private long totalPostings;
+
+    public IndexSnapshotWriter(Path target) throws IOException {
+        this.target = target;
+        this.postingsFile = target.resolveSibling(target.getFileName() + ".postings.tmp");
+        this.postingsOut = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(postingsFile,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING), 1 << 16));
+    }
+
+    public void addTerm(String term, int docFreq, byte[] postings) throws IOException {
+        postingsOut.write(postings);
+        terms.add(term.getBytes(StandardCharsets.UTF_8));
+        entries.add(new long[]{docFreq, postingsLength, postings.length});
+        postingsLength += postings.length;
+        totalPostings += docFreq;
+    }
+
+    /**
+     * Write the final file and move it into place. {@code docIds} must be
+     * sorted; {@code lengths} and {@code pageRank} follow the same order.
+     */
+    public void finish(int[] docIds, int[] lengths, double[] pageRank) throws IOException {
+        postingsOut.close();
+
+        Integer[] order = new Integer[terms.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Arrays.compareUnsigned(terms.get(a), terms.get(b)));
+
+        long docsOffset = IndexSnapshot.HEADER_BYTES;
+        long dictionaryOffset = docsOffset + (long) docIds.length * IndexSnapshot.DOC_BYTES;
+        long termsOffset = dictionaryOffset + (long) order.length * IndexSnapshot.DICTIONARY_BYTES;
+        long termsLength = 0;
+        for (byte[] term : terms) {
+            termsLength += term.length;
+        }
+        long postingsOffset = termsOffset + termsLength;
+
+        Path tempFile = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel),
+                    1 << 16));
+            out.writeInt(IndexSnapshot.MAGIC);
+            out.writeInt(IndexSnapshot.VERSION);
+            out.writeLong(System.currentTimeMillis());
+            out.writeInt(docIds.length);
+            out.writeInt(order.length);
+            out.writeLong(totalPostings);
+            out.writeLong(docsOffset);
+            out.writeLong(dictionaryOffset);
+            out.writeLong(termsOffset);
+            out.writeLong(postingsOffset);
+
+            for (int i = 0; i < docIds.length; i++) {
+                out.writeInt(docIds[i]);
+                out.writeInt(lengths[i]);
+                out.writeDouble(pageRank[i]);
+            }
+
+            long termOffset = 0;
+            for (int index : order) {
+                long[] entry = entries.get(index);
+                out.writeLong(termOffset);
+                out.writeInt(terms.get(index).length);
+                out.writeInt((int) entry[0]);
+                out.writeLong(entry[1]);
+                out.writeInt((int) entry[2]);
+                termOffset += terms.get(index).length;
+            }
+            for (int index : order) {
+                out.write(terms.get(index));
+            }
+            out.flush();
+
+            try (FileChannel postings = FileChannel.open(postingsFile, StandardOpenOption.READ)) {
+                long copied = 0;
+                while (copied < postingsLength) {
+                    copied += postings.transferTo(copied, postingsLength - copied, channel);
+                }
+            }
+            channel.force(true);
+        }
+        Files.deleteIfExists(postingsFile);
+        Files.move(tempFile, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    public void abort() {
+        try {
+            postingsOut.close();
+        } catch (IOException ignored) {
+            // removed below either way
+        }
+        try {
+            Files.deleteIfExists(postingsFile);
+            Files.deleteIfExists(target.resolveSibling(target.getFileName() + ".tmp"));
+        } catch (IOException ignored) {
+            // stale temp files are overwritten by the next snapshot
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.searchengine.Indexer.Snapshot;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A read-only file mapped into memory with {@link FileChannel#map}. Reads go
+ * straight to the OS page cache, so opening costs nothing up front and the
+ * cached pages stay warm across restarts and are shared between processes.
+ * Files larger than one mapping are split into 1 GB regions.
+ */
+public final class MappedFile {
+
+    private static final int REGION_SHIFT = 30;
+    private static final long REGION_SIZE = 1L << REGION_SHIFT;
+
+    private final MappedByteBuffer[] regions;
+    private final long size;
+
+    private MappedFile(MappedByteBuffer[] regions, long size) {
+        this.regions = regions;
+        this.size = size;
+    }
+
+    public static MappedFile open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            int count = (int) ((size + REGION_SIZE - 1) >>> REGION_SHIFT);
+            MappedByteBuffer[] regions = new MappedByteBuffer[Math.max(1, count)];
+            for (int i = 0; i < regions.length; i++) {
+                long start = (long) i << REGION_SHIFT;
+                // Mappings stay valid after the channel is closed
+                regions[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(REGION_SIZE, size - start));
+            }
+            return new MappedFile(regions, size);
+        }
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public int getInt(long offset) {
+        int region = (int) (offset >>> REGION_SHIFT);
+        int index = (int) (offset & (REGION_SIZE - 1));
+        if (index + 4 <= regions[region].limit()) {
+            return regions[region].getInt(index);
+        }
+        return (getByte(offset) & 0xFF) << 24 | (getByte(offset + 1) & 0xFF) << 16
+                | (getByte(offset + 2) & 0xFF) << 8 | (getByte(offset + 3) & 0xFF);
+    }
+
+    public long getLong(long offset) {
+        return ((long) getInt(offset) << 32) | (getInt(offset + 4) & 0xFFFFFFFFL);
+    }
+
+    public double getDouble(long offset) {
+        return Double.longBitsToDouble(getLong(offset));
+    }
+
+    public byte getByte(long offset) {
+        return regions[(int) (offset >>> REGION_SHIFT)].get((int) (offset & (REGION_SIZE - 1)));
+    }
+
+    /**
+     * Copy {@code length} bytes starting at {@code offset}.
+     */
+    public byte[] getBytes(long offset, int length) {
+        byte[] bytes = new byte[length];
+        int copied = 0;
+        while (copied < length) {
+            long position = offset + copied;
+            int region = (int) (position >>> REGION_SHIFT);
+            int index = (int) (position & (REGION_SIZE - 1));
+            int chunk = Math.min(length - copied, regions[region].limit() - index);
+            regions[region].get(index, bytes, copied, chunk);
+            copied += chunk;
+        }
+        return bytes;
+    }
+
+    /**
+     * Compare the bytes at {@code offset} with {@code key} as unsigned bytes.
+     */
+    public int compareBytes(long offset, int length, byte[] key) {
+        int common = Math.min(length, key.length);
+        for (int i = 0; i < common; i++) {
+            int cmp = Integer.compare(getByte(offset + i) & 0xFF, key[i] & 0xFF);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return Integer.compare(length, key.length);
+    }
+}
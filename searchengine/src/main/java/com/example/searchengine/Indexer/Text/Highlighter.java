@@ -0,0 +1,218 @@
+package com.example.searchengine.Indexer.Text;
+
+import java.util.Arrays;
+
+/**
+ * Picks the passage of a stored text that best covers a query and marks
+ * its terms, from the positions the query terms occur at in the document
+ * (see {@link com.example.searchengine.Indexer.Memory.ForwardIndex#occurrences}).
+ * Each position is mapped to its characters through the stored term spans,
+ * so the work grows with the number of occurrences and the passage length,
+ * not with the document.
+ *
+ * A passage lies within one element. Windows of occurrences no wider than
+ * the passage are scored by the weights of the distinct query terms they
+ * hold, plus a little for repeats; a window in the title, which results show
+ * anyway, counts for half. Occurrences at consecutive positions are marked
+ * as one span, so a phrase is highlighted whole.
+ */
+public final class Highlighter {
+
+    private static final double REPEAT_WEIGHT = 0.1;
+    private static final double TITLE_WEIGHT = 0.5;
+
+    private final int maxChars;
+
+    public Highlighter(int maxChars) {
+        if (maxChars < 1) {
+            throw new IllegalArgumentException("Passage length must be at least 1: " + maxChars);
+        }
+        this.maxChars = maxChars;
+    }
+
+    /**
+     * A window of the text with the spans to highlight, as offsets into the
+     * passage text. Truncated ends are the ones cut out of a longer element.
+     */
+    public record Passage(String text, int[] highlightStarts, int[] highlightEnds, boolean truncatedStart,
+            boolean truncatedEnd, double score) {
+
+        public int highlightCount() {
+            return highlightStarts.length;
+        }
+
+        /**
+         * The passage escaped for html with highlights in {@code <strong>},
+         * and an ellipsis where the element was cut.
+         */
+        public String html() {
+            StringBuilder html = new StringBuilder(text.length() + highlightStarts.length * 17 + 6);
+            if (truncatedStart) {
+                html.append("...");
+            }
+            int from = 0;
+            for (int h = 0; h < highlightStarts.length; h++) {
+                escape(html, text, from, highlightStarts[h]);
+                html.append("<strong>");
+                escape(html, text, highlightStarts[h], highlightEnds[h]);
+                html.append("</strong>");
+                from = highlightEnds[h];
+            }
+            escape(html, text, from, text.length());
+            if (truncatedEnd) {
+                html.append("...");
+            }
+            return html.toString();
+        }
+
+        private static void escape(StringBuilder html, String text, int from, int to) {
+            for (int i = from; i < to; i++) {
+                char c = text.charAt(i);
+                switch (c) {
+                    case '<' -> html.append("&lt;");
+                    case '>' -> html.append("&gt;");
+                    case '&' -> html.append("&amp;");
+                    case '"' -> html.append("&quot;");
+                    default -> html.append(c);
+                }
+            }
+        }
+    }
+
+    /**
+     * Best passage for the query terms occurring at the given positions,
+     * packed as {@code (position << 32) | queryTerm} and ascending. Weights
+     * are per query term; null weighs every term 1. Without occurrences the
+     * passage is the start of the first element after the title.
+     */
+    public Passage passage(StoredText text, long[] occurrences, double[] weights) {
+        // Resolve every occurrence to its characters; positions the text has no span for are dropped
+        int count = 0;
+        int[] positions = new int[occurrences.length];
+        int[] queryTerms = new int[occurrences.length];
+        int[] starts = new int[occurrences.length];
+        int[] ends = new int[occurrences.length];
+        int[] elements = new int[occurrences.length];
+        for (long occurrence : occurrences) {
+            int position = (int) (occurrence >>> 32);
+            int term = text.term(position);
+            if (term < 0) {
+                continue;
+            }
+            positions[count] = position;
+            queryTerms[count] = (int) occurrence;
+            starts[count] = text.start(term);
+            ends[count] = text.end(term);
+            elements[count] = text.element(starts[count]);
+            count++;
+        }
+        if (count == 0) {
+            return lead(text);
+        }
+
+        // Slide a window over the occurrences: same element, no wider than a passage
+        int queryTermCount = 0;
+        for (int i = 0; i < count; i++) {
+            queryTermCount = Math.max(queryTermCount, queryTerms[i] + 1);
+        }
+        int[] inWindow = new int[queryTermCount];
+        double windowScore = 0;
+        double bestScore = -1;
+        int bestFrom = 0;
+        int bestTo = 0;
+        int from = 0;
+        for (int to = 0; to < count; to++) {
+            while (from < to && (elements[from] != elements[to] || ends[to] - starts[from] > maxChars)) {
+                windowScore -= contribution(--inWindow[queryTerms[from]], weight(weights, queryTerms[from]));
+                from++;
+            }
+            windowScore += contribution(inWindow[queryTerms[to]]++, weight(weights, queryTerms[to]));
+            double score = "title".equals(text.elementTag(elements[to])) ? windowScore * TITLE_WEIGHT : windowScore;
+            if (score > bestScore) {
+                bestScore = score;
+                bestFrom = from;
+                bestTo = to;
+            }
+        }
+
+        // Widen the matched characters to a passage, centred and cut at whitespace
+        int element = elements[bestFrom];
+        int elementStart = text.elementStart(element);
+        int elementEnd = text.elementEnd(element);
+        int matchStart = starts[bestFrom];
+        int matchEnd = Math.max(ends[bestTo], matchStart);
+        int start = Math.max(elementStart, matchStart - (maxChars - (matchEnd - matchStart)) / 2);
+        int end = Math.min(elementEnd, start + maxChars);
+        start = Math.max(elementStart, Math.min(start, end - maxChars));
+        String source = text.text();
+        if (start > elementStart) {
+            int space = source.indexOf(' ', start);
+            if (space >= 0 && space < matchStart) {
+                start = space + 1;
+            }
+        }
+        if (end < elementEnd) {
+            int space = source.lastIndexOf(' ', end);
+            if (space >= matchEnd) {
+                end = space;
+            }
+        }
+
+        // Mark every occurrence inside the passage, merging consecutive positions and overlaps
+        int first = bestFrom;
+        while (first > 0 && elements[first - 1] == element && starts[first - 1] >= start) {
+            first--;
+        }
+        int last = bestTo;
+        while (last + 1 < count && elements[last + 1] == element && ends[last + 1] <= end) {
+            last++;
+        }
+        int[] highlightStarts = new int[last - first + 1];
+        int[] highlightEnds = new int[last - first + 1];
+        int highlights = 0;
+        for (int i = first; i <= last; i++) {
+            boolean joins = highlights > 0
+                && (positions[i] == positions[i - 1] + 1 || starts[i] - start <= highlightEnds[highlights - 1]);
+            if (joins) {
+                highlightEnds[highlights - 1] = Math.max(highlightEnds[highlights - 1], ends[i] - start);
+            } else {
+                highlightStarts[highlights] = starts[i] - start;
+                highlightEnds[highlights] = ends[i] - start;
+                highlights++;
+            }
+        }
+        return new Passage(source.substring(start, end), Arrays.copyOf(highlightStarts, highlights),
+            Arrays.copyOf(highlightEnds, highlights), start > elementStart, end < elementEnd, bestScore);
+    }
+
+    // Score a query term adds to a window already holding it `held` times
+    private static double contribution(int held, double weight) {
+        return held == 0 ? weight : weight * REPEAT_WEIGHT;
+    }
+
+    private static double weight(double[] weights, int queryTerm) {
+        return weights == null || queryTerm >= weights.length ? 1.0 : weights[queryTerm];
+    }
+
+    // Start of the first element after the title, or of the text when it has no elements
+    private Passage lead(StoredText text) {
+        String source = text.text();
+        int start = 0;
+        int elementEnd = source.length();
+        for (int e = 0; e < text.elementCount(); e++) {
+            start = text.elementStart(e);
+            elementEnd = text.elementEnd(e);
+            if (!"title".equals(text.elementTag(e))) {
+                break;
+            }
+        }
+        int end = Math.min(elementEnd, start + maxChars);
+        if (end < elementEnd) {
+            int space = source.lastIndexOf(' ', end);
+            if (space > start) {
+                end = space;
+            }
+        }
+        return new Passage(source.substring(start, end), new int[0], new int[0], false, end < elementEnd, 0.0);
+    }
+}
@@ -0,0 +1,326 @@
+package com.example.searchengine.Indexer.Text;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Plain text of a document as the indexer read it: the text of every
+ * indexed element on a line of its own, in document order, with the page's
+ * meta description. Every indexed term keeps its position and the
+ * characters it was taken from, so a position from the postings or the
+ * forward index points straight into the text:
+ *
+ * <pre>
+ * elementTags[e], elementStarts[e]   tag and first character of line e
+ * positions[t]                       term position, ascending
+ * starts[t] .. ends[t]               characters of the term in text
+ * </pre>
+ *
+ * Stored deflated, so reading a result's text costs an inflate instead of
+ * an HTML parse.
+ */
+public final class StoredText {
+
+    private static final int FORMAT_VERSION = 1;
+
+    private final String text;
+    private final String description;
+    private final String[] elementTags;
+    private final int[] elementStarts;
+    private final int[] positions;
+    private final int[] starts;
+    private final int[] ends;
+
+    private StoredText(String text, String description, String[] elementTags, int[] elementStarts,
+            int[] positions, int[] starts, int[] ends) {
+        this.text = text;
+        this.description = description;
+        this.elementTags = elementTags;
+        this.elementStarts = elementStarts;
+        this.positions = positions;
+        this.starts = starts;
+        this.ends = ends;
+    }
+
+    /**
+     * Text with no elements or term offsets, for documents indexed before
+     * texts were stored.
+     */
+    public static StoredText plain(String text) {
+        return new StoredText(text == null ? "" : text, "", new String[0], new int[0], new int[0], new int[0],
+            new int[0]);
+    }
+
+    public String text() {
+        return text;
+    }
+
+    /**
+     * The page's meta description, empty when it has none.
+     */
+    public String description() {
+        return description;
+    }
+
+    public int elementCount() {
+        return elementTags.length;
+    }
+
+    public String elementTag(int element) {
+        return elementTags[element];
+    }
+
+    public String elementText(int element) {
+        return text.substring(elementStarts[element], elementEnd(element));
+    }
+
+    /**
+     * First character of an element.
+     */
+    public int elementStart(int element) {
+        return elementStarts[element];
+    }
+
+    /**
+     * End of an element's text, exclusive.
+     */
+    public int elementEnd(int element) {
+        return element + 1 < elementStarts.length ? elementStarts[element + 1] - 1 : text.length();
+    }
+
+    /**
+     * Element holding the character at an offset.
+     */
+    public int element(int offset) {
+        int found = Arrays.binarySearch(elementStarts, offset);
+        return found >= 0 ? found : -found - 2;
+    }
+
+    public int termCount() {
+        return positions.length;
+    }
+
+    /**
+     * Index of the term at a position, or a negative value when no term
+     * was indexed there.
+     */
+    public int term(int position) {
+        return Arrays.binarySearch(positions, position);
+    }
+
+    public int position(int term) {
+        return positions[term];
+    }
+
+    public int start(int term) {
+        return starts[term];
+    }
+
+    public int end(int term) {
+        return ends[term];
+    }
+
+    /**
+     * Deflated binary form. Layout, integers as varints:
+     * <pre>
+     *   version | text | description
+     *   elementCount | (tag, startDelta) per element
+     *   termCount | (positionDelta, start, length) per term
+     * </pre>
+     */
+    public byte[] encode() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(text.length() / 3 + 64);
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new DeflaterOutputStream(bytes), 8192))) {
+            writeVInt(out, FORMAT_VERSION);
+            writeString(out, text);
+            writeString(out, description);
+            writeVInt(out, elementTags.length);
+            int previous = 0;
+            for (int e = 0; e < elementTags.length; e++) {
+                writeString(out, elementTags[e]);
+                writeVInt(out, elementStarts[e] - previous);
+                previous = elementStarts[e];
+            }
+            writeVInt(out, positions.length);
+            previous = 0;
+            for (int t = 0; t < positions.length; t++) {
+                writeVInt(out, positions[t] - previous);
+                writeVInt(out, starts[t]);
+                writeVInt(out, ends[t] - starts[t]);
+                previous = positions[t];
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * CRC32 of an encoded text, stored with it so readers can tell which
+     * version of a document's text a set of term positions belongs to.
+     */
+    public static long checksum(byte[] encoded) {
+        CRC32 crc = new CRC32();
+        crc.update(encoded);
+        return crc.getValue();
+    }
+
+    public static StoredText decode(byte[] encoded) {
+        // Inflate in one go and read from the array: varints byte by byte through streams cost more than the parse
+        byte[] raw;
+        try (InflaterInputStream inflater = new InflaterInputStream(new ByteArrayInputStream(encoded))) {
+            raw = inflater.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        Reader in = new Reader(raw);
+        int version = in.readVInt();
+        if (version != FORMAT_VERSION) {
+            throw new IllegalArgumentException("Unsupported stored text version " + version);
+        }
+        String text = in.readString();
+        String description = in.readString();
+        int elements = in.readVInt();
+        String[] elementTags = new String[elements];
+        int[] elementStarts = new int[elements];
+        int previous = 0;
+        for (int e = 0; e < elements; e++) {
+            elementTags[e] = in.readString();
+            previous += in.readVInt();
+            elementStarts[e] = previous;
+        }
+        int terms = in.readVInt();
+        int[] positions = new int[terms];
+        int[] starts = new int[terms];
+        int[] ends = new int[terms];
+        previous = 0;
+        for (int t = 0; t < terms; t++) {
+            previous += in.readVInt();
+            positions[t] = previous;
+            starts[t] = in.readVInt();
+            ends[t] = starts[t] + in.readVInt();
+        }
+        return new StoredText(text, description, elementTags, elementStarts, positions, starts, ends);
+    }
+
+    private static void writeVInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        writeVInt(out, utf8.length);
+        out.write(utf8);
+    }
+
+    private static final class Reader {
+        private final byte[] bytes;
+        private int offset;
+
+        Reader(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        int readVInt() {
+            int value = 0;
+            for (int shift = 0; ; shift += 7) {
+                if (offset == bytes.length) {
+                    throw new IllegalArgumentException("Truncated stored text");
+                }
+                int b = bytes[offset++] & 0xFF;
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+        }
+
+        String readString() {
+            int length = readVInt();
+            if (length > bytes.length - offset) {
+                throw new IllegalArgumentException("Truncated stored text");
+            }
+            String value = new String(bytes, offset, length, StandardCharsets.UTF_8);
+            offset += length;
+            return value;
+        }
+    }
+
+    /**
+     * Collects a document's elements in order. Term positions must grow
+     * across elements, as the indexer assigns them.
+     */
+    public static class Builder {
+        private final StringBuilder text = new StringBuilder();
+        private String description = "";
+        private String[] elementTags = new String[16];
+        private int[] elementStarts = new int[16];
+        private int elements;
+        private int[] positions = new int[256];
+        private int[] starts = new int[256];
+        private int[] ends = new int[256];
+        private int terms;
+
+        public Builder description(String description) {
+            this.description = description == null ? "" : description;
+            return this;
+        }
+
+        /**
+         * One element's text and its indexed terms: term i is at position
+         * firstPosition + i and was taken from spans[i] of the lowercased
+         * element text.
+         */
+        public Builder addElement(String tag, String elementText, int firstPosition, List<int[]> spans) {
+            // Spans index the lowercased text; keep that one in the rare case lowercasing changes the length
+            String lower = elementText.toLowerCase();
+            String stored = lower.length() == elementText.length() ? elementText : lower;
+            if (elements > 0) {
+                text.append('\n');
+            }
+            if (elements == elementTags.length) {
+                elementTags = Arrays.copyOf(elementTags, elements * 2);
+                elementStarts = Arrays.copyOf(elementStarts, elements * 2);
+            }
+            int offset = text.length();
+            elementTags[elements] = tag;
+            elementStarts[elements] = offset;
+            elements++;
+            text.append(stored);
+
+            for (int i = 0; i < spans.size(); i++) {
+                if (terms == positions.length) {
+                    positions = Arrays.copyOf(positions, terms * 2);
+                    starts = Arrays.copyOf(starts, terms * 2);
+                    ends = Arrays.copyOf(ends, terms * 2);
+                }
+                positions[terms] = firstPosition + i;
+                starts[terms] = offset + spans.get(i)[0];
+                ends[terms] = offset + spans.get(i)[1];
+                terms++;
+            }
+            return this;
+        }
+
+        public StoredText build() {
+            return new StoredText(text.toString(), description, Arrays.copyOf(elementTags, elements),
+                Arrays.copyOf(elementStarts, elements), Arrays.copyOf(positions, terms), Arrays.copyOf(starts, terms),
+                Arrays.copyOf(ends, terms));
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.searchengine.Query.Plan;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A parsed boolean query. Words and quoted phrases are analyzed the way
+ * pages were indexed, so leaves hold index terms; a word the analyzer
+ * splits into several terms (such as {@code app.config}) is a phrase of
+ * them. Filters select documents by where or when they were crawled.
+ */
+public sealed interface QueryNode {
+
+    /** One indexed term, typed as text. */
+    record Term(String text, String term) implements QueryNode {
+        @Override
+        public String toString() {
+            return term;
+        }
+    }
+
+    /** Terms at consecutive positions. */
+    record Phrase(String text, List<String> terms) implements QueryNode {
+        @Override
+        public String toString() {
+            return "\"" + String.join(" ", terms) + "\"";
+        }
+    }
+
+    /** Documents of a site ({@code site:example.com}) or crawled on or after, or before, a date. */
+    record Filter(String name, String value) implements QueryNode {
+        public static final String SITE = "site";
+        public static final String AFTER = "after";
+        public static final String BEFORE = "before";
+
+        @Override
+        public String toString() {
+            return name + ":" + value;
+        }
+    }
+
+    record And(List<QueryNode> clauses) implements QueryNode {
+        @Override
+        public String toString() {
+            return join(clauses, " AND ");
+        }
+    }
+
+    record Or(List<QueryNode> clauses) implements QueryNode {
+        @Override
+        public String toString() {
+            return join(clauses, " OR ");
+        }
+    }
+
+    record Not(QueryNode clause) implements QueryNode {
+        @Override
+        public String toString() {
+            return "NOT " + clause;
+        }
+    }
+
+    /**
+     * Terms outside any negation, in query order without repeats: the ones
+     * results are scored and highlighted by.
+     */
+    static List<String> positiveTerms(QueryNode node) {
+        Set<String> terms = new LinkedHashSet<>();
+        collectPositive(node, terms);
+        return List.copyOf(terms);
+    }
+
+    /**
+     * Texts of the phrases outside any negation.
+     */
+    static List<String> positivePhrases(QueryNode node) {
+        Set<String> phrases = new LinkedHashSet<>();
+        collectPhrases(node, phrases);
+        return List.copyOf(phrases);
+    }
+
+    private static void collectPositive(QueryNode node, Set<String> terms) {
+        switch (node) {
+            case Term term -> terms.add(term.term());
+            case Phrase phrase -> terms.addAll(phrase.terms());
+            case Filter filter -> { }
+            case And and -> and.clauses().forEach(clause -> collectPositive(clause, terms));
+            case Or or -> or.clauses().forEach(clause -> collectPositive(clause, terms));
+            case Not not -> { }
+        }
+    }
+
+    private static void collectPhrases(QueryNode node, Set<String> phrases) {
+        switch (node) {
+            case Term term -> { }
+            case Phrase phrase -> phrases.add(phrase.text());
+            case Filter filter -> { }
+            case And and -> and.clauses().forEach(clause -> collectPhrases(clause, phrases));
+            case Or or -> or.clauses().forEach(clause -> collectPhrases(clause, phrases));
+            case Not not -> { }
+        }
+    }
+
+    private static String join(List<QueryNode> clauses, String operator) {
+        StringBuilder text = new StringBuilder("(");
+        for (int i = 0; i < clauses.size(); i++) {
+            text.append(i > 0 ? operator : "").append(clauses.get(i));
+        }
+        return text.append(')').toString();
+    }
+}
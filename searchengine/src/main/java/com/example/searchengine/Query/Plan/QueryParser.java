@@ -0,0 +1,176 @@
+package com.example.searchengine.Query.Plan;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Parses the boolean query language into a {@link QueryNode}:
+ *
+ * <pre>
+ * query   := or
+ * or      := and ( OR and )*
+ * and     := unary ( [AND] unary )*       juxtaposed clauses are ANDed
+ * unary   := ( NOT | '-' ) unary | primary
+ * primary := '(' or ')' | '"' phrase '"' | filter | word
+ * filter  := site:host | after:yyyy-mm-dd | before:yyyy-mm-dd
+ * </pre>
+ *
+ * NOT binds tightest and OR loosest, so {@code a b OR c NOT d} is
+ * {@code (a AND b) OR (c AND NOT d)}. Operators are matched in any case,
+ * as before; the lowercase forms are stop words and would not be
+ * searchable anyway. Clauses that analyze to nothing, such as stop words,
+ * are dropped along with the operators that applied to them.
+ */
+public final class QueryParser {
+
+    private static final Pattern FILTER_PATTERN = Pattern.compile("(?i)(site|after|before):(\\S+)");
+
+    private final List<String> tokens;
+    private final Function<String, List<String>> analyzer;
+    private int next;
+
+    private QueryParser(List<String> tokens, Function<String, List<String>> analyzer) {
+        this.tokens = tokens;
+        this.analyzer = analyzer;
+    }
+
+    /**
+     * The query's tree, or null when no clause has a searchable term.
+     *
+     * @throws IllegalArgumentException on unbalanced parentheses or a malformed filter
+     */
+    public static QueryNode parse(String query, Function<String, List<String>> analyzer) {
+        QueryParser parser = new QueryParser(tokenize(query), analyzer);
+        QueryNode root = parser.or();
+        if (parser.next < parser.tokens.size()) {
+            throw new IllegalArgumentException("Unmatched ')' in query");
+        }
+        return root;
+    }
+
+    // Words, quoted phrases (kept with their opening quote), parentheses and '-' prefixes
+    static List<String> tokenize(String query) {
+        List<String> tokens = new ArrayList<>();
+        int i = 0;
+        while (i < query.length()) {
+            char c = query.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '(' || c == ')') {
+                tokens.add(String.valueOf(c));
+                i++;
+            } else if (c == '-' && i + 1 < query.length() && !Character.isWhitespace(query.charAt(i + 1))
+                    && (i == 0 || Character.isWhitespace(query.charAt(i - 1)) || query.charAt(i - 1) == '(')) {
+                tokens.add("-");
+                i++;
+            } else if (c == '"') {
+                // An unterminated phrase runs to the end of the query
+                int end = query.indexOf('"', i + 1);
+                end = end < 0 ? query.length() : end;
+                tokens.add("\"" + query.substring(i + 1, end));
+                i = end + 1;
+            } else {
+                int start = i;
+                while (i < query.length() && !Character.isWhitespace(query.charAt(i))
+                        && query.charAt(i) != '(' && query.charAt(i) != ')' && query.charAt(i) != '"') {
+                    i++;
+                }
+                tokens.add(query.substring(start, i));
+            }
+        }
+        return tokens;
+    }
+
+    private QueryNode or() {
+        List<QueryNode> clauses = new ArrayList<>();
+        add(clauses, and());
+        while (peekIs("OR")) {
+            next++;
+            add(clauses, and());
+        }
+        return clauses.isEmpty() ? null : clauses.size() == 1 ? clauses.get(0) : new QueryNode.Or(clauses);
+    }
+
+    private QueryNode and() {
+        List<QueryNode> clauses = new ArrayList<>();
+        add(clauses, unary());
+        while (next < tokens.size() && !tokens.get(next).equals(")") && !peekIs("OR")) {
+            if (peekIs("AND")) {
+                next++;
+            }
+            add(clauses, unary());
+        }
+        return clauses.isEmpty() ? null : clauses.size() == 1 ? clauses.get(0) : new QueryNode.And(clauses);
+    }
+
+    private QueryNode unary() {
+        if (peekIs("NOT") || (next < tokens.size() && tokens.get(next).equals("-"))) {
+            next++;
+            QueryNode clause = unary();
+            return clause == null ? null : new QueryNode.Not(clause);
+        }
+        return primary();
+    }
+
+    private QueryNode primary() {
+        if (next >= tokens.size()) {
+            return null;
+        }
+        String token = tokens.get(next++);
+        if (token.equals("(")) {
+            QueryNode inner = or();
+            if (next >= tokens.size() || !tokens.get(next).equals(")")) {
+                throw new IllegalArgumentException("Missing ')' in query");
+            }
+            next++;
+            return inner;
+        }
+        if (token.equals(")")) {
+            throw new IllegalArgumentException("Unmatched ')' in query");
+        }
+        Matcher filter = FILTER_PATTERN.matcher(token);
+        if (filter.matches()) {
+            return filter(filter.group(1).toLowerCase(), filter.group(2));
+        }
+        boolean quoted = token.startsWith("\"");
+        String text = quoted ? token.substring(1).trim() : token;
+        List<String> terms = analyzer.apply(text.toLowerCase());
+        if (terms.isEmpty()) {
+            return null;
+        }
+        if (terms.size() == 1) {
+            return new QueryNode.Term(text, terms.get(0));
+        }
+        return new QueryNode.Phrase(text, List.copyOf(terms));
+    }
+
+    private static QueryNode filter(String name, String value) {
+        if (name.equals(QueryNode.Filter.SITE)) {
+            String host = value.toLowerCase().replaceFirst("^[a-z]+://", "").replaceFirst("[/:].*$", "");
+            if (host.isEmpty()) {
+                throw new IllegalArgumentException("site: needs a host name, such as site:example.com");
+            }
+            return new QueryNode.Filter(name, host);
+        }
+        try {
+            return new QueryNode.Filter(name, LocalDate.parse(value).toString());
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException(name + ": needs a date written as yyyy-mm-dd, such as " + name + ":2024-01-31");
+        }
+    }
+
+    private boolean peekIs(String operator) {
+        return next < tokens.size() && tokens.get(next).equalsIgnoreCase(operator);
+    }
+
+    private static void add(List<QueryNode> clauses, QueryNode clause) {
+        if (clause != null) {
+            clauses.add(clause);
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package com.example.searchengine.Query.Plan;
+
+import com.example.searchengine.Indexer.Generation.IndexGeneration;
+import com.example.searchengine.Indexer.Memory.BigramIndex;
+import com.example.searchengine.Indexer.Memory.ForwardIndex;
+import com.example.searchengine.Indexer.Memory.InMemoryIndex;
+import com.example.searchengine.Indexer.Postings.DocIdSet;
+import com.example.searchengine.Indexer.Postings.DocIdSetCache;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Evaluates a {@link QueryNode} over one index generation into a
+ * {@link DocIdSet}, ordering the work by estimated posting size:
+ *
+ * <ul>
+ * <li>a conjunction starts from its rarest positive clause and applies the
+ *     other positive clauses to the surviving documents from the rarest
+ *     up;</li>
+ * <li>negations run last, as a filter on what is left;</li>
+ * <li>a disjunction is the union of its clauses' sets.</li>
+ * </ul>
+ *
+ * A clause is applied to the survivors either as a set operation or by
+ * probing each survivor, whichever is cheaper: filters and frequent terms
+ * whose sets are cached are intersected or subtracted as bitmaps; other
+ * clauses are probed (terms in the postings, phrases in the forward index
+ * positions) while there are few survivors next to the clause's size. So
+ * a conjunction costs about as much as its most selective clause, however
+ * common the others are.
+ */
+public final class QueryPlanner {
+
+    // Terms in at least this many documents have their sets cached
+    static final int CACHED_DOC_FREQ = 4096;
+    // Postings read sequentially for the cost of one probe
+    private static final int PROBE_COST = 8;
+
+    private final InMemoryIndex index;
+    private final ForwardIndex forward;
+    private final BigramIndex bigrams;
+    private final DocIdSetCache cache;
+    private final Function<QueryNode.Filter, DocIdSet> filters;
+    private long work;
+
+    /**
+     * @param filters Loads the documents a filter selects; its sets are
+     *                cached with the generation
+     */
+    public QueryPlanner(IndexGeneration generation, Function<QueryNode.Filter, DocIdSet> filters) {
+        this(generation.getIndex(), generation.getForward(), generation.getBigrams(), generation.getDocSets(), filters);
+    }
+
+    public QueryPlanner(InMemoryIndex index, ForwardIndex forward, BigramIndex bigrams, DocIdSetCache cache,
+            Function<QueryNode.Filter, DocIdSet> filters) {
+        this.index = index;
+        this.forward = forward;
+        this.bigrams = bigrams;
+        this.cache = cache;
+        this.filters = filters;
+    }
+
+    /**
+     * Estimated number of matching documents: a term's document frequency,
+     * a phrase's rarest term, a filter's documents, a conjunction's rarest
+     * positive clause, and a disjunction's clauses added up.
+     */
+    public long estimate(QueryNode node) {
+        return switch (node) {
+            case QueryNode.Term term -> docFreq(term.term());
+            case QueryNode.Phrase phrase -> phrase.terms().stream().mapToLong(this::docFreq).min().orElse(0);
+            case QueryNode.Filter filter -> filterSet(filter).cardinality();
+            case QueryNode.And and -> and.clauses().stream()
+                    .filter(clause -> !(clause instanceof QueryNode.Not))
+                    .mapToLong(this::estimate).min().orElse(forward.documentCount());
+            case QueryNode.Or or -> Math.min(forward.documentCount(),
+                    or.clauses().stream().mapToLong(this::estimate).sum());
+            case QueryNode.Not not -> Math.max(0, forward.documentCount() - estimate(not.clause()));
+        };
+    }
+
+    /**
+     * The matching documents.
+     *
+     * @throws IllegalArgumentException when a negation has no positive clause to filter
+     */
+    public DocIdSet evaluate(QueryNode node) {
+        return switch (node) {
+            case QueryNode.Term term -> termSet(term.term());
+            case QueryNode.Phrase phrase -> {
+                work += estimate(phrase);
+                yield DocIdSet.of(bigrams.phrase(index, phrase.terms()).getDocIds());
+            }
+            case QueryNode.Filter filter -> filterSet(filter);
+            case QueryNode.And and -> evaluateAnd(and);
+            case QueryNode.Or or -> {
+                DocIdSet docs = DocIdSet.empty();
+                for (QueryNode clause : or.clauses()) {
+                    docs = docs.or(evaluate(clause));
+                }
+                yield docs;
+            }
+            case QueryNode.Not not -> throw new IllegalArgumentException(
+                    "NOT " + not.clause() + " needs a positive clause to filter");
+        };
+    }
+
+    /**
+     * Postings read and documents probed or combined by
+     * {@link #evaluate(QueryNode)} so far.
+     */
+    public long work() {
+        return work;
+    }
+
+    /**
+     * The evaluation order of a query with the estimate of every clause, for
+     * the log.
+     */
+    public String explain(QueryNode node) {
+        return switch (node) {
+            case QueryNode.Term term -> term + "~" + estimate(term);
+            case QueryNode.Phrase phrase -> phrase + "~" + estimate(phrase);
+            case QueryNode.Filter filter -> filter + "~" + estimate(filter);
+            case QueryNode.Not not -> "NOT " + explain(not.clause());
+            case QueryNode.Or or -> join(or.clauses(), " OR ");
+            case QueryNode.And and -> join(ordered(and), " -> ");
+        };
+    }
+
+    private DocIdSet evaluateAnd(QueryNode.And and) {
+        List<QueryNode> clauses = ordered(and);
+        if (clauses.get(0) instanceof QueryNode.Not) {
+            throw new IllegalArgumentException(and + " needs a positive clause to filter");
+        }
+        DocIdSet docs = evaluate(clauses.get(0));
+        for (int c = 1; c < clauses.size() && !docs.isEmpty(); c++) {
+            QueryNode clause = clauses.get(c);
+            boolean negated = clause instanceof QueryNode.Not;
+            QueryNode positive = negated ? ((QueryNode.Not) clause).clause() : clause;
+            if (preferSet(positive, docs.cardinality())) {
+                work += docs.cardinality();
+                docs = negated ? docs.andNot(evaluate(positive)) : docs.and(evaluate(positive));
+            } else {
+                DocIdSet.Builder kept = new DocIdSet.Builder();
+                for (int docId : docs.toArray()) {
+                    if (matches(positive, docId) != negated) {
+                        kept.add(docId);
+                    }
+                }
+                docs = kept.build();
+            }
+        }
+        return docs;
+    }
+
+    // Whether to combine with the clause's set rather than probe each of the candidates
+    private boolean preferSet(QueryNode clause, int candidates) {
+        return switch (clause) {
+            case QueryNode.Filter filter -> true;
+            case QueryNode.Term term -> cache.getIfPresent(termKey(term.term())) != null
+                    || (long) candidates * PROBE_COST >= estimate(term);
+            default -> (long) candidates * PROBE_COST >= estimate(clause);
+        };
+    }
+
+    // Positive clauses rarest first, then negations removing the most documents first
+    private List<QueryNode> ordered(QueryNode.And and) {
+        List<QueryNode> positive = new ArrayList<>();
+        List<QueryNode> negative = new ArrayList<>();
+        for (QueryNode clause : and.clauses()) {
+            (clause instanceof QueryNode.Not ? negative : positive).add(clause);
+        }
+        positive.sort(Comparator.comparingLong(this::estimate));
+        negative.sort(Comparator.comparingLong(clause -> -estimate(((QueryNode.Not) clause).clause())));
+        positive.addAll(negative);
+        return positive;
+    }
+
+    // Whether one document matches, without reading any postings list through
+    private boolean matches(QueryNode node, int docId) {
+        return switch (node) {
+            case QueryNode.Term term -> {
+                work++;
+                DocIdSet cached = cache.getIfPresent(termKey(term.term()));
+                if (cached != null) {
+                    yield cached.contains(docId);
+                }
+                int ordinal = index.ordinal(term.term());
+                yield ordinal >= 0 && index.freq(ordinal, docId) > 0;
+            }
+            case QueryNode.Phrase phrase -> {
+                work++;
+                yield forward.phraseCount(docId, ordinals(phrase.terms())) > 0;
+            }
+            case QueryNode.Filter filter -> {
+                work++;
+                yield filterSet(filter).contains(docId);
+            }
+            case QueryNode.And and -> and.clauses().stream().allMatch(clause -> matches(clause, docId));
+            case QueryNode.Or or -> or.clauses().stream().anyMatch(clause -> matches(clause, docId));
+            case QueryNode.Not not -> !matches(not.clause(), docId);
+        };
+    }
+
+    // A frequent term's set comes from the cache; a rarer one is cheaper to read from its postings
+    private DocIdSet termSet(String term) {
+        int ordinal = index.ordinal(term);
+        if (ordinal < 0) {
+            return DocIdSet.empty();
+        }
+        if (index.docFreq(ordinal) < CACHED_DOC_FREQ) {
+            work += index.docFreq(ordinal);
+            return postings(ordinal);
+        }
+        return cache.get(termKey(term), () -> {
+            work += index.docFreq(ordinal);
+            return postings(ordinal);
+        });
+    }
+
+    private DocIdSet postings(int ordinal) {
+        DocIdSet.Builder docs = new DocIdSet.Builder();
+        for (int slot = index.start(ordinal); slot < index.end(ordinal); slot++) {
+            docs.add(index.docAt(slot));
+        }
+        return docs.build();
+    }
+
+    private DocIdSet filterSet(QueryNode.Filter filter) {
+        return cache.get("filter:" + filter, () -> filters.apply(filter));
+    }
+
+    private static String termKey(String term) {
+        return "term:" + term;
+    }
+
+    private long docFreq(String term) {
+        int ordinal = index.ordinal(term);
+        return ordinal < 0 ? 0 : index.docFreq(ordinal);
+    }
+
+    private int[] ordinals(List<String> terms) {
+        return terms.stream().mapToInt(index::ordinal).toArray();
+    }
+
+    private String join(List<QueryNode> clauses, String operator) {
+        StringBuilder text = new StringBuilder("(");
+        for (int i = 0; i < clauses.size(); i++) {
+            text.append(i > 0 ? operator : "").append(explain(clauses.get(i)));
+        }
+        return text.append(')').toString();
+    }
+}
@@ -17,6 +17,7 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.example.searchengine.Indexer.Generation.IndexGenerations;
 import com.example.searchengine.Ranker.Service.RankerService;
 
 import org.slf4j.Logger;
@@ -33,6 +34,7 @@ public class QueryController {
     private static final Logger logger = LoggerFactory.getLogger(QueryController.class);
     private final QueryService queryService;
     private final RankerService rankerService;
+    private final IndexGenerations indexGenerations;
     
     // Query result cache to avoid duplicate processing
     private final Map<String, CacheEntry> queryResultCache = new ConcurrentHashMap<>();
@@ -47,15 +49,22 @@ public class QueryController {
     private static final int MAX_SESSION_SIZE = 100;
     
     @Autowired
-    public QueryController(QueryService queryService, RankerService rankerService) {
+    public QueryController(QueryService queryService, RankerService rankerService,
+            IndexGenerations indexGenerations) {
         this.queryService = queryService;
         this.rankerService = rankerService;
+        this.indexGenerations = indexGenerations;
     }
     
     @PostConstruct
     public void init() {
         // Schedule regular cache cleanup
         cleanupExecutor.scheduleAtFixedRate(this::cleanupCache, 1, 1, TimeUnit.MINUTES);
+        // Cached results and sessions were ranked against the old index
+        indexGenerations.addSwapListener(generation -> {
+            queryResultCache.clear();
+            searchSessionCache.clear();
+        });
     }
     
     @PreDestroy
@@ -179,8 +188,7 @@ public class QueryController {
         response.put("stemmedWords", result.getStemmedWords());
         response.put("operator", result.getOperator());
         
-        // No need to send all document IDs back to client
-        // response.put("matchingDocuments", result.getMatchingDocuments());
+        response.put("documentFrequencies", result.getDocumentFrequencies());
         
         return ResponseEntity.ok(response);
     }
@@ -10,16 +10,17 @@ public class QueryResult {
     private boolean isPhraseQuery;
     private List<String> stemmedWords;
     private List<String> phrases;
-    private Map<String, List<Long>> matchingDocuments;
+    private Map<String, Integer> documentFrequencies;
     private List<Map<String, Object>> results;
     private String errorMessage;
     private String operator;
     private List<String> suggestedQueries;
+    private String didYouMean;
 
     public QueryResult() {
         this.stemmedWords = new ArrayList<>();
         this.phrases = new ArrayList<>();
-        this.matchingDocuments = new HashMap<>();
+        this.documentFrequencies = new HashMap<>();
         this.results = new ArrayList<>();
         this.suggestedQueries = new ArrayList<>();
     }
@@ -56,12 +57,16 @@ public class QueryResult {
         this.phrases = phrases;
     }
 
-    public Map<String, List<Long>> getMatchingDocuments() {
-        return matchingDocuments;
+    /**
+     * The number of matching documents per query term, or per phrase for
+     * phrase and boolean queries.
+     */
+    public Map<String, Integer> getDocumentFrequencies() {
+        return documentFrequencies;
     }
 
-    public void setMatchingDocuments(Map<String, List<Long>> matchingDocuments) {
-        this.matchingDocuments = matchingDocuments;
+    public void setDocumentFrequencies(Map<String, Integer> documentFrequencies) {
+        this.documentFrequencies = documentFrequencies;
     }
 
     public List<Map<String, Object>> getResults() {
@@ -136,4 +141,16 @@ public class QueryResult {
     public void setSuggestedQueries(List<String> suggestedQueries) {
         this.suggestedQueries = suggestedQueries;
     }
+
+    /**
+     * The query with misspelled words corrected, or null when every word
+     * was found in the index.
+     */
+    public String getDidYouMean() {
+        return didYouMean;
+    }
+
+    public void setDidYouMean(String didYouMean) {
+        this.didYouMean = didYouMean;
+    }
 } 
\ No newline at end of file
@@ -8,6 +8,7 @@ import java.util.List;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Optional;
+import java.util.PriorityQueue;
 import java.util.ArrayList;
 import java.util.stream.Collectors;
 import java.util.Collections;
@@ -27,6 +28,12 @@ import com.example.searchengine.Indexer.Repository.WordDocumentMetricsRepository
 import com.example.searchengine.Indexer.Repository.WordIdfRepository;
 import com.example.searchengine.Indexer.Repository.WordRepository;
 import com.example.searchengine.Indexer.Service.IndexerService;
+import com.example.searchengine.Indexer.Service.PreIndexer;
+import com.example.searchengine.Indexer.Generation.IndexGeneration;
+import com.example.searchengine.Indexer.Generation.IndexGenerations;
+import com.example.searchengine.Indexer.Memory.InMemoryIndex;
+import com.example.searchengine.Indexer.Postings.PostingsList;
+import com.example.searchengine.Indexer.Snapshot.IndexSnapshot;
 import com.example.searchengine.Indexer.Repository.WordPositionRepository;
 import org.springframework.jdbc.core.JdbcTemplate;
 
@@ -35,7 +42,9 @@ public class Ranker1 {
 
     public static final int MAX_DOCS = 6010; // Assuming a maximum of 6000 documents
     private long[] FreqSearchTerms;
-    private Map<String, Map<Long, Integer>> index;
+    private InMemoryIndex index;
+    private IndexSnapshot snapshot; // set when started from the mapped snapshot instead of the tables
+    private IndexGeneration generation; // the index generation the fields below were built from
     private long[] DocTerms; // Document term counts
     private long[][] DocTermsFreqs;
     private long numDocs;
@@ -74,6 +83,8 @@ public class Ranker1 {
     private WordDocumentMetricsRepository wordDocumentMetricsRepository;
     private WordPositionRepository wordPositionRepository;
     private JdbcTemplate jdbcTemplate;
+    private IndexGenerations indexGenerations;
+    private PreIndexer preIndexer;
 
     // Use a ranking configuration system rather than hardcoded topics
     private final Map<String, Double> domainQualityFactors = new HashMap<>();
@@ -104,7 +115,9 @@ public class Ranker1 {
                   WordIdfRepository wordIdfRepository,
                   WordDocumentMetricsRepository wordDocumentMetricsRepository,
                   WordPositionRepository wordPositionRepository,
-                  JdbcTemplate jdbcTemplate) {
+                  JdbcTemplate jdbcTemplate,
+                  IndexGenerations indexGenerations,
+                  PreIndexer preIndexer) {
         this.documentsRepository = documentsRepository;
         this.relatedLinksRepository = relatedLinksRepository;
         this.crawlerMainProcess = crawlerMainProcess;
@@ -114,14 +127,45 @@ public class Ranker1 {
         this.wordDocumentMetricsRepository = wordDocumentMetricsRepository;
         this.wordPositionRepository = wordPositionRepository;
         this.jdbcTemplate = jdbcTemplate;
+        this.indexGenerations = indexGenerations;
+        this.preIndexer = preIndexer;
         
         // Initialize data structures
         initialize();
     }
     
     private void initialize() {
+        // Hold the active generation until a newer one replaces it, so its index is not reclaimed under us
+        IndexGeneration previous = generation;
+        generation = indexerService.acquireGeneration();
+        try {
+            initialize(generation);
+        } finally {
+            if (previous != null) {
+                previous.close();
+            }
+        }
+    }
+    
+    // Re-initialize when a reindex has published a newer index generation
+    private synchronized void refreshGeneration() {
+        IndexGeneration active = indexGenerations.current();
+        if (active != null && active != generation) {
+            System.out.println("Ranker switching to index " + active);
+            initialize();
+        }
+    }
+    
+    private void initialize(IndexGeneration generation) {
+        // Start from the mapped snapshot when one exists; it already holds document lengths and PageRank
+        IndexSnapshot indexSnapshot = generation.getSnapshot();
+        if (indexSnapshot != null) {
+            initializeFromSnapshot(indexSnapshot);
+            return;
+        }
+        
         // Get inverted index and document information
-        Map<String, Map<Long, Integer>> index = indexerService.getInvertedIndex();
+        InMemoryIndex index = generation.getIndex();
         Map<Long, Long> docAndTerms = indexerService.getDocumentCnt();
         Map<Long, Map<Long, Integer>> relationBetweenDocs = crawlerMainProcess.relationBetweenDocs();
         
@@ -186,6 +230,7 @@ public class Ranker1 {
 
         // Store the data
         this.index = index;
+        this.snapshot = null;
         this.DocTerms = docTermCounts;
         this.numDocs = docTermCounts.length;
         
@@ -203,6 +248,32 @@ public class Ranker1 {
         calculatePageRank();
     }
 
+    private void initializeFromSnapshot(IndexSnapshot indexSnapshot) {
+        long startTime = System.currentTimeMillis();
+        int docCount = indexSnapshot.getDocCount();
+        
+        docIdToIndex = new int[docCount];
+        DocTerms = new long[docCount];
+        pageRankScores = new double[docCount];
+        for (int i = 0; i < docCount; i++) {
+            docIdToIndex[i] = indexSnapshot.docId(i);
+            DocTerms[i] = indexSnapshot.docLength(i);
+            pageRankScores[i] = indexSnapshot.pageRank(i);
+        }
+        
+        this.snapshot = indexSnapshot;
+        this.index = null;
+        this.adjacencyMatrix = null;
+        this.numDocs = docCount;
+        System.out.println("Ranker initialized from index snapshot: " + docCount + " documents, " +
+                indexSnapshot.getTermCount() + " terms in " + (System.currentTimeMillis() - startTime) + " ms");
+    }
+    
+    // Postings of a term sorted by doc id, from the snapshot or the in-memory index
+    private PostingsList termPostings(String term) {
+        return snapshot != null ? snapshot.postings(term) : index.postings(term);
+    }
+
     /**
      * Calculate relevance score using precomputed TF-IDF values from the database
      * This is much faster than calculating TF-IDF on the fly
@@ -365,82 +436,17 @@ public class Ranker1 {
     }
     
     /**
-     * Find documents containing an exact phrase by checking word positions
+     * Find documents containing an exact phrase from the bigram index of the
+     * current generation
      */
     private Set<Long> findDocumentsWithPhrase(List<String> phraseWords) {
         Set<Long> documentsWithPhrase = new HashSet<>();
         
         try {
-            // Find all documents containing the first word
-            Optional<Word> firstWordOpt = wordRepository.findByWord(phraseWords.get(0).toLowerCase());
-            if (!firstWordOpt.isPresent()) {
-                return documentsWithPhrase; // No documents contain the first word
+            List<String> terms = preIndexer.analyze(String.join(" ", phraseWords));
+            for (int docId : generation.phrase(terms).getDocIds()) {
+                documentsWithPhrase.add((long) docId);
             }
-            
-            // Get all documents containing the first word
-            List<Object[]> firstWordDocs = jdbcTemplate.query(
-                "SELECT DISTINCT doc_id FROM word_position WHERE word_id = ?",
-                (rs, rowNum) -> new Object[] { rs.getLong("doc_id") },
-                firstWordOpt.get().getId()
-            );
-            
-            // For each document, check if it contains the phrase in the correct order
-            for (Object[] docResult : firstWordDocs) {
-                Long docId = (Long) docResult[0];
-                
-                boolean hasPhrase = true;
-                List<Long> wordIds = new ArrayList<>();
-                
-                // Get IDs for all words in the phrase
-                for (String word : phraseWords) {
-                    Optional<Word> wordOpt = wordRepository.findByWord(word.toLowerCase());
-                    if (!wordOpt.isPresent()) {
-                        hasPhrase = false;
-                        break;
-                    }
-                    wordIds.add(wordOpt.get().getId());
-                }
-                
-                if (!hasPhrase) {
-                    continue; // Skip if any word not found
-                }
-                
-                // Get all positions for the first word in this document
-                List<Integer> firstWordPositions = jdbcTemplate.query(
-                    "SELECT position FROM word_position WHERE word_id = ? AND doc_id = ? ORDER BY position",
-                    (rs, rowNum) -> rs.getInt("position"),
-                    wordIds.get(0), docId
-                );
-                
-                // For each position of the first word, check if subsequent words appear in sequence
-                for (Integer startPos : firstWordPositions) {
-                    boolean matchesPhrase = true;
-                    
-                    // Check each subsequent word in the phrase
-                    for (int i = 1; i < wordIds.size(); i++) {
-                        int expectedPos = startPos + i;
-                        
-                        // Check if the word exists at the expected position
-                        int count = jdbcTemplate.queryForObject(
-                            "SELECT COUNT(*) FROM word_position WHERE word_id = ? AND doc_id = ? AND position = ?",
-                            Integer.class,
-                            wordIds.get(i), docId, expectedPos
-                        );
-                        
-                        if (count == 0) {
-                            matchesPhrase = false;
-                            break;
-                        }
-                    }
-                    
-                    if (matchesPhrase) {
-                        // Found a matching phrase!
-                        documentsWithPhrase.add(docId);
-                        break;
-                    }
-                }
-            }
-            
         } catch (Exception e) {
             System.err.println("Error searching for phrase: " + e.getMessage());
         }
@@ -483,14 +489,15 @@ public class Ranker1 {
         }
         
         // Calculate term frequencies in each document
+        List<PostingsList> postingsByTerm = new ArrayList<>();
+        for (int j = 0; j < numTerms; j++) {
+            postingsByTerm.add(termPostings(searchTerms[j]));
+        }
         for (int i = 0; i < numDocs; i++) {
             for (int j = 0; j < numTerms; j++) {
-                Map<Long, Integer> termFreqs = index.get(searchTerms[j]);
-                if (termFreqs == null) {
-                    DocTermsFreqs[i][j] = 0;
-                } else {
-                    DocTermsFreqs[i][j] = termFreqs.getOrDefault((long) docIdToIndex[i], 0);
-                }
+                PostingsList termPostings = postingsByTerm.get(j);
+                int slot = termPostings == null ? -1 : Arrays.binarySearch(termPostings.getDocIds(), docIdToIndex[i]);
+                DocTermsFreqs[i][j] = slot < 0 ? 0 : termPostings.getFreqs()[slot];
                 if (DocTermsFreqs[i][j] > 0) {
                     FreqSearchTerms[j]++;
                 }
@@ -697,6 +704,9 @@ public class Ranker1 {
     }
 
     public void calculatePageRank() {
+        if (adjacencyMatrix == null) {
+            return; // Scores were loaded from the index snapshot
+        }
         double[][] transitionMatrix = new double[(int) numDocs][(int) numDocs];
         
         // Fill transition matrix
@@ -829,36 +839,56 @@ public class Ranker1 {
      * Generate final document ordering based on combined ranking
      */
     public int[] getFinalDocs(String[] searchTerms) {
+        return getFinalDocs(searchTerms, Integer.MAX_VALUE);
+    }
+
+    /**
+     * The best limit documents by combined ranking, highest first. Only a
+     * heap of limit documents is kept, so a page of results out of many
+     * candidates costs O(n log limit) rather than a sort of every candidate.
+     */
+    public int[] getFinalDocs(String[] searchTerms, int limit) {
+        refreshGeneration();
         calculateFinalRank(searchTerms);
-        finalDocs = new int[(int) numDocs];
         
         // Verify that docIdToIndex has been properly initialized
         if (docIdToIndex == null || docIdToIndex.length == 0) {
             System.err.println("ERROR: docIdToIndex is null or empty. Check initialization.");
             // Return empty array to avoid crashes
-            return new int[0];
+            finalDocs = new int[0];
+            return finalDocs;
         }
         
-        // Create pairs of (docId, score, index) and sort them
-        Pair[] pairs = new Pair[(int) numDocs];
-        for (int i = 0; i < numDocs; i++) {
+        // Keep the best (docId, score, index) pairs, the weakest on top of the heap
+        int keep = (int) Math.min(numDocs, Math.max(0, limit));
+        PriorityQueue<Pair> best = new PriorityQueue<>(Math.max(1, keep), new PairComparator().reversed());
+        for (int i = 0; i < numDocs && keep > 0; i++) {
+            Pair pair;
             // Verify index is within bounds
             if (i < docIdToIndex.length) {
-                pairs[i] = new Pair(docIdToIndex[i], i);
-                pairs[i].score = finalRankScores[i];
+                pair = new Pair(docIdToIndex[i], i);
+                pair.score = finalRankScores[i];
             } else {
                 System.err.println("ERROR: Index " + i + " is out of bounds for docIdToIndex (length: " + docIdToIndex.length + ")");
                 // Use a placeholder to avoid crashes
-                pairs[i] = new Pair(-1, i);
-                pairs[i].score = 0.0;
+                pair = new Pair(-1, i);
+                pair.score = 0.0;
+            }
+            if (best.size() < keep) {
+                best.add(pair);
+            } else if (pair.score > best.peek().score) {
+                best.poll();
+                best.add(pair);
             }
         }
         
         // Sort by score in descending order
+        Pair[] pairs = best.toArray(new Pair[0]);
         Arrays.sort(pairs, new PairComparator());
         
         // Extract the sorted document IDs
-        for (int i = 0; i < numDocs; i++) {
+        finalDocs = new int[pairs.length];
+        for (int i = 0; i < pairs.length; i++) {
             finalDocs[i] = pairs[i].value;
         }
         
@@ -870,7 +900,7 @@ public class Ranker1 {
             }
             
             System.out.println("Top 5 ranked documents:");
-            for (int i = 0; i < Math.min(5, numDocs); i++) {
+            for (int i = 0; i < Math.min(5, pairs.length); i++) {
                 System.out.println("  Rank " + (i+1) + ": Doc ID " + finalDocs[i] + ", Score: " + pairs[i].score);
             }
         }
@@ -11,12 +11,19 @@ import java.util.Optional;
 import java.util.Set;
 
 
-import org.jsoup.Jsoup;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import com.example.searchengine.Crawler.Entities.Document;
 import com.example.searchengine.Crawler.Repository.DocumentsRepository;
+import com.example.searchengine.Indexer.Generation.IndexGeneration;
+import com.example.searchengine.Indexer.Entities.DocumentText;
+import com.example.searchengine.Indexer.Memory.ForwardIndex;
+import com.example.searchengine.Indexer.Repository.DocumentTextRepository;
+import com.example.searchengine.Indexer.Service.IndexerService;
+import com.example.searchengine.Indexer.Service.PreIndexer;
+import com.example.searchengine.Indexer.Text.Highlighter;
+import com.example.searchengine.Indexer.Text.StoredText;
 import com.example.searchengine.Ranker.RankerMainProcess.Ranker1;
 
 @Service
@@ -24,11 +31,21 @@ public class RankerService {
 
     private final Ranker1 ranker;
     private final DocumentsRepository documentsRepository;
+    private final IndexerService indexerService;
+    private final DocumentTextRepository documentTextRepository;
+    private final PreIndexer preIndexer;
+    
+    // Descriptions: the best passage of this many characters around the query terms
+    private final Highlighter highlighter = new Highlighter(250);
     
     @Autowired
-    public RankerService(Ranker1 ranker, DocumentsRepository documentsRepository) {
+    public RankerService(Ranker1 ranker, DocumentsRepository documentsRepository, IndexerService indexerService,
+                         DocumentTextRepository documentTextRepository, PreIndexer preIndexer) {
         this.ranker = ranker;
         this.documentsRepository = documentsRepository;
+        this.indexerService = indexerService;
+        this.documentTextRepository = documentTextRepository;
+        this.preIndexer = preIndexer;
     }
     
     /**
@@ -64,15 +81,16 @@ public class RankerService {
             termsArray[index++] = "\"" + phrase + "\"";
         }
         
-        // Get ranked document IDs from the ranker
-        int[] rankedDocIds = ranker.getFinalDocs(termsArray);
+        // Calculate pagination bounds
+        int startIndex = (page - 1) * size;
+        
+        // Get ranked document IDs from the ranker, only as many as the page and a margin for duplicates need
+        int[] rankedDocIds = ranker.getFinalDocs(termsArray, startIndex + size + 20);
         
         // Convert to list of document objects with metadata
         List<Map<String, Object>> results = new ArrayList<>();
         double[] scores = ranker.getFinalRankScores();
         
-        // Calculate pagination bounds
-        int startIndex = (page - 1) * size;
         int endIndex = Math.min(startIndex + size, rankedDocIds.length);
         
         // Track already seen URLs to avoid duplicates
@@ -80,6 +98,8 @@ public class RankerService {
         
         // Create a map for quick document ID lookup
         Map<Long, Document> documentCache = new HashMap<>();
+        Map<Long, StoredText> textCache = new HashMap<>();
+        Map<Long, Long> textChecksums = new HashMap<>();
         
         // Get all document IDs for batch retrieval, but limit the number to avoid memory issues
         List<Long> docIdsToRetrieve = new ArrayList<>();
@@ -102,6 +122,22 @@ public class RankerService {
             for (Document doc : documents) {
                 documentCache.put(doc.getId(), doc);
             }
+            for (DocumentText text : documentTextRepository.findAllById(batchIds)) {
+                textCache.put(text.getDocId(), StoredText.decode(text.getText()));
+                textChecksums.put(text.getDocId(), text.getChecksum());
+            }
+        }
+        
+        // Where the query's terms, phrase words included, occur in each document, for the descriptions
+        List<String> queryTerms = new ArrayList<>(searchTerms);
+        for (String phrase : phrases) {
+            queryTerms.addAll(preIndexer.analyze(phrase));
+        }
+        ForwardIndex forward;
+        int[] queryOrdinals;
+        try (IndexGeneration generation = indexerService.acquireGeneration()) {
+            forward = generation.getForward();
+            queryOrdinals = queryTerms.stream().mapToInt(generation.getIndex()::ordinal).toArray();
         }
         
         System.out.println("Preparing paginated results: page " + page + 
@@ -139,7 +175,10 @@ public class RankerService {
             seenUrls.put(url, true);
             
             // Create result object
-            Map<String, Object> result = createResultObject(doc, i + 1, scores[i], termsArray);
+            StoredText text = textCache.getOrDefault(docId, StoredText.plain(""));
+            // Positions of this generation only map onto the stored text they were read with
+            long[] occurrences = forward.occurrences((int) docId, queryOrdinals, textChecksums.getOrDefault(docId, -1L));
+            Map<String, Object> result = createResultObject(doc, i + 1, scores[i], text, occurrences);
             results.add(result);
             resultCount++;
             
@@ -155,7 +194,8 @@ public class RankerService {
     /**
      * Create a result object with metadata for a document
      */
-    private Map<String, Object> createResultObject(Document doc, int rank, double score, String[] searchTerms) {
+    private Map<String, Object> createResultObject(Document doc, int rank, double score, StoredText text,
+                                                   long[] occurrences) {
         Map<String, Object> result = new HashMap<>();
         
         // Basic document info
@@ -165,171 +205,20 @@ public class RankerService {
         result.put("rank", rank);
         result.put("score", score);
         
-        // Extract and clean the description from content
-        String description = getDescriptionFromContent(doc.getContent(), searchTerms);
-        
-        // Ensure we have a description - use alternative sources if needed
-        if (description == null || description.isEmpty() || description.equals("")) {
-            // Fallback to first part of content
-            if (doc.getContent() != null && !doc.getContent().isEmpty()) {
-                String plainContent = doc.getContent().replaceAll("<[^>]+>", " ").replaceAll("\\s+", " ").trim();
-                description = plainContent.substring(0, Math.min(plainContent.length(), 150)) + "...";
-            }
-            // Last resort
-            else {
-                description = "Content preview unavailable";
-            }
+        // The passage around the query terms, from the text stored at index time
+        Highlighter.Passage passage = highlighter.passage(text, occurrences, null);
+        if (passage.text().isEmpty()) {
+            result.put("description", "Content preview unavailable");
+            result.put("snippet", "Content preview unavailable");
+        } else {
+            // The description as plain text, the snippet as escaped html with the terms highlighted
+            result.put("description", passage.text());
+            result.put("snippet", passage.html());
         }
         
-        // Use the correct field name for the frontend - "description" vs "snippet"
-        result.put("description", description);
-        result.put("snippet", description); // Add both for compatibility
-        
         return result;
     }
     
-    /**
-     * Extract a relevant description snippet from the content
-     */
-    private String getDescriptionFromContent(String content, String[] searchTerms) {
-        if (content == null || content.isEmpty()) {
-            return "";
-        }
-        
-        try {
-            // Limit the content size to avoid memory issues
-            final int MAX_CONTENT_LENGTH = 100000; // Limit to 100K characters
-            if (content.length() > MAX_CONTENT_LENGTH) {
-                content = content.substring(0, MAX_CONTENT_LENGTH);
-            }
-            
-            // Clean content of HTML tags
-            String cleanContent = content.replaceAll("<[^>]+>", " ").replaceAll("\\s+", " ").trim();
-            
-            if (cleanContent.isEmpty()) {
-                return "";
-            }
-            
-            // Extract all search terms (including those inside quotes)
-            List<String> allTerms = new ArrayList<>();
-            for (String term : searchTerms) {
-                if (term == null) continue;
-                
-                // Handle quoted terms
-                if (term.startsWith("\"") && term.endsWith("\"")) {
-                    String innerTerm = term.substring(1, term.length() - 1);
-                    if (!innerTerm.isEmpty()) {
-                        allTerms.add(innerTerm);
-                    }
-                } else {
-                    allTerms.add(term);
-                }
-            }
-            
-            // Truncate if too long
-            if (cleanContent.length() > 300) {
-                // Try to find context around the first search term
-                int firstMatchPos = -1;
-                String bestTerm = null;
-                
-                // First try exact matches
-                for (String term : allTerms) {
-                    if (term.length() <= 1) continue;
-                    
-                    String lowerContent = cleanContent.toLowerCase();
-                    String lowerTerm = term.toLowerCase();
-                    int pos = lowerContent.indexOf(lowerTerm);
-                    
-                    if (pos >= 0) {
-                        if (firstMatchPos == -1 || pos < firstMatchPos) {
-                            firstMatchPos = pos;
-                            bestTerm = term;
-                        }
-                    }
-                }
-                
-                // If no exact matches, try partial word matches
-                if (firstMatchPos == -1) {
-                    for (String term : allTerms) {
-                        if (term.length() <= 2) continue; // Skip very short terms for partial matching
-                        
-                        // For each term, check if any word in the content contains it
-                        String[] words = cleanContent.toLowerCase().split("\\s+");
-                        String lowerTerm = term.toLowerCase();
-                        
-                        for (int i = 0; i < words.length; i++) {
-                            if (words[i].contains(lowerTerm)) {
-                                // Calculate position in original content
-                                int wordStartPos = -1;
-                                int wordCount = 0;
-                                for (int j = 0; j < cleanContent.length(); j++) {
-                                    if (j > 0 && Character.isWhitespace(cleanContent.charAt(j-1)) && 
-                                        !Character.isWhitespace(cleanContent.charAt(j))) {
-                                        wordCount++;
-                                    }
-                                    if (wordCount == i) {
-                                        wordStartPos = j;
-                                        break;
-                                    }
-                                }
-                                
-                                if (wordStartPos >= 0 && (firstMatchPos == -1 || wordStartPos < firstMatchPos)) {
-                                    firstMatchPos = wordStartPos;
-                                    bestTerm = words[i];
-                                }
-                                break;
-                            }
-                        }
-                    }
-                }
-                
-                // Extract context around the match
-                if (firstMatchPos != -1 && bestTerm != null) {
-                    int startPos = Math.max(0, firstMatchPos - 100);
-                    int endPos = Math.min(cleanContent.length(), firstMatchPos + bestTerm.length() + 150);
-                    
-                    // Adjust to avoid cutting words
-                    while (startPos > 0 && startPos < cleanContent.length() && 
-                          cleanContent.charAt(startPos) != ' ' && cleanContent.charAt(startPos) != '.') {
-                        startPos--;
-                    }
-                    
-                    while (endPos < cleanContent.length() - 1 && 
-                          cleanContent.charAt(endPos) != ' ' && cleanContent.charAt(endPos) != '.') {
-                        endPos++;
-                        // Safety check to avoid running too far
-                        if (endPos - firstMatchPos > 200) {
-                            break;
-                        }
-                    }
-                    
-                    String snippet = cleanContent.substring(startPos, endPos).trim();
-                    
-                    // Add ellipsis if we're not at the beginning/end
-                    if (startPos > 0) {
-                        snippet = "..." + snippet;
-                    }
-                    if (endPos < cleanContent.length() - 1) {
-                        snippet = snippet + "...";
-                    }
-                    
-                    return snippet;
-                } else {
-                    // No match found, return beginning of content
-                    return cleanContent.substring(0, Math.min(250, cleanContent.length())) + "...";
-                }
-            } else {
-                return cleanContent;
-            }
-        } catch (OutOfMemoryError e) {
-            // Catch and handle memory errors
-            return "Content too large to display preview";
-        } catch (Exception e) {
-            // Catch all other errors
-            return "Error generating content preview";
-        }
-    }
-    
     /**
      * Applies diversity-based reranking to ensure varied results
      * Uses a simple greedy algorithm to promote diversity
@@ -349,64 +238,31 @@ public class RankerService {
         List<RankedResult> topResults = new ArrayList<>(rankedResults.subList(0, k));
         List<RankedResult> remainingResults = new ArrayList<>(rankedResults.subList(k, rankedResults.size()));
         
-        // Create a map to store document terms for similarity calculation
-        Map<Integer, Set<String>> documentTerms = new HashMap<>();
-        
-        // Create a map to track domain frequencies for increased domain diversity
-        Map<String, Integer> domainFrequency = new HashMap<>();
+        // Term vectors of the current index generation, for content similarity
+        ForwardIndex forward;
+        try (IndexGeneration generation = indexerService.acquireGeneration()) {
+            forward = generation.getForward();
+        }
         
-        // Load document term data for top results
+        // Load the urls of the top results in one query
+        Map<Integer, String> urls = new HashMap<>();
+        List<Long> topIds = new ArrayList<>();
         for (RankedResult result : topResults) {
-            Optional<Document> docOpt = documentsRepository.findById((long)result.getDocumentId());
-            if (docOpt.isPresent()) {
-                Document doc = docOpt.get();
-                
-                // Track domain frequencies
-                if (doc.getUrl() != null) {
-                    String domain = extractDomain(doc.getUrl().toLowerCase());
-                    domainFrequency.put(domain, domainFrequency.getOrDefault(domain, 0) + 1);
-                }
-                
-                // Extract significant terms from title and content
-                Set<String> terms = new HashSet<>();
-                
-                if (doc.getTitle() != null) {
-                    Arrays.stream(doc.getTitle().toLowerCase().split("\\W+"))
-                          .filter(term -> term.length() > 3) // Only significant terms
-                          .forEach(terms::add);
-                }
-                
-                if (doc.getUrl() != null) {
-                    // Add URL components as signals
-                    String cleanUrl = doc.getUrl().toLowerCase()
-                        .replaceAll("https?://", "")
-                        .replaceAll("www\\.", "");
-                    
-                    Arrays.stream(cleanUrl.split("[/.-]"))
-                          .filter(term -> term.length() > 3)
-                          .forEach(terms::add);
-                }
-                
-                if (doc.getContent() != null) {
-                    // Extract a sample of terms from content (for efficiency)
-                    String text = Jsoup.parse(doc.getContent()).text().toLowerCase();
-                    String[] contentTerms = text.split("\\W+");
-                    for (int i = 0; i < Math.min(300, contentTerms.length); i++) {
-                        if (contentTerms[i].length() > 3) {
-                            terms.add(contentTerms[i]);
-                        }
-                    }
-                }
-                
-                // Add search terms to the term set to prioritize them in similarity calculation
-                for (String term : searchTerms) {
-                    terms.add(term.toLowerCase());
-                }
-                
-                documentTerms.put(result.getDocumentId(), terms);
+            topIds.add((long) result.getDocumentId());
+        }
+        for (Document doc : documentsRepository.findAllById(topIds)) {
+            if (doc.getUrl() != null) {
+                urls.put(doc.getId().intValue(), doc.getUrl().toLowerCase());
             }
         }
         
+        // Create a map to track domain frequencies for increased domain diversity
+        Map<String, Integer> domainFrequency = new HashMap<>();
+        for (String url : urls.values()) {
+            String domain = extractDomain(url);
+            domainFrequency.put(domain, domainFrequency.getOrDefault(domain, 0) + 1);
+        }
+        
         // Apply a modified Maximal Marginal Relevance algorithm
         List<RankedResult> rerankedResults = new ArrayList<>();
         List<RankedResult> candidates = new ArrayList<>(topResults);
@@ -417,9 +273,9 @@ public class RankerService {
             rerankedResults.add(topResult);
             
             // Update domain frequency
-            Optional<Document> docOpt = documentsRepository.findById((long)topResult.getDocumentId());
-            if (docOpt.isPresent() && docOpt.get().getUrl() != null) {
-                String domain = extractDomain(docOpt.get().getUrl().toLowerCase());
+            String url = urls.get(topResult.getDocumentId());
+            if (url != null) {
+                String domain = extractDomain(url);
                 domainFrequency.put(domain, domainFrequency.getOrDefault(domain, 0) + 1);
             }
         }
@@ -438,9 +294,7 @@ public class RankerService {
             
             for (int i = 0; i < candidates.size(); i++) {
                 RankedResult candidate = candidates.get(i);
-                Set<String> candidateTerms = documentTerms.get(candidate.getDocumentId());
-                
-                if (candidateTerms == null) {
+                if (forward.slot(candidate.getDocumentId()) < 0) {
                     continue;
                 }
                 
@@ -450,10 +304,8 @@ public class RankerService {
                 int similarityCount = 0;
                 
                 for (RankedResult selected : rerankedResults) {
-                    Set<String> selectedTerms = documentTerms.get(selected.getDocumentId());
-                    
-                    if (selectedTerms != null) {
-                        double similarity = calculateJaccardSimilarity(candidateTerms, selectedTerms);
+                    if (forward.slot(selected.getDocumentId()) >= 0) {
+                        double similarity = forward.jaccard(candidate.getDocumentId(), selected.getDocumentId());
                         maxSimilarity = Math.max(maxSimilarity, similarity);
                         avgSimilarity += similarity;
                         similarityCount++;
@@ -479,9 +331,8 @@ public class RankerService {
                 // Apply domain diversity penalties
                 double domainPenalty = 0.0;
                 
-                Optional<Document> candidateDoc = documentsRepository.findById((long)candidate.getDocumentId());
-                if (candidateDoc.isPresent() && candidateDoc.get().getUrl() != null) {
-                    String candidateUrl = candidateDoc.get().getUrl().toLowerCase();
+                String candidateUrl = urls.get(candidate.getDocumentId());
+                if (candidateUrl != null) {
                     String candidateDomain = extractDomain(candidateUrl);
                     
                     // Check domain frequency - penalize domains that appear too often
@@ -498,9 +349,8 @@ public class RankerService {
                     
                     // Additional penalty for documents with similar URL patterns
                     for (RankedResult selected : rerankedResults) {
-                        Optional<Document> selectedDoc = documentsRepository.findById((long)selected.getDocumentId());
-                        if (selectedDoc.isPresent() && selectedDoc.get().getUrl() != null) {
-                            String selectedUrl = selectedDoc.get().getUrl().toLowerCase();
+                        String selectedUrl = urls.get(selected.getDocumentId());
+                        if (selectedUrl != null) {
                             String selectedDomain = extractDomain(selectedUrl);
                             
                             // Check if URLs are from the same domain
@@ -539,8 +389,8 @@ public class RankerService {
                     }
                 }
                 
-                if (isProgrammingQuery && candidateDoc.isPresent() && candidateDoc.get().getUrl() != null) {
-                    String candidateDomain = extractDomain(candidateDoc.get().getUrl().toLowerCase());
+                if (isProgrammingQuery && candidateUrl != null) {
+                    String candidateDomain = extractDomain(candidateUrl);
                     if (programmingDomains.contains(candidateDomain)) {
                         combinedScore *= 1.15; // 15% bonus for programming sites on programming queries
                     }
@@ -557,9 +407,9 @@ public class RankerService {
                 rerankedResults.add(selected);
                 
                 // Update domain frequency
-                Optional<Document> docOpt = documentsRepository.findById((long)selected.getDocumentId());
-                if (docOpt.isPresent() && docOpt.get().getUrl() != null) {
-                    String domain = extractDomain(docOpt.get().getUrl().toLowerCase());
+                String url = urls.get(selected.getDocumentId());
+                if (url != null) {
+                    String domain = extractDomain(url);
                     domainFrequency.put(domain, domainFrequency.getOrDefault(domain, 0) + 1);
                 }
             } else {
@@ -573,23 +423,6 @@ public class RankerService {
         return rerankedResults;
     }
     
-    /**
-     * Calculates Jaccard similarity between two sets of terms
-     */
-    private double calculateJaccardSimilarity(Set<String> set1, Set<String> set2) {
-        if (set1 == null || set2 == null || set1.isEmpty() || set2.isEmpty()) {
-            return 0.0;
-        }
-        
-        Set<String> intersection = new HashSet<>(set1);
-        intersection.retainAll(set2);
-        
-        Set<String> union = new HashSet<>(set1);
-        union.addAll(set2);
-        
-        return (double) intersection.size() / union.size();
-    }
-    
     /**
      * Extracts domain from URL
      */
@@ -13,6 +13,7 @@ import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 import org.springframework.web.filter.CorsFilter;
 
 import com.example.searchengine.Indexer.Service.DatabaseMaintenanceService;
+import com.example.searchengine.Indexer.Service.IndexStatistics;
 
 import java.util.Arrays;
 import org.springframework.scheduling.annotation.EnableAsync;
@@ -28,6 +29,9 @@ public class SearchengineApplication implements CommandLineRunner {
     @Autowired
     private DatabaseMaintenanceService maintenanceService;
 
+    @Autowired
+    private IndexStatistics indexStatistics;
+
     public static void main(String[] args) {
         Dotenv dotenv = Dotenv.configure()
                 .directory(".")
@@ -51,6 +55,13 @@ public class SearchengineApplication implements CommandLineRunner {
             // Continue with startup even if vacuum fails
         }
         
+        // Count the index once; indexing keeps the totals current from here on
+        try {
+            indexStatistics.recount();
+        } catch (Exception e) {
+            logger.error("Counting index statistics failed: {}", e.getMessage());
+        }
+        
         logger.info("Search engine initialization complete!");
         logger.info("Search engine ready for use.");
     }
@@ -0,0 +1,176 @@
+package com.example.searchengine.Suggest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Weighted prefix completion over a sorted array of keys. The keys with a
+ * prefix are one contiguous range, found with two binary searches; a
+ * segment tree over the weights gives the heaviest key of any range, so
+ * the top k of a range are taken best first, splitting the range around
+ * each key taken:
+ *
+ * <pre>
+ * keys[i]          sorted completions
+ * weights[i]       their weights
+ * tree[node]       index of the heaviest key under the node, leaves at n + i
+ * </pre>
+ *
+ * A lookup costs O(k log n) however many keys share the prefix.
+ */
+public final class CompletionIndex {
+
+    /**
+     * One completion and its weight.
+     */
+    public record Completion(String text, long weight) {
+    }
+
+    private final String[] keys;
+    private final long[] weights;
+    private final int[] tree;
+
+    private CompletionIndex(String[] keys, long[] weights) {
+        this.keys = keys;
+        this.weights = weights;
+        int n = keys.length;
+        this.tree = new int[2 * n];
+        for (int i = 0; i < n; i++) {
+            tree[n + i] = i;
+        }
+        for (int node = n - 1; node > 0; node--) {
+            tree[node] = heavier(tree[2 * node], tree[2 * node + 1]);
+        }
+    }
+
+    public static CompletionIndex empty() {
+        return new CompletionIndex(new String[0], new long[0]);
+    }
+
+    public int size() {
+        return keys.length;
+    }
+
+    /**
+     * The k heaviest keys starting with the prefix, heaviest first; ties go
+     * to the key that sorts first.
+     */
+    public List<Completion> complete(String prefix, int k) {
+        int from = lowerBound(prefix);
+        int to = lowerBound(prefix + Character.MAX_VALUE);
+        List<Completion> completions = new ArrayList<>(Math.min(k, Math.max(0, to - from)));
+        if (from >= to || k <= 0) {
+            return completions;
+        }
+
+        // Ranges still to take from, as {from, to, heaviest index}, heaviest first
+        PriorityQueue<int[]> ranges = new PriorityQueue<>((a, b) -> a[2] == b[2] ? 0 : heavier(a[2], b[2]) == a[2] ? -1 : 1);
+        ranges.add(new int[] {from, to, heaviest(from, to)});
+        while (!ranges.isEmpty() && completions.size() < k) {
+            int[] range = ranges.poll();
+            int best = range[2];
+            completions.add(new Completion(keys[best], weights[best]));
+            if (range[0] < best) {
+                ranges.add(new int[] {range[0], best, heaviest(range[0], best)});
+            }
+            if (best + 1 < range[1]) {
+                ranges.add(new int[] {best + 1, range[1], heaviest(best + 1, range[1])});
+            }
+        }
+        return completions;
+    }
+
+    // Heaviest index in [from, to), bottom-up over the tree
+    private int heaviest(int from, int to) {
+        int n = keys.length;
+        int best = -1;
+        for (int l = from + n, r = to + n; l < r; l >>= 1, r >>= 1) {
+            if ((l & 1) == 1) {
+                best = best < 0 ? tree[l] : heavier(best, tree[l]);
+                l++;
+            }
+            if ((r & 1) == 1) {
+                r--;
+                best = best < 0 ? tree[r] : heavier(best, tree[r]);
+            }
+        }
+        return best;
+    }
+
+    private int heavier(int a, int b) {
+        if (weights[a] != weights[b]) {
+            return weights[a] > weights[b] ? a : b;
+        }
+        return Math.min(a, b);
+    }
+
+    private int lowerBound(String key) {
+        int low = 0;
+        int high = keys.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (keys[mid].compareTo(key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Bytes held by the arrays, key strings included.
+     */
+    public long estimatedBytes() {
+        long bytes = 16L * 3 + (long) weights.length * 8 + (long) tree.length * 4;
+        for (String key : keys) {
+            bytes += 8 + 40 + key.length();
+        }
+        return bytes;
+    }
+
+    /**
+     * Collects keys in any order; weights of a key added more than once are
+     * summed.
+     */
+    public static class Builder {
+        private String[] keys = new String[1024];
+        private long[] weights = new long[1024];
+        private int size;
+
+        public Builder add(String key, long weight) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                weights = Arrays.copyOf(weights, size * 2);
+            }
+            keys[size] = key;
+            weights[size] = weight;
+            size++;
+            return this;
+        }
+
+        public CompletionIndex build() {
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> keys[a].compareTo(keys[b]));
+            String[] sortedKeys = new String[size];
+            long[] sortedWeights = new long[size];
+            int unique = 0;
+            for (int i = 0; i < size; i++) {
+                String key = keys[order[i]];
+                if (unique > 0 && sortedKeys[unique - 1].equals(key)) {
+                    sortedWeights[unique - 1] += weights[order[i]];
+                } else {
+                    sortedKeys[unique] = key;
+                    sortedWeights[unique] = weights[order[i]];
+                    unique++;
+                }
+            }
+            return new CompletionIndex(Arrays.copyOf(sortedKeys, unique), Arrays.copyOf(sortedWeights, unique));
+        }
+    }
+}
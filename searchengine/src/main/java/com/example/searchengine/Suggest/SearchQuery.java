@@ -0,0 +1,32 @@
+package com.example.searchengine.Suggest;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * A normalized query users have searched for and how often, the source of
+ * query completions.
+ */
+@Entity
+@Table(name = "search_queries", indexes = {
+        @Index(name = "idx_search_queries_query", columnList = "query", unique = true)
+})
+@Getter
+@Setter
+public class SearchQuery {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 512)
+    private String query;
+
+    @Column(name = "search_count", nullable = false)
+    private Long searchCount;
+
+    @Column(name = "last_searched_at")
+    private LocalDateTime lastSearchedAt;
+}
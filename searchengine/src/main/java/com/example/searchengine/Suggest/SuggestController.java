@@ -0,0 +1,56 @@
+package com.example.searchengine.Suggest;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api")
+@CrossOrigin(origins = "*")
+public class SuggestController {
+
+    private static final Logger logger = LoggerFactory.getLogger(SuggestController.class);
+    private static final int MAX_LIMIT = 20;
+
+    private final SuggestService suggestService;
+
+    @Autowired
+    public SuggestController(SuggestService suggestService) {
+        this.suggestService = suggestService;
+    }
+
+    /**
+     * Completions of a partly typed query, for search-as-you-type
+     */
+    @GetMapping("/suggest")
+    public ResponseEntity<Map<String, Object>> suggest(@RequestParam("q") String prefix,
+                                                       @RequestParam(defaultValue = "10") int limit) {
+        try {
+            long startTime = System.nanoTime();
+            List<String> suggestions = suggestService.suggest(prefix, Math.min(limit, MAX_LIMIT));
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("query", prefix);
+            response.put("suggestions", suggestions);
+            response.put("tookMicros", (System.nanoTime() - startTime) / 1000);
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            logger.error("Error completing '{}': {}", prefix, e.getMessage(), e);
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Suggest failed: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
+        }
+    }
+
+    @GetMapping("/suggest/stats")
+    public ResponseEntity<Map<String, Object>> getStats() {
+        return ResponseEntity.ok(suggestService.getStats());
+    }
+}
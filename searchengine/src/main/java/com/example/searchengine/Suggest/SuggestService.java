@@ -0,0 +1,233 @@
+package com.example.searchengine.Suggest;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import com.example.searchengine.Indexer.Generation.IndexGeneration;
+import com.example.searchengine.Indexer.Generation.IndexGenerations;
+import com.example.searchengine.Indexer.Memory.InMemoryIndex;
+import com.example.searchengine.Indexer.Service.IndexerService;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Search-as-you-type completions from two {@link CompletionIndex}es: past
+ * queries weighted by how often they were searched, and the indexed
+ * vocabulary weighted by document frequency, used for the last word typed.
+ *
+ * The vocabulary index is rebuilt from the terms of each new index
+ * generation, in memory and without reading the tables. Searches update
+ * query counts in memory; a scheduled refresh rebuilds the query index when
+ * they changed and adds the new counts to search_queries.
+ */
+@Service
+public class SuggestService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SuggestService.class);
+
+    private static final int MAX_QUERY_LENGTH = 100;
+    private static final int MAX_LOADED_QUERIES = 100_000;
+    private static final Pattern COMPLETABLE_TERM = Pattern.compile("[a-z][a-z0-9]+");
+
+    private final IndexGenerations indexGenerations;
+    private final IndexerService indexerService;
+    private final JdbcTemplate jdbcTemplate;
+    private final ThreadPoolTaskExecutor searchTaskExecutor;
+
+    private volatile CompletionIndex words = CompletionIndex.empty();
+    private volatile long wordsGeneration = -1;
+    private final AtomicBoolean rebuildingWords = new AtomicBoolean();
+
+    private volatile CompletionIndex queries = CompletionIndex.empty();
+    private final Map<String, Long> queryCounts = new ConcurrentHashMap<>();
+    private final Map<String, Long> unsavedCounts = new ConcurrentHashMap<>();
+    private volatile boolean queriesChanged;
+
+    @Autowired
+    public SuggestService(IndexGenerations indexGenerations, IndexerService indexerService, JdbcTemplate jdbcTemplate,
+            ThreadPoolTaskExecutor searchTaskExecutor) {
+        this.indexGenerations = indexGenerations;
+        this.indexerService = indexerService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.searchTaskExecutor = searchTaskExecutor;
+    }
+
+    @PostConstruct
+    public void init() {
+        // Published generations arrive with their terms loaded; the one opened at startup is built on first use
+        indexGenerations.addSwapListener(generation -> {
+            if (generation.isIndexLoaded()) {
+                rebuildWords(generation);
+            }
+        });
+        try {
+            jdbcTemplate.query("SELECT query, search_count FROM search_queries ORDER BY search_count DESC LIMIT ?",
+                rs -> {
+                    queryCounts.put(rs.getString(1), rs.getLong(2));
+                }, MAX_LOADED_QUERIES);
+            rebuildQueries();
+        } catch (Exception e) {
+            logger.warn("Past queries are not available for completion: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Up to limit completions of what has been typed so far: past queries
+     * first, then the typed words with the last one completed from the
+     * vocabulary.
+     */
+    public List<String> suggest(String prefix, int limit) {
+        String typed = normalize(prefix);
+        if (typed.isEmpty() || limit <= 0) {
+            return new ArrayList<>();
+        }
+        refreshWordsIfStale();
+
+        // A trailing space ends the last word: "java " must not complete to "javascript"
+        boolean wordFinished = Character.isWhitespace(prefix.charAt(prefix.length() - 1));
+        Set<String> suggestions = new LinkedHashSet<>();
+        for (CompletionIndex.Completion completion : queries.complete(wordFinished ? typed + " " : typed, limit)) {
+            suggestions.add(completion.text());
+        }
+
+        if (suggestions.size() < limit && !wordFinished) {
+            int split = typed.lastIndexOf(' ');
+            String head = typed.substring(0, split + 1);
+            String last = typed.substring(split + 1);
+            for (CompletionIndex.Completion completion : words.complete(last, limit)) {
+                if (suggestions.size() >= limit) {
+                    break;
+                }
+                suggestions.add(head + completion.text());
+            }
+        }
+        return new ArrayList<>(suggestions);
+    }
+
+    /**
+     * Count a submitted query towards query completions.
+     */
+    public void recordQuery(String query) {
+        String normalized = normalize(query);
+        if (normalized.isEmpty() || normalized.length() > MAX_QUERY_LENGTH) {
+            return;
+        }
+        queryCounts.merge(normalized, 1L, Long::sum);
+        unsavedCounts.merge(normalized, 1L, Long::sum);
+        queriesChanged = true;
+    }
+
+    /**
+     * Rebuild the query index if searches changed it and save the new
+     * counts.
+     */
+    @Scheduled(fixedDelayString = "${app.suggest.refresh-ms:30000}")
+    public void refreshQueries() {
+        if (!queriesChanged) {
+            return;
+        }
+        queriesChanged = false;
+        rebuildQueries();
+        saveQueryCounts();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("words", words.size());
+        stats.put("wordsGeneration", wordsGeneration);
+        stats.put("queries", queries.size());
+        stats.put("unsavedQueries", unsavedCounts.size());
+        stats.put("estimatedBytes", words.estimatedBytes() + queries.estimatedBytes());
+        return stats;
+    }
+
+    private void refreshWordsIfStale() {
+        IndexGeneration current = indexGenerations.current();
+        if (current == null || current.getNumber() == wordsGeneration || !rebuildingWords.compareAndSet(false, true)) {
+            return;
+        }
+        // Keep answering from the previous vocabulary while the new one is built
+        try {
+            searchTaskExecutor.execute(() -> {
+                try (IndexGeneration generation = indexerService.acquireGeneration()) {
+                    rebuildWords(generation);
+                } catch (Exception e) {
+                    logger.warn("Could not rebuild the completion vocabulary: {}", e.getMessage());
+                } finally {
+                    rebuildingWords.set(false);
+                }
+            });
+        } catch (RuntimeException e) {
+            rebuildingWords.set(false);
+        }
+    }
+
+    private void rebuildWords(IndexGeneration generation) {
+        long startTime = System.currentTimeMillis();
+        InMemoryIndex index = generation.getIndex();
+        CompletionIndex.Builder builder = new CompletionIndex.Builder();
+        for (int ordinal = 0; ordinal < index.termCount(); ordinal++) {
+            String term = index.term(ordinal);
+            if (COMPLETABLE_TERM.matcher(term).matches()) {
+                builder.add(term, index.docFreq(ordinal));
+            }
+        }
+        words = builder.build();
+        wordsGeneration = generation.getNumber();
+        logger.info("Built completion vocabulary of {} words for {} in {} ms", words.size(), generation,
+            System.currentTimeMillis() - startTime);
+    }
+
+    private void rebuildQueries() {
+        CompletionIndex.Builder builder = new CompletionIndex.Builder();
+        queryCounts.forEach(builder::add);
+        queries = builder.build();
+    }
+
+    // Add the counts gathered since the last save; counts that fail to save are kept for the next one
+    private void saveQueryCounts() {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        for (String query : new ArrayList<>(unsavedCounts.keySet())) {
+            Long count = unsavedCounts.remove(query);
+            if (count == null) {
+                continue;
+            }
+            try {
+                int updated = jdbcTemplate.update(
+                    "UPDATE search_queries SET search_count = search_count + ?, last_searched_at = ? WHERE query = ?",
+                    count, now, query);
+                if (updated == 0) {
+                    jdbcTemplate.update(
+                        "INSERT INTO search_queries (query, search_count, last_searched_at) VALUES (?, ?, ?)",
+                        query, count, now);
+                }
+            } catch (Exception e) {
+                unsavedCounts.merge(query, count, Long::sum);
+                logger.warn("Could not save query counts: {}", e.getMessage());
+                return;
+            }
+        }
+    }
+
+    // Lower case with single spaces, so "Python  Tutorial" and "python tutorial" are one query
+    private static String normalize(String text) {
+        return text == null ? "" : text.toLowerCase().trim().replaceAll("\\s+", " ");
+    }
+}
@@ -1,21 +1,23 @@
 package com.example.searchengine.controllers;
 
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
-import com.example.searchengine.Crawler.Entities.Document;
 import com.example.searchengine.Crawler.Repository.DocumentRepository;
+import com.example.searchengine.Indexer.Generation.IndexGeneration;
+import com.example.searchengine.Indexer.Generation.IndexGenerations;
+import com.example.searchengine.Indexer.Service.IndexStatistics;
 import com.example.searchengine.Indexer.Service.IndexerService;
 
 @RestController
@@ -38,7 +40,7 @@ public class ReindexController {
     }
 
     @PostMapping("/reindex")
-    public ResponseEntity<Map<String, Object>> reindexDocuments() {
+    public ResponseEntity<Map<String, Object>> reindexDocuments(@RequestParam(defaultValue = "false") boolean full) {
         
         if (indexingInProgress.get()) {
             Map<String, Object> response = new HashMap<>();
@@ -48,38 +50,33 @@ public class ReindexController {
         }
         
         try {
-            // Find all documents that need to be indexed
-            List<Document> documents = documentRepository.findAll();
+            // Get IndexerService from ApplicationContext to avoid circular dependency
+            IndexerService indexerService = applicationContext.getBean(IndexerService.class);
+            
+            // Only documents changed since they were last indexed, unless a full rebuild is asked for
+            long documentCount = full ? documentRepository.count() : indexerService.countChangedDocuments();
             
-            if (documents.isEmpty()) {
+            if (documentCount == 0) {
                 Map<String, Object> response = new HashMap<>();
                 response.put("status", "warning");
-                response.put("message", "No documents found to index");
+                response.put("message", full ? "No documents found to index" : "No changed documents to index");
                 return ResponseEntity.ok(response);
             }
             
-            // Convert documents to a Map<String, String> of URL to Content for the indexer
-            Map<String, String> documentMap = documents.stream()
-                .collect(Collectors.toMap(
-                    Document::getUrl,
-                    Document::getContent,
-                    (existing, replacement) -> existing // Keep first in case of duplicate URLs
-                ));
-            
             // Mark indexing as started
             indexingInProgress.set(true);
             indexingStartTime = System.currentTimeMillis();
-            totalDocumentsToIndex = documents.size();
+            totalDocumentsToIndex = (int) documentCount;
             indexedDocumentsCount.set(0);
-            lastIndexingStatus = "Indexing started for " + documents.size() + " documents";
+            lastIndexingStatus = "Indexing started for " + documentCount + " documents";
             
             // Start indexing in a separate thread
             new Thread(() -> {
                 try {
-                    // Get IndexerService from ApplicationContext to avoid circular dependency
-                    IndexerService indexerService = applicationContext.getBean(IndexerService.class);
-                    indexerService.buildIndex(documentMap);
-                    lastIndexingStatus = "Indexing completed successfully for " + documents.size() + " documents in " 
+                    Consumer<Long> progress = written -> indexedDocumentsCount.set(written.intValue());
+                    int processed = full ? indexerService.reindexAllDocuments(progress)
+                            : indexerService.reindexChangedDocuments(progress);
+                    lastIndexingStatus = "Indexing completed successfully for " + processed + " documents in " 
                             + ((System.currentTimeMillis() - indexingStartTime) / 1000) + " seconds";
                 } catch (Exception e) {
                     lastIndexingStatus = "Indexing failed: " + e.getMessage();
@@ -91,7 +88,8 @@ public class ReindexController {
             // Prepare response
             Map<String, Object> response = new HashMap<>();
             response.put("status", "success");
-            response.put("message", "Indexing started for " + documents.size() + " documents");
+            response.put("message", "Indexing started for " + documentCount + " documents");
+            response.put("mode", full ? "full" : "incremental");
             
             return ResponseEntity.ok(response);
         } catch (Exception e) {
@@ -106,20 +104,16 @@ public class ReindexController {
     @GetMapping("/index-status")
     public ResponseEntity<Map<String, Object>> getIndexStatus() {
         try {
-            // Get IndexerService from ApplicationContext to avoid circular dependency
-            IndexerService indexerService = applicationContext.getBean(IndexerService.class);
-            
-            // Get statistics about the index
-            Map<String, Map<Long, Integer>> index = indexerService.getInvertedIndex();
+            // Get statistics about the index, maintained as documents are indexed
+            IndexStatistics indexStatistics = applicationContext.getBean(IndexStatistics.class);
+            IndexGeneration generation = applicationContext.getBean(IndexGenerations.class).current();
             
             Map<String, Object> stats = new HashMap<>();
-            stats.put("uniqueWords", index.size());
-            
-            // Count total word-document pairs
-            long totalPairs = index.values().stream()
-                .mapToLong(map -> map.size())
-                .sum();
-            stats.put("wordDocumentPairs", totalPairs);
+            stats.put("uniqueWords", indexStatistics.getTermCount());
+            stats.put("wordDocumentPairs", indexStatistics.getPostingsCount());
+            stats.put("indexedDocuments", indexStatistics.getDocumentCount());
+            stats.put("averageDocumentLength", indexStatistics.getAverageDocumentLength());
+            stats.put("indexGeneration", generation == null ? null : generation.getNumber());
             
             // Get document count
             long documentCount = documentRepository.count();
@@ -153,9 +147,4 @@ public class ReindexController {
             return ResponseEntity.internalServerError().body(response);
         }
     }
-    
-    // Static method to update progress - can be called from anywhere
-    public static void updateIndexingProgress(int documentsIndexed) {
-        indexedDocumentsCount.set(documentsIndexed);
-    }
 } 
\ No newline at end of file
@@ -14,8 +14,10 @@ import java.util.concurrent.TimeUnit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.example.searchengine.Indexer.Generation.IndexGenerations;
 import com.example.searchengine.Query.QueryResult;
 import com.example.searchengine.Query.QueryService;
+import com.example.searchengine.Suggest.SuggestService;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import jakarta.annotation.PostConstruct;
@@ -27,6 +29,8 @@ import jakarta.annotation.PreDestroy;
 public class SearchController {
 
     private final QueryService queryService;
+    private final IndexGenerations indexGenerations;
+    private final SuggestService suggestService;
     private static final Logger logger = LoggerFactory.getLogger(SearchController.class);
 
     // Search result cache to avoid repeated query processing
@@ -36,14 +40,18 @@ public class SearchController {
     private static final long CACHE_EXPIRY_MINUTES = 30; // 30 minutes cache expiry
 
     @Autowired
-    public SearchController(QueryService queryService) {
+    public SearchController(QueryService queryService, IndexGenerations indexGenerations, SuggestService suggestService) {
         this.queryService = queryService;
+        this.indexGenerations = indexGenerations;
+        this.suggestService = suggestService;
     }
 
     @PostConstruct
     public void init() {
         // Schedule cache cleanup every 10 minutes
         cacheCleanupService.scheduleAtFixedRate(this::cleanupCache, 10, 10, TimeUnit.MINUTES);
+        // Cached results were ranked against the old index
+        indexGenerations.addSwapListener(generation -> searchResultCache.clear());
     }
 
     @PreDestroy
@@ -152,11 +160,8 @@ public class SearchController {
         formatted.put("title", result.get("title"));
         formatted.put("url", result.get("url"));
 
-        // Format the description - prioritize the generated description
+        // Format the description - plain text, unlike the snippet
         String description = (String) result.get("description");
-        if (description == null || description.isEmpty()) {
-            description = (String) result.get("snippet");
-        }
 
         // Clean up description
         if (description != null) {
@@ -170,7 +175,8 @@ public class SearchController {
         }
 
         formatted.put("description", description);
-        formatted.put("snippet", description);
+        // Escaped html with the query terms highlighted, already bounded by the highlighter; cutting it could split a tag
+        formatted.put("snippet", result.get("snippet"));
         formatted.put("score", result.get("score"));
 
         return formatted;
@@ -226,6 +232,11 @@ public class SearchController {
 
             int totalPages = (int) Math.ceil((double) totalResults / pageSize);
 
+            // Only first pages of queries that found something feed query completions
+            if (page == 1 && totalResults > 0) {
+                suggestService.recordQuery(query);
+            }
+
             // Get page results from cache or calculate
             List<Map<String, Object>> pageResults = cacheEntry.getPageResults(page, pageSize);
             if (pageResults == null) {
@@ -259,6 +270,7 @@ public class SearchController {
             response.put("isComplexPhraseQuery", isComplexPhraseQuery);
             response.put("operator", operator);
             response.put("operatorDisplayText", operator != null ? operator : "");
+            response.put("didYouMean", cacheEntry.queryResult.getDidYouMean());
             response.put("fromCache", cacheEntry.getPageResults(page, pageSize) != null);
 
             // Log successful search
@@ -0,0 +1,9 @@
+-- Compressed postings: one row per term holding delta + varint encoded
+-- doc ids, frequencies and positions in blocks with a skip table
+CREATE TABLE IF NOT EXISTS term_postings (
+    word_id BIGINT PRIMARY KEY REFERENCES words(id),
+    doc_count INT NOT NULL,
+    has_positions BOOLEAN NOT NULL DEFAULT FALSE,
+    postings BYTEA NOT NULL,
+    updated_at TIMESTAMP
+);
@@ -0,0 +1,9 @@
+-- Document lengths recorded at index time for BM25 normalization
+CREATE TABLE IF NOT EXISTS document_stats (
+    doc_id BIGINT PRIMARY KEY REFERENCES documents(id),
+    length INT NOT NULL,
+    unique_terms INT NOT NULL,
+    title_length INT NOT NULL,
+    heading_length INT NOT NULL,
+    body_length INT NOT NULL
+);
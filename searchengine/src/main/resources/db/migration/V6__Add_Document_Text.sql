@@ -0,0 +1,7 @@
+-- Plain text of each indexed document with the characters of every term
+-- position, deflated, so queries build snippets without parsing html
+CREATE TABLE IF NOT EXISTS document_text (
+    doc_id BIGINT PRIMARY KEY REFERENCES documents(id),
+    text_length INT NOT NULL,
+    text BYTEA NOT NULL
+);
@@ -0,0 +1,10 @@
+-- Normalized queries users have searched for and how often, the source of
+-- query completions
+CREATE TABLE IF NOT EXISTS search_queries (
+    id BIGSERIAL PRIMARY KEY,
+    query VARCHAR(512) NOT NULL,
+    search_count BIGINT NOT NULL,
+    last_searched_at TIMESTAMP
+);
+
+CREATE UNIQUE INDEX IF NOT EXISTS idx_search_queries_query ON search_queries(query);
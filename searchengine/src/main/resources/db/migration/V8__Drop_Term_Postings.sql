@@ -0,0 +1,3 @@
+-- Compressed postings live in the index snapshot and segment files; the
+-- per-term rows were only filled by a manual rebuild and never read
+DROP TABLE IF EXISTS term_postings;
@@ -0,0 +1,3 @@
+-- CRC32 of each stored text, loaded with the term positions of the same
+-- document so a snippet is only highlighted from positions of that text
+ALTER TABLE document_text ADD COLUMN IF NOT EXISTS checksum BIGINT NOT NULL DEFAULT 0;
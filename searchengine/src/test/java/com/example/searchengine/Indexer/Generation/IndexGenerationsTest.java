@@ -0,0 +1,87 @@
+package com.example.searchengine.Indexer.Generation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import com.example.searchengine.Indexer.Memory.BigramIndex;
+import com.example.searchengine.Indexer.Memory.DocumentStore;
+import com.example.searchengine.Indexer.Memory.ForwardIndex;
+import com.example.searchengine.Indexer.Memory.InMemoryIndex;
+import com.example.searchengine.Indexer.Shard.ShardedIndex;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class IndexGenerationsTest {
+
+    @Test
+    void readersKeepTheirGenerationAcrossASwap() {
+        IndexGenerations generations = new IndexGenerations();
+        assertNull(generations.acquire());
+
+        List<Long> swaps = new ArrayList<>();
+        generations.addSwapListener(generation -> swaps.add(generation.getNumber()));
+
+        InMemoryIndex first = index("apple", 1);
+        generations.publish(null, loaders(first));
+        IndexGeneration reader = generations.acquire();
+
+        InMemoryIndex second = index("pear", 2);
+        generations.publish(null, loaders(second));
+
+        // The open reader still sees the first index, new readers the second
+        assertSame(first, reader.getIndex());
+        try (IndexGeneration next = generations.acquire()) {
+            assertSame(second, next.getIndex());
+            assertEquals(2, next.getNumber());
+        }
+        assertEquals(List.of(1L, 2L), swaps);
+        assertEquals(List.of(1L), generations.getStats().get("retiredInUse"));
+
+        reader.close();
+        Map<String, Object> stats = generations.getStats();
+        assertEquals(List.of(), stats.get("retiredInUse"));
+        assertEquals(1L, stats.get("reclaimed"));
+    }
+
+    @Test
+    void startupGenerationIsLoadedBeforeItIsPublishedAndOnlyOnce() {
+        IndexGenerations generations = new IndexGenerations();
+        int[] loads = {0};
+        IndexGeneration startup = generations.publishIfAbsent(null, new IndexGeneration.Loaders(g -> {
+            loads[0]++;
+            return index("apple", 1);
+        }, g -> ForwardIndex.empty(), g -> BigramIndex.empty(), g -> ShardedIndex.empty(), g -> DocumentStore.empty()));
+        assertEquals(1, loads[0]);
+        assertTrue(startup.isIndexLoaded() && startup.isForwardIndexLoaded() && startup.isBigramIndexLoaded()
+                && startup.isShardedIndexLoaded() && startup.isDocumentStoreLoaded());
+
+        // An indexing run published first: the startup parts are never loaded
+        assertSame(startup, generations.publishIfAbsent(null, new IndexGeneration.Loaders(g -> {
+            throw new AssertionError("a generation is already active");
+        }, g -> ForwardIndex.empty(), g -> BigramIndex.empty(), g -> ShardedIndex.empty(), g -> DocumentStore.empty())));
+
+        try (IndexGeneration generation = generations.acquire()) {
+            assertSame(startup, generation);
+            assertEquals(1, generation.getIndex().termCount());
+            assertEquals(1, loads[0]);
+        }
+    }
+
+    private static IndexGeneration.Loaders loaders(InMemoryIndex index) {
+        return IndexGeneration.Loaders.of(index, ForwardIndex.empty(), BigramIndex.empty(), ShardedIndex.empty(),
+                DocumentStore.empty());
+    }
+
+    private static InMemoryIndex index(String term, int docId) {
+        InMemoryIndex.Builder builder = new InMemoryIndex.Builder();
+        builder.startTerm(term, docId);
+        builder.add(docId, 1);
+        return builder.build();
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.searchengine.Indexer.Memory;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import com.example.searchengine.Indexer.Postings.PostingsList;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+public class BigramIndexTest {
+
+    // word ids: 1 quick, 2 brown, 3 fox, 4 dog
+    private static final String[] WORDS = {null, "quick", "brown", "fox", "dog"};
+
+    @Test
+    void phraseNeedsEveryBigramInOrder() {
+        // doc 1: quick brown fox ... quick brown fox
+        // doc 2: quick brown dog fox, no match for "brown fox"
+        // doc 3: brown fox quick brown, both bigrams but never as one phrase
+        int[][] docs = {{}, {1, 2, 3, 4, 1, 2, 3}, {1, 2, 4, 3}, {2, 3, 1, 2}};
+        InMemoryIndex index = terms(WORDS, docs);
+        BigramIndex bigramIndex = bigrams(docs);
+
+        PostingsList phrase = bigramIndex.phrase(index, List.of("quick", "brown", "fox"));
+        assertArrayEquals(new int[] {1}, phrase.getDocIds());
+        assertArrayEquals(new int[] {2}, phrase.getFreqs());
+        assertArrayEquals(new int[] {0, 4}, phrase.getPositions()[0]);
+
+        assertArrayEquals(new int[] {1, 3}, bigramIndex.phrase(index, List.of("brown", "fox")).getDocIds());
+        assertEquals(0, bigramIndex.phrase(index, List.of("fox", "brown")).size());
+        assertEquals(0, bigramIndex.phrase(index, List.of("quick", "cat")).size());
+        assertEquals(3, bigramIndex.phrase(index, List.of("fox")).size());
+    }
+
+    @Test
+    void repeatedAndOverlappingOccurrencesCountEveryStart() {
+        // word ids: 1 a, 2 b, 3 c, 4 d
+        String[] words = {null, "a", "b", "c", "d"};
+        // doc 1: a a a a
+        // doc 2: b a b a b c, "b a b" twice overlapping
+        // doc 3: a b c d a b c
+        // doc 4: c d b c a b, has "a b", "b c" and "c d" but never lined up
+        int[][] docs = {{}, {1, 1, 1, 1}, {2, 1, 2, 1, 2, 3}, {1, 2, 3, 4, 1, 2, 3}, {3, 4, 2, 3, 1, 2}};
+        InMemoryIndex index = terms(words, docs);
+        BigramIndex bigramIndex = bigrams(docs);
+
+        // A run of one word holds the phrase at every start it fits in
+        assertPhrase(bigramIndex.phrase(index, List.of("a", "a")), new int[] {1}, new int[][] {{0, 1, 2}});
+        assertPhrase(bigramIndex.phrase(index, List.of("a", "a", "a")), new int[] {1}, new int[][] {{0, 1}});
+        assertPhrase(bigramIndex.phrase(index, List.of("a", "a", "a", "a")), new int[] {1}, new int[][] {{0}});
+        assertEquals(0, bigramIndex.phrase(index, List.of("a", "a", "a", "a", "a")).size());
+
+        // Overlapping occurrences share words, and a bigram can be used at several shifts
+        assertPhrase(bigramIndex.phrase(index, List.of("b", "a", "b")), new int[] {2}, new int[][] {{0, 2}});
+        assertPhrase(bigramIndex.phrase(index, List.of("b", "a", "b", "a", "b")), new int[] {2}, new int[][] {{0}});
+
+        // Three and four words; doc 4 has every bigram, in the wrong places
+        assertPhrase(bigramIndex.phrase(index, List.of("a", "b", "c")), new int[] {2, 3}, new int[][] {{3}, {0, 4}});
+        assertPhrase(bigramIndex.phrase(index, List.of("a", "b", "c", "d")), new int[] {3}, new int[][] {{0}});
+        assertPhrase(bigramIndex.phrase(index, List.of("b", "c", "d")), new int[] {3}, new int[][] {{1}});
+        assertPhrase(bigramIndex.phrase(index, List.of("c", "d")), new int[] {3, 4}, new int[][] {{2}, {0}});
+
+        // One word is its plain postings: term frequencies, no positions
+        PostingsList single = bigramIndex.phrase(index, List.of("b"));
+        assertArrayEquals(new int[] {2, 3, 4}, single.getDocIds());
+        assertArrayEquals(new int[] {3, 2, 2}, single.getFreqs());
+        assertFalse(single.hasPositions());
+        assertEquals(0, bigramIndex.phrase(index, List.of("e")).size());
+        assertEquals(0, bigramIndex.phrase(index, List.of()).size());
+    }
+
+    private static void assertPhrase(PostingsList phrase, int[] docIds, int[][] starts) {
+        assertArrayEquals(docIds, phrase.getDocIds());
+        for (int i = 0; i < docIds.length; i++) {
+            assertEquals(starts[i].length, phrase.getFreqs()[i], "occurrences in doc " + docIds[i]);
+            assertArrayEquals(starts[i], phrase.getPositions()[i], "starts in doc " + docIds[i]);
+        }
+    }
+
+    // Postings of every word id, docs[doc] holding the word ids of a document in position order
+    private static InMemoryIndex terms(String[] words, int[][] docs) {
+        InMemoryIndex.Builder terms = new InMemoryIndex.Builder();
+        for (int wordId = 1; wordId < words.length; wordId++) {
+            terms.startTerm(words[wordId], wordId);
+            for (int doc = 1; doc < docs.length; doc++) {
+                int freq = 0;
+                for (int word : docs[doc]) {
+                    freq += word == wordId ? 1 : 0;
+                }
+                if (freq > 0) {
+                    terms.add(doc, freq);
+                }
+            }
+        }
+        return terms.build();
+    }
+
+    private static BigramIndex bigrams(int[][] docs) {
+        BigramIndex.Builder bigrams = new BigramIndex.Builder();
+        for (int doc = 1; doc < docs.length; doc++) {
+            for (int position = 0; position < docs[doc].length; position++) {
+                bigrams.add(doc, position, docs[doc][position]);
+            }
+        }
+        return bigrams.build();
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.searchengine.Indexer.Memory;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.searchengine.Indexer.Text.StoredText;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DocumentStoreTest {
+
+    @Test
+    void documentsAreFoundByIdWithTheTextTheyWereStoredWith() {
+        byte[] text = StoredText.plain("Spring Boot in action").encode();
+        DocumentStore.Builder builder = new DocumentStore.Builder();
+        for (int doc = 1; doc <= 3000; doc += 2) {
+            builder.add(doc, "https://a.example/" + doc, "Page " + doc, 1_000L * doc, doc == 7 ? text : null,
+                    doc == 7 ? StoredText.checksum(text) : -1);
+        }
+        builder.add(4001, "https://b.example/", "Undated", Long.MIN_VALUE, null, -1);
+        DocumentStore store = builder.build();
+
+        assertEquals(1501, store.documentCount());
+        int slot = store.slot(7);
+        assertEquals(7, store.docAt(slot));
+        assertEquals("https://a.example/7", store.url(slot));
+        assertEquals("Page 7", store.title(slot));
+        assertEquals(7_000L, store.createdAt(slot));
+        assertEquals("Spring Boot in action", store.text(slot).text());
+        assertEquals(StoredText.checksum(text), store.textChecksum(slot));
+
+        // Without a stored text: empty, and a checksum no term vector carries
+        int without = store.slot(9);
+        assertEquals("", store.text(without).text());
+        assertEquals(-1, store.textChecksum(without));
+        assertEquals(Long.MIN_VALUE, store.createdAt(store.slot(4001)));
+        assertTrue(store.slot(8) < 0);
+        assertTrue(store.slot(5000) < 0);
+
+        assertThrows(IllegalStateException.class, () -> builder.add(4001, "https://c.example/", "Again", 0, null, -1));
+        assertEquals(0, DocumentStore.empty().documentCount());
+    }
+}
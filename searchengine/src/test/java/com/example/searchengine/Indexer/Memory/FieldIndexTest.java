@@ -0,0 +1,40 @@
+package com.example.searchengine.Indexer.Memory;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FieldIndexTest {
+
+    @Test
+    void titleAndAnchorMatchesOutscoreTheSameBodyMatch() {
+        FieldIndex.Builder builder = new FieldIndex.Builder();
+        builder.addDocument(1, 100, 2, 4, 90);
+        builder.addDocument(2, 100, 2, 4, 90);
+        builder.addDocument(3, 100, 2, 4, 90);
+
+        // word 7 "java": body of docs 1 and 2, title of doc 2, two heading tags of doc 3
+        builder.add(IndexField.HEADING, 7, "java", 3, 1);
+        builder.add(IndexField.HEADING, 7, "java", 3, 2);
+        builder.add(IndexField.BODY, 7, "java", 1, 3);
+        builder.add(IndexField.BODY, 7, "java", 2, 3);
+        builder.add(IndexField.TITLE, 7, "java", 2, 1);
+        builder.add(IndexField.ANCHOR, 7, "java", 1, 2);
+        FieldIndex fields = builder.build();
+
+        assertEquals(3, fields.freq(IndexField.HEADING, "java", 3));
+        assertTrue(fields.containsAll(IndexField.TITLE, List.of("java"), 2));
+        assertFalse(fields.containsAll(IndexField.TITLE, List.of("java"), 1));
+        assertEquals(2, fields.length(IndexField.ANCHOR, 1));
+        assertEquals(0, fields.length(IndexField.URL, 1));
+
+        double bodyAndAnchor = fields.bm25f(List.of("java"), 1);
+        double bodyAndTitle = fields.bm25f(List.of("java"), 2);
+        assertTrue(bodyAndTitle > bodyAndAnchor);
+        assertTrue(bodyAndAnchor > fields.bm25f(List.of("java", "missing"), 4));
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.searchengine.Indexer.Memory;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import com.example.searchengine.Indexer.Postings.PostingsList;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ForwardIndexTest {
+
+    // word ids: 1 quick, 2 brown, 3 fox, 4 dog
+    private static final String[] WORDS = {null, "quick", "brown", "fox", "dog"};
+
+    @Test
+    void termVectorsAnswerSimilarityProximityAndPhrases() {
+        // doc 1: quick brown fox, doc 2: quick brown dog, doc 3: fox ... quick
+        int[][] docs = {{}, {1, 2, 3}, {1, 2, 4}, {3, 0, 0, 0, 0, 0, 1}};
+        InMemoryIndex.Builder terms = new InMemoryIndex.Builder();
+        for (int wordId = 1; wordId < WORDS.length; wordId++) {
+            terms.startTerm(WORDS[wordId], wordId);
+            for (int doc = 1; doc < docs.length; doc++) {
+                int freq = 0;
+                for (int word : docs[doc]) {
+                    freq += word == wordId ? 1 : 0;
+                }
+                if (freq > 0) {
+                    terms.add(doc, freq);
+                }
+            }
+        }
+        InMemoryIndex index = terms.build();
+
+        // Positions of the stop words (word id 0) are not in the index and are skipped
+        ForwardIndex.Builder builder = new ForwardIndex.Builder(index);
+        for (int doc = 1; doc < docs.length; doc++) {
+            for (int position = 0; position < docs[doc].length; position++) {
+                builder.add(doc, position, docs[doc][position]);
+            }
+        }
+        ForwardIndex forward = builder.build();
+
+        assertEquals(3, forward.documentCount());
+        assertEquals(2, forward.termCount(forward.slot(3)));
+        assertEquals(0.5, forward.jaccard(1, 2), 1e-9);
+        assertTrue(forward.jaccard(1, 9) == 0.0);
+
+        int[] quickFox = {index.ordinal("quick"), index.ordinal("fox")};
+        assertEquals(2, forward.minDistance(1, quickFox));
+        assertEquals(6, forward.minDistance(3, quickFox));
+        assertEquals(Integer.MAX_VALUE, forward.minDistance(2, quickFox));
+
+        PostingsList phrase = BigramIndex.of(index, forward).phrase(index, List.of("quick", "brown"));
+        assertArrayEquals(new int[] {1, 2}, phrase.getDocIds());
+    }
+
+    @Test
+    void occurrencesOnlyMapOntoTheStoredTextTheyWereReadWith() {
+        InMemoryIndex.Builder terms = new InMemoryIndex.Builder();
+        terms.startTerm("quick", 1);
+        terms.add(1, 1);
+        terms.add(2, 1);
+        InMemoryIndex index = terms.build();
+        ForwardIndex.Builder builder = new ForwardIndex.Builder(index);
+        builder.add(1, 4, 1, 1111L);
+        builder.add(2, 0, 1, 2222L);
+        ForwardIndex forward = builder.build();
+
+        int[] quick = {index.ordinal("quick")};
+        assertArrayEquals(new long[] {4L << 32}, forward.occurrences(1, quick, 1111L));
+        assertArrayEquals(new long[0], forward.occurrences(1, quick, 3333L));
+        assertArrayEquals(new long[] {0L}, forward.occurrences(2, quick, 2222L));
+        assertArrayEquals(new long[0], forward.occurrences(3, quick, 0L));
+    }
+}
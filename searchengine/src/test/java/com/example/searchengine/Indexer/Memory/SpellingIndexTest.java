@@ -0,0 +1,46 @@
+package com.example.searchengine.Indexer.Memory;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SpellingIndexTest {
+
+    @Test
+    void correctsWithinTwoEditsPreferringNearAndFrequentTerms() {
+        // term, document frequency
+        Object[][] terms = {{"python", 40}, {"pythan", 2}, {"program", 30}, {"programm", 1}, {"java", 25},
+            {"lava", 5}, {"javascript", 12}, {"tutori", 8}, {"c3po", 3}};
+        InMemoryIndex.Builder builder = new InMemoryIndex.Builder();
+        for (int i = 0; i < terms.length; i++) {
+            builder.startTerm((String) terms[i][0], i + 1);
+            for (int doc = 1; doc <= (int) terms[i][1]; doc++) {
+                builder.add(doc, 1);
+            }
+        }
+        SpellingIndex spelling = SpellingIndex.of(builder.build());
+
+        // A transposition is one edit; the nearer term wins over the more frequent one
+        List<SpellingIndex.Correction> pyhton = spelling.corrections("pyhton", 2, 5);
+        assertEquals("python", pyhton.get(0).term());
+        assertEquals(1, pyhton.get(0).distance());
+        assertEquals("pythan", pyhton.get(1).term());
+
+        // Equal distance: the term in more documents first
+        assertEquals("java", spelling.corrections("jva", 1, 5).get(0).term());
+        assertEquals(List.of("java", "lava"), spelling.corrections("xava", 1, 5).stream().map(SpellingIndex.Correction::term).toList());
+
+        // Past the indexed prefix the distance is still exact
+        assertEquals("javascript", spelling.corrections("javascrpit", 2, 1).get(0).term());
+        assertEquals("program", spelling.corrections("progrm", 2, 1).get(0).term());
+
+        assertTrue(spelling.corrections("kotlin", 2, 5).isEmpty());
+        assertTrue(spelling.corrections("c3p0", 2, 5).isEmpty());
+        assertTrue(SpellingIndex.empty().corrections("python", 2, 5).isEmpty());
+        assertEquals(2, SpellingIndex.distance("tutorial", "tutori", 2));
+        assertEquals(2, SpellingIndex.distance("kitten", "sitting", 1));
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.searchengine.Indexer.Pipeline;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.LongStream;
+
+import com.example.searchengine.Indexer.Pipeline.IndexingPipeline.SourceDocument;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class IndexingPipelineTest {
+
+    @Test
+    void writesEveryDocumentOnceInReadOrderPerStage() {
+        // One analyzer and one writer keep the read order all the way through
+        List<Long> written = Collections.synchronizedList(new ArrayList<>());
+        IndexingPipeline<Long> serial = new IndexingPipeline<>(new IndexingPipeline.Settings(1, 1, 2, 3),
+                SourceDocument::id, batch -> {
+                    written.addAll(batch);
+                    return batch.size();
+                }, null);
+        assertEquals(50, serial.run(documents(50)));
+        assertEquals(LongStream.range(0, 50).boxed().toList(), written);
+
+        // With several of each, every document is written once, rejected ones are counted and progress ends at the total
+        List<Long> parallelWritten = Collections.synchronizedList(new ArrayList<>());
+        List<Long> progress = Collections.synchronizedList(new ArrayList<>());
+        IndexingPipeline<Long> parallel = new IndexingPipeline<>(new IndexingPipeline.Settings(3, 2, 4, 7),
+                document -> {
+                    if (document.id() % 50 == 49) {
+                        throw new IllegalArgumentException("unparsable " + document.url());
+                    }
+                    return document.id();
+                }, batch -> {
+                    int accepted = 0;
+                    for (Long id : batch) {
+                        if (id % 30 != 29) {
+                            parallelWritten.add(id);
+                            accepted++;
+                        }
+                    }
+                    return accepted;
+                }, progress::add);
+        long count = parallel.run(documents(200));
+
+        List<Long> expected = LongStream.range(0, 200).filter(id -> id % 50 != 49 && id % 30 != 29).boxed().toList();
+        assertEquals(expected.size(), count);
+        assertEquals(expected, parallelWritten.stream().sorted().toList());
+        assertEquals(count, progress.stream().mapToLong(Long::longValue).max().orElse(0));
+
+        Map<String, Object> stats = parallel.getStats();
+        assertEquals(false, stats.get("running"));
+        assertEquals(200L, stage(stats, "read").get("processed"));
+        assertEquals(4L, stage(stats, "analyze").get("failed"));
+        assertEquals(196L, stage(stats, "analyze").get("processed"));
+        assertEquals(count, stage(stats, "write").get("processed"));
+        assertEquals(196L - count, stage(stats, "write").get("failed"));
+    }
+
+    @Test
+    void readerOrWriterFailureFailsTheRunAfterDraining() {
+        // The reader dies after 20 documents; those still reach the writer before the run fails
+        List<Long> written = Collections.synchronizedList(new ArrayList<>());
+        IllegalStateException lostConnection = new IllegalStateException("connection reset");
+        IndexingPipeline<Long> reading = new IndexingPipeline<>(new IndexingPipeline.Settings(2, 1, 4, 5),
+                SourceDocument::id, batch -> {
+                    written.addAll(batch);
+                    return batch.size();
+                }, null);
+        IllegalStateException readFailure = assertThrows(IllegalStateException.class, () -> reading.run(sink -> {
+            documents(20).accept(sink);
+            throw lostConnection;
+        }));
+        assertSame(lostConnection, readFailure.getCause());
+        assertEquals(20, written.size());
+        assertEquals(false, reading.getStats().get("running"));
+
+        // A writer that throws stops the reader and fails the run
+        IllegalStateException deadlock = new IllegalStateException("deadlock detected");
+        long[] read = {0};
+        IndexingPipeline<Long> writing = new IndexingPipeline<>(new IndexingPipeline.Settings(1, 1, 2, 2),
+                SourceDocument::id, batch -> {
+                    if (batch.contains(5L)) {
+                        throw deadlock;
+                    }
+                    return batch.size();
+                }, null);
+        IllegalStateException writeFailure = assertThrows(IllegalStateException.class, () -> writing.run(sink -> {
+            for (long id = 0; id < 100_000; id++) {
+                sink.accept(new SourceDocument(id, "https://a.example/" + id, ""));
+                read[0]++;
+            }
+        }));
+        assertSame(deadlock, writeFailure.getCause());
+        assertTrue(read[0] < 100_000, "read " + read[0]);
+    }
+
+    private static Consumer<Consumer<SourceDocument>> documents(int count) {
+        return sink -> {
+            for (long id = 0; id < count; id++) {
+                sink.accept(new SourceDocument(id, "https://a.example/" + id, "<p>page " + id + "</p>"));
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> stage(Map<String, Object> stats, String name) {
+        return (Map<String, Object>) stats.get(name);
+    }
+}
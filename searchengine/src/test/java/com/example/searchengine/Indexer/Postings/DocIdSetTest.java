@@ -0,0 +1,75 @@
+package com.example.searchengine.Indexer.Postings;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DocIdSetTest {
+
+    @Test
+    void combinesSparseAndDenseChunksLikeSortedSets() {
+        // Densities per mille from far below to far above the 4096 per chunk where bitmaps take over
+        Random random = new Random(11);
+        int[] densities = {1, 40, 70, 500, 990};
+        for (int a : densities) {
+            for (int b : densities) {
+                TreeSet<Integer> left = randomDocs(random, a);
+                TreeSet<Integer> right = randomDocs(random, b);
+                DocIdSet x = DocIdSet.of(toArray(left));
+                DocIdSet y = DocIdSet.of(toArray(right));
+                assertArrayEquals(toArray(left), x.toArray());
+
+                TreeSet<Integer> and = new TreeSet<>(left);
+                and.retainAll(right);
+                TreeSet<Integer> or = new TreeSet<>(left);
+                or.addAll(right);
+                TreeSet<Integer> andNot = new TreeSet<>(left);
+                andNot.removeAll(right);
+                assertArrayEquals(toArray(and), x.and(y).toArray(), a + " AND " + b);
+                assertArrayEquals(toArray(or), x.or(y).toArray(), a + " OR " + b);
+                assertArrayEquals(toArray(andNot), x.andNot(y).toArray(), a + " AND NOT " + b);
+                assertEquals(and.size(), x.and(y).cardinality());
+            }
+        }
+    }
+
+    @Test
+    void answersMembershipAndStaysSmall() {
+        DocIdSet set = new DocIdSet.Builder().add(3).add(70_000).add(70_001).add(1 << 30).build();
+        assertTrue(set.contains(70_001));
+        assertTrue(set.contains(1 << 30));
+        assertFalse(set.contains(4));
+        assertFalse(set.contains(70_002 + (1 << 16)));
+        assertEquals(4, set.cardinality());
+        assertTrue(DocIdSet.of().isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> new DocIdSet.Builder().add(5).add(5));
+
+        // A chunk with every id is one 8 KB bitmap
+        DocIdSet full = DocIdSet.of(IntStream.range(0, 1 << 16).toArray());
+        assertTrue(full.estimatedBytes() < 9 * 1024, "bytes " + full.estimatedBytes());
+        assertEquals(DocIdSet.of(5, 9), full.and(DocIdSet.of(5, 9, 1 << 16)));
+        assertEquals(1 << 16, full.andNot(DocIdSet.of(1 << 16)).cardinality());
+    }
+
+    private static TreeSet<Integer> randomDocs(Random random, int perMille) {
+        TreeSet<Integer> docs = new TreeSet<>();
+        for (int doc = 0; doc < 200_000; doc++) {
+            if (random.nextInt(1000) < perMille) {
+                docs.add(doc);
+            }
+        }
+        return docs;
+    }
+
+    private static int[] toArray(TreeSet<Integer> docs) {
+        return docs.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.searchengine.Indexer.Postings;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PostingsCodecTest {
+
+    @Test
+    void roundTripsDocsFreqsAndPositions() {
+        Random random = new Random(42);
+        int size = 1000;
+        int[] docs = new int[size];
+        int[] freqs = new int[size];
+        int[][] positions = new int[size][];
+        int doc = 0;
+        for (int i = 0; i < size; i++) {
+            doc += 1 + random.nextInt(300);
+            docs[i] = doc;
+            freqs[i] = 1 + random.nextInt(5);
+            positions[i] = new int[freqs[i]];
+            int position = 0;
+            for (int p = 0; p < freqs[i]; p++) {
+                position += 1 + random.nextInt(50);
+                positions[i][p] = position;
+            }
+        }
+
+        byte[] encoded = PostingsCodec.encode(docs, freqs, positions);
+        PostingsList decoded = PostingsCodec.decode(encoded);
+
+        assertEquals(size, PostingsCodec.docCount(encoded));
+        assertArrayEquals(docs, decoded.getDocIds());
+        assertArrayEquals(freqs, decoded.getFreqs());
+        for (int i = 0; i < size; i++) {
+            assertArrayEquals(positions[i], decoded.getPositions()[i]);
+        }
+        assertTrue(encoded.length < size * 12, "encoded postings should be far smaller than raw ints");
+    }
+
+    @Test
+    void advanceSkipsBlocks() {
+        int size = 10 * PostingsCodec.BLOCK_SIZE;
+        int[] docs = new int[size];
+        int[] freqs = new int[size];
+        for (int i = 0; i < size; i++) {
+            docs[i] = i * 3;
+            freqs[i] = 1;
+        }
+
+        PostingsCursor cursor = new PostingsCursor(PostingsCodec.encode(docs, freqs));
+        assertEquals(3, cursor.advance(1));
+        assertEquals(docs[size - 1], cursor.advance(docs[size - 1] - 1));
+        assertEquals(2, cursor.blocksDecoded());
+        assertEquals(PostingsCursor.NO_MORE_DOCS, cursor.advance(docs[size - 1] + 1));
+    }
+
+    @Test
+    void nextDocWalksEveryPosting() {
+        int[] docs = {0, 5, 130, 131, 4000};
+        int[] freqs = {2, 1, 7, 1, 3};
+
+        PostingsCursor cursor = new PostingsCursor(PostingsCodec.encode(docs, freqs));
+        for (int i = 0; i < docs.length; i++) {
+            assertEquals(docs[i], cursor.nextDoc());
+            assertEquals(freqs[i], cursor.freq());
+        }
+        assertEquals(PostingsCursor.NO_MORE_DOCS, cursor.nextDoc());
+    }
+}
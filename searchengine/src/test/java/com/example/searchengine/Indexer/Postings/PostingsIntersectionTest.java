@@ -0,0 +1,51 @@
+package com.example.searchengine.Indexer.Postings;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class PostingsIntersectionTest {
+
+    @Test
+    void gallopsToTheFirstDocAtOrAfterTheTarget() {
+        int[] docs = {2, 4, 8, 16, 32, 64, 128};
+        assertEquals(0, PostingsIntersection.gallop(docs, 0, 1));
+        assertEquals(3, PostingsIntersection.gallop(docs, 0, 16));
+        assertEquals(4, PostingsIntersection.gallop(docs, 2, 17));
+        assertEquals(6, PostingsIntersection.gallop(docs, 5, 100));
+        assertEquals(7, PostingsIntersection.gallop(docs, 0, 129));
+        assertEquals(5, PostingsIntersection.gallop(docs, 5, 3));
+    }
+
+    @Test
+    void intersectsListsOfVeryDifferentLengths() {
+        Random random = new Random(7);
+        int[][] lists = new int[3][];
+        TreeSet<Integer> expected = null;
+        int[] densities = {2, 50, 600};
+        for (int i = 0; i < lists.length; i++) {
+            TreeSet<Integer> docs = new TreeSet<>();
+            for (int doc = 0; doc < 100_000; doc++) {
+                if (random.nextInt(1000) < densities[i]) {
+                    docs.add(doc);
+                }
+            }
+            lists[i] = docs.stream().mapToInt(Integer::intValue).toArray();
+            if (expected == null) {
+                expected = docs;
+            } else {
+                expected.retainAll(docs);
+            }
+        }
+
+        assertArrayEquals(expected.stream().mapToInt(Integer::intValue).toArray(),
+            PostingsIntersection.intersect(lists[2], lists[0], lists[1]));
+        assertArrayEquals(lists[1], PostingsIntersection.intersect(lists[1]));
+        assertEquals(0, PostingsIntersection.intersect(lists[0], new int[0]).length);
+        assertArrayEquals(new int[] {5, 9}, PostingsIntersection.intersect(new int[] {1, 5, 9}, new int[] {5, 6, 9, 12}));
+    }
+}
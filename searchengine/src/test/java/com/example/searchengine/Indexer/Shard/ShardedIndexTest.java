@@ -0,0 +1,129 @@
+package com.example.searchengine.Indexer.Shard;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.example.searchengine.Indexer.Memory.BatchScores;
+import com.example.searchengine.Indexer.Memory.FieldIndex;
+import com.example.searchengine.Indexer.Memory.IndexField;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ShardedIndexTest {
+
+    @Test
+    void shardsScoreAndRankLikeTheWholeIndex() {
+        // word 1 "java" in every third document, word 2 "spring" in every second, title hits on docs 6 and 7
+        FieldIndex.Builder builder = new FieldIndex.Builder();
+        for (int doc = 1; doc <= 40; doc++) {
+            builder.addDocument(doc, 60 + doc, 3, 5, 50 + doc);
+        }
+        for (int doc = 3; doc <= 40; doc += 3) {
+            builder.add(IndexField.BODY, 1, "java", doc, 1 + doc % 4);
+        }
+        builder.add(IndexField.TITLE, 1, "java", 7, 1);
+        for (int doc = 2; doc <= 40; doc += 2) {
+            builder.add(IndexField.BODY, 2, "spring", doc, 1 + doc % 3);
+        }
+        builder.add(IndexField.TITLE, 2, "spring", 6, 1);
+        FieldIndex fields = builder.build();
+
+        List<String> query = List.of("java", "spring");
+        ShardedIndex whole = ShardedIndex.split(fields, 1);
+        ShardedIndex sharded = ShardedIndex.split(fields, 4);
+        assertEquals(4, sharded.shardCount());
+        assertEquals(40, sharded.documentCount());
+        assertArrayEquals(whole.statistics(query).docFreqs(), sharded.statistics(query).docFreqs());
+        assertEquals(fields.bm25f(query, 12), sharded.bm25f(query, 12, sharded.statistics(query)), 1e-9);
+
+        // Batch scores follow the candidates' order and match one document at a time
+        int[] candidates = {12, 7, 40, 6, 5, 99, 3};
+        BatchScores batch = sharded.scoreBatch(query, candidates, sharded.statistics(query));
+        for (int i = 0; i < candidates.length; i++) {
+            int doc = candidates[i];
+            assertEquals(fields.bm25f(query, doc), batch.bm25f()[i], 1e-12);
+            assertEquals(fields.length(doc), batch.lengths()[i]);
+            assertEquals(query.stream().filter(term -> fields.contains(term, doc)).count(), batch.matchedTerms()[i]);
+            assertEquals(fields.containsAll(IndexField.TITLE, query, doc), batch.allTermsInTitle()[i]);
+        }
+        assertEquals(2, batch.matchedTerms()[0]);
+        assertEquals(0, batch.lengths()[5]);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            TopHits expected = whole.search(query, 1, 5, executor);
+            TopHits actual = sharded.search(query, 1, 5, executor);
+            assertArrayEquals(expected.docIds(), actual.docIds());
+            assertArrayEquals(expected.scores(), actual.scores(), 1e-9);
+
+            // Documents with either term: multiples of 2 or 3, and 7
+            assertEquals(28, whole.searchExhaustive(query, 1, 5, executor).scored());
+            assertEquals(28, sharded.searchExhaustive(query, 1, 5, executor).scored());
+
+            // Documents with both terms: multiples of 6
+            TopHits both = sharded.search(query, 2, 100, executor);
+            assertEquals(6, both.size());
+            for (int docId : both.docIds()) {
+                assertEquals(0, docId % 6);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void pruningFindsTheSameTopHits() {
+        // Skewed term frequencies over 3000 documents, so blocks have very different bounds
+        Random random = new Random(7);
+        String[] words = {"alpha", "beta", "gamma", "delta", "epsilon"};
+        double[] density = {0.9, 0.5, 0.2, 0.05, 0.01};
+        FieldIndex.Builder builder = new FieldIndex.Builder();
+        List<List<int[]>> postings = new ArrayList<>();
+        for (int w = 0; w < words.length; w++) {
+            postings.add(new ArrayList<>());
+        }
+        for (int doc = 1; doc <= 3000; doc++) {
+            builder.addDocument(doc, 20 + random.nextInt(400), 2 + random.nextInt(8), random.nextInt(20),
+                10 + random.nextInt(200));
+            for (int w = 0; w < words.length; w++) {
+                if (random.nextDouble() < density[w]) {
+                    postings.get(w).add(new int[] {doc, 1 + random.nextInt(random.nextInt(12) + 1)});
+                }
+            }
+        }
+        for (int w = 0; w < words.length; w++) {
+            for (int[] posting : postings.get(w)) {
+                IndexField field = posting[0] % 17 == 0 ? IndexField.TITLE : IndexField.BODY;
+                builder.add(field, w + 1, words[w], posting[0], posting[1]);
+            }
+        }
+        FieldIndex fields = builder.build();
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (ShardedIndex index : List.of(ShardedIndex.split(fields, 1), ShardedIndex.split(fields, 3))) {
+                for (List<String> query : List.of(List.of("alpha", "beta"), List.of("alpha", "delta", "epsilon"),
+                        List.of("beta", "gamma", "delta", "alpha"))) {
+                    for (int minMatch = 1; minMatch <= query.size(); minMatch++) {
+                        for (int k : new int[] {1, 10, 100}) {
+                            TopHits exhaustive = index.searchExhaustive(query, minMatch, k, executor);
+                            TopHits pruned = index.search(query, minMatch, k, executor);
+                            String label = query + " minMatch " + minMatch + " k " + k;
+                            assertArrayEquals(exhaustive.scores(), pruned.scores(), 1e-9, label);
+                            assertTrue(pruned.scored() <= exhaustive.scored(), label);
+                        }
+                    }
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
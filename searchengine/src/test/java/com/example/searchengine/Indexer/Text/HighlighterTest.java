@@ -0,0 +1,84 @@
+package com.example.searchengine.Indexer.Text;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.example.searchengine.Indexer.Service.PreIndexer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HighlighterTest {
+
+    private final PreIndexer preIndexer = new PreIndexer();
+
+    @Test
+    void picksTheDensestPassageAndMarksThePhraseWhole() {
+        String filler = "Collections of data can be processed in many different ways by careful programmers. ".repeat(6);
+        String[][] elements = {
+            {"title", "Java streams"},
+            {"p", "Streams appear here once. " + filler + "Parallel streams split work across every core, "
+                + "and parallel streams of data <merge> back. " + filler},
+            {"p", "A last paragraph about streams."}};
+        List<String> query = List.of("parallel", "stream");
+        List<Long> occurrences = new ArrayList<>();
+        StoredText text = store(elements, query, occurrences);
+
+        Highlighter.Passage passage = new Highlighter(120).passage(text, toArray(occurrences), null);
+        assertTrue(passage.text().length() <= 120, passage.text());
+        assertTrue(passage.truncatedStart() && passage.truncatedEnd());
+        assertEquals(2, passage.highlightCount());
+        for (int h = 0; h < passage.highlightCount(); h++) {
+            String marked = passage.text().substring(passage.highlightStarts()[h], passage.highlightEnds()[h]);
+            assertEquals("parallel streams", marked.toLowerCase());
+        }
+        String html = passage.html();
+        assertTrue(html.startsWith("...") && html.endsWith("..."), html);
+        assertTrue(html.contains("<strong>Parallel streams</strong> split work"), html);
+        assertTrue(html.contains("&lt;merge&gt;"), html);
+    }
+
+    @Test
+    void prefersTheBodyOverTheTitleAndFallsBackToTheLead() {
+        String[][] elements = {
+            {"title", "Cooking pasta"},
+            {"p", "Boil water first."},
+            {"p", "Cook the pasta until it is al dente."}};
+        List<Long> occurrences = new ArrayList<>();
+        StoredText text = store(elements, List.of("pasta"), occurrences);
+
+        Highlighter highlighter = new Highlighter(250);
+        Highlighter.Passage passage = highlighter.passage(text, toArray(occurrences), null);
+        assertEquals("Cook the <strong>pasta</strong> until it is al dente.", passage.html());
+
+        Highlighter.Passage lead = highlighter.passage(text, new long[0], null);
+        assertEquals("Boil water first.", lead.html());
+        assertFalse(lead.truncatedEnd());
+    }
+
+    // Stores the elements as the indexer does, collecting where the query terms occur
+    private StoredText store(String[][] elements, List<String> query, List<Long> occurrences) {
+        StoredText.Builder builder = new StoredText.Builder();
+        int position = 0;
+        for (String[] element : elements) {
+            List<int[]> spans = new ArrayList<>();
+            List<String> terms = preIndexer.analyze(element[1], spans);
+            builder.addElement(element[0], element[1], position, spans);
+            for (int t = 0; t < terms.size(); t++) {
+                int queryTerm = query.indexOf(terms.get(t));
+                if (queryTerm >= 0) {
+                    occurrences.add(((long) (position + t) << 32) | queryTerm);
+                }
+            }
+            position += terms.size() + 10;
+        }
+        return StoredText.decode(builder.build().encode());
+    }
+
+    private static long[] toArray(List<Long> occurrences) {
+        return occurrences.stream().mapToLong(Long::longValue).toArray();
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.searchengine.Indexer.Text;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.example.searchengine.Indexer.Service.PreIndexer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class StoredTextTest {
+
+    @Test
+    void termPositionsPointAtTheirWordsAfterDecoding() {
+        PreIndexer preIndexer = new PreIndexer();
+        StoredText.Builder builder = new StoredText.Builder().description("All about Spring");
+        int position = 0;
+        for (String[] element : new String[][] {
+                {"title", "Running Spring Boot"},
+                {"p", "The app.config file sets the Server port for running services."}}) {
+            List<int[]> spans = new ArrayList<>();
+            List<String> terms = preIndexer.analyze(element[1], spans);
+            assertEquals(preIndexer.analyze(element[1]), terms);
+            builder.addElement(element[0], element[1], position, spans);
+            position += terms.size() + 10;
+        }
+        StoredText text = StoredText.decode(builder.build().encode());
+
+        assertEquals("All about Spring", text.description());
+        assertEquals(2, text.elementCount());
+        assertEquals("p", text.elementTag(1));
+        assertEquals("The app.config file sets the Server port for running services.", text.elementText(1));
+
+        // "running" is the first term of the title, stemmed to "run"
+        int running = text.term(0);
+        assertEquals("Running", text.text().substring(text.start(running), text.end(running)));
+        assertTrue(text.term(5) < 0);
+
+        // Title: run spring boot (0-2); body from 13: app.config, app, config, file, set, server, ...
+        assertEquals("app.config", span(text, 13));
+        assertEquals("config", span(text, 15));
+        assertEquals("Server", span(text, 18));
+    }
+
+    private static String span(StoredText text, int position) {
+        int term = text.term(position);
+        return text.text().substring(text.start(term), text.end(term));
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.searchengine.Query;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.example.searchengine.Indexer.Generation.IndexGeneration;
+import com.example.searchengine.Indexer.Generation.IndexGenerations;
+import com.example.searchengine.Indexer.Memory.BigramIndex;
+import com.example.searchengine.Indexer.Memory.DocumentStore;
+import com.example.searchengine.Indexer.Memory.FieldIndex;
+import com.example.searchengine.Indexer.Memory.ForwardIndex;
+import com.example.searchengine.Indexer.Memory.InMemoryIndex;
+import com.example.searchengine.Indexer.Memory.IndexField;
+import com.example.searchengine.Indexer.Service.PreIndexer;
+import com.example.searchengine.Indexer.Shard.ShardedIndex;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PhraseSearchingTest {
+
+    private static final PreIndexer PRE_INDEXER = new PreIndexer();
+
+    // Bodies of docs 1 to 5; doc 3 also has "hot dog" in its title
+    private static final String[] BODIES = {
+        "hot dog hot dog",
+        "dog hot dog stand",
+        "hot dog stand hot dog stand",
+        "stand hot dog",
+        "dog stand hot",
+    };
+    private static final String TITLE_OF_DOC_3 = "hot dog";
+
+    @Test
+    void scoresEveryDocumentHoldingThePhraseFromItsOccurrences() {
+        IndexGenerations generations = new IndexGenerations();
+        generations.publish(null, index());
+        try (IndexGeneration generation = generations.acquire()) {
+            // Two words: doc 5 has both, never adjacent in order
+            PhraseSearching hotDog = new PhraseSearching("\"hot dog\"", generation, PRE_INDEXER);
+            Map<Long, Double> scores = hotDog.getResults();
+            assertEquals(List.of(1L, 2L, 3L, 4L), new ArrayList<>(new TreeMap<>(scores).keySet()));
+            // Twice, near the start: (1 + ln 2) * 1.5, and three times that with the title
+            assertEquals((1 + Math.log(2)) * 1.5, scores.get(1L), 1e-9);
+            assertEquals(1.5, scores.get(2L), 1e-9);
+            assertEquals(3 * (1 + Math.log(2)) * 1.5, scores.get(3L), 1e-9);
+            assertEquals(1.5, scores.get(4L), 1e-9);
+            assertEquals(List.of(3L, 1L), hotDog.getSortedDocumentIds().subList(0, 2));
+
+            // Three words; doc 3 also holds "dog stand hot", overlapping both of its "hot dog stand"
+            Map<Long, Double> stand = new PhraseSearching("hot dog stand", generation, PRE_INDEXER).getResults();
+            assertEquals(Map.of(2L, 1.5, 3L, (1 + Math.log(2)) * 1.5), stand);
+            Map<Long, Double> overlapping = new PhraseSearching("dog stand hot", generation, PRE_INDEXER).getResults();
+            assertEquals(Map.of(3L, 1.5, 5L, 1.5), overlapping);
+
+            // One word is scored from its term frequency, with no position to boost
+            Map<Long, Double> stands = new PhraseSearching("stand", generation, PRE_INDEXER).getResults();
+            assertEquals(Map.of(2L, 1.0, 3L, 1 + Math.log(2), 4L, 1.0, 5L, 1.0), stands);
+
+            // Stop words alone leave nothing to search
+            assertTrue(new PhraseSearching("\"the\"", generation, PRE_INDEXER).getResults().isEmpty());
+            assertTrue(new PhraseSearching("stand dog", generation, PRE_INDEXER).getResults().isEmpty());
+        }
+    }
+
+    // Postings, bigrams and field norms of the analyzed bodies, word ids in first-seen order
+    private static IndexGeneration.Loaders index() {
+        List<List<String>> bodies = new ArrayList<>();
+        Map<String, Integer> wordIds = new TreeMap<>();
+        for (String body : BODIES) {
+            List<String> terms = PRE_INDEXER.analyze(body);
+            bodies.add(terms);
+            for (String term : terms) {
+                wordIds.putIfAbsent(term, wordIds.size() + 1);
+            }
+        }
+        List<String> title = PRE_INDEXER.analyze(TITLE_OF_DOC_3);
+
+        InMemoryIndex.Builder terms = new InMemoryIndex.Builder();
+        FieldIndex.Builder fields = new FieldIndex.Builder();
+        for (int doc = 1; doc <= bodies.size(); doc++) {
+            int titleLength = doc == 3 ? title.size() : 0;
+            fields.addDocument(doc, bodies.get(doc - 1).size() + titleLength, titleLength, 0,
+                    bodies.get(doc - 1).size());
+        }
+        for (Map.Entry<String, Integer> word : wordIds.entrySet()) {
+            terms.startTerm(word.getKey(), word.getValue());
+            for (int doc = 1; doc <= bodies.size(); doc++) {
+                int freq = (int) bodies.get(doc - 1).stream().filter(word.getKey()::equals).count();
+                if (freq > 0) {
+                    terms.add(doc, freq);
+                    fields.add(IndexField.BODY, word.getValue(), word.getKey(), doc, freq);
+                }
+            }
+            if (title.contains(word.getKey())) {
+                fields.add(IndexField.TITLE, word.getValue(), word.getKey(), 3, 1);
+            }
+        }
+        BigramIndex.Builder bigrams = new BigramIndex.Builder();
+        for (int doc = 1; doc <= bodies.size(); doc++) {
+            List<String> body = bodies.get(doc - 1);
+            for (int position = 0; position < body.size(); position++) {
+                bigrams.add(doc, position, wordIds.get(body.get(position)));
+            }
+        }
+        return IndexGeneration.Loaders.of(terms.build(), ForwardIndex.empty(), bigrams.build(),
+                ShardedIndex.split(fields.build(), 2), DocumentStore.empty());
+    }
+}
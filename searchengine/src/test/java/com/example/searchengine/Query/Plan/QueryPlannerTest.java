@@ -0,0 +1,136 @@
+package com.example.searchengine.Query.Plan;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+import com.example.searchengine.Indexer.Memory.BigramIndex;
+import com.example.searchengine.Indexer.Memory.ForwardIndex;
+import com.example.searchengine.Indexer.Memory.InMemoryIndex;
+import com.example.searchengine.Indexer.Postings.DocIdSet;
+import com.example.searchengine.Indexer.Postings.DocIdSetCache;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class QueryPlannerTest {
+
+    private static final Set<String> STOP_WORDS = Set.of("the", "and", "or", "not");
+    private static final Function<String, List<String>> ANALYZER = text -> Arrays.stream(text.split("[\\s.]+"))
+            .filter(word -> !word.isEmpty() && !STOP_WORDS.contains(word))
+            .toList();
+
+    // word ids: 1 common, 2 rare, 3 mid, 4 quick, 5 brown, 6 skip
+    private static final String[] WORDS = {null, "common", "rare", "mid", "quick", "brown", "skip"};
+
+    @Test
+    void parsesNestedQueriesWithPrecedence() {
+        QueryNode root = QueryParser.parse("(java OR kotlin) \"quick brown\" -skip OR app.config", ANALYZER);
+        assertEquals("(((java OR kotlin) AND \"quick brown\" AND NOT skip) OR \"app config\")", root.toString());
+        assertEquals(List.of("java", "kotlin", "quick", "brown", "app", "config"), QueryNode.positiveTerms(root));
+        assertEquals(List.of("quick brown", "app.config"), QueryNode.positivePhrases(root));
+
+        // Stop words drop out with their operators
+        assertEquals("rare", QueryParser.parse("the rare AND NOT the", ANALYZER).toString());
+        assertNull(QueryParser.parse("the OR and", ANALYZER));
+        assertThrows(IllegalArgumentException.class, () -> QueryParser.parse("(rare common", ANALYZER));
+        assertThrows(IllegalArgumentException.class, () -> QueryParser.parse("rare) common", ANALYZER));
+        assertEquals("(rare AND after:2024-01-31)", QueryParser.parse("rare AFTER:2024-01-31", ANALYZER).toString());
+        assertEquals("NOT site:a.example", QueryParser.parse("-site:https://A.example/docs", ANALYZER).toString());
+        assertThrows(IllegalArgumentException.class, () -> QueryParser.parse("rare before:yesterday", ANALYZER));
+    }
+
+    @Test
+    void evaluatesFromTheRarestClauseAndFiltersNegationsLast() {
+        QueryPlanner planner = planner(200);
+
+        QueryNode query = QueryParser.parse("common mid rare -skip", ANALYZER);
+        assertArrayEquals(new int[] {150}, planner.evaluate(query).toArray());
+        // Three postings of the rarest term, then at most one probe per survivor and clause
+        assertTrue(planner.work() <= 3 + 3 * 3, "work " + planner.work());
+        assertTrue(planner.explain(query).startsWith("(rare~3 -> "), planner.explain(query));
+        assertTrue(planner.explain(query).endsWith(" -> NOT skip~1)"), planner.explain(query));
+
+        assertArrayEquals(new int[] {3, 7, 10, 77, 150},
+                planner(200).evaluate(QueryParser.parse("\"quick brown\" OR rare", ANALYZER)).toArray());
+        assertArrayEquals(new int[] {10, 150},
+                planner(200).evaluate(QueryParser.parse("mid (rare OR \"quick brown\")", ANALYZER)).toArray());
+        assertArrayEquals(new int[] {7},
+                planner(200).evaluate(QueryParser.parse("rare site:a.example -skip", ANALYZER)).toArray());
+        assertArrayEquals(new int[] {150},
+                planner(200).evaluate(QueryParser.parse("rare -site:A.example/docs", ANALYZER)).toArray());
+        // brown quick is not a phrase anywhere
+        assertArrayEquals(new int[0],
+                planner(200).evaluate(QueryParser.parse("common \"brown quick\"", ANALYZER)).toArray());
+
+        assertThrows(IllegalArgumentException.class, () -> planner(200).evaluate(QueryParser.parse("NOT rare", ANALYZER)));
+        assertThrows(IllegalArgumentException.class,
+                () -> planner(200).evaluate(QueryParser.parse("rare OR -common", ANALYZER)));
+    }
+
+    @Test
+    void conjunctionCostDoesNotGrowWithItsCommonClauses() {
+        QueryPlanner small = planner(200);
+        small.evaluate(QueryParser.parse("rare common mid", ANALYZER));
+        QueryPlanner large = planner(20_000);
+        large.evaluate(QueryParser.parse("rare common mid", ANALYZER));
+        assertEquals(small.work(), large.work());
+    }
+
+    // Every document has common; even ones mid; rare in 7, 77 and 150; quick brown in 3, 7 and 10; skip in 77
+    private static QueryPlanner planner(int documents) {
+        List<int[]> docs = new ArrayList<>();
+        docs.add(new int[0]);
+        for (int doc = 1; doc <= documents; doc++) {
+            List<Integer> words = new ArrayList<>(List.of(1));
+            if (doc % 2 == 0) {
+                words.add(3);
+            }
+            if (doc == 7 || doc == 77 || doc == 150) {
+                words.add(2);
+            }
+            if (doc == 3 || doc == 7 || doc == 10) {
+                words.addAll(List.of(4, 5));
+            } else {
+                words.addAll(List.of(5, 1, 4));
+            }
+            if (doc == 77) {
+                words.add(6);
+            }
+            docs.add(words.stream().mapToInt(Integer::intValue).toArray());
+        }
+
+        InMemoryIndex.Builder terms = new InMemoryIndex.Builder();
+        for (int wordId = 1; wordId < WORDS.length; wordId++) {
+            terms.startTerm(WORDS[wordId], wordId);
+            for (int doc = 1; doc < docs.size(); doc++) {
+                int freq = 0;
+                for (int word : docs.get(doc)) {
+                    freq += word == wordId ? 1 : 0;
+                }
+                if (freq > 0) {
+                    terms.add(doc, freq);
+                }
+            }
+        }
+        InMemoryIndex index = terms.build();
+        ForwardIndex.Builder builder = new ForwardIndex.Builder(index);
+        for (int doc = 1; doc < docs.size(); doc++) {
+            for (int position = 0; position < docs.get(doc).length; position++) {
+                builder.add(doc, position, docs.get(doc)[position]);
+            }
+        }
+        ForwardIndex forward = builder.build();
+        // site:a.example holds the documents below 100
+        return new QueryPlanner(index, forward, BigramIndex.of(index, forward), new DocIdSetCache(16),
+                filter -> DocIdSet.of(IntStream.range(1, 100).toArray()));
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.searchengine.Suggest;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CompletionIndexTest {
+
+    @Test
+    void completesPrefixesHeaviestFirst() {
+        CompletionIndex index = new CompletionIndex.Builder()
+            .add("java", 50)
+            .add("javascript", 80)
+            .add("jakarta", 10)
+            .add("python", 100)
+            .add("java tutorial", 30)
+            .add("java", 40)
+            .add("jvm", 5)
+            .build();
+        assertEquals(6, index.size());
+
+        List<CompletionIndex.Completion> completions = index.complete("ja", 3);
+        assertEquals(List.of("java", "javascript", "java tutorial"), completions.stream().map(CompletionIndex.Completion::text).toList());
+        assertEquals(90, completions.get(0).weight());
+
+        assertEquals(5, index.complete("j", 10).size());
+        assertEquals("jvm", index.complete("j", 10).get(4).text());
+        assertTrue(index.complete("rust", 5).isEmpty());
+        assertTrue(CompletionIndex.empty().complete("a", 5).isEmpty());
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.searchengine.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.function.Predicate;
+
+/**
+ * Benchmark results files and the baselines they are checked against. A
+ * baseline is a properties file on the test classpath recorded for one
+ * corpus; each metric may carry a {@code <metric>.tolerance} fraction
+ * (default 0.25) by which it may get worse before it counts as a
+ * regression. To accept new numbers, copy the results file over the
+ * baseline.
+ */
+public class BenchmarkBaseline {
+
+    private final String resource;
+    private final String corpus;
+
+    /**
+     * @param resource baseline path on the test classpath
+     * @param corpus key of the corpus settings, so a baseline only applies to the corpus it was recorded on
+     */
+    public BenchmarkBaseline(String resource, String corpus) {
+        this.resource = resource;
+        this.corpus = corpus;
+    }
+
+    public void writeResults(Path results, Map<String, Double> metrics, String comment) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("corpus", corpus);
+        metrics.forEach((name, value) -> properties.setProperty(name, String.format("%.2f", value)));
+        Files.createDirectories(results.getParent());
+        try (OutputStream out = Files.newOutputStream(results)) {
+            properties.store(out, comment);
+        }
+    }
+
+    /**
+     * Metrics worse than their baseline by more than their tolerance, as
+     * readable messages; empty when there is no baseline for this corpus.
+     */
+    public List<String> regressions(Map<String, Double> metrics, Predicate<String> higherIsBetter) throws IOException {
+        List<String> regressions = new ArrayList<>();
+        Properties baseline = new Properties();
+        try (InputStream in = getClass().getClassLoader().getResourceAsStream(resource)) {
+            if (in == null) {
+                System.out.println("No benchmark baseline at " + resource + ", nothing to compare");
+                return regressions;
+            }
+            baseline.load(in);
+        }
+        if (!corpus.equals(baseline.getProperty("corpus"))) {
+            System.out.println("Benchmark baseline was recorded for another corpus (" +
+                baseline.getProperty("corpus") + "), nothing to compare");
+            return regressions;
+        }
+
+        for (Map.Entry<String, Double> metric : metrics.entrySet()) {
+            String recorded = baseline.getProperty(metric.getKey());
+            if (recorded == null) {
+                continue;
+            }
+            double expected = Double.parseDouble(recorded);
+            double tolerance = Double.parseDouble(baseline.getProperty(metric.getKey() + ".tolerance", "0.25"));
+            boolean higher = higherIsBetter.test(metric.getKey());
+            double limit = higher ? expected * (1 - tolerance) : expected * (1 + tolerance);
+            double actual = metric.getValue();
+            if (higher ? actual < limit : actual > limit) {
+                regressions.add(String.format("%s %.2f (baseline %.2f, limit %.2f)", metric.getKey(), actual,
+                    expected, limit));
+            }
+        }
+        return regressions;
+    }
+}
@@ -0,0 +1,196 @@
+package com.example.searchengine.benchmark;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import com.example.searchengine.Indexer.Postings.DocIdSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Memory per candidate document and CPU per document for AND, OR and NOT,
+ * with candidate sets as the boxed {@code HashSet<Long>} the query path
+ * combined with {@code retainAll}/{@code addAll}/{@code removeAll}, and as
+ * {@link DocIdSet}s. Sets are random doc ids at a frequent term's, a mid
+ * term's and a rare term's density (no database). Runs only with
+ * {@code mvn test -Pbenchmark}; the collection size comes from
+ * {@code benchmark.docset-documents}.
+ *
+ * Only the {@link DocIdSet} metrics are gated: its bytes per document and
+ * how many times faster than the {@code HashSet} path it combines sets.
+ * Absolute CPU times depend on the machine and are only logged. Results
+ * are written to {@code target/benchmark/docset-results.properties} and
+ * compared with {@code benchmark/docset-baseline.properties}.
+ */
+@Tag("benchmark")
+public class DocSetBenchmarkTest {
+
+    private static final String BASELINE = "benchmark/docset-baseline.properties";
+    private static final Path RESULTS = Path.of("target", "benchmark", "docset-results.properties");
+
+    private static final int WARMUP_PASSES = 3;
+    private static final int MEASURED_PASSES = 5;
+
+    // Per mille of the collection: a frequent, a mid and a rare term
+    private static final int[] DENSITIES = {300, 30, 1};
+
+    @Test
+    void combineCandidateSets() throws IOException {
+        int documents = Integer.getInteger("benchmark.docset-documents", 1_000_000);
+        Random random = new Random(Long.getLong("benchmark.seed", 42));
+        List<int[]> sets = new ArrayList<>();
+        for (int density : DENSITIES) {
+            sets.add(randomDocs(random, documents, density));
+        }
+
+        // Gated metrics, and the reference and absolute timings that are only logged
+        Map<String, Double> metrics = new LinkedHashMap<>();
+        Map<String, Double> logged = new LinkedHashMap<>();
+        String[] names = {"frequent", "mid", "rare"};
+        List<DocIdSet> bitmaps = new ArrayList<>();
+        List<Set<Long>> boxed = new ArrayList<>();
+        for (int s = 0; s < sets.size(); s++) {
+            int[] docs = sets.get(s);
+            DocIdSet bitmap = DocIdSet.of(docs);
+            bitmaps.add(bitmap);
+            boxed.add(box(docs));
+            logged.put("hashset-bytes-per-doc-" + names[s], (double) hashSetBytes(docs.length) / docs.length);
+            metrics.put("bitmap-bytes-per-doc-" + names[s], (double) bitmap.estimatedBytes() / docs.length);
+        }
+
+        // Frequent with mid, mid with rare: the pairs a conjunction meets
+        int[][] pairs = {{0, 1}, {1, 2}};
+        long inputDocs = 0;
+        for (int[] pair : pairs) {
+            inputDocs += sets.get(pair[0]).length + sets.get(pair[1]).length;
+            Set<Long> expected = new HashSet<>(boxed.get(pair[0]));
+            expected.retainAll(boxed.get(pair[1]));
+            assertEquals(expected.size(), bitmaps.get(pair[0]).and(bitmaps.get(pair[1])).cardinality());
+        }
+        long perPass = inputDocs;
+        logged.put("hashset-and-ns-per-doc", cpuNanos(perPass, () -> {
+            long size = 0;
+            for (int[] pair : pairs) {
+                Set<Long> result = new HashSet<>(boxed.get(pair[0]));
+                result.retainAll(boxed.get(pair[1]));
+                size += result.size();
+            }
+            return size;
+        }));
+        logged.put("bitmap-and-ns-per-doc", cpuNanos(perPass, () -> {
+            long size = 0;
+            for (int[] pair : pairs) {
+                size += bitmaps.get(pair[0]).and(bitmaps.get(pair[1])).cardinality();
+            }
+            return size;
+        }));
+        logged.put("hashset-or-ns-per-doc", cpuNanos(perPass, () -> {
+            long size = 0;
+            for (int[] pair : pairs) {
+                Set<Long> result = new HashSet<>(boxed.get(pair[0]));
+                result.addAll(boxed.get(pair[1]));
+                size += result.size();
+            }
+            return size;
+        }));
+        logged.put("bitmap-or-ns-per-doc", cpuNanos(perPass, () -> {
+            long size = 0;
+            for (int[] pair : pairs) {
+                size += bitmaps.get(pair[0]).or(bitmaps.get(pair[1])).cardinality();
+            }
+            return size;
+        }));
+        logged.put("hashset-not-ns-per-doc", cpuNanos(perPass, () -> {
+            long size = 0;
+            for (int[] pair : pairs) {
+                Set<Long> result = new HashSet<>(boxed.get(pair[0]));
+                result.removeAll(boxed.get(pair[1]));
+                size += result.size();
+            }
+            return size;
+        }));
+        logged.put("bitmap-not-ns-per-doc", cpuNanos(perPass, () -> {
+            long size = 0;
+            for (int[] pair : pairs) {
+                size += bitmaps.get(pair[0]).andNot(bitmaps.get(pair[1])).cardinality();
+            }
+            return size;
+        }));
+
+        for (String op : new String[] {"and", "or", "not"}) {
+            metrics.put("bitmap-" + op + "-speedup",
+                    logged.get("hashset-" + op + "-ns-per-doc") / logged.get("bitmap-" + op + "-ns-per-doc"));
+        }
+
+        logged.forEach((name, value) -> System.out.println(String.format("  %-34s %12.2f (not gated)", name, value)));
+        metrics.forEach((name, value) -> System.out.println(String.format("  %-34s %12.2f", name, value)));
+        BenchmarkBaseline baseline = new BenchmarkBaseline(BASELINE, corpusKey());
+        baseline.writeResults(RESULTS, metrics, "Doc set benchmark results");
+        List<String> regressions = baseline.regressions(metrics, metric -> metric.endsWith("-speedup"));
+        assertTrue(regressions.isEmpty(), "Doc set benchmark regressed: " + regressions);
+    }
+
+    private static int[] randomDocs(Random random, int documents, int perMille) {
+        int[] docs = new int[documents];
+        int n = 0;
+        for (int doc = 0; doc < documents; doc++) {
+            if (random.nextInt(1000) < perMille) {
+                docs[n++] = doc;
+            }
+        }
+        return Arrays.copyOf(docs, n);
+    }
+
+    private static Set<Long> box(int[] docs) {
+        Set<Long> boxed = new HashSet<>();
+        for (int doc : docs) {
+            boxed.add((long) doc);
+        }
+        return boxed;
+    }
+
+    // HashSet<Long> on a 64-bit JVM with compressed references: a 32-byte node and a 16-byte Long per id,
+    // and a 4-byte slot per bucket in a table at most 75% full
+    private static long hashSetBytes(int size) {
+        int buckets = Integer.highestOneBit(Math.max(1, (int) (size / 0.75f)) * 2 - 1);
+        return 16 + 48 + 16 + 4L * buckets + 48L * size;
+    }
+
+    // Median over passes of the thread's CPU time for one pass, per input document
+    private static double cpuNanos(long docsPerPass, Supplier<Long> pass) {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long[] times = new long[MEASURED_PASSES];
+        long sink = 0;
+        for (int p = 0; p < WARMUP_PASSES + MEASURED_PASSES; p++) {
+            long start = threads.getCurrentThreadCpuTime();
+            sink += pass.get();
+            if (p >= WARMUP_PASSES) {
+                times[p - WARMUP_PASSES] = threads.getCurrentThreadCpuTime() - start;
+            }
+        }
+        assertTrue(sink > 0);
+        Arrays.sort(times);
+        return (double) times[MEASURED_PASSES / 2] / docsPerPass;
+    }
+
+    private static String corpusKey() {
+        return String.join("/",
+            System.getProperty("benchmark.docset-documents", "1000000"),
+            System.getProperty("benchmark.seed", "42"));
+    }
+}
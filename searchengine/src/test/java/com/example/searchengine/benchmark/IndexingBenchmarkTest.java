@@ -0,0 +1,179 @@
+package com.example.searchengine.benchmark;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.searchengine.Indexer.Service.IndexerService;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Indexing throughput on a synthetic corpus in an embedded H2 database.
+ * Runs only with {@code mvn test -Pbenchmark}; corpus size and shape come
+ * from {@code benchmark.*} system properties (see {@link SyntheticCorpus}).
+ *
+ * Results are written to {@code target/benchmark/indexing-results.properties}
+ * and compared with {@code benchmark/indexing-baseline.properties}: a metric
+ * that is worse than its baseline by more than its tolerance fails the build.
+ * To accept new numbers, copy the results file over the baseline.
+ */
+@Tag("benchmark")
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:benchmark;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH",
+    "spring.datasource.driver-class-name=org.h2.Driver",
+    "spring.datasource.username=sa",
+    "spring.datasource.password=",
+    "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+    "spring.jpa.hibernate.ddl-auto=create-drop",
+    "spring.main.allow-bean-definition-overriding=true",
+    "app.index.snapshot.path=target/benchmark/index.snapshot"
+})
+public class IndexingBenchmarkTest {
+
+    private static final String BASELINE = "benchmark/indexing-baseline.properties";
+    private static final Path RESULTS = Path.of("target", "benchmark", "indexing-results.properties");
+
+    // Metrics where a lower value is a regression; the others regress upwards
+    private static final List<String> THROUGHPUT_METRICS = List.of("docs-per-second", "postings-per-second");
+
+    @TestConfiguration
+    static class BenchmarkConfig {
+
+        @Bean
+        static StatementCounter statementCounter() {
+            return new StatementCounter();
+        }
+
+        @Bean
+        static BeanPostProcessor countingDataSource(StatementCounter statementCounter) {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    return bean instanceof DataSource dataSource ? statementCounter.wrap(dataSource) : bean;
+                }
+            };
+        }
+
+        // Run @Async metrics computation on the caller so it can be timed
+        @Bean(name = "taskExecutor")
+        Executor taskExecutor() {
+            return new SyncTaskExecutor();
+        }
+    }
+
+    @Autowired
+    private IndexerService indexerService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private StatementCounter statementCounter;
+
+    @Test
+    void indexSyntheticCorpus() throws IOException {
+        SyntheticCorpus corpus = SyntheticCorpus.fromSystemProperties();
+        Map<String, String> pages = corpus.generate();
+        storeCrawledPages(pages);
+
+        statementCounter.reset();
+        resetPeakHeap();
+        long startTime = System.nanoTime();
+        indexerService.buildIndex(pages);
+        double indexSeconds = (System.nanoTime() - startTime) / 1e9;
+        long indexRoundTrips = statementCounter.getRoundTrips();
+        long indexBatchedRows = statementCounter.getBatchedRows();
+        long peakHeap = peakHeap();
+
+        long documents = count("documents WHERE last_indexed IS NOT NULL");
+        long postings = count("inverted_index");
+
+        statementCounter.reset();
+        startTime = System.nanoTime();
+        indexerService.computeAndStoreMetrics();
+        double metricsSeconds = (System.nanoTime() - startTime) / 1e9;
+
+        Map<String, Double> metrics = new LinkedHashMap<>();
+        metrics.put("docs-per-second", documents / indexSeconds);
+        metrics.put("postings-per-second", postings / indexSeconds);
+        metrics.put("statements-per-document", (double) indexRoundTrips / documents);
+        metrics.put("batched-rows-per-document", (double) indexBatchedRows / documents);
+        metrics.put("peak-heap-mb", peakHeap / (1024.0 * 1024.0));
+        metrics.put("metrics-seconds", metricsSeconds);
+        metrics.put("metrics-statements", (double) statementCounter.getRoundTrips());
+
+        System.out.println("Indexing benchmark: " + documents + " documents, " + postings + " postings in " +
+            String.format("%.2f", indexSeconds) + " s");
+        metrics.forEach((name, value) -> System.out.println(String.format("  %-26s %12.2f", name, value)));
+
+        BenchmarkBaseline baseline = new BenchmarkBaseline(BASELINE, corpusKey());
+        baseline.writeResults(RESULTS, metrics, "Indexing benchmark results");
+
+        assertTrue(documents == corpus.getDocuments(), "Expected every generated page to be indexed");
+        List<String> regressions = baseline.regressions(metrics, THROUGHPUT_METRICS::contains);
+        assertTrue(regressions.isEmpty(), "Indexing benchmark regressed: " + regressions);
+    }
+
+    // Baselines only apply to the corpus they were recorded on
+    private static String corpusKey() {
+        return String.join("/",
+            System.getProperty("benchmark.documents", "1000"),
+            System.getProperty("benchmark.vocabulary", "5000"),
+            System.getProperty("benchmark.zipf", "1.1"),
+            System.getProperty("benchmark.words-per-document", "300"),
+            System.getProperty("benchmark.tag-weights", "70,3,8,4,15"),
+            System.getProperty("benchmark.seed", "42"));
+    }
+
+    // The indexer reads pages the crawler stored, so store them first, outside the measurement
+    private void storeCrawledPages(Map<String, String> pages) {
+        List<Object[]> rows = new ArrayList<>();
+        pages.forEach((url, html) -> rows.add(new Object[] {url, url, html}));
+        jdbcTemplate.batchUpdate("INSERT INTO documents (url, title, content, status, created_at, updated_at) " +
+            "VALUES (?, ?, ?, 'CRAWLED', CURRENT_TIMESTAMP, CURRENT_TIMESTAMP)", rows);
+    }
+
+    private long count(String table) {
+        Long count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table, Long.class);
+        return count == null ? 0 : count;
+    }
+
+    private static void resetPeakHeap() {
+        System.gc();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+}
@@ -0,0 +1,232 @@
+package com.example.searchengine.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import com.example.searchengine.Indexer.Memory.FieldIndex;
+import com.example.searchengine.Indexer.Memory.InMemoryIndex;
+import com.example.searchengine.Indexer.Memory.IndexField;
+import com.example.searchengine.Indexer.Postings.PostingsIntersection;
+import com.example.searchengine.Indexer.Shard.ShardedIndex;
+import com.example.searchengine.Indexer.Shard.TopHits;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Query latency per query shape, over a field index built in memory from a
+ * synthetic corpus (no database). For every conjunctive shape it times the
+ * galloping intersection against merging and counting all postings, which
+ * is how every query was matched before. For every shape it counts the
+ * documents the top-k search scores with block-max WAND pruning against
+ * scoring every match, and times both on one shard and the pruned search
+ * on four. Runs only with {@code mvn test -Pbenchmark};
+ * the page count comes from {@code benchmark.query-documents} and the
+ * other settings from the same properties as {@link SyntheticCorpus}.
+ *
+ * Results are written to {@code target/benchmark/query-results.properties}
+ * and compared with {@code benchmark/query-baseline.properties}.
+ */
+@Tag("benchmark")
+public class QueryBenchmarkTest {
+
+    private static final String BASELINE = "benchmark/query-baseline.properties";
+    private static final Path RESULTS = Path.of("target", "benchmark", "query-results.properties");
+
+    private static final int WARMUP_RUNS = 20;
+    private static final int MEASURED_RUNS = 50;
+    private static final int TOP_K = 250;
+
+    // Query terms by frequency rank (0 is in nearly every page, 2000 in a few) and how many must match
+    private record Shape(int minMatch, int... ranks) {
+        boolean conjunctive() {
+            return minMatch == ranks.length;
+        }
+    }
+
+    private static final Map<String, Shape> SHAPES = new LinkedHashMap<>();
+    static {
+        SHAPES.put("frequent-pair", new Shape(2, 0, 1));
+        SHAPES.put("frequent-rare", new Shape(2, 0, 2000));
+        SHAPES.put("three-terms", new Shape(3, 0, 30, 300));
+        SHAPES.put("five-terms", new Shape(5, 0, 3, 10, 50, 200));
+        SHAPES.put("rare-pair", new Shape(2, 500, 1500));
+        SHAPES.put("any-of-three", new Shape(1, 0, 30, 300));
+        SHAPES.put("two-of-four", new Shape(2, 5, 40, 400, 1500));
+    }
+
+    @Test
+    void intersectQueryShapes() throws IOException {
+        SyntheticCorpus corpus = SyntheticCorpus.fromSystemProperties("benchmark.query-documents", 20_000);
+        long startTime = System.nanoTime();
+        FieldIndex fields = buildIndex(corpus);
+        System.out.println("Query benchmark: " + corpus.getDocuments() + " documents, " +
+            fields.postings(IndexField.BODY).postingsCount() + " postings built in " +
+            String.format("%.2f", (System.nanoTime() - startTime) / 1e9) + " s");
+
+        ShardedIndex single = ShardedIndex.split(fields, 1);
+        ShardedIndex sharded = ShardedIndex.split(fields, 4);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        Map<String, Double> metrics = new LinkedHashMap<>();
+        try {
+            for (Map.Entry<String, Shape> entry : SHAPES.entrySet()) {
+                String name = entry.getKey();
+                Shape shape = entry.getValue();
+                List<String> terms = new ArrayList<>();
+                int[][] lists = new int[shape.ranks().length][];
+                for (int i = 0; i < lists.length; i++) {
+                    String term = corpus.vocabularyWord(shape.ranks()[i]);
+                    terms.add(term);
+                    lists[i] = documentsWith(fields.postings(IndexField.BODY), term);
+                }
+                int minMatch = shape.minMatch();
+
+                TopHits exhaustive = single.searchExhaustive(terms, minMatch, TOP_K, executor);
+                TopHits pruned = single.search(terms, minMatch, TOP_K, executor);
+                assertArrayEquals(exhaustive.scores(), pruned.scores(), 1e-9, name);
+                assertArrayEquals(pruned.scores(), sharded.search(terms, minMatch, TOP_K, executor).scores(), 1e-9,
+                    name);
+                metrics.put(name + ".matches", (double) exhaustive.scored());
+                metrics.put(name + ".scored", (double) pruned.scored());
+
+                if (shape.conjunctive()) {
+                    int[] intersected = PostingsIntersection.intersect(lists);
+                    assertArrayEquals(mergeAndCount(lists), intersected, name);
+                    assertEquals(intersected.length, exhaustive.scored(), name);
+                    metrics.put(name + ".intersect-us", medianMicros(() -> PostingsIntersection.intersect(lists)));
+                    metrics.put(name + ".merge-us", medianMicros(() -> mergeAndCount(lists)));
+                }
+                metrics.put(name + ".exhaustive-search-us",
+                    medianMicros(() -> single.searchExhaustive(terms, minMatch, TOP_K, executor)));
+                metrics.put(name + ".search-us", medianMicros(() -> single.search(terms, minMatch, TOP_K, executor)));
+                metrics.put(name + ".sharded-search-us",
+                    medianMicros(() -> sharded.search(terms, minMatch, TOP_K, executor)));
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        metrics.forEach((name, value) -> System.out.println(String.format("  %-34s %12.2f", name, value)));
+        BenchmarkBaseline baseline = new BenchmarkBaseline(BASELINE, corpusKey());
+        baseline.writeResults(RESULTS, metrics, "Query benchmark results");
+        List<String> regressions = baseline.regressions(metrics, metric -> false);
+        assertTrue(regressions.isEmpty(), "Query benchmark regressed: " + regressions);
+    }
+
+    // Body postings of the corpus: per page, Zipf-sampled words and their counts
+    private static FieldIndex buildIndex(SyntheticCorpus corpus) {
+        Random random = new Random(Long.getLong("benchmark.seed", 42L));
+        int vocabulary = corpus.getVocabularySize();
+        int[][] docs = new int[vocabulary][4];
+        int[][] freqs = new int[vocabulary][4];
+        int[] sizes = new int[vocabulary];
+        int[] counts = new int[vocabulary];
+        int[] seen = new int[vocabulary];
+
+        FieldIndex.Builder builder = new FieldIndex.Builder();
+        int wordsPerDocument = corpus.getWordsPerDocument();
+        for (int doc = 1; doc <= corpus.getDocuments(); doc++) {
+            int length = wordsPerDocument / 2 + random.nextInt(wordsPerDocument + 1);
+            int distinct = 0;
+            for (int i = 0; i < length; i++) {
+                int rank = corpus.sampleRank(random);
+                if (counts[rank]++ == 0) {
+                    seen[distinct++] = rank;
+                }
+            }
+            for (int i = 0; i < distinct; i++) {
+                int rank = seen[i];
+                if (sizes[rank] == docs[rank].length) {
+                    docs[rank] = Arrays.copyOf(docs[rank], sizes[rank] * 2);
+                    freqs[rank] = Arrays.copyOf(freqs[rank], sizes[rank] * 2);
+                }
+                docs[rank][sizes[rank]] = doc;
+                freqs[rank][sizes[rank]] = counts[rank];
+                sizes[rank]++;
+                counts[rank] = 0;
+            }
+            builder.addDocument(doc, length, 0, 0, length);
+        }
+        for (int rank = 0; rank < vocabulary; rank++) {
+            for (int i = 0; i < sizes[rank]; i++) {
+                builder.add(IndexField.BODY, rank + 1, corpus.vocabularyWord(rank), docs[rank][i], freqs[rank][i]);
+            }
+        }
+        return builder.build();
+    }
+
+    private static int[] documentsWith(InMemoryIndex postings, String term) {
+        int ordinal = postings.ordinal(term);
+        if (ordinal < 0) {
+            return new int[0];
+        }
+        int[] docs = new int[postings.docFreq(ordinal)];
+        for (int slot = postings.start(ordinal); slot < postings.end(ordinal); slot++) {
+            docs[slot - postings.start(ordinal)] = postings.docAt(slot);
+        }
+        return docs;
+    }
+
+    // Matching before the intersection: every posting of every term sorted together, runs of all terms kept
+    private static int[] mergeAndCount(int[][] lists) {
+        int total = 0;
+        for (int[] docs : lists) {
+            total += docs.length;
+        }
+        int[] all = new int[total];
+        int filled = 0;
+        for (int[] docs : lists) {
+            System.arraycopy(docs, 0, all, filled, docs.length);
+            filled += docs.length;
+        }
+        Arrays.sort(all);
+        int count = 0;
+        for (int i = 0; i < all.length; ) {
+            int run = i;
+            while (run < all.length && all[run] == all[i]) {
+                run++;
+            }
+            if (run - i == lists.length) {
+                all[count++] = all[i];
+            }
+            i = run;
+        }
+        return Arrays.copyOf(all, count);
+    }
+
+    private static double medianMicros(Supplier<?> query) {
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            query.get();
+        }
+        long[] times = new long[MEASURED_RUNS];
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            long start = System.nanoTime();
+            query.get();
+            times[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(times);
+        return times[MEASURED_RUNS / 2] / 1000.0;
+    }
+
+    private static String corpusKey() {
+        return String.join("/",
+            System.getProperty("benchmark.query-documents", "20000"),
+            System.getProperty("benchmark.vocabulary", "5000"),
+            System.getProperty("benchmark.zipf", "1.1"),
+            System.getProperty("benchmark.words-per-document", "300"),
+            System.getProperty("benchmark.seed", "42"));
+    }
+}
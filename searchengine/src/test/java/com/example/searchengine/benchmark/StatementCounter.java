@@ -0,0 +1,80 @@
+package com.example.searchengine.benchmark;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
+/**
+ * Counts the JDBC work behind a data source: every execute call or batch
+ * sent to the database is one round trip, and every row added to a batch
+ * is one batched row.
+ */
+public class StatementCounter {
+
+    private final AtomicLong roundTrips = new AtomicLong();
+    private final AtomicLong batchedRows = new AtomicLong();
+
+    public long getRoundTrips() {
+        return roundTrips.get();
+    }
+
+    public long getBatchedRows() {
+        return batchedRows.get();
+    }
+
+    public void reset() {
+        roundTrips.set(0);
+        batchedRows.set(0);
+    }
+
+    public DataSource wrap(DataSource dataSource) {
+        return proxy(DataSource.class, dataSource, (proxy, method, args) -> {
+            Object result = invoke(dataSource, method, args);
+            return result instanceof Connection connection ? wrap(connection) : result;
+        });
+    }
+
+    private Connection wrap(Connection connection) {
+        return proxy(Connection.class, connection, (proxy, method, args) -> {
+            Object result = invoke(connection, method, args);
+            return result instanceof Statement statement ? wrap(statement) : result;
+        });
+    }
+
+    private Statement wrap(Statement statement) {
+        // Keep the prepared and callable interfaces the caller asked for
+        Class<?>[] interfaces = statement instanceof java.sql.CallableStatement
+            ? new Class<?>[] {java.sql.CallableStatement.class}
+            : statement instanceof java.sql.PreparedStatement
+                ? new Class<?>[] {java.sql.PreparedStatement.class}
+                : new Class<?>[] {Statement.class};
+        InvocationHandler handler = (proxy, method, args) -> {
+            String name = method.getName();
+            if (name.equals("addBatch")) {
+                batchedRows.incrementAndGet();
+            } else if (name.startsWith("execute")) {
+                roundTrips.incrementAndGet();
+            }
+            return invoke(statement, method, args);
+        };
+        return (Statement) Proxy.newProxyInstance(getClass().getClassLoader(), interfaces, handler);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T proxy(Class<T> type, T target, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {type}, handler);
+    }
+
+    private static Object invoke(Object target, java.lang.reflect.Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
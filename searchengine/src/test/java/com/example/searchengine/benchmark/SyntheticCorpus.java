@@ -0,0 +1,176 @@
+package com.example.searchengine.benchmark;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Reproducible HTML pages for indexing benchmarks. Words are drawn from a
+ * synthetic vocabulary with Zipf-distributed frequencies, so a few terms
+ * have long postings and most have short ones, and body elements follow a
+ * weighted tag mix. The same settings and seed always give the same pages.
+ */
+public class SyntheticCorpus {
+
+    private static final String[] SYLLABLES = {
+        "ka", "lo", "mi", "ne", "ru", "ta", "vo", "zi", "pe", "sa", "do", "fu", "gi", "ho", "ju", "bel"
+    };
+    private static final String[] TAGS = {"p", "h1", "h2", "h3", "a"};
+
+    private final int documents;
+    private final int wordsPerDocument;
+    private final long seed;
+    private final String[] vocabulary;
+    private final double[] cumulativeFrequency;
+    private final double[] cumulativeTagWeight;
+
+    /**
+     * @param documents number of pages
+     * @param vocabularySize distinct words
+     * @param zipfExponent skew of word frequencies, 0 for uniform
+     * @param wordsPerDocument average words per page
+     * @param tagWeights relative weights of p, h1, h2, h3 and a elements in a page body
+     * @param seed random seed
+     */
+    public SyntheticCorpus(int documents, int vocabularySize, double zipfExponent, int wordsPerDocument,
+            double[] tagWeights, long seed) {
+        if (tagWeights.length != TAGS.length) {
+            throw new IllegalArgumentException("Expected " + TAGS.length + " tag weights: " + Arrays.toString(TAGS));
+        }
+        this.documents = documents;
+        this.wordsPerDocument = wordsPerDocument;
+        this.seed = seed;
+        this.vocabulary = new String[vocabularySize];
+        this.cumulativeFrequency = new double[vocabularySize];
+        double total = 0;
+        for (int rank = 0; rank < vocabularySize; rank++) {
+            vocabulary[rank] = word(rank);
+            total += 1.0 / Math.pow(rank + 1, zipfExponent);
+            cumulativeFrequency[rank] = total;
+        }
+        this.cumulativeTagWeight = new double[TAGS.length];
+        double weights = 0;
+        for (int i = 0; i < TAGS.length; i++) {
+            weights += tagWeights[i];
+            cumulativeTagWeight[i] = weights;
+        }
+    }
+
+    /**
+     * Settings from {@code benchmark.*} system properties, with defaults
+     * small enough for a quick local run.
+     */
+    public static SyntheticCorpus fromSystemProperties() {
+        return fromSystemProperties("benchmark.documents", 1000);
+    }
+
+    /**
+     * The same settings with the page count read from another property, for
+     * benchmarks that need a different corpus size.
+     */
+    public static SyntheticCorpus fromSystemProperties(String documentsProperty, int defaultDocuments) {
+        String[] weights = System.getProperty("benchmark.tag-weights", "70,3,8,4,15").split(",");
+        double[] tagWeights = Arrays.stream(weights).mapToDouble(w -> Double.parseDouble(w.trim())).toArray();
+        return new SyntheticCorpus(
+            Integer.getInteger(documentsProperty, defaultDocuments),
+            Integer.getInteger("benchmark.vocabulary", 5000),
+            Double.parseDouble(System.getProperty("benchmark.zipf", "1.1")),
+            Integer.getInteger("benchmark.words-per-document", 300),
+            tagWeights,
+            Long.getLong("benchmark.seed", 42L));
+    }
+
+    public int getDocuments() {
+        return documents;
+    }
+
+    /**
+     * Pages keyed by url, in generation order.
+     */
+    public Map<String, String> generate() {
+        Random random = new Random(seed);
+        Map<String, String> pages = new LinkedHashMap<>();
+        for (int doc = 0; doc < documents; doc++) {
+            pages.put(url(doc), page(doc, random));
+        }
+        return pages;
+    }
+
+    private String page(int doc, Random random) {
+        StringBuilder html = new StringBuilder(wordsPerDocument * 8);
+        html.append("<html><head><title>").append(words(random, 3 + random.nextInt(5)))
+            .append("</title></head><body>");
+        int remaining = wordsPerDocument / 2 + random.nextInt(wordsPerDocument + 1);
+        while (remaining > 0) {
+            String tag = tag(random);
+            int count = Math.min(remaining, tag.equals("p") ? 20 + random.nextInt(40) : 2 + random.nextInt(6));
+            if (tag.equals("a")) {
+                html.append("<p><a href=\"").append(url(random.nextInt(documents))).append("\">")
+                    .append(words(random, count)).append("</a></p>");
+            } else {
+                html.append('<').append(tag).append('>').append(words(random, count))
+                    .append("</").append(tag).append('>');
+            }
+            remaining -= count;
+        }
+        return html.append("</body></html>").toString();
+    }
+
+    private String words(Random random, int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                text.append(' ');
+            }
+            text.append(vocabulary[sampleRank(random)]);
+        }
+        return text.toString();
+    }
+
+    /**
+     * Frequency rank of a random word, 0 for the most frequent.
+     */
+    public int sampleRank(Random random) {
+        double target = random.nextDouble() * cumulativeFrequency[cumulativeFrequency.length - 1];
+        int rank = Arrays.binarySearch(cumulativeFrequency, target);
+        return Math.min(rank < 0 ? -rank - 1 : rank, vocabulary.length - 1);
+    }
+
+    public String vocabularyWord(int rank) {
+        return vocabulary[rank];
+    }
+
+    public int getVocabularySize() {
+        return vocabulary.length;
+    }
+
+    public int getWordsPerDocument() {
+        return wordsPerDocument;
+    }
+
+    private String tag(Random random) {
+        double target = random.nextDouble() * cumulativeTagWeight[cumulativeTagWeight.length - 1];
+        for (int i = 0; i < TAGS.length; i++) {
+            if (target < cumulativeTagWeight[i]) {
+                return TAGS[i];
+            }
+        }
+        return TAGS[0];
+    }
+
+    private static String url(int doc) {
+        return "https://site" + (doc % 50) + ".bench.example/page/" + doc;
+    }
+
+    // Distinct words of at least two syllables, spelled from the rank in base 16
+    private static String word(int rank) {
+        StringBuilder word = new StringBuilder();
+        int value = rank + SYLLABLES.length;
+        while (value > 0) {
+            word.append(SYLLABLES[value % SYLLABLES.length]);
+            value /= SYLLABLES.length;
+        }
+        return word.toString();
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.searchengine.benchmark;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Element;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import com.example.searchengine.Indexer.Service.PreIndexer;
+import com.example.searchengine.Indexer.Text.StoredText;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * CPU per search hit spent getting a result's text, on synthetic pages (no
+ * database): parsing the html twice, as snippet and description generation
+ * did, against inflating the text stored at index time. Also records how
+ * large the stored text is next to the html. Runs only with
+ * {@code mvn test -Pbenchmark}; the page count comes from
+ * {@code benchmark.text-documents}.
+ *
+ * Results are written to {@code target/benchmark/text-results.properties}
+ * and compared with {@code benchmark/text-baseline.properties}.
+ */
+@Tag("benchmark")
+public class TextBenchmarkTest {
+
+    private static final String BASELINE = "benchmark/text-baseline.properties";
+    private static final Path RESULTS = Path.of("target", "benchmark", "text-results.properties");
+
+    private static final int WARMUP_PASSES = 3;
+    private static final int MEASURED_PASSES = 5;
+
+    @Test
+    void readResultText() throws IOException {
+        SyntheticCorpus corpus = SyntheticCorpus.fromSystemProperties("benchmark.text-documents", 2000);
+        List<String> pages = new ArrayList<>(corpus.generate().values());
+        PreIndexer preIndexer = new PreIndexer();
+        List<byte[]> stored = new ArrayList<>(pages.size());
+        long htmlBytes = 0;
+        long storedBytes = 0;
+        for (String html : pages) {
+            byte[] encoded = store(preIndexer, html).encode();
+            stored.add(encoded);
+            htmlBytes += html.getBytes(StandardCharsets.UTF_8).length;
+            storedBytes += encoded.length;
+        }
+        assertEquals(Jsoup.parse(pages.get(0)).title(), StoredText.decode(stored.get(0)).elementText(0));
+
+        Map<String, Double> metrics = new LinkedHashMap<>();
+        metrics.put("html-parse-us-per-hit", cpuMicrosPerHit(pages, html -> {
+            // Snippet and description each parsed the page
+            return Jsoup.parse(html).text().length() + Jsoup.parse(html).select("p").size();
+        }));
+        metrics.put("stored-text-us-per-hit", cpuMicrosPerHit(stored, bytes -> StoredText.decode(bytes).text().length()));
+        metrics.put("html-bytes-per-page", (double) htmlBytes / pages.size());
+        metrics.put("stored-bytes-per-page", (double) storedBytes / pages.size());
+
+        metrics.forEach((name, value) -> System.out.println(String.format("  %-34s %12.2f", name, value)));
+        BenchmarkBaseline baseline = new BenchmarkBaseline(BASELINE, corpusKey());
+        baseline.writeResults(RESULTS, metrics, "Text benchmark results");
+        List<String> regressions = baseline.regressions(metrics, metric -> false);
+        assertTrue(regressions.isEmpty(), "Text benchmark regressed: " + regressions);
+    }
+
+    // What the indexer stores for a page: the indexed elements in order with their terms' spans
+    private static StoredText store(PreIndexer preIndexer, String html) {
+        org.jsoup.nodes.Document doc = Jsoup.parse(html);
+        StoredText.Builder builder = new StoredText.Builder();
+        int position = 0;
+        for (Element element : doc.select("p, h1, h2, h3, title")) {
+            List<int[]> spans = new ArrayList<>();
+            List<String> terms = preIndexer.analyze(element.text(), spans);
+            builder.addElement(element.tagName(), element.text(), position, spans);
+            position += terms.size() + 10;
+        }
+        return builder.build();
+    }
+
+    // Median over passes of the thread's CPU time for one pass, per item
+    private static <T> double cpuMicrosPerHit(List<T> items, Function<T, Integer> read) {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long[] times = new long[MEASURED_PASSES];
+        long sink = 0;
+        for (int pass = 0; pass < WARMUP_PASSES + MEASURED_PASSES; pass++) {
+            long start = threads.getCurrentThreadCpuTime();
+            for (T item : items) {
+                sink += read.apply(item);
+            }
+            if (pass >= WARMUP_PASSES) {
+                times[pass - WARMUP_PASSES] = threads.getCurrentThreadCpuTime() - start;
+            }
+        }
+        assertTrue(sink > 0);
+        java.util.Arrays.sort(times);
+        return times[MEASURED_PASSES / 2] / 1000.0 / items.size();
+    }
+
+    private static String corpusKey() {
+        return String.join("/",
+            System.getProperty("benchmark.text-documents", "2000"),
+            System.getProperty("benchmark.vocabulary", "5000"),
+            System.getProperty("benchmark.zipf", "1.1"),
+            System.getProperty("benchmark.words-per-document", "300"),
+            System.getProperty("benchmark.tag-weights", "70,3,8,4,15"),
+            System.getProperty("benchmark.seed", "42"));
+    }
+}